@@ -7,6 +7,11 @@ sed -i "s/{postgres-port}/${POSTGRES_PORT:-5432}/"      /usr/local/tomcat/conf/C
 sed -i "s/{postgres-db}/${POSTGRES_DB}/"                /usr/local/tomcat/conf/Catalina/localhost/broker.xml
 sed -i "s/{postgres-user}/${POSTGRES_USER}/"            /usr/local/tomcat/conf/Catalina/localhost/broker.xml
 sed -i "s/{postgres-pass}/${POSTGRES_PASS}/"            /usr/local/tomcat/conf/Catalina/localhost/broker.xml
+if [ -n "${POSTGRES_REPLICA_HOST}" ]; then
+  sed -i -e "/<!-- replica/d" -e "/replica -->/d"         /usr/local/tomcat/conf/Catalina/localhost/broker.xml
+  sed -i "s%{postgres-replica-host}%${POSTGRES_REPLICA_HOST}%" /usr/local/tomcat/conf/Catalina/localhost/broker.xml
+  sed -i "s/{postgres-replica-port}/${POSTGRES_REPLICA_PORT:-5432}/" /usr/local/tomcat/conf/Catalina/localhost/broker.xml
+fi
 
 sed -i "s%{mail-host}%${MAIL_HOST}%"                    /usr/local/tomcat/conf/mailSending.xml
 sed -i "s%{mail-port}%${MAIL_PORT:-25}%"                /usr/local/tomcat/conf/mailSending.xml
@@ -34,11 +39,39 @@ sed -i "s/{icinga-project}/${ICINGA_PROJECT}/"          /usr/local/tomcat/conf/s
 
 sed -i "s/{structured-query-username}/${STRUCTURED_QUERY_USERNAME}/"          /usr/local/tomcat/conf/samply.share.broker.conf
 sed -i "s/{structured-query-password}/${STRUCTURED_QUERY_PASSWORD}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{statistics-username}/${STATISTICS_USERNAME}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{statistics-password}/${STATISTICS_PASSWORD}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+
+sed -i "s/{translation-cache-size}/${TRANSLATION_CACHE_SIZE:-1000}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{query-coalescing-window-seconds}/${QUERY_COALESCING_WINDOW_SECONDS:-10}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{metrics-endpoint-enabled}/${METRICS_ENDPOINT_ENABLED:-false}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{scoreboard-window-minutes}/${SCOREBOARD_WINDOW_MINUTES:-60}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{sql-slow-threshold-millis}/${SQL_SLOW_THRESHOLD_MILLIS:-500}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{cache-ttl-seconds}/${CACHE_TTL_SECONDS:-60}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{db-replica-max-lag-seconds}/${DB_REPLICA_MAX_LAG_SECONDS:-10}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{auth-token-cache-seconds}/${AUTH_TOKEN_CACHE_SECONDS:-300}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{rate-limit-polling-per-minute}/${RATE_LIMIT_POLLING_PER_MINUTE:-300}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{rate-limit-retrieval-per-minute}/${RATE_LIMIT_RETRIEVAL_PER_MINUTE:-1200}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{rate-limit-interactive-per-minute}/${RATE_LIMIT_INTERACTIVE_PER_MINUTE:-300}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{rate-limit-monitoring-per-minute}/${RATE_LIMIT_MONITORING_PER_MINUTE:-600}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{rate-limit-standard-per-minute}/${RATE_LIMIT_STANDARD_PER_MINUTE:-600}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{rate-limit-trusted-proxies}/${RATE_LIMIT_TRUSTED_PROXIES:-}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{query-release-threads}/${QUERY_RELEASE_THREADS:-4}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{query-release-max-attempts}/${QUERY_RELEASE_MAX_ATTEMPTS:-3}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{statistics-queue-size}/${STATISTICS_QUEUE_SIZE:-10000}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{mail-threads}/${MAIL_THREADS:-2}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{mail-max-attempts}/${MAIL_MAX_ATTEMPTS:-8}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{channel-enabled}/${CHANNEL_ENABLED:-false}/"          /usr/local/tomcat/conf/samply.share.broker.conf
+sed -i "s/{channel-max-idle-minutes}/${CHANNEL_MAX_IDLE_MINUTES:-10}/"          /usr/local/tomcat/conf/samply.share.broker.conf
 
 file=${CATALINA_HOME}/conf/features.properties
 sed -i "s/{FEATURE_CREATE_NEW_SITE}/${FEATURE_CREATE_NEW_SITE:-false}/" "$file"
 
 sed -i "s/{level}/${LOG_LEVEL:-info}/"                  /usr/local/tomcat/conf/log4j2.xml
 
+if [ -n "${JMX_EXPORTER_PORT}" ]; then
+  export CATALINA_OPTS="${CATALINA_OPTS} -javaagent:/samply/jmx_prometheus_javaagent.jar=${JMX_EXPORTER_PORT}:/samply/jmx-exporter.yml"
+fi
+
 # Replace start.sh with catalina.sh
 exec /usr/local/tomcat/bin/catalina.sh run
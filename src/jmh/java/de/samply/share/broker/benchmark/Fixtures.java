@@ -0,0 +1,38 @@
+package de.samply.share.broker.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Loads the fixtures bundled with the benchmarks, so they run without database or network.
+ */
+public final class Fixtures {
+
+  public static final String QUERY_JSON = "query.json";
+  public static final String REPLY_JSON = "reply.json";
+  public static final String INQUIRY_XML = "inquiry.xml";
+
+  // Prevent instantiation
+  private Fixtures() {
+  }
+
+  /**
+   * Read a fixture.
+   *
+   * @param name the file name of the fixture
+   * @return the content of the fixture
+   */
+  public static String read(String name) {
+    try (InputStream inputStream = Fixtures.class.getResourceAsStream(name)) {
+      if (inputStream == null) {
+        throw new IllegalArgumentException("Fixture not found: " + name);
+      }
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
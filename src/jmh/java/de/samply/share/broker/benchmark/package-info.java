@@ -0,0 +1,6 @@
+/**
+ * JMH benchmarks for the CPU hot paths of the broker.
+ * Run them with {@code mvn -P benchmark test-compile exec:exec}. Arguments for JMH can be passed
+ * with {@code -Djmh.args="..."}, e.g. {@code -Djmh.args="CqlTransformerBenchmark -f 1"}.
+ */
+package de.samply.share.broker.benchmark;
@@ -0,0 +1,89 @@
+package de.samply.share.broker.rest;
+
+import com.google.gson.Gson;
+import de.samply.share.broker.benchmark.Fixtures;
+import de.samply.share.broker.utils.EssentialSimpleQueryDto2ShareXmlTransformer;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import de.samply.share.model.common.Contact;
+import de.samply.share.model.common.Inquiry;
+import de.samply.share.model.common.inquiry.InquiriesIdList;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarshallingBenchmark {
+
+  /**
+   * Number of open inquiries listed for a site.
+   */
+  @Param({"10", "200"})
+  public int inquiryCount;
+
+  private InquiryHandler inquiryHandler;
+  private Inquiry inquiry;
+  private InquiriesIdList inquiriesIdList;
+  private String reply;
+
+  @Setup
+  public void setUp() {
+    inquiryHandler = new InquiryHandler();
+
+    EssentialSimpleQueryDto queryDto = new Gson().fromJson(Fixtures.read(Fixtures.QUERY_JSON),
+        EssentialSimpleQueryDto.class);
+    inquiry = new Inquiry();
+    inquiry.setId("4711");
+    inquiry.setRevision("1");
+    inquiry.setLabel("Benchmark inquiry");
+    inquiry.setDescription("Female donors between 40 and 65 with selected diagnoses");
+    inquiry.setExposeUrl("https://broker.example.org/broker/rest/searchbroker/exposes/4711");
+    inquiry.setQuery(new EssentialSimpleQueryDto2ShareXmlTransformer().toQuery(queryDto));
+    Contact author = new Contact();
+    author.setTitle("Dr.");
+    author.setFirstname("Erika");
+    author.setLastname("Mustermann");
+    author.setEmail("erika.mustermann@example.org");
+    author.setOrganization("Example University Hospital");
+    inquiry.setAuthor(author);
+
+    inquiriesIdList = new InquiriesIdList();
+    for (int i = 1; i <= inquiryCount; i++) {
+      InquiriesIdList.InquiryId inquiryId = new InquiriesIdList.InquiryId();
+      inquiryId.setId(Integer.toString(i));
+      inquiryId.setRevision("1");
+      inquiriesIdList.getInquiryIds().add(inquiryId);
+    }
+
+    reply = Fixtures.read(Fixtures.REPLY_JSON);
+  }
+
+  @Benchmark
+  public String marshalInquiry() throws JAXBException {
+    return InquiryHandler.marshalInquiry(inquiry);
+  }
+
+  @Benchmark
+  public String marshalInquiriesIdList() {
+    return inquiryHandler.writeXml(inquiriesIdList);
+  }
+
+  @Benchmark
+  public String rewriteReply() {
+    return InquiryHandler.rewriteReply(reply, "Example Biobank");
+  }
+}
@@ -0,0 +1,40 @@
+package de.samply.share.broker.utils;
+
+import de.samply.share.broker.benchmark.Fixtures;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NamespaceBenchmark {
+
+  private String inquiryXml;
+
+  @Setup
+  public void setUp() {
+    inquiryXml = Fixtures.read(Fixtures.INQUIRY_XML);
+  }
+
+  @Benchmark
+  public String fixNamespacesCcp() {
+    return Utils.fixNamespaces(inquiryXml, "ccp");
+  }
+
+  @Benchmark
+  public String fixNamespacesCommon() {
+    return Utils.fixNamespaces(inquiryXml, "common");
+  }
+}
@@ -0,0 +1,53 @@
+package de.samply.share.broker.utils.cql;
+
+import com.google.gson.Gson;
+import de.samply.share.broker.benchmark.Fixtures;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CqlTransformerBenchmark {
+
+  private EssentialSimpleQueryDto queryDto;
+  private EssentialSimpleQueryDto2CqlTransformer transformer;
+
+  @Setup
+  public void setUp() {
+    queryDto = new Gson().fromJson(Fixtures.read(Fixtures.QUERY_JSON),
+        EssentialSimpleQueryDto.class);
+    transformer = new EssentialSimpleQueryDto2CqlTransformer();
+  }
+
+  @Benchmark
+  public String patient() {
+    return transformer.toQuery(queryDto, "Patient");
+  }
+
+  @Benchmark
+  public String specimen() {
+    return transformer.toQuery(queryDto, "Specimen");
+  }
+
+  /**
+   * Includes reading the CQL config, as done for every released query.
+   */
+  @Benchmark
+  public String patientWithNewTransformer() {
+    return new EssentialSimpleQueryDto2CqlTransformer().toQuery(queryDto, "Patient");
+  }
+}
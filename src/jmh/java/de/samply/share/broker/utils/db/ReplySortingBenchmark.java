@@ -0,0 +1,77 @@
+package de.samply.share.broker.utils.db;
+
+import de.samply.share.broker.benchmark.Fixtures;
+import de.samply.share.broker.model.db.tables.pojos.Reply;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplySortingBenchmark {
+
+  /**
+   * Number of sites that replied.
+   */
+  @Param({"20", "100", "500"})
+  public int replyCount;
+
+  private List<Reply> replies;
+  private Reply reply;
+  private DonorCountExtractor countExtractor;
+  private ReplyUtil replyUtil;
+
+  @Setup
+  public void setUp() {
+    String template = Fixtures.read(Fixtures.REPLY_JSON);
+    Random random = new Random(42);
+    replies = new ArrayList<>();
+    for (int i = 0; i < replyCount; i++) {
+      Reply reply = new Reply();
+      reply.setId(i);
+      reply.setInquiryId(1);
+      reply.setBankId(i);
+      if (i % 10 == 0) {
+        // some bridgeheads still send the legacy format
+        reply.setContent("{\"donor\": " + random.nextInt(10000) + ", \"sample\": 0}");
+      } else {
+        reply.setContent(template.replace("1234", Integer.toString(random.nextInt(10000))));
+      }
+      replies.add(reply);
+    }
+    reply = replies.get(1);
+    countExtractor = new DonorCountExtractor();
+    replyUtil = new ReplyUtil(countExtractor) {
+      @Override
+      List<Reply> fetchReplies(int inquiryID) {
+        return new ArrayList<>(replies);
+      }
+    };
+  }
+
+  @Benchmark
+  public int extractDonorCount() {
+    return countExtractor.extractDonorCount(reply);
+  }
+
+  @Benchmark
+  public List<Reply> sortReplies() {
+    return replyUtil.getReplyforInquriy(1);
+  }
+}
@@ -0,0 +1,71 @@
+package de.samply.share.broker.loadtest;
+
+import de.samply.share.broker.loadtest.FleetSeeder.Bridgehead;
+import de.samply.share.broker.loadtest.TimedHttpClient.HttpResult;
+import de.samply.share.common.utils.Constants;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Simulates one bridgehead: polls the list of inquiries, fetches every new inquiry and answers
+ * it with a reply.
+ */
+class BridgeheadSimulator implements Runnable {
+
+  private static final Pattern INQUIRY_ID = Pattern.compile("<(?:\\w+:)?id>(\\d+)</(?:\\w+:)?id>");
+
+  private final TimedHttpClient client;
+  private final Bridgehead bridgehead;
+  private final String reply;
+  private final long pollIntervalMillis;
+  private final long endNanos;
+  private final Set<String> answered = new HashSet<>();
+
+  BridgeheadSimulator(TimedHttpClient client, Bridgehead bridgehead, String reply,
+      long pollIntervalMillis, long endNanos) {
+    this.client = client;
+    this.bridgehead = bridgehead;
+    this.reply = reply.replace("\"Biobank\"", "\"" + bridgehead.getSiteName() + "\"");
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.endNanos = endNanos;
+  }
+
+  @Override
+  public void run() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Authorization", "Samply " + bridgehead.getToken());
+    headers.put("User-Agent", "samply.share.client/loadtest");
+
+    while (System.nanoTime() < endNanos) {
+      HttpResult inquiries = client.execute("GET /inquiries", "GET",
+          "/searchbroker/inquiries", headers, null);
+      Matcher matcher = INQUIRY_ID.matcher(inquiries.getBody());
+      while (matcher.find() && System.nanoTime() < endNanos) {
+        String inquiryId = matcher.group(1);
+        if (answered.add(inquiryId)) {
+          answer(inquiryId, headers);
+        }
+      }
+      if (!LoadTest.sleep(pollIntervalMillis)) {
+        return;
+      }
+    }
+  }
+
+  private void answer(String inquiryId, Map<String, String> headers) {
+    Map<String, String> inquiryHeaders = new HashMap<>(headers);
+    inquiryHeaders.put(Constants.HEADER_KEY_QUERY_LANGUAGE, "CQL");
+    client.execute("GET /inquiries/{id}", "GET",
+        "/searchbroker/inquiries/" + inquiryId, inquiryHeaders, null);
+
+    Map<String, String> replyHeaders = new HashMap<>(headers);
+    replyHeaders.put("Content-Type", "application/json");
+    client.execute("PUT /inquiries/{id}/replies", "PUT",
+        "/searchbroker/inquiries/" + inquiryId + "/replies/" + bridgehead.getEmail(),
+        replyHeaders, reply);
+  }
+}
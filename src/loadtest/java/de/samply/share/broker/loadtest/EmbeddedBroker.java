@@ -0,0 +1,183 @@
+package de.samply.share.broker.loadtest;
+
+import com.google.gson.JsonParser;
+import de.samply.share.broker.loadtest.TimedHttpClient.HttpResult;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collections;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+
+/**
+ * Runs the exploded broker war in an embedded Tomcat against an embedded PostgreSQL.
+ * The connection pools are configured like the ones in META-INF/context.xml.
+ */
+class EmbeddedBroker implements AutoCloseable {
+
+  static final String CONTEXT_PATH = "/broker";
+  private static final String DATASOURCE_NAME = "jdbc/postgres/samply.share.broker";
+  private static final String LISTEN_DATASOURCE_NAME = "jdbc/postgres/samply.share.broker.listen";
+
+  private final File webappDir;
+  private final int maxTotal;
+
+  private EmbeddedPostgres postgres;
+  private Tomcat tomcat;
+  private Context context;
+
+  EmbeddedBroker(File webappDir, int maxTotal) {
+    this.webappDir = webappDir;
+    this.maxTotal = maxTotal;
+  }
+
+  /**
+   * Start PostgreSQL and Tomcat. Returns once the broker has been deployed, i.e. once the
+   * database migrations have run.
+   *
+   * @throws IOException        if PostgreSQL or the configuration could not be set up
+   * @throws LifecycleException if Tomcat could not be started
+   */
+  void start() throws IOException, LifecycleException {
+    if (!new File(webappDir, "WEB-INF").isDirectory()) {
+      throw new IllegalStateException("No exploded war found in " + webappDir
+          + ", run 'mvn package' first");
+    }
+    postgres = EmbeddedPostgres.builder().start();
+
+    Path baseDir = Files.createTempDirectory("searchbroker-loadtest");
+    writeConfiguration(baseDir.resolve("conf"));
+    System.setProperty("catalina.base", baseDir.toString());
+
+    tomcat = new Tomcat();
+    tomcat.setBaseDir(baseDir.toString());
+    tomcat.setPort(0);
+    tomcat.enableNaming();
+    tomcat.getConnector();
+
+    context = tomcat.addWebapp(CONTEXT_PATH, webappDir.getAbsolutePath());
+    context.getNamingResources().addResource(createDataSourceResource(DATASOURCE_NAME, maxTotal));
+    context.getNamingResources().addResource(createDataSourceResource(LISTEN_DATASOURCE_NAME, 2));
+    tomcat.start();
+  }
+
+  private ContextResource createDataSourceResource(String name, int poolSize) {
+    ContextResource resource = new ContextResource();
+    resource.setName(name);
+    resource.setAuth("Container");
+    resource.setType(DataSource.class.getName());
+    resource.setProperty("driverClassName", "org.postgresql.Driver");
+    resource.setProperty("url", postgres.getJdbcUrl("postgres", "postgres"));
+    resource.setProperty("username", "postgres");
+    resource.setProperty("password", "");
+    resource.setProperty("maxTotal", Integer.toString(poolSize));
+    resource.setProperty("maxIdle", "30");
+    resource.setProperty("maxWaitMillis", "30000");
+    resource.setProperty("testOnBorrow", "true");
+    resource.setProperty("validationQuery", "select 1");
+    return resource;
+  }
+
+  /**
+   * Copy the default configuration, with icinga pointing to an address that is not reachable,
+   * so no monitoring reports leave the machine.
+   */
+  private void writeConfiguration(Path confDir) throws IOException {
+    Files.createDirectories(confDir);
+    File webappConf = new File(webappDir, "WEB-INF/conf");
+    File[] files = webappConf.listFiles(File::isFile);
+    if (files != null) {
+      for (File file : files) {
+        Files.copy(file.toPath(), confDir.resolve(file.getName()),
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    try (InputStream inputStream = EmbeddedBroker.class
+        .getResourceAsStream("samply.share.broker.conf")) {
+      Files.copy(inputStream, confDir.resolve("samply.share.broker.conf"),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Get the base url of the rest interface.
+   *
+   * @return the base url, e.g. http://localhost:12345/broker/rest
+   */
+  String getRestUrl() {
+    return "http://localhost:" + tomcat.getConnector().getLocalPort() + CONTEXT_PATH + "/rest";
+  }
+
+  /**
+   * Get the pool of the broker, to watch its saturation.
+   *
+   * @return the connection pool
+   * @throws NamingException if the pool could not be found
+   */
+  BasicDataSource getDataSource() throws NamingException {
+    return (BasicDataSource) context.getNamingContextListener().getEnvContext()
+        .lookup(DATASOURCE_NAME);
+  }
+
+  /**
+   * Wait until a query sent to /sendQuery has been released in the background, polling the
+   * release status it links to like the UI does.
+   *
+   * @param client   the client to poll with
+   * @param location the Location header of the response of /sendQuery
+   * @param timeout  how long to wait
+   * @return the last response of the release status, RELEASED or FAILED unless the timeout has
+   *     passed or the status could not be read
+   */
+  HttpResult awaitRelease(TimedHttpClient client, String location, Duration timeout) {
+    String statusPath = location.substring(location.indexOf("/searchbroker/"));
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (true) {
+      HttpResult result = client.execute("releaseStatus", "GET", statusPath,
+          Collections.emptyMap(), null);
+      if (result.getStatus() != 200 || System.nanoTime() > deadline) {
+        return result;
+      }
+      String status = releaseStatusOf(result);
+      if ("RELEASED".equals(status) || "FAILED".equals(status)) {
+        return result;
+      }
+      LoadTest.sleep(100);
+    }
+  }
+
+  /**
+   * Get the status from a response of the release status.
+   *
+   * @param result the response
+   * @return the status, e.g. RELEASED
+   */
+  static String releaseStatusOf(HttpResult result) {
+    return JsonParser.parseString(result.getBody()).getAsJsonObject().get("status").getAsString();
+  }
+
+  EmbeddedPostgres getPostgres() {
+    return postgres;
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (tomcat != null) {
+      tomcat.stop();
+      tomcat.destroy();
+    }
+    if (postgres != null) {
+      postgres.close();
+    }
+  }
+}
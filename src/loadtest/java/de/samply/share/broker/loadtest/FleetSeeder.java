@@ -0,0 +1,113 @@
+package de.samply.share.broker.loadtest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.sql.DataSource;
+
+/**
+ * Registers synthetic bridgeheads (bank, auth token, approved site) directly in the database.
+ */
+class FleetSeeder {
+
+  private final DataSource dataSource;
+
+  FleetSeeder(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * Create the anonymous user the unsecured search endpoints act as, and the given number of
+   * bridgeheads.
+   *
+   * @param count the number of bridgeheads
+   * @return the credentials of the bridgeheads
+   * @throws SQLException if seeding failed
+   */
+  List<Bridgehead> seed(int count) throws SQLException {
+    List<Bridgehead> bridgeheads = new ArrayList<>();
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("INSERT INTO samply.\"user\" (id, username, name, email) "
+            + "VALUES (1, 'anonymous', 'Anonymous', 'anonymous@example.org') "
+            + "ON CONFLICT DO NOTHING");
+        statement.execute("SELECT setval(pg_get_serial_sequence('samply.\"user\"', 'id'), "
+            + "(SELECT max(id) FROM samply.\"user\"))");
+      }
+      for (int i = 0; i < count; i++) {
+        bridgeheads.add(seedBridgehead(connection, i));
+      }
+      connection.commit();
+    }
+    return bridgeheads;
+  }
+
+  private Bridgehead seedBridgehead(Connection connection, int index) throws SQLException {
+    String token = UUID.randomUUID().toString();
+    String email = "bridgehead" + index + "@loadtest.example.org";
+    String siteName = "Loadtest Site " + index;
+
+    int siteId = insert(connection,
+        "INSERT INTO samply.site (name, name_extended, active) VALUES (?, ?, true) RETURNING id",
+        siteName, siteName);
+    int tokenId = insert(connection,
+        "INSERT INTO samply.authtoken (value) VALUES (?) RETURNING id", token);
+    int bankId = insert(connection,
+        "INSERT INTO samply.bank (email, authtoken_id) VALUES (?, ?) RETURNING id",
+        email, tokenId);
+    try (PreparedStatement statement = connection.prepareStatement(
+        "INSERT INTO samply.bank_site (bank_id, site_id, approved) VALUES (?, ?, true)")) {
+      statement.setInt(1, bankId);
+      statement.setInt(2, siteId);
+      statement.executeUpdate();
+    }
+    return new Bridgehead(email, token, siteName);
+  }
+
+  private static int insert(Connection connection, String sql, Object... parameters)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setObject(i + 1, parameters[i]);
+      }
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  /**
+   * The credentials of a synthetic bridgehead.
+   */
+  static class Bridgehead {
+
+    private final String email;
+    private final String token;
+    private final String siteName;
+
+    Bridgehead(String email, String token, String siteName) {
+      this.email = email;
+      this.token = token;
+      this.siteName = siteName;
+    }
+
+    String getEmail() {
+      return email;
+    }
+
+    String getToken() {
+      return token;
+    }
+
+    String getSiteName() {
+      return siteName;
+    }
+  }
+}
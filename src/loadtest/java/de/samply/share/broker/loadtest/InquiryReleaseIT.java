@@ -0,0 +1,122 @@
+package de.samply.share.broker.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.loadtest.FleetSeeder.Bridgehead;
+import de.samply.share.broker.loadtest.TimedHttpClient.HttpResult;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Releases queries the way the search UI does, and asserts that the bridgeheads of the sites
+ * list them right away. The list is served from the index of open inquiries, which is only
+ * reloaded every few minutes, so the inquiry is only listed at once if its release has been
+ * announced after its sites were stored.
+ *
+ * <p>Runs against the built war with {@code mvn -Psamply,loadtest verify}.
+ */
+class InquiryReleaseIT {
+
+  private static final int SITES = 3;
+
+  private static final Pattern INQUIRY_ID = Pattern.compile("<(?:\\w+:)?id>(\\d+)</(?:\\w+:)?id>");
+
+  private static EmbeddedBroker broker;
+  private static TimedHttpClient client;
+  private static List<Bridgehead> bridgeheads;
+
+  @BeforeAll
+  static void startBroker() throws Exception {
+    broker = new EmbeddedBroker(
+        new File(System.getProperty("loadtest.webapp", "target/searchbroker")), 10);
+    broker.start();
+    bridgeheads = new FleetSeeder(broker.getDataSource()).seed(SITES);
+    client = new TimedHttpClient(broker.getRestUrl(), new LatencyRecorder());
+    awaitReady();
+  }
+
+  @AfterAll
+  static void stopBroker() throws Exception {
+    if (broker != null) {
+      broker.close();
+    }
+  }
+
+  @Test
+  void releasedQueriesAreListedAtOnce() throws IOException {
+    for (int query = 1; query <= 2; query++) {
+      release();
+
+      for (Bridgehead bridgehead : bridgeheads) {
+        HttpResult list = client.execute("inquiries", "GET", "/searchbroker/inquiries",
+            Collections.singletonMap("Authorization", "Samply " + bridgehead.getToken()), null);
+        assertEquals(200, list.getStatus(), list.getBody());
+        assertEquals(query, listedInquiries(list.getBody()).size(),
+            "every released query is listed for " + bridgehead.getSiteName());
+      }
+    }
+  }
+
+  /**
+   * Send a query and wait until it has been released in the background.
+   */
+  private static void release() throws IOException {
+    String ntoken = UUID.randomUUID() + "__search_" + UUID.randomUUID();
+    HttpResult result = client.execute("sendQuery", "POST",
+        "/searchbroker/sendQuery?ntoken=" + ntoken,
+        Collections.singletonMap("Content-Type", "application/json"), readResource("query.json"));
+    String location = result.getHeader("Location");
+    assertNotNull(location, "sendQuery links to the release status");
+    HttpResult status = broker.awaitRelease(client, location, Duration.ofSeconds(30));
+    assertEquals(200, status.getStatus(), "the sender can read the release status");
+    assertEquals("RELEASED", EmbeddedBroker.releaseStatusOf(status), status.getBody());
+  }
+
+  /**
+   * Wait until the index of open inquiries has been loaded, so the test does not pass just
+   * because the first load happens after the release.
+   */
+  private static void awaitReady() {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+    while (get("/health/ready").getStatus() != 200) {
+      assertTrue(System.nanoTime() < deadline, "the broker is ready within 60 s");
+      LoadTest.sleep(100);
+    }
+  }
+
+  private static Set<String> listedInquiries(String body) {
+    Set<String> inquiryIds = new HashSet<>();
+    Matcher matcher = INQUIRY_ID.matcher(body);
+    while (matcher.find()) {
+      inquiryIds.add(matcher.group(1));
+    }
+    return inquiryIds;
+  }
+
+  private static HttpResult get(String path) {
+    return client.execute("get", "GET", path, Collections.emptyMap(), null);
+  }
+
+  private static String readResource(String name) throws IOException {
+    try (InputStream inputStream = InquiryReleaseIT.class.getResourceAsStream(name)) {
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package de.samply.share.broker.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the latencies and errors of the simulated requests per endpoint.
+ */
+class LatencyRecorder {
+
+  private final Map<String, Endpoint> endpoints = new TreeMap<>();
+
+  /**
+   * Record a finished request.
+   *
+   * @param endpoint     the name of the endpoint
+   * @param latencyNanos the latency of the request
+   * @param error        true if the request failed
+   */
+  synchronized void record(String endpoint, long latencyNanos, boolean error) {
+    Endpoint entry = endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+    entry.latencies.add(latencyNanos);
+    if (error) {
+      entry.errors++;
+    }
+  }
+
+  /**
+   * Print the latency percentiles and throughput of all endpoints.
+   *
+   * @param durationSeconds the duration of the load test
+   */
+  synchronized void printReport(double durationSeconds) {
+    System.out.println(String.format("%-28s %8s %7s %9s %9s %9s %9s %9s",
+        "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+    for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+      List<Long> latencies = new ArrayList<>(entry.getValue().latencies);
+      Collections.sort(latencies);
+      System.out.println(String.format("%-28s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f",
+          entry.getKey(),
+          latencies.size(),
+          entry.getValue().errors,
+          latencies.size() / durationSeconds,
+          percentile(latencies, 0.50),
+          percentile(latencies, 0.95),
+          percentile(latencies, 0.99),
+          percentile(latencies, 1.0)));
+    }
+  }
+
+  static double percentile(List<Long> sortedLatencies, double percentile) {
+    if (sortedLatencies.isEmpty()) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile * sortedLatencies.size()) - 1;
+    index = Math.max(0, Math.min(index, sortedLatencies.size() - 1));
+    return sortedLatencies.get(index) / 1_000_000.0;
+  }
+
+  private static class Endpoint {
+
+    private final List<Long> latencies = new ArrayList<>();
+    private long errors;
+  }
+}
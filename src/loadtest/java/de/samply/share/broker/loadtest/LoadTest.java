@@ -0,0 +1,116 @@
+package de.samply.share.broker.loadtest;
+
+import de.samply.share.broker.loadtest.FleetSeeder.Bridgehead;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Boots the broker and lets a fleet of simulated bridgeheads and UI users work against it.
+ * Prints latency percentiles, throughput and errors per endpoint and the saturation of the
+ * connection pool.
+ *
+ * <p>Options are passed as system properties:
+ * <ul>
+ *   <li>loadtest.bridgeheads - number of bridgeheads (default 50)</li>
+ *   <li>loadtest.users - number of concurrent UI users (default 10)</li>
+ *   <li>loadtest.duration - duration in seconds (default 120)</li>
+ *   <li>loadtest.bridgehead.poll - poll interval of the bridgeheads in ms (default 5000)</li>
+ *   <li>loadtest.user.poll - poll interval of the UI users in ms (default 1000)</li>
+ *   <li>loadtest.user.polls - reply polls per query of a UI user (default 10)</li>
+ *   <li>loadtest.pool.max - maximum size of the connection pool (default 100)</li>
+ *   <li>loadtest.webapp - exploded war (default target/searchbroker)</li>
+ * </ul>
+ */
+public class LoadTest {
+
+  /**
+   * Run the load test.
+   *
+   * @param args not used, see the system properties above
+   * @throws Exception if the broker could not be started
+   */
+  public static void main(String[] args) throws Exception {
+    final int bridgeheadCount = Integer.getInteger("loadtest.bridgeheads", 50);
+    final int userCount = Integer.getInteger("loadtest.users", 10);
+    final int durationSeconds = Integer.getInteger("loadtest.duration", 120);
+    final long bridgeheadPollMillis = Long.getLong("loadtest.bridgehead.poll", 5000);
+    final long userPollMillis = Long.getLong("loadtest.user.poll", 1000);
+    final int userPolls = Integer.getInteger("loadtest.user.polls", 10);
+    final int poolMax = Integer.getInteger("loadtest.pool.max", 100);
+    final File webappDir = new File(System.getProperty("loadtest.webapp", "target/searchbroker"));
+
+    try (EmbeddedBroker broker = new EmbeddedBroker(webappDir, poolMax)) {
+      broker.start();
+      List<Bridgehead> bridgeheads = new FleetSeeder(broker.getDataSource())
+          .seed(bridgeheadCount);
+
+      LatencyRecorder recorder = new LatencyRecorder();
+      TimedHttpClient client = new TimedHttpClient(broker.getRestUrl(), recorder);
+      String query = readResource("query.json");
+      String reply = readResource("reply.json");
+
+      System.out.println(String.format(
+          "Running %d bridgeheads and %d UI users against %s for %d s",
+          bridgeheadCount, userCount, broker.getRestUrl(), durationSeconds));
+
+      long start = System.nanoTime();
+      long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+      ExecutorService executor = Executors.newFixedThreadPool(bridgeheadCount + userCount);
+      try (PoolSampler poolSampler = new PoolSampler(broker.getDataSource())) {
+        poolSampler.start();
+        List<Runnable> simulators = new ArrayList<>();
+        for (Bridgehead bridgehead : bridgeheads) {
+          simulators.add(new BridgeheadSimulator(client, bridgehead, reply,
+              bridgeheadPollMillis, end));
+        }
+        for (int i = 0; i < userCount; i++) {
+          simulators.add(new UiUserSimulator(client, query, userPollMillis, userPolls, end));
+        }
+        simulators.forEach(executor::execute);
+
+        executor.shutdown();
+        executor.awaitTermination(durationSeconds + 120L, TimeUnit.SECONDS);
+        executor.shutdownNow();
+
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.println();
+        recorder.printReport(elapsedSeconds);
+        System.out.println();
+        poolSampler.printReport();
+      }
+    }
+  }
+
+  /**
+   * Sleep, stopping early if the thread has been interrupted.
+   *
+   * @param millis the time to sleep
+   * @return false if the thread has been interrupted
+   */
+  static boolean sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static String readResource(String name) throws IOException {
+    try (InputStream inputStream = LoadTest.class.getResourceAsStream(name)) {
+      if (inputStream == null) {
+        throw new IOException("Resource not found: " + name);
+      }
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    }
+  }
+}
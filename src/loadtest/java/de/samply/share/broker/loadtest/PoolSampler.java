@@ -0,0 +1,62 @@
+package de.samply.share.broker.loadtest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
+
+/**
+ * Periodically samples the connection pool of the broker to show how close it runs to its limit.
+ */
+class PoolSampler implements AutoCloseable {
+
+  private static final long SAMPLE_INTERVAL_MILLIS = 100;
+
+  private final BasicDataSource dataSource;
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+  private long samples;
+  private long saturatedSamples;
+  private long activeSum;
+  private int maxActive;
+  private int maxIdle;
+
+  PoolSampler(BasicDataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  void start() {
+    executor.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void sample() {
+    int active = dataSource.getNumActive();
+    samples++;
+    activeSum += active;
+    maxActive = Math.max(maxActive, active);
+    maxIdle = Math.max(maxIdle, dataSource.getNumIdle());
+    if (active >= dataSource.getMaxTotal()) {
+      saturatedSamples++;
+    }
+  }
+
+  /**
+   * Print the pool usage observed so far.
+   */
+  synchronized void printReport() {
+    System.out.println(String.format(
+        "connection pool: maxTotal=%d, active avg=%.1f max=%d, idle max=%d, saturated %.1f%% "
+            + "of %d samples",
+        dataSource.getMaxTotal(),
+        samples == 0 ? 0.0 : (double) activeSum / samples,
+        maxActive,
+        maxIdle,
+        samples == 0 ? 0.0 : 100.0 * saturatedSamples / samples,
+        samples));
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
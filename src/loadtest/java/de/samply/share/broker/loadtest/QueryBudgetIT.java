@@ -0,0 +1,207 @@
+package de.samply.share.broker.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.filter.SqlStatementCountFilter;
+import de.samply.share.broker.loadtest.FleetSeeder.Bridgehead;
+import de.samply.share.broker.loadtest.TimedHttpClient.HttpResult;
+import de.samply.share.common.utils.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+/**
+ * Asserts the number of SQL statements the rest endpoints may execute per request. The endpoints
+ * checked here read the data of all sites with one statement, so their budgets do not depend on
+ * the number of sites, and with {@value #SITES} registered sites a statement added to a loop over
+ * the sites (N+1) exceeds the budget. The counts of every run are logged, so a budget can be
+ * lowered when an endpoint gets cheaper.
+ *
+ * <p>Runs against the built war with {@code mvn -Psamply,loadtest verify}, as the build job of
+ * the CI does.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class QueryBudgetIT {
+
+  private static final int SITES = 10;
+
+  private static final int INQUIRIES = 5;
+  private static final int INQUIRY = 15;
+  private static final int PUT_REPLY = 8;
+  private static final int SEND_QUERY = 3;
+  private static final int ANONYMOUS_REPLY = 5;
+  private static final int SIMPLE = 3;
+  private static final int MONITORING_RESULT = 7;
+  private static final int NONE = 0;
+
+  private static final Logger logger = LogManager.getLogger(QueryBudgetIT.class);
+
+  private static final Pattern INQUIRY_ID = Pattern.compile("<(?:\\w+:)?id>(\\d+)</(?:\\w+:)?id>");
+
+  private static final Map<String, Integer> counts = new TreeMap<>();
+
+  private static EmbeddedBroker broker;
+  private static TimedHttpClient client;
+  private static List<Bridgehead> bridgeheads;
+  private static String ntoken;
+  private static String inquiryId;
+
+  @BeforeAll
+  static void startBroker() throws Exception {
+    broker = new EmbeddedBroker(
+        new File(System.getProperty("loadtest.webapp", "target/searchbroker")), 20);
+    broker.start();
+    bridgeheads = new FleetSeeder(broker.getDataSource()).seed(SITES);
+    client = new TimedHttpClient(broker.getRestUrl(), new LatencyRecorder());
+  }
+
+  @AfterAll
+  static void stopBroker() throws Exception {
+    counts.forEach((endpoint, count) ->
+        logger.info(String.format("%-40s %4d statements", endpoint, count)));
+    if (broker != null) {
+      broker.close();
+    }
+  }
+
+  @Test
+  @Order(1)
+  void sendQuery() throws IOException {
+    ntoken = UUID.randomUUID() + "__search_" + UUID.randomUUID();
+    Map<String, String> headers = Collections.singletonMap("Content-Type", "application/json");
+
+    HttpResult result = client.execute("sendQuery", "POST",
+        "/searchbroker/sendQuery?ntoken=" + ntoken, headers, readResource("query.json"));
+
+    assertWithinBudget("POST /searchbroker/sendQuery", result, SEND_QUERY);
+
+    String location = result.getHeader("Location");
+    assertNotNull(location, "sendQuery links to the release status");
+    // wait until the query has been released in the background, so the bridgeheads see it
+    HttpResult status = broker.awaitRelease(client, location, Duration.ofSeconds(30));
+    assertWithinBudget("GET /searchbroker/releases/{handle}", status, SIMPLE);
+    assertEquals("RELEASED", EmbeddedBroker.releaseStatusOf(status), status.getBody());
+  }
+
+  @Test
+  @Order(2)
+  void bridgeheadsRetrieveAndAnswer() throws IOException {
+    String reply = readResource("reply.json");
+    for (Bridgehead bridgehead : bridgeheads) {
+      Map<String, String> headers = new HashMap<>();
+      headers.put("Authorization", "Samply " + bridgehead.getToken());
+      headers.put("User-Agent", "samply.share.client/budget");
+
+      HttpResult list = client.execute("inquiries", "GET", "/searchbroker/inquiries", headers,
+          null);
+      assertWithinBudget("GET /searchbroker/inquiries", list, INQUIRIES);
+      Matcher matcher = INQUIRY_ID.matcher(list.getBody());
+      assertTrue(matcher.find(), "the released inquiry is listed");
+      inquiryId = matcher.group(1);
+
+      Map<String, String> inquiryHeaders = new HashMap<>(headers);
+      inquiryHeaders.put(Constants.HEADER_KEY_QUERY_LANGUAGE, "CQL");
+      assertWithinBudget("GET /searchbroker/inquiries/{id}", client.execute("inquiry", "GET",
+          "/searchbroker/inquiries/" + inquiryId, inquiryHeaders, null), INQUIRY);
+
+      Map<String, String> replyHeaders = new HashMap<>(headers);
+      replyHeaders.put("Content-Type", "application/json");
+      assertWithinBudget("PUT /searchbroker/inquiries/{id}/replies", client.execute("reply",
+          "PUT", "/searchbroker/inquiries/" + inquiryId + "/replies/" + bridgehead.getEmail(),
+          replyHeaders, reply.replace("\"Biobank\"", "\"" + bridgehead.getSiteName() + "\"")),
+          PUT_REPLY);
+    }
+  }
+
+  @Test
+  @Order(3)
+  void getAnonymousReply() {
+    assertWithinBudget("GET /searchbroker/getAnonymousReply", client.execute("reply", "GET",
+        "/searchbroker/getAnonymousReply?ntoken=" + ntoken, Collections.emptyMap(), null),
+        ANONYMOUS_REPLY);
+  }
+
+  @Test
+  @Order(4)
+  void searchbrokerInformation() {
+    assertWithinBudget("GET /searchbroker/version", get("/searchbroker/version"), NONE);
+    assertWithinBudget("GET /searchbroker/name", get("/searchbroker/name"), NONE);
+    assertWithinBudget("GET /searchbroker/getSize", get("/searchbroker/getSize"), SIMPLE);
+    assertWithinBudget("GET /searchbroker/allDirectoryIds", get("/searchbroker/allDirectoryIds"),
+        SIMPLE);
+  }
+
+  @Test
+  @Order(5)
+  void monitoring() throws IOException {
+    Map<String, String> headers = Collections.singletonMap("Authorization", icingaAuth());
+
+    assertNotNull(inquiryId);
+    assertWithinBudget("GET /monitoring/queries/{id}", client.execute("monitoring", "GET",
+        "/monitoring/queries/" + inquiryId, headers, null), MONITORING_RESULT);
+    assertWithinBudget("GET /monitoring/translation-cache", client.execute("monitoring", "GET",
+        "/monitoring/translation-cache", headers, null), NONE);
+    assertWithinBudget("GET /monitoring/sites/responsiveness", client.execute("monitoring",
+        "GET", "/monitoring/sites/responsiveness", headers, null), SIMPLE);
+    assertWithinBudget("GET /monitoring/sql", client.execute("monitoring", "GET",
+        "/monitoring/sql", headers, null), NONE);
+  }
+
+  private static HttpResult get(String path) {
+    return client.execute("get", "GET", path, Collections.emptyMap(), null);
+  }
+
+  private static void assertWithinBudget(String endpoint, HttpResult result, int budget) {
+    assertTrue(result.getStatus() >= 200 && result.getStatus() < 300,
+        endpoint + " failed with status " + result.getStatus() + ": " + result.getBody());
+    String header = result.getHeader(SqlStatementCountFilter.HEADER_SQL_STATEMENT_COUNT);
+    assertNotNull(header, endpoint + " did not report its statement count");
+
+    int count = Integer.parseInt(header);
+    counts.merge(endpoint, count, Math::max);
+    assertFalse(count > budget,
+        endpoint + " executed " + count + " SQL statements, the budget is " + budget);
+  }
+
+  private static String icingaAuth() throws IOException {
+    Properties properties = new Properties();
+    try (InputStream inputStream = QueryBudgetIT.class
+        .getResourceAsStream("samply.share.broker.conf")) {
+      properties.load(inputStream);
+    }
+    String credentials = properties.getProperty("icinga.username") + ":"
+        + properties.getProperty("icinga.password");
+    return "Basic " + Base64.getEncoder()
+        .encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String readResource(String name) throws IOException {
+    try (InputStream inputStream = QueryBudgetIT.class.getResourceAsStream(name)) {
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package de.samply.share.broker.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal http client which records the latency of every request.
+ */
+class TimedHttpClient {
+
+  private final String baseUrl;
+  private final LatencyRecorder recorder;
+
+  TimedHttpClient(String baseUrl, LatencyRecorder recorder) {
+    this.baseUrl = baseUrl;
+    this.recorder = recorder;
+  }
+
+  /**
+   * Execute a request.
+   *
+   * @param endpoint the name under which the latency is recorded
+   * @param method   the http method
+   * @param path     the path relative to the rest base url
+   * @param headers  the request headers
+   * @param body     the request body or null
+   * @return the response, with status -1 if the request failed
+   */
+  HttpResult execute(String endpoint, String method, String path, Map<String, String> headers,
+      String body) {
+    long start = System.nanoTime();
+    int status = -1;
+    String responseBody = "";
+    Map<String, List<String>> responseHeaders = Collections.emptyMap();
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+      connection.setRequestMethod(method);
+      connection.setConnectTimeout(10000);
+      connection.setReadTimeout(60000);
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+      if (body != null) {
+        connection.setDoOutput(true);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+          outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      status = connection.getResponseCode();
+      responseHeaders = connection.getHeaderFields();
+      InputStream inputStream = status < 400
+          ? connection.getInputStream() : connection.getErrorStream();
+      if (inputStream != null) {
+        responseBody = read(inputStream);
+      }
+    } catch (IOException e) {
+      status = -1;
+    }
+    recorder.record(endpoint, System.nanoTime() - start, status < 0 || status >= 400);
+    return new HttpResult(status, responseBody, responseHeaders);
+  }
+
+  private static String read(InputStream inputStream) throws IOException {
+    try (InputStream in = inputStream) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, read);
+      }
+      return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  static class HttpResult {
+
+    private final int status;
+    private final String body;
+    private final Map<String, List<String>> headers;
+
+    HttpResult(int status, String body, Map<String, List<String>> headers) {
+      this.status = status;
+      this.body = body;
+      this.headers = headers;
+    }
+
+    int getStatus() {
+      return status;
+    }
+
+    String getBody() {
+      return body;
+    }
+
+    /**
+     * Get the first value of a response header.
+     *
+     * @param name the name of the header, case insensitive
+     * @return the value or null if the header is missing
+     */
+    String getHeader(String name) {
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+        if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+          return header.getValue().get(0);
+        }
+      }
+      return null;
+    }
+  }
+}
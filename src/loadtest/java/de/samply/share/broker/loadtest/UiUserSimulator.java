@@ -0,0 +1,61 @@
+package de.samply.share.broker.loadtest;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Simulates one user of the search UI: sends a query and polls for the replies of the
+ * bridgeheads until the next query is due.
+ * The replies are polled anonymously via ntoken, as /getReply requires an OAuth token.
+ */
+class UiUserSimulator implements Runnable {
+
+  private final TimedHttpClient client;
+  private final String query;
+  private final long pollIntervalMillis;
+  private final int pollsPerQuery;
+  private final long endNanos;
+
+  UiUserSimulator(TimedHttpClient client, String query, long pollIntervalMillis,
+      int pollsPerQuery, long endNanos) {
+    this.client = client;
+    this.query = query;
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.pollsPerQuery = pollsPerQuery;
+    this.endNanos = endNanos;
+  }
+
+  @Override
+  public void run() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Content-Type", "application/json");
+
+    while (System.nanoTime() < endNanos) {
+      String ntoken = UUID.randomUUID() + "__search_" + UUID.randomUUID();
+      String encodedNtoken = encode(ntoken);
+      client.execute("POST /sendQuery", "POST",
+          "/searchbroker/sendQuery?ntoken=" + encodedNtoken, headers, query);
+
+      for (int i = 0; i < pollsPerQuery && System.nanoTime() < endNanos; i++) {
+        if (!LoadTest.sleep(pollIntervalMillis)) {
+          return;
+        }
+        client.execute("GET /getAnonymousReply", "GET",
+            "/searchbroker/getAnonymousReply?ntoken=" + encodedNtoken,
+            Collections.emptyMap(), null);
+      }
+    }
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    } catch (java.io.UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * Load test harness and SQL statement budgets, both running the broker in an embedded Tomcat
+ * against an embedded PostgreSQL.
+ * Run the load test with {@code mvn -Psamply,loadtest package exec:exec} and the budgets with
+ * {@code mvn -Psamply,loadtest verify}.
+ */
+package de.samply.share.broker.loadtest;
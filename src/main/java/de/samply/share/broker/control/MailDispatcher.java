@@ -0,0 +1,135 @@
+package de.samply.share.broker.control;
+
+import de.samply.share.broker.model.db.tables.pojos.MailOutbox;
+import de.samply.share.broker.utils.Config;
+import de.samply.share.broker.utils.MailUtils;
+import de.samply.share.broker.utils.db.MailOutboxUtil;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import javax.mail.MessagingException;
+
+/**
+ * Sends the mails of the outbox on a bounded pool of workers. A failed mail is sent again with
+ * growing delays.
+ *
+ * <p>The mails are stored in the outbox before they are submitted, so none is lost if the mail
+ * server is unavailable, the queue is full or the broker is stopped. Sent mails are kept for
+ * {@value #SENT_RETENTION_DAYS} days and then purged by {@link #submitDue()}.
+ */
+public class MailDispatcher extends OutboxWorker<MailOutbox> {
+
+  private static final String CFG_THREADS = "mail.threads";
+  private static final String CFG_MAX_ATTEMPTS = "mail.max.attempts";
+  private static final int DEFAULT_THREADS = 2;
+  private static final int DEFAULT_MAX_ATTEMPTS = 8;
+
+  private static final Duration FIRST_RETRY_DELAY = Duration.ofSeconds(30);
+  private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+  private static final Duration SENDING_TIMEOUT = Duration.ofMinutes(10);
+  private static final int SENT_RETENTION_DAYS = 7;
+
+  private static final MailDispatcher instance = new MailDispatcher(new DatabaseStore(),
+      mail -> MailUtils.getSmtpMailSender().send(mail),
+      Config.getIntProperty(CFG_THREADS, DEFAULT_THREADS),
+      Config.getIntProperty(CFG_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS), Clock.systemUTC());
+
+  private final Store store;
+  private final Sender sender;
+
+  MailDispatcher(Store store, Sender sender, int threads, int maxAttempts, Clock clock) {
+    super("mail-sender", "mail", store, threads, maxAttempts, FIRST_RETRY_DELAY,
+        MAX_RETRY_DELAY, SENDING_TIMEOUT, clock);
+    this.store = store;
+    this.sender = sender;
+  }
+
+  public static MailDispatcher getInstance() {
+    return instance;
+  }
+
+  /**
+   * Purge the mails sent long ago, and queue all mails that are due, as far as the queue has
+   * room for them.
+   */
+  @Override
+  public void submitDue() {
+    store.purgeSent(Duration.ofDays(SENT_RETENTION_DAYS));
+    super.submitDue();
+  }
+
+  @Override
+  String process(int mailId, MailOutbox mail) throws MessagingException {
+    sender.send(mail);
+    store.sent(mailId);
+    return null;
+  }
+
+  @Override
+  int getAttempts(MailOutbox mail) {
+    return mail.getAttempts();
+  }
+
+  /**
+   * Get the delay before the next attempt, doubling with every failed attempt.
+   *
+   * @param attempts the number of failed attempts
+   * @return the delay
+   */
+  static Duration retryDelay(int attempts) {
+    return retryDelay(attempts, FIRST_RETRY_DELAY, MAX_RETRY_DELAY);
+  }
+
+  /**
+   * Hands a mail to the mail server.
+   */
+  @FunctionalInterface
+  interface Sender {
+
+    void send(MailOutbox mail) throws MessagingException;
+  }
+
+  /**
+   * Keeps the state of the mails.
+   */
+  interface Store extends OutboxWorker.Store<MailOutbox> {
+
+    void sent(int mailId);
+
+    void purgeSent(Duration age);
+  }
+
+  private static class DatabaseStore implements Store {
+
+    @Override
+    public MailOutbox claim(int mailId) {
+      return MailOutboxUtil.claimMail(mailId);
+    }
+
+    @Override
+    public void sent(int mailId) {
+      MailOutboxUtil.markSent(mailId);
+    }
+
+    @Override
+    public void retryLater(int mailId, String error, Instant nextAttempt) {
+      MailOutboxUtil.markForRetry(mailId, error, nextAttempt);
+    }
+
+    @Override
+    public void failed(int mailId, String error) {
+      MailOutboxUtil.markFailed(mailId, error);
+    }
+
+    @Override
+    public List<Integer> due(Duration sendingTimeout, int limit) {
+      return MailOutboxUtil.fetchDueMailIds(sendingTimeout, limit);
+    }
+
+    @Override
+    public void purgeSent(Duration age) {
+      MailOutboxUtil.deleteSentMails(age);
+    }
+  }
+}
@@ -0,0 +1,262 @@
+package de.samply.share.broker.control;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Works off the entries of an outbox table on a bounded pool of workers, so a burst of entries
+ * does not start a burst of threads. A failed entry is tried again with growing delays.
+ *
+ * <p>The entries are stored before they are submitted, so none is lost if the queue is full or
+ * the broker is stopped: {@link #submitDue()} picks up every entry that is due, also those of
+ * other broker instances. An entry is claimed in the database before it is processed, so it is
+ * processed only once even if it is submitted several times.
+ *
+ * @param <T> the type of the entries
+ */
+abstract class OutboxWorker<T> {
+
+  private static final int QUEUE_SIZE = 1000;
+
+  private final Logger logger = LogManager.getLogger(getClass());
+
+  private final String threadName;
+  private final String entryName;
+  private final Store<T> store;
+  private final int threads;
+  private final int maxAttempts;
+  private final Duration firstRetryDelay;
+  private final Duration maxRetryDelay;
+  private final Duration claimTimeout;
+  private final Clock clock;
+
+  private volatile ThreadPoolExecutor workers;
+  private volatile ScheduledExecutorService retryTimer;
+
+  /**
+   * Create a worker.
+   *
+   * @param threadName      the prefix of the names of the threads
+   * @param entryName       what an entry is called in the log
+   * @param store           keeps the state of the entries
+   * @param threads         the number of workers
+   * @param maxAttempts     the number of attempts before an entry is given up
+   * @param firstRetryDelay the delay after the first failed attempt
+   * @param maxRetryDelay   the maximum delay between two attempts
+   * @param claimTimeout    entries claimed longer than this are assumed to be abandoned by a
+   *                        stopped broker instance
+   * @param clock           the clock to schedule the next attempts with
+   */
+  OutboxWorker(String threadName, String entryName, Store<T> store, int threads,
+      int maxAttempts, Duration firstRetryDelay, Duration maxRetryDelay, Duration claimTimeout,
+      Clock clock) {
+    this.threadName = threadName;
+    this.entryName = entryName;
+    this.store = store;
+    this.threads = Math.max(threads, 1);
+    this.maxAttempts = Math.max(maxAttempts, 1);
+    this.firstRetryDelay = firstRetryDelay;
+    this.maxRetryDelay = maxRetryDelay;
+    this.claimTimeout = claimTimeout;
+    this.clock = clock;
+  }
+
+  /**
+   * Process a claimed entry.
+   *
+   * @param id    the id of the entry
+   * @param entry the entry
+   * @return null if the entry is done, else why it is not
+   * @throws Exception if the attempt failed
+   */
+  abstract String process(int id, T entry) throws Exception;
+
+  /**
+   * Get the number of attempts of an entry, including the current one.
+   *
+   * @param entry the claimed entry
+   * @return the number of attempts
+   */
+  abstract int getAttempts(T entry);
+
+  /**
+   * Start the workers.
+   */
+  public synchronized void start() {
+    if (workers != null) {
+      return;
+    }
+    workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(QUEUE_SIZE),
+        new ThreadFactoryBuilder().setNameFormat(threadName + "-%d").setDaemon(true).build());
+    retryTimer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat(threadName + "-retry").setDaemon(true).build());
+  }
+
+  /**
+   * Stop the workers. Entries still queued stay pending in the database.
+   */
+  public synchronized void stop() {
+    ThreadPoolExecutor stoppedWorkers = workers;
+    workers = null;
+    if (retryTimer != null) {
+      retryTimer.shutdownNow();
+      retryTimer = null;
+    }
+    if (stoppedWorkers == null) {
+      return;
+    }
+    stoppedWorkers.shutdownNow();
+    try {
+      if (!stoppedWorkers.awaitTermination(10, TimeUnit.SECONDS)) {
+        logger.warn("Still working on " + entryName + "s after shutdown");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Queue a stored entry.
+   *
+   * @param id the id of the entry
+   * @return false if the queue is full or the workers are stopped, the entry is then picked up
+   *     by {@link #submitDue()}
+   */
+  public boolean submit(int id) {
+    ThreadPoolExecutor currentWorkers = workers;
+    if (currentWorkers == null) {
+      return false;
+    }
+    try {
+      currentWorkers.execute(() -> run(id));
+      return true;
+    } catch (RejectedExecutionException e) {
+      logger.debug(capitalize(entryName) + " " + id + " not queued, the queue is full");
+      return false;
+    }
+  }
+
+  /**
+   * Queue all entries that are due, as far as the queue has room for them.
+   */
+  public void submitDue() {
+    ThreadPoolExecutor currentWorkers = workers;
+    if (currentWorkers == null) {
+      return;
+    }
+    int capacity = currentWorkers.getQueue().remainingCapacity();
+    if (capacity > 0) {
+      store.due(claimTimeout, capacity).forEach(this::submit);
+    }
+  }
+
+  /**
+   * Claim and process an entry.
+   *
+   * @param id the id of the entry
+   */
+  void run(int id) {
+    T entry = store.claim(id);
+    if (entry == null) {
+      // already done or claimed by another worker
+      return;
+    }
+
+    String error;
+    try {
+      error = process(id, entry);
+      if (error == null) {
+        return;
+      }
+    } catch (Exception e) {
+      logger.warn("Error while processing " + entryName + " " + id, e);
+      error = e.toString();
+    }
+
+    int attempts = getAttempts(entry);
+    if (attempts >= maxAttempts) {
+      logger.error("Giving up " + entryName + " " + id + " after " + attempts + " attempts: "
+          + error);
+      store.failed(id, error);
+      return;
+    }
+    Duration delay = retryDelay(attempts, firstRetryDelay, maxRetryDelay);
+    store.retryLater(id, error, clock.instant().plus(delay));
+    ScheduledExecutorService currentRetryTimer = retryTimer;
+    if (currentRetryTimer != null) {
+      try {
+        currentRetryTimer.schedule(() -> submit(id), delay.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        logger.debug("Retry of " + entryName + " " + id + " left to the next sweep");
+      }
+    }
+  }
+
+  /**
+   * Get the delay before the next attempt, doubling with every failed attempt.
+   *
+   * @param attempts the number of failed attempts
+   * @param first    the delay after the first failed attempt
+   * @param max      the maximum delay
+   * @return the delay
+   */
+  static Duration retryDelay(int attempts, Duration first, Duration max) {
+    Duration delay = first;
+    for (int i = 1; i < attempts && delay.compareTo(max) < 0; i++) {
+      delay = delay.multipliedBy(2);
+    }
+    return delay.compareTo(max) < 0 ? delay : max;
+  }
+
+  /**
+   * Get the number of entries waiting for a worker.
+   *
+   * @return the number of queued entries
+   */
+  public int getQueueSize() {
+    ThreadPoolExecutor currentWorkers = workers;
+    return currentWorkers == null ? 0 : currentWorkers.getQueue().size();
+  }
+
+  private static String capitalize(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  /**
+   * Keeps the state of the entries.
+   *
+   * @param <T> the type of the entries
+   */
+  interface Store<T> {
+
+    /**
+     * Claim a pending entry and count the attempt.
+     *
+     * @param id the id of the entry
+     * @return the entry or null if it is not pending
+     */
+    T claim(int id);
+
+    void retryLater(int id, String error, Instant nextAttempt);
+
+    void failed(int id, String error);
+
+    /**
+     * Get the entries due for an attempt, after making those claimed longer than the timeout
+     * pending again.
+     */
+    List<Integer> due(Duration claimTimeout, int limit);
+  }
+}
@@ -0,0 +1,149 @@
+package de.samply.share.broker.control;
+
+import de.samply.share.broker.utils.Config;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Attaches identical queries that are released within a short window to one inquiry, so the
+ * bridgeheads only execute them once.
+ */
+public class QueryCoalescer {
+
+  private static final Logger logger = LogManager.getLogger(QueryCoalescer.class);
+
+  private static final String CFG_WINDOW_SECONDS = "query.coalescing.window.seconds";
+  private static final int DEFAULT_WINDOW_SECONDS = 10;
+
+  /**
+   * A query waits this long for an identical query being released before it is released on its
+   * own.
+   */
+  private static final Duration JOIN_TIMEOUT = Duration.ofSeconds(30);
+
+  private final Map<String, Release> releases = new ConcurrentHashMap<>();
+  private final Duration window;
+  private final Duration joinTimeout;
+  private final Clock clock;
+
+  private final AtomicLong releasedCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  /**
+   * Create a coalescer with the configured window.
+   */
+  public QueryCoalescer() {
+    this(Duration.ofSeconds(Config.getIntProperty(CFG_WINDOW_SECONDS, DEFAULT_WINDOW_SECONDS)),
+        Clock.systemUTC());
+  }
+
+  QueryCoalescer(Duration window, Clock clock) {
+    this(window, JOIN_TIMEOUT, clock);
+  }
+
+  QueryCoalescer(Duration window, Duration joinTimeout, Clock clock) {
+    this.window = window;
+    this.joinTimeout = joinTimeout;
+    this.clock = clock;
+  }
+
+  /**
+   * Release a query or attach it to an identical query released within the window.
+   *
+   * @param key     the canonical key of the query
+   * @param release releases the query as a new inquiry and returns its id (or a value &lt;= 0 on
+   *                error)
+   * @param join    called with the id of the existing inquiry if the query has been attached
+   * @return the id of the inquiry the query belongs to, an identical query still being released
+   *     after the join timeout is not waited for any longer
+   */
+  public int releaseOrJoin(String key, IntSupplier release, IntConsumer join) {
+    if (window.isZero() || window.isNegative()) {
+      return release.getAsInt();
+    }
+
+    Instant now = clock.instant();
+    releases.values().removeIf(existing -> existing.isExpired(now));
+
+    Release current = releases.get(key);
+    if (current != null && !current.isExpired(now)) {
+      int inquiryId = current.await();
+      if (inquiryId > 0) {
+        coalescedCount.incrementAndGet();
+        logger.debug("Attaching query to already released inquiry " + inquiryId);
+        join.accept(inquiryId);
+        return inquiryId;
+      }
+    }
+
+    Release own = new Release(now);
+    boolean registered = current == null
+        ? releases.putIfAbsent(key, own) == null
+        : releases.replace(key, current, own);
+    if (!registered) {
+      // someone else has just started releasing the same query
+      return releaseOrJoin(key, release, join);
+    }
+
+    int inquiryId = -1;
+    try {
+      inquiryId = release.getAsInt();
+      releasedCount.incrementAndGet();
+      return inquiryId;
+    } finally {
+      own.result.complete(inquiryId);
+      if (inquiryId <= 0) {
+        releases.remove(key, own);
+      }
+    }
+  }
+
+  public long getReleasedCount() {
+    return releasedCount.get();
+  }
+
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  private class Release {
+
+    private final Instant releasedAt;
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+    Release(Instant releasedAt) {
+      this.releasedAt = releasedAt;
+    }
+
+    boolean isExpired(Instant now) {
+      return result.isDone() && releasedAt.plus(window).isBefore(now);
+    }
+
+    int await() {
+      try {
+        return result.get(joinTimeout.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return -1;
+      } catch (ExecutionException e) {
+        return -1;
+      } catch (TimeoutException e) {
+        logger.warn("Identical query not released within " + joinTimeout.toMillis()
+            + " ms, releasing the query on its own");
+        return -1;
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package de.samply.share.broker.control;
+
+import de.samply.share.broker.model.db.tables.pojos.QueryRelease;
+import de.samply.share.broker.utils.Config;
+import de.samply.share.broker.utils.db.QueryReleaseUtil;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Translates and releases the queries sent by the UI on a bounded pool of workers, so /sendQuery
+ * only has to store the query. A failed release is tried again with growing delays.
+ *
+ * <p>The inquiry is recorded with the release as soon as it is stored, so a release tried again,
+ * or taken over from an instance assumed to be stopped, continues with that inquiry instead of
+ * creating another one.
+ */
+public class QueryReleaseExecutor extends OutboxWorker<QueryRelease> {
+
+  private static final String CFG_THREADS = "query.release.threads";
+  private static final String CFG_MAX_ATTEMPTS = "query.release.max.attempts";
+  private static final int DEFAULT_THREADS = 4;
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+  private static final Duration FIRST_RETRY_DELAY = Duration.ofSeconds(5);
+  private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(5);
+  private static final Duration RUNNING_TIMEOUT = Duration.ofMinutes(10);
+
+  private static final QueryReleaseExecutor instance = new QueryReleaseExecutor(
+      new DatabaseStore(), SearchController::release,
+      Config.getIntProperty(CFG_THREADS, DEFAULT_THREADS),
+      Config.getIntProperty(CFG_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS), Clock.systemUTC());
+
+  private final Store store;
+  private final Releaser releaser;
+
+  QueryReleaseExecutor(Store store, Releaser releaser, int threads, int maxAttempts,
+      Clock clock) {
+    super("query-release", "query release", store, threads, maxAttempts, FIRST_RETRY_DELAY,
+        MAX_RETRY_DELAY, RUNNING_TIMEOUT, clock);
+    this.store = store;
+    this.releaser = releaser;
+  }
+
+  public static QueryReleaseExecutor getInstance() {
+    return instance;
+  }
+
+  @Override
+  String process(int releaseId, QueryRelease release) {
+    int inquiryId = releaser.release(release,
+        createdInquiryId -> store.created(releaseId, createdInquiryId));
+    if (inquiryId <= 0) {
+      return "The inquiry could not be stored";
+    }
+    store.released(releaseId, inquiryId);
+    return null;
+  }
+
+  @Override
+  int getAttempts(QueryRelease release) {
+    return release.getAttempts();
+  }
+
+  /**
+   * Get the delay before the next attempt, doubling with every failed attempt.
+   *
+   * @param attempts the number of failed attempts
+   * @return the delay
+   */
+  static Duration retryDelay(int attempts) {
+    return retryDelay(attempts, FIRST_RETRY_DELAY, MAX_RETRY_DELAY);
+  }
+
+  /**
+   * Translates and releases a query.
+   */
+  @FunctionalInterface
+  interface Releaser {
+
+    /**
+     * Release a query. If the release already has an inquiry, an earlier attempt has stored it
+     * and only the steps after storing the inquiry are left to do.
+     *
+     * @param release the stored query
+     * @param created to be called with the id of the inquiry as soon as it is stored, before
+     *                anything else that may fail
+     * @return the id of the inquiry or a value &lt;= 0 if it could not be stored
+     */
+    int release(QueryRelease release, IntConsumer created);
+  }
+
+  /**
+   * Keeps the state of the releases.
+   */
+  interface Store extends OutboxWorker.Store<QueryRelease> {
+
+    void created(int releaseId, int inquiryId);
+
+    void released(int releaseId, int inquiryId);
+  }
+
+  private static class DatabaseStore implements Store {
+
+    @Override
+    public QueryRelease claim(int releaseId) {
+      return QueryReleaseUtil.claimRelease(releaseId);
+    }
+
+    @Override
+    public void created(int releaseId, int inquiryId) {
+      QueryReleaseUtil.recordInquiry(releaseId, inquiryId);
+    }
+
+    @Override
+    public void released(int releaseId, int inquiryId) {
+      QueryReleaseUtil.markReleased(releaseId, inquiryId);
+    }
+
+    @Override
+    public void retryLater(int releaseId, String error, Instant nextAttempt) {
+      QueryReleaseUtil.markForRetry(releaseId, error, nextAttempt);
+    }
+
+    @Override
+    public void failed(int releaseId, String error) {
+      QueryReleaseUtil.markFailed(releaseId, error);
+    }
+
+    @Override
+    public List<Integer> due(Duration runningTimeout, int limit) {
+      return QueryReleaseUtil.fetchDueReleaseIds(runningTimeout, limit);
+    }
+  }
+}
@@ -6,6 +6,7 @@ import de.samply.share.broker.model.InquiryCriteriaTranslatable;
 import de.samply.share.broker.model.db.tables.pojos.BankSite;
 import de.samply.share.broker.model.db.tables.pojos.Inquiry;
 import de.samply.share.broker.model.db.tables.pojos.InquirySite;
+import de.samply.share.broker.model.db.tables.pojos.QueryRelease;
 import de.samply.share.broker.model.db.tables.pojos.Reply;
 import de.samply.share.broker.model.db.tables.pojos.Site;
 import de.samply.share.broker.model.db.tables.pojos.User;
@@ -18,13 +19,21 @@ import de.samply.share.broker.utils.db.BankSiteUtil;
 import de.samply.share.broker.utils.db.BankUtil;
 import de.samply.share.broker.utils.db.InquirySiteUtil;
 import de.samply.share.broker.utils.db.InquiryUtil;
+import de.samply.share.broker.utils.db.QueryReleaseUtil;
 import de.samply.share.broker.utils.db.ReplyUtil;
 import de.samply.share.broker.utils.db.SiteUtil;
 import de.samply.share.common.model.dto.monitoring.StatusReportItem;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -42,6 +51,8 @@ public class SearchController {
 
   private static final NTokenHandler N_TOKEN_HANDLER = new NTokenHandler();
 
+  private static final QueryCoalescer QUERY_COALESCER = new QueryCoalescer();
+
   /**
    * Release query from Icinga for bridgeheads.
    *
@@ -71,29 +82,89 @@ public class SearchController {
   }
 
   /**
-   * release query from UI for bridgeheads.
+   * Store a query from the UI to be released to the bridgeheads by the
+   * {@link QueryReleaseExecutor}.
    *
    * @param simpleQueryDtoJson the query
    * @param ntoken             the ntoken of the query
    * @param loggedUser         the logged User
+   * @return the handle of the release or null if the query could not be stored
    */
-  public static void releaseQuery(String simpleQueryDtoJson, String ntoken, User loggedUser) {
+  public static UUID submitQuery(String simpleQueryDtoJson, String ntoken, User loggedUser) {
     N_TOKEN_HANDLER.deactivateNToken(ntoken);
 
+    QueryRelease release = QueryReleaseUtil.createRelease(ntoken, simpleQueryDtoJson,
+        loggedUser.getId());
+    if (release == null) {
+      return null;
+    }
+    QueryReleaseExecutor.getInstance().submit(release.getId());
+    return release.getHandle();
+  }
+
+  /**
+   * release query from UI for bridgeheads.
+   * An identical query released shortly before is reused instead of creating a new inquiry.
+   * If an earlier attempt has already stored the inquiry, only its sites are set if they are
+   * missing.
+   *
+   * @param release the query stored by {@link #submitQuery(String, String, User)}
+   * @param created called with the id of the inquiry as soon as it is stored
+   * @return the id of the inquiry
+   */
+  static int release(QueryRelease release, IntConsumer created) {
+    Integer storedInquiryId = release.getInquiryId();
+    int inquiryId;
+    if (storedInquiryId == null) {
+      User loggedUser = new User();
+      loggedUser.setId(release.getUserId());
+
+      DefaultInquiryCriteriaTranslatable query =
+          new DefaultInquiryCriteriaTranslatable(release.getQuery());
+      inquiryId = QUERY_COALESCER.releaseOrJoin(query.getCanonicalKey(),
+          () -> releaseQuery(query, loggedUser, created),
+          joinedInquiryId -> {
+            created.accept(joinedInquiryId);
+            query.saveStatistics(joinedInquiryId);
+          });
+    } else {
+      inquiryId = storedInquiryId;
+      logger.info("Query release " + release.getId() + " continues with inquiry " + inquiryId);
+      if (InquirySiteUtil.fetchInquirySitesForInquiryId(inquiryId).isEmpty()) {
+        setAllSites(new InquiryHandler(), inquiryId);
+      }
+    }
+    if (inquiryId > 0 && !StringUtils.isBlank(release.getNtoken())) {
+      N_TOKEN_HANDLER.saveNToken(inquiryId, release.getNtoken(), release.getQuery());
+    }
+    return inquiryId;
+  }
+
+  private static int releaseQuery(DefaultInquiryCriteriaTranslatable query, User loggedUser,
+      IntConsumer created) {
     InquiryHandler inquiryHandler = new InquiryHandler();
     int inquiryId = inquiryHandler
-        .storeAndRelease(new DefaultInquiryCriteriaTranslatable(simpleQueryDtoJson),
-            loggedUser.getId(), "", "", -1, -1, new ArrayList<>(),
-            true);
-    if (inquiryId > 0 && !StringUtils.isBlank(ntoken)) {
-      N_TOKEN_HANDLER.saveNToken(inquiryId, ntoken, simpleQueryDtoJson);
+        .storeAndRelease(query, loggedUser.getId(), "", "", -1, -1, new ArrayList<>(), true);
+    if (inquiryId <= 0) {
+      return inquiryId;
     }
+    created.accept(inquiryId);
+    setAllSites(inquiryHandler, inquiryId);
+    return inquiryId;
+  }
 
+  private static void setAllSites(InquiryHandler inquiryHandler, int inquiryId) {
     List<String> siteIds = new ArrayList<>();
     for (Site site : SiteUtil.fetchSites()) {
       siteIds.add(site.getId().toString());
     }
-    inquiryHandler.setSitesForInquiry(inquiryId, siteIds);
+    if (!inquiryHandler.setSitesForInquiry(inquiryId, siteIds)) {
+      throw new IllegalStateException("The sites of inquiry " + inquiryId + " could not be set");
+    }
+  }
+
+  public static QueryCoalescer getQueryCoalescer() {
+    return QUERY_COALESCER;
   }
 
   /**
@@ -112,9 +183,11 @@ public class SearchController {
     if (CollectionUtils.isEmpty(replyList)) {
       return replyAllSites;
     }
+    Map<Integer, Site> sites = BankUtil.fetchSitesForBankIds(
+        replyList.stream().map(Reply::getBankId).collect(Collectors.toSet()));
     JSONParser parser = new JSONParser();
     for (Reply reply : replyList) {
-      if (isActiveSite(reply)) {
+      if (isActiveSite(sites.get(reply.getBankId()))) {
         try {
           JSONObject json = (JSONObject) parser.parse(reply.getContent());
           if (anonymous) {
@@ -139,6 +212,8 @@ public class SearchController {
   public static String getResultFromQuery(int inquiryId) throws Exception {
     ResultList resultList = new ResultList();
     List<Reply> replyList = new ReplyUtil().getReplyforInquriy(inquiryId);
+    List<Integer> bankIds;
+    Map<Integer, Site> sites;
     try {
       Inquiry inquiry = new InquiryUtil().fetchInquiryById(inquiryId);
       if (inquiry == null) {
@@ -147,6 +222,15 @@ public class SearchController {
             + ",\"Message\":\"No query found\"}";
         return new Gson().toJson(resultJson).replace("\\", "");
       }
+      Map<Integer, InquirySite> inquirySites = InquirySiteUtil
+          .fetchInquirySitesForInquiryId(inquiryId).stream()
+          .collect(Collectors.toMap(InquirySite::getSiteId, Function.identity()));
+      bankIds = BankSiteUtil
+          .fetchBankSiteBySiteIdList(new ArrayList<>(inquirySites.keySet())).stream()
+          .map(BankSite::getBankId).collect(Collectors.toList());
+      Set<Integer> allBankIds = new HashSet<>(bankIds);
+      replyList.forEach(reply -> allBankIds.add(reply.getBankId()));
+      sites = BankUtil.fetchSitesForBankIds(allBankIds);
       for (Reply reply : replyList) {
         StatusReportItem statusReportItem = new StatusReportItem();
         statusReportItem.setExitStatus(EnumReportMonitoring.ICINGA_STATUS_OK.getValue());
@@ -157,10 +241,9 @@ public class SearchController {
         statusReportItem.setStatusText("count: " + count);
         Report report = new Report();
         report.setStatusReportItem(statusReportItem);
-        BankSite bankSite = BankSiteUtil.fetchBankSiteByBankId(reply.getBankId());
-        report.setTarget(SiteUtil.fetchSiteById(bankSite.getSiteId()).getName());
-        InquirySite inquirySite = InquirySiteUtil
-            .fetchInquirySiteForSiteIdAndInquiryId(bankSite.getSiteId(), inquiryId);
+        Site site = sites.get(reply.getBankId());
+        report.setTarget(site.getName());
+        InquirySite inquirySite = inquirySites.get(site.getId());
         report.setExecutionTime(report.calculateExecutionTime(inquirySite.getRetrievedAt(),
             reply.getRetrievedat()));
         resultList.getResultList().add(report);
@@ -171,7 +254,7 @@ public class SearchController {
               + ". " + e);
     }
     if (replyList.size() > 0) {
-      List<Report> notAnsweredBanks = checkNotAnsweredBanks(replyList, inquiryId);
+      List<Report> notAnsweredBanks = checkNotAnsweredBanks(replyList, bankIds, sites);
       if (notAnsweredBanks.size() == 0) {
         resultList.setExitStatus(EnumReportMonitoring.ICINGA_STATUS_OK.getValue());
       } else {
@@ -187,26 +270,22 @@ public class SearchController {
     }
   }
 
-  private static List<Report> checkNotAnsweredBanks(List<Reply> replyList, int inquiryId)
-      throws Exception {
+  private static List<Report> checkNotAnsweredBanks(List<Reply> replyList, List<Integer> allIds,
+      Map<Integer, Site> sites) throws Exception {
     try {
       List<Integer> idsAnswered = replyList.stream().map(Reply::getBankId)
           .collect(Collectors.toList());
-      List<Integer> allIds = BankSiteUtil.fetchBankSiteBySiteIdList(
-              InquirySiteUtil.fetchInquirySitesForInquiryId(inquiryId).stream()
-                  .map(InquirySite::getSiteId).collect(
-                      Collectors.toList())).stream()
-          .map(BankSite::getBankId).collect(Collectors.toList());
       List<Integer> differences = allIds.stream()
           .filter(element -> !idsAnswered.contains(element))
           .collect(Collectors.toList());
-      return createReportForNotAnsweredBanks(differences);
+      return createReportForNotAnsweredBanks(differences, sites);
     } catch (Exception e) {
       throw new Exception("Error while checking not answered biobanks" + e);
     }
   }
 
-  private static List<Report> createReportForNotAnsweredBanks(List<Integer> bankIds) {
+  private static List<Report> createReportForNotAnsweredBanks(List<Integer> bankIds,
+      Map<Integer, Site> sites) {
     List<Report> reportList = new ArrayList<>();
     for (int id : bankIds) {
       logger.info("BankId that not answered: " + id);
@@ -215,24 +294,13 @@ public class SearchController {
       statusReportItem.setExitStatus(EnumReportMonitoring.ICINGA_STATUS_ERROR.getValue());
       statusReportItem.setStatusText("No answer");
       report.setStatusReportItem(statusReportItem);
-      report.setTarget(BankUtil.getSiteForBankId(id).getName());
+      report.setTarget(sites.get(id).getName());
       reportList.add(report);
     }
     return reportList;
   }
 
-
-  private static boolean isActiveSite(Reply reply) {
-    BankSite bankSite = BankSiteUtil.fetchBankSiteByBankId(reply.getBankId());
-    if (bankSite == null) {
-      return false;
-    }
-
-    Site site = SiteUtil.fetchSiteById(bankSite.getSiteId());
-    if (site == null) {
-      return false;
-    }
-
-    return site.getActive();
+  private static boolean isActiveSite(Site site) {
+    return site != null && BooleanUtils.isTrue(site.getActive());
   }
 }
@@ -3,13 +3,15 @@ package de.samply.share.broker.filter;
 import de.samply.bbmri.auth.client.jwt.JwtException;
 import de.samply.bbmri.auth.client.jwt.JwtIdToken;
 import de.samply.bbmri.auth.rest.RoleDto;
+import de.samply.share.broker.filter.VerifiedTokenCache.VerifiedToken;
 import de.samply.share.broker.model.db.tables.pojos.User;
+import de.samply.share.broker.utils.Config;
+import de.samply.share.broker.utils.OAuthClientConfig;
 import de.samply.share.broker.utils.db.ContactUtil;
 import de.samply.share.broker.utils.db.UserUtil;
-import de.samply.share.common.utils.ProjectInfo;
-import de.samply.share.common.utils.oauth2.OAuthConfig;
-import java.io.File;
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import javax.annotation.Priority;
 import javax.enterprise.event.Event;
@@ -34,6 +36,15 @@ public class AuthenticationFilter implements ContainerRequestFilter {
 
   private static final String REALM = "example";
   private static final String AUTHENTICATION_SCHEME = "Bearer";
+  private static final String CFG_TOKEN_CACHE_SECONDS = "auth.token.cache.seconds";
+  private static final int DEFAULT_TOKEN_CACHE_SECONDS = 300;
+  private static final int TOKEN_CACHE_SIZE = 10000;
+
+  private static final VerifiedTokenCache tokenCache = new VerifiedTokenCache(
+      Duration.ofSeconds(
+          Config.getIntProperty(CFG_TOKEN_CACHE_SECONDS, DEFAULT_TOKEN_CACHE_SECONDS)),
+      TOKEN_CACHE_SIZE, Clock.systemUTC());
+
   final Logger logger = LoggerFactory.getLogger(AuthenticationFilter.class);
   @Inject
   @AuthenticatedUser
@@ -59,31 +70,48 @@ public class AuthenticationFilter implements ContainerRequestFilter {
     String token = authorizationHeader
         .substring(AUTHENTICATION_SCHEME.length()).trim();
 
+    VerifiedToken verifiedToken = tokenCache.get(token, this::verify);
+    if (verifiedToken == null && OAuthClientConfig.reloadIfStale()) {
+      // the public key of the authentication service has been rotated
+      tokenCache.invalidateAll();
+      verifiedToken = tokenCache.get(token, this::verify);
+    }
+    if (verifiedToken == null) {
+      abortWithUnauthorized(requestContext);
+      return;
+    }
+    requestContext.setProperty(RateLimitFilter.CLIENT_PROPERTY,
+        "user:" + verifiedToken.getSubject());
+
+    //send user to AuthenticatedUserProvider to get access to the user from everywhere
+    userAuthenticatedEvent.fire(verifiedToken.getSubject());
+    //send permissions to AuthenticatedUserPermissionsProvider to get access to the permissions from
+    // everywhere
+    userAuthenticatedPermissionsEvent.fire(verifiedToken.getRoles());
+  }
+
+  /**
+   * Verify a token with the public key of the configuration file.
+   *
+   * @param token the encoded token
+   * @return the verified token or null if it is invalid
+   */
+  private VerifiedToken verify(String token) {
     // Create instance of JwtIdToken by combining public key + client id of configuration file and
     // of course the token itself
     JwtIdToken jwtIdToken;
     try {
-      String[] fallbacks = {System.getProperty("catalina.base") + File.separator + "conf",
-          ProjectInfo.INSTANCE.getServletContext().getRealPath("/WEB-INF")};
-      jwtIdToken = new JwtIdToken(
-          OAuthConfig.getOAuth2Client(ProjectInfo.INSTANCE.getProjectName(), fallbacks), token);
+      jwtIdToken = new JwtIdToken(OAuthClientConfig.getClient(), token);
     } catch (JwtException e) {
       logger.error("Create instance of JwtIdToken failed. OAuth2Client.xml? JWT-ID-Token?", e);
-      abortWithUnauthorized(requestContext);
-      return;
+      return null;
     }
 
     if (!jwtIdToken.isValid()) {
       logger.debug("token not valid");
-      abortWithUnauthorized(requestContext);
-      return;
+      return null;
     }
-
-    //send user to AuthenticatedUserProvider to get access to the user from everywhere
-    userAuthenticatedEvent.fire(jwtIdToken.getSubject());
-    //send permissions to AuthenticatedUserPermissionsProvider to get access to the permissions from
-    // everywhere
-    userAuthenticatedPermissionsEvent.fire(jwtIdToken.getRoles());
+    return new VerifiedToken(jwtIdToken.getSubject(), jwtIdToken.getRoles());
   }
 
   private boolean isTokenBasedAuthentication(String authorizationHeader) {
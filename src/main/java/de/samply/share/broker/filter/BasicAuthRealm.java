@@ -9,6 +9,7 @@ public enum BasicAuthRealm {
 
   ICINGA("icinga.username", "icinga.password"),
   STRUCTURED_QUERY("structured.query.username", "structured.query.password"),
+  STATISTICS("statistics.username", "statistics.password"),
   NONE(null, null);
 
   public final String usernameProperty;
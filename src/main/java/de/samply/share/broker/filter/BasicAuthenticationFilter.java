@@ -40,7 +40,9 @@ public class BasicAuthenticationFilter implements ContainerRequestFilter {
     BasicAuthRealm realm = extractRealm(resourceInfo.getResourceMethod());
     if (!isAuthenticated(realm, authHeader)) {
       requestContext.abortWith(Response.status(UNAUTHORIZED).build());
+      return;
     }
+    requestContext.setProperty(RateLimitFilter.CLIENT_PROPERTY, "realm:" + realm);
   }
 
   private static BasicAuthRealm extractRealm(AnnotatedElement annotatedElement) {
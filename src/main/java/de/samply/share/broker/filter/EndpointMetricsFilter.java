@@ -0,0 +1,46 @@
+package de.samply.share.broker.filter;
+
+import de.samply.share.broker.monitoring.BrokerMetrics;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Times every request to a resource method and counts the errors per endpoint.
+ * Runs before the authentication filters, so rejected requests are counted as well.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public class EndpointMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+  private static final String START_PROPERTY = EndpointMetricsFilter.class.getName() + ".start";
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    requestContext.setProperty(START_PROPERTY, System.nanoTime());
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext,
+      ContainerResponseContext responseContext) throws IOException {
+    Object start = requestContext.getProperty(START_PROPERTY);
+    Method method = resourceInfo.getResourceMethod();
+    if (!(start instanceof Long) || method == null) {
+      return;
+    }
+    BrokerMetrics.getInstance()
+        .getEndpoint(resourceInfo.getResourceClass().getSimpleName(), method.getName())
+        .record(System.nanoTime() - (Long) start, responseContext.getStatus());
+  }
+}
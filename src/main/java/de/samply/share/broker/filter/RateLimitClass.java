@@ -0,0 +1,40 @@
+package de.samply.share.broker.filter;
+
+/**
+ * A class of endpoints sharing one request budget per client. Every client has its own token
+ * bucket per class, so e.g. a bridgehead polling in a tight loop does not use up the budget of
+ * its replies.
+ */
+public enum RateLimitClass {
+
+  /**
+   * Bridgeheads polling for new inquiries.
+   */
+  POLLING("rate.limit.polling.per.minute", 300),
+  /**
+   * Bridgeheads retrieving single inquiries, e.g. to catch up with a backlog after listing it.
+   * They have their own, larger budget, so catching up does not use up the budget of polling.
+   */
+  RETRIEVAL("rate.limit.retrieval.per.minute", 1200),
+  /**
+   * Reads of user interfaces refreshing results, e.g. /getReply.
+   */
+  INTERACTIVE("rate.limit.interactive.per.minute", 300),
+  /**
+   * Monitoring requests of the icinga realm. They have their own budget, so monitoring keeps
+   * working while other clients are throttled.
+   */
+  MONITORING("rate.limit.monitoring.per.minute", 600),
+  /**
+   * All other endpoints.
+   */
+  STANDARD("rate.limit.standard.per.minute", 600);
+
+  public final String configProperty;
+  public final int defaultPerMinute;
+
+  RateLimitClass(String configProperty, int defaultPerMinute) {
+    this.configProperty = configProperty;
+    this.defaultPerMinute = defaultPerMinute;
+  }
+}
@@ -0,0 +1,153 @@
+package de.samply.share.broker.filter;
+
+import com.google.common.base.Splitter;
+import de.samply.share.broker.utils.Config;
+import de.samply.share.broker.utils.Utils;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import org.apache.http.HttpHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rejects requests exceeding the budget of their client with 429 and a Retry-After header. Runs
+ * after the authentication filters, so clients are only identified by credentials that have been
+ * verified: users by the subject of their token and basic auth requests by their realm, as put
+ * into {@link #CLIENT_PROPERTY} by the authentication filters, and banks by the id their api key
+ * belongs to. Bank ids are only taken from the cache, so no request touches the database before
+ * it is admitted, not even one with an unknown api key. Anything else is identified by its
+ * address. The address is taken from X-Forwarded-For only if the request comes from one of the
+ * proxies in {@code rate.limit.trusted.proxies}.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION + 50)
+public class RateLimitFilter implements ContainerRequestFilter {
+
+  /**
+   * The request property holding the client, set by the filters that verified it.
+   */
+  public static final String CLIENT_PROPERTY = RateLimitFilter.class.getName() + ".client";
+
+  private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+  private static final String CFG_TRUSTED_PROXIES = "rate.limit.trusted.proxies";
+  private static final Set<String> trustedProxies =
+      new HashSet<>(Config.getListProperty(CFG_TRUSTED_PROXIES));
+
+  private final RateLimiter rateLimiter;
+  private final ToIntFunction<String> cachedBankIds;
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  @Context
+  private HttpServletRequest servletRequest;
+
+  public RateLimitFilter() {
+    this(null, RateLimiter.getInstance(), Utils::getCachedBankId);
+  }
+
+  RateLimitFilter(ResourceInfo resourceInfo, RateLimiter rateLimiter,
+      ToIntFunction<String> cachedBankIds) {
+    this.resourceInfo = resourceInfo;
+    this.rateLimiter = rateLimiter;
+    this.cachedBankIds = cachedBankIds;
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    Method method = resourceInfo.getResourceMethod();
+    if (method == null || HttpMethod.OPTIONS.equals(requestContext.getMethod())) {
+      return;
+    }
+
+    RateLimitClass rateLimitClass = rateLimitClassOf(method);
+    String client = clientOf(requestContext.getProperty(CLIENT_PROPERTY),
+        cachedBankIds.applyAsInt(requestContext.getHeaderString(HttpHeaders.AUTHORIZATION)),
+        addressOf(servletRequest == null ? "unknown" : servletRequest.getRemoteAddr(),
+            requestContext.getHeaderString("X-Forwarded-For"), trustedProxies));
+
+    long waitNanos = rateLimiter.acquire(rateLimitClass, client);
+    if (waitNanos > 0) {
+      logger.debug("Throttled {} request of {}", rateLimitClass, client);
+      requestContext.abortWith(Response.status(Response.Status.TOO_MANY_REQUESTS)
+          .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(waitNanos))
+          .build());
+    }
+  }
+
+  private RateLimitClass rateLimitClassOf(Method method) {
+    RateLimited rateLimited = Optional.ofNullable(method.getAnnotation(RateLimited.class))
+        .orElse(resourceInfo.getResourceClass().getAnnotation(RateLimited.class));
+    if (rateLimited != null) {
+      return rateLimited.value();
+    }
+    return basicAuthRealmOf(method) == BasicAuthRealm.ICINGA
+        ? RateLimitClass.MONITORING : RateLimitClass.STANDARD;
+  }
+
+  private static BasicAuthRealm basicAuthRealmOf(Method method) {
+    BasicAuthSecure secured = method.getAnnotation(BasicAuthSecure.class);
+    return secured == null ? BasicAuthRealm.NONE : secured.value();
+  }
+
+  /**
+   * Get the address of the client of a request. X-Forwarded-For is only read if the request comes
+   * from a trusted proxy, and then the last address not of a trusted proxy is taken, as the
+   * addresses before it may have been sent by the client.
+   *
+   * @param remoteAddress  the address the request comes from
+   * @param forwardedFor   the X-Forwarded-For header, may be null
+   * @param trustedProxies the addresses of the trusted proxies
+   * @return the address of the client
+   */
+  static String addressOf(String remoteAddress, String forwardedFor, Set<String> trustedProxies) {
+    if (forwardedFor == null || !trustedProxies.contains(remoteAddress)) {
+      return remoteAddress;
+    }
+    String address = remoteAddress;
+    List<String> forwarded = Splitter.on(',').trimResults().omitEmptyStrings()
+        .splitToList(forwardedFor);
+    for (int i = forwarded.size() - 1; i >= 0 && trustedProxies.contains(address); i--) {
+      address = forwarded.get(i);
+    }
+    return address;
+  }
+
+  /**
+   * Identify the client of a request.
+   *
+   * @param verifiedClient the client put into {@link #CLIENT_PROPERTY}, may be null
+   * @param bankId         the id of the bank the api key belongs to, or -1
+   * @param address        the address of the client
+   * @return the client
+   */
+  static String clientOf(Object verifiedClient, int bankId, String address) {
+    if (verifiedClient != null) {
+      return verifiedClient.toString();
+    } else if (bankId >= 0) {
+      return "bank:" + bankId;
+    }
+    return "address:" + address;
+  }
+
+  static long retryAfterSeconds(long waitNanos) {
+    return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+  }
+}
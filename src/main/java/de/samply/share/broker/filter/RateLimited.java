@@ -0,0 +1,25 @@
+package de.samply.share.broker.filter;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns an endpoint to the request budget of a {@link RateLimitClass}. Endpoints without it use
+ * {@link RateLimitClass#STANDARD}, or {@link RateLimitClass#MONITORING} if they are secured by the
+ * icinga realm.
+ */
+@Retention(RUNTIME)
+@Target({TYPE, METHOD})
+public @interface RateLimited {
+
+  /**
+   * The class of the endpoint.
+   *
+   * @return the class
+   */
+  RateLimitClass value();
+}
@@ -0,0 +1,146 @@
+package de.samply.share.broker.filter;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.samply.share.broker.utils.Config;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets limiting the requests per client and {@link RateLimitClass}. A bucket holds the
+ * requests of one minute and is refilled continuously, so a client may send a burst of a
+ * minute's budget but not more than the budget on average. A budget of 0 disables the limit of a
+ * class.
+ */
+public class RateLimiter {
+
+  /**
+   * Throttled requests are counted for this many clients, all others are counted as "other".
+   */
+  static final int MAX_COUNTED_CLIENTS = 1000;
+  static final String OTHER_CLIENTS = "other";
+
+  private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+  private static final RateLimiter instance = new RateLimiter(readLimits(), Ticker.systemTicker());
+
+  private final Map<RateLimitClass, Integer> perMinute;
+  private final Ticker ticker;
+  private final Cache<String, TokenBucket> buckets;
+  private final Map<RateLimitClass, Map<String, LongAdder>> throttled =
+      new EnumMap<>(RateLimitClass.class);
+
+  RateLimiter(Map<RateLimitClass, Integer> perMinute, Ticker ticker) {
+    this.perMinute = new EnumMap<>(perMinute);
+    this.ticker = ticker;
+    // a bucket untouched for a minute is full again, so forgetting it changes nothing
+    this.buckets = CacheBuilder.newBuilder()
+        .expireAfterAccess(1, TimeUnit.MINUTES)
+        .maximumSize(100000)
+        .ticker(ticker)
+        .build();
+    for (RateLimitClass rateLimitClass : RateLimitClass.values()) {
+      throttled.put(rateLimitClass, new ConcurrentHashMap<>());
+    }
+  }
+
+  public static RateLimiter getInstance() {
+    return instance;
+  }
+
+  private static Map<RateLimitClass, Integer> readLimits() {
+    Map<RateLimitClass, Integer> limits = new EnumMap<>(RateLimitClass.class);
+    for (RateLimitClass rateLimitClass : RateLimitClass.values()) {
+      limits.put(rateLimitClass, Config.getIntProperty(rateLimitClass.configProperty,
+          rateLimitClass.defaultPerMinute));
+    }
+    return limits;
+  }
+
+  /**
+   * Take a token for a request of a client.
+   *
+   * @param rateLimitClass the class of the requested endpoint
+   * @param client         identifies the client
+   * @return 0 if the request is admitted, otherwise the nanoseconds until it would be admitted
+   */
+  public long acquire(RateLimitClass rateLimitClass, String client) {
+    int limit = perMinute.getOrDefault(rateLimitClass, 0);
+    if (limit <= 0) {
+      return 0;
+    }
+    TokenBucket bucket;
+    try {
+      bucket = buckets.get(rateLimitClass + "|" + client,
+          () -> new TokenBucket(limit, ticker.read()));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+    long waitNanos = bucket.tryTake(ticker.read());
+    if (waitNanos > 0) {
+      countThrottled(rateLimitClass, client);
+    }
+    return waitNanos;
+  }
+
+  private void countThrottled(RateLimitClass rateLimitClass, String client) {
+    Map<String, LongAdder> counts = throttled.get(rateLimitClass);
+    LongAdder count = counts.get(client);
+    if (count == null) {
+      String key = counts.size() < MAX_COUNTED_CLIENTS ? client : OTHER_CLIENTS;
+      count = counts.computeIfAbsent(key, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  /**
+   * Get the number of throttled requests per client.
+   *
+   * @param rateLimitClass the class of the endpoints
+   * @return the throttled requests by client
+   */
+  public Map<String, Long> getThrottledCounts(RateLimitClass rateLimitClass) {
+    Map<String, Long> counts = new HashMap<>();
+    throttled.get(rateLimitClass).forEach((client, count) -> counts.put(client, count.sum()));
+    return Collections.unmodifiableMap(counts);
+  }
+
+  /**
+   * Holds up to a minute's budget of tokens, refilled continuously.
+   */
+  private static class TokenBucket {
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private long tokens;
+    private long lastRefillNanos;
+
+    private TokenBucket(int perMinute, long nowNanos) {
+      this.capacity = perMinute;
+      this.nanosPerToken = Math.max(NANOS_PER_MINUTE / perMinute, 1);
+      this.tokens = capacity;
+      this.lastRefillNanos = nowNanos;
+    }
+
+    private synchronized long tryTake(long nowNanos) {
+      long newTokens = (nowNanos - lastRefillNanos) / nanosPerToken;
+      if (newTokens > 0) {
+        tokens = Math.min(capacity, tokens + newTokens);
+        lastRefillNanos = tokens == capacity ? nowNanos
+            : lastRefillNanos + newTokens * nanosPerToken;
+      }
+      if (tokens > 0) {
+        tokens--;
+        return 0;
+      }
+      return lastRefillNanos + nanosPerToken - nowNanos;
+    }
+  }
+}
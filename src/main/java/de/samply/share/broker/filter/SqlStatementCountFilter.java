@@ -0,0 +1,41 @@
+package de.samply.share.broker.filter;
+
+import de.samply.share.broker.jdbc.SqlStatementCounter;
+import de.samply.share.broker.utils.Config;
+import java.io.IOException;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reports the number of SQL statements executed while processing a request in the response
+ * header {@value #HEADER_SQL_STATEMENT_COUNT}. Only meant for tests, enabled by
+ * sql.count.header.enabled.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public class SqlStatementCountFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+  public static final String HEADER_SQL_STATEMENT_COUNT = "X-Sql-Statement-Count";
+
+  private static final String CFG_ENABLED = "sql.count.header.enabled";
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    if (Config.getBooleanProperty(CFG_ENABLED, false)) {
+      SqlStatementCounter.start();
+    }
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext,
+      ContainerResponseContext responseContext) throws IOException {
+    if (Config.getBooleanProperty(CFG_ENABLED, false)) {
+      responseContext.getHeaders().add(HEADER_SQL_STATEMENT_COUNT, SqlStatementCounter.stop());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package de.samply.share.broker.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import de.samply.bbmri.auth.rest.RoleDto;
+import de.samply.share.broker.utils.JwtClaims;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caches the outcome of successful token verifications, keyed by the SHA-256 hash of the token.
+ * An entry is used until the token expires, but at most for the configured maximum age, which
+ * bounds how long a revoked token is still accepted.
+ */
+class VerifiedTokenCache {
+
+  private final Cache<String, VerifiedToken> cache;
+  private final Duration maximumAge;
+  private final Clock clock;
+
+  VerifiedTokenCache(Duration maximumAge, long maximumSize, Clock clock) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(Math.max(maximumAge.toNanos(), 1), TimeUnit.NANOSECONDS)
+        .build();
+    this.maximumAge = maximumAge;
+    this.clock = clock;
+  }
+
+  /**
+   * Get the verified token, verifying it only if it is not cached.
+   *
+   * @param token    the encoded token
+   * @param verifier verifies the token, returns null if it is invalid
+   * @return the verified token or null if the token is invalid
+   */
+  VerifiedToken get(String token, Function<String, VerifiedToken> verifier) {
+    String key = Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+    Instant now = clock.instant();
+
+    VerifiedToken cached = cache.getIfPresent(key);
+    if (cached != null && now.isBefore(cached.cachedUntil)) {
+      return cached;
+    }
+    cache.invalidate(key);
+
+    VerifiedToken verified = verifier.apply(token);
+    if (verified != null && maximumAge.compareTo(Duration.ZERO) > 0) {
+      Instant maximum = now.plus(maximumAge);
+      Instant expiry = JwtClaims.readExpiry(token);
+      verified.cachedUntil = expiry != null && expiry.isBefore(maximum) ? expiry : maximum;
+      cache.put(key, verified);
+    }
+    return verified;
+  }
+
+  /**
+   * Forget all verifications, e.g. because the key used to verify them has changed.
+   */
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  /**
+   * The parts of a verified token the broker needs.
+   */
+  static class VerifiedToken {
+
+    private final String subject;
+    private final List<RoleDto> roles;
+    private Instant cachedUntil = Instant.MIN;
+
+    VerifiedToken(String subject, List<RoleDto> roles) {
+      this.subject = subject;
+      this.roles = roles == null ? Collections.emptyList()
+          : Collections.unmodifiableList(new ArrayList<>(roles));
+    }
+
+    String getSubject() {
+      return subject;
+    }
+
+    List<RoleDto> getRoles() {
+      return roles;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package de.samply.share.broker.jdbc;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Exposes the usage of the connection pool configured in context.xml.
+ * Active and idle connections are read from the pool of the container (Tomcat DBCP), the waiting
+ * threads and the time to acquire a connection are measured in {@link ResourceManager}.
+ */
+public class ConnectionPoolMetrics implements ConnectionPoolMetricsMXBean {
+
+  private static final Logger logger = LogManager.getLogger(ConnectionPoolMetrics.class);
+
+  private final DataSource dataSource;
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final LongAdder acquireCount = new LongAdder();
+  private final LongAdder acquireNanos = new LongAdder();
+
+  ConnectionPoolMetrics(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  void beforeAcquire() {
+    waiters.incrementAndGet();
+  }
+
+  void afterAcquire(long nanos) {
+    waiters.decrementAndGet();
+    acquireCount.increment();
+    acquireNanos.add(nanos);
+  }
+
+  @Override
+  public int getActive() {
+    return readPoolProperty("getNumActive");
+  }
+
+  @Override
+  public int getIdle() {
+    return readPoolProperty("getNumIdle");
+  }
+
+  @Override
+  public int getMaxTotal() {
+    return readPoolProperty("getMaxTotal");
+  }
+
+  @Override
+  public int getWaiters() {
+    return waiters.get();
+  }
+
+  @Override
+  public long getAcquireCount() {
+    return acquireCount.sum();
+  }
+
+  @Override
+  public double getAcquireTimeSeconds() {
+    return acquireNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  /**
+   * Read a property of the pool. The pool class belongs to the container, so it is accessed
+   * reflectively.
+   *
+   * @param getter the name of the getter
+   * @return the value or -1 if the pool does not provide it
+   */
+  private int readPoolProperty(String getter) {
+    if (dataSource == null) {
+      return -1;
+    }
+    try {
+      Method method = dataSource.getClass().getMethod(getter);
+      return ((Number) method.invoke(dataSource)).intValue();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      logger.debug("Connection pool does not provide " + getter);
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package de.samply.share.broker.jdbc;
+
+/**
+ * Gauges of the database connection pool.
+ */
+public interface ConnectionPoolMetricsMXBean {
+
+  int getActive();
+
+  int getIdle();
+
+  int getMaxTotal();
+
+  /**
+   * Get the number of threads currently waiting for a connection.
+   *
+   * @return the number of waiting threads
+   */
+  int getWaiters();
+
+  long getAcquireCount();
+
+  double getAcquireTimeSeconds();
+}
@@ -0,0 +1,121 @@
+package de.samply.share.broker.jdbc;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
+import de.samply.share.broker.utils.Config;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches values loaded from the database. The cache is cleared whenever a change of one of its
+ * topics is announced on the {@link InvalidationBus}, and entries expire after a configurable
+ * time in case a change notification is missed.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class InvalidatingCache<K, V> {
+
+  private static final String CFG_TTL_SECONDS = "cache.ttl.seconds";
+  private static final int DEFAULT_TTL_SECONDS = 60;
+
+  private final Cache<K, V> cache;
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Create a cache with the configured time to live, subscribed to the bus of this instance.
+   *
+   * @param maximumSize the maximum number of entries
+   * @param topics      the topics whose changes invalidate the cache
+   */
+  public InvalidatingCache(long maximumSize, Topic... topics) {
+    this(InvalidationBus.getInstance(),
+        Duration.ofSeconds(Config.getIntProperty(CFG_TTL_SECONDS, DEFAULT_TTL_SECONDS)),
+        maximumSize, Ticker.systemTicker(), topics);
+  }
+
+  InvalidatingCache(InvalidationBus bus, Duration timeToLive, long maximumSize, Ticker ticker,
+      Topic... topics) {
+    this.cache = CacheBuilder.newBuilder()
+        .expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS)
+        .maximumSize(maximumSize)
+        .ticker(ticker)
+        .build();
+    for (Topic topic : topics) {
+      bus.subscribe(topic, key -> invalidateAll());
+    }
+  }
+
+  /**
+   * Get a value, loading it if it is not cached. Null values are not cached.
+   * A value whose loading overlapped with an invalidation is returned but not cached, since it may
+   * have been read before the change.
+   *
+   * @param key    the key
+   * @param loader loads the value from the database
+   * @return the (possibly cached) value
+   */
+  public V get(K key, Function<K, V> loader) {
+    V value = cache.getIfPresent(key);
+    if (value != null) {
+      return value;
+    }
+    long loadGeneration = generation.get();
+    value = loader.apply(key);
+    if (value != null && generation.get() == loadGeneration) {
+      cache.put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Get a value only if it is cached, without loading it.
+   *
+   * @param key the key
+   * @return the cached value or null
+   */
+  public V getIfPresent(K key) {
+    return cache.getIfPresent(key);
+  }
+
+  /**
+   * Load many values at once, e.g. to warm the cache up before the first request. As with
+   * {@link #get(Object, Function)}, values loaded while the cache was invalidated are not cached.
+   *
+   * @param loader loads the values from the database
+   * @return the number of cached values
+   */
+  public int preload(Supplier<Map<K, V>> loader) {
+    long loadGeneration = generation.get();
+    Map<K, V> values = loader.get();
+    if (generation.get() != loadGeneration) {
+      return 0;
+    }
+    int cached = 0;
+    for (Map.Entry<K, V> entry : values.entrySet()) {
+      if (entry.getValue() != null) {
+        cache.put(entry.getKey(), entry.getValue());
+        cached++;
+      }
+    }
+    return cached;
+  }
+
+  /**
+   * Remove all entries.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+}
@@ -0,0 +1,292 @@
+package de.samply.share.broker.jdbc;
+
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.impl.DSL;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Broadcasts changes of cached data to all broker instances sharing the database, using
+ * PostgreSQL LISTEN/NOTIFY.
+ * Every instance listens on a dedicated connection. If that connection is lost, it is
+ * re-established and all subscribers are told that anything may have changed, as the
+ * notifications sent in the meantime are gone. Caches should nevertheless let their entries
+ * expire (see {@link InvalidatingCache}), in case a notification is missed unnoticed.
+ */
+public class InvalidationBus {
+
+  private static final Logger logger = LogManager.getLogger(InvalidationBus.class);
+
+  static final String CHANNEL = "samply_broker_invalidation";
+  private static final String SEPARATOR = "|";
+  private static final int POLL_TIMEOUT_MILLIS = 10000;
+  private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+  private static final long MAX_RECONNECT_DELAY_MILLIS = 60000;
+  private static final int PUBLISH_QUEUE_CAPACITY = 1000;
+
+  private static final InvalidationBus instance =
+      new InvalidationBus(UUID.randomUUID().toString());
+
+  /**
+   * The kinds of changes. The key of a change is the id of the changed entity.
+   */
+  public enum Topic {
+    /** A bank and its api key have been deleted. */
+    BANK,
+    /** The assignment of a bank to a site has changed. */
+    SITE,
+    /** An inquiry has been released, extended or expired. */
+    INQUIRY,
+    /** A bank has replied to an inquiry, the key is the id of the inquiry. */
+    REPLY,
+    /** A version report has been sent to icinga, the key is bank id and epoch millis. */
+    VERSION_REPORT
+  }
+
+  private final String nodeId;
+  private final Map<Topic, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+  private final ExecutorService publisher = new ThreadPoolExecutor(
+      1, 1, 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<>(PUBLISH_QUEUE_CAPACITY),
+      new ThreadFactoryBuilder().setNameFormat("invalidation-publisher").setDaemon(true).build());
+
+  private final AtomicLong publishedCount = new AtomicLong();
+  private final AtomicLong receivedCount = new AtomicLong();
+  private final AtomicLong reconnectCount = new AtomicLong();
+
+  private volatile boolean running;
+  private volatile Connection listenConnection;
+  private Thread listener;
+
+  InvalidationBus(String nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  public static InvalidationBus getInstance() {
+    return instance;
+  }
+
+  /**
+   * Register a subscriber for a topic.
+   *
+   * @param topic      the topic to subscribe to
+   * @param subscriber called with the key of every change, or with null if anything of the topic
+   *                   may have changed
+   */
+  public void subscribe(Topic topic, Consumer<String> subscriber) {
+    subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(subscriber);
+  }
+
+  /**
+   * Announce a change to the subscribers of this instance and of all other instances.
+   * Call this after the change has been committed, so no other instance reloads the old state.
+   * The other instances are notified asynchronously. A topic nobody has subscribed to is not
+   * announced at all, as all instances run the same code and subscribe to the same topics.
+   *
+   * @param topic the kind of change
+   * @param key   the id of the changed entity
+   */
+  public void publish(Topic topic, Object key) {
+    if (subscribers.getOrDefault(topic, Collections.emptyList()).isEmpty()) {
+      return;
+    }
+    String keyString = String.valueOf(key);
+    dispatch(topic, keyString);
+    if (!running) {
+      return;
+    }
+    String payload = nodeId + SEPARATOR + topic.name() + SEPARATOR + keyString;
+    try {
+      publisher.execute(() -> notifyOtherInstances(payload));
+    } catch (RejectedExecutionException e) {
+      logger.warn("Dropped change notification " + payload + ", other instances rely on expiry");
+    }
+  }
+
+  private void notifyOtherInstances(String payload) {
+    try (Connection connection = ResourceManager.getConnection()) {
+      ResourceManager.getDslContext(connection)
+          .select(DSL.field("pg_notify({0}, {1})", CHANNEL, payload))
+          .fetch();
+      publishedCount.incrementAndGet();
+    } catch (SQLException | RuntimeException e) {
+      logger.warn("Could not send change notification " + payload, e);
+    }
+  }
+
+  /**
+   * Start listening for the changes of other instances.
+   */
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    if (!ResourceManager.hasListenDataSource()) {
+      logger.warn("No pool jdbc/postgres/samply.share.broker.listen configured, listening on a "
+          + "connection of the main pool, which may close it as abandoned");
+    }
+    running = true;
+    listener = new Thread(this::listen, "invalidation-listener");
+    listener.setDaemon(true);
+    listener.start();
+  }
+
+  /**
+   * Stop listening and drop pending notifications.
+   */
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    publisher.shutdownNow();
+    closeQuietly(listenConnection);
+    try {
+      listener.join(POLL_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void listen() {
+    long reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+    boolean reconnecting = false;
+    while (running) {
+      try (Connection connection = ResourceManager.getListenConnection()) {
+        listenConnection = connection;
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + CHANNEL);
+        }
+        if (reconnecting) {
+          reconnectCount.incrementAndGet();
+          logger.info("Listening for changes again, invalidating all cached data");
+          dispatchAll();
+        }
+        reconnecting = true;
+        reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+          if (notifications == null || notifications.length == 0) {
+            // make sure a silently dropped connection is noticed
+            try (Statement statement = connection.createStatement()) {
+              statement.execute("SELECT 1");
+            }
+            continue;
+          }
+          for (PGNotification notification : notifications) {
+            receive(notification.getParameter());
+          }
+        }
+      } catch (SQLException | RuntimeException e) {
+        if (!running) {
+          break;
+        }
+        logger.warn("Lost the connection for change notifications, reconnecting in "
+            + reconnectDelay + " ms", e);
+        reconnecting = true;
+        if (!sleep(reconnectDelay)) {
+          break;
+        }
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+      } finally {
+        listenConnection = null;
+      }
+    }
+  }
+
+  /**
+   * Handle the payload of a notification. Notifications of this instance have already been
+   * dispatched when they were published and are skipped.
+   *
+   * @param payload the payload as sent by {@link #publish(Topic, Object)}
+   */
+  void receive(String payload) {
+    List<String> parts = Splitter.on(SEPARATOR).limit(3).splitToList(payload);
+    if (parts.size() != 3 || parts.get(0).equals(nodeId)) {
+      return;
+    }
+    Topic topic;
+    try {
+      topic = Topic.valueOf(parts.get(1));
+    } catch (IllegalArgumentException e) {
+      logger.debug("Ignoring change notification of unknown topic " + parts.get(1));
+      return;
+    }
+    receivedCount.incrementAndGet();
+    dispatch(topic, parts.get(2));
+  }
+
+  private void dispatch(Topic topic, String key) {
+    for (Consumer<String> subscriber : subscribers.getOrDefault(topic, Collections.emptyList())) {
+      try {
+        subscriber.accept(key);
+      } catch (RuntimeException e) {
+        logger.error("Subscriber failed to handle change " + topic + " " + key, e);
+      }
+    }
+  }
+
+  private void dispatchAll() {
+    for (Topic topic : Topic.values()) {
+      dispatch(topic, null);
+    }
+  }
+
+  private static boolean sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static void closeQuietly(Connection connection) {
+    if (connection == null) {
+      return;
+    }
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      logger.debug("Could not close the connection for change notifications", e);
+    }
+  }
+
+  public boolean isListening() {
+    return listenConnection != null;
+  }
+
+  public long getPublishedCount() {
+    return publishedCount.get();
+  }
+
+  public long getReceivedCount() {
+    return receivedCount.get();
+  }
+
+  public long getReconnectCount() {
+    return reconnectCount.get();
+  }
+}
@@ -0,0 +1,430 @@
+package de.samply.share.broker.jdbc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
+import de.samply.share.broker.utils.db.InquiryUtil;
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.Record4;
+
+/**
+ * Keeps the released, unexpired inquiries of every site in memory, so the inquiries polled by the
+ * bridgeheads are listed without a query. Every site has a sorted array of the ids of its open
+ * inquiries, which is replaced as a whole on a change, so readers need no lock.
+ *
+ * <p>The index is loaded from the database on startup and reloads an inquiry whenever its release,
+ * extension or expiry is announced on the {@link InvalidationBus}. An inquiry is dropped by a
+ * {@link TimerWheel} once it has expired. Inquiries of a project are only listed while the project
+ * is open for distribution. As the status of a project is changed without an announcement, the
+ * whole index is reloaded periodically.
+ *
+ * <p>{@link Listener Listeners} are told about every inquiry that is released, or released again
+ * with a new revision, once the index has been loaded.
+ */
+public class OpenInquiryIndex {
+
+  private static final Logger logger = LogManager.getLogger(OpenInquiryIndex.class);
+
+  private static final Duration TICK = Duration.ofMinutes(1);
+  private static final int WHEEL_SLOTS = 64;
+  private static final Duration RELOAD_INTERVAL = Duration.ofMinutes(5);
+  private static final int[] NO_IDS = new int[0];
+
+  private static final OpenInquiryIndex instance =
+      new OpenInquiryIndex(new DatabaseStore(), Clock.systemUTC());
+
+  private final Store store;
+  private final Clock clock;
+  private final Object loadLock = new Object();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  // guarded by this
+  private final TreeMap<Integer, OpenInquiry> inquiries = new TreeMap<>();
+  private final TimerWheel expiries;
+  private Map<Integer, Optional<OpenInquiry>> changesWhileLoading;
+
+  private volatile Snapshot snapshot;
+  private volatile ScheduledExecutorService timer;
+  private boolean subscribed;
+
+  OpenInquiryIndex(Store store, Clock clock) {
+    this.store = store;
+    this.clock = clock;
+    this.expiries = new TimerWheel(TICK, WHEEL_SLOTS, clock.instant());
+  }
+
+  public static OpenInquiryIndex getInstance() {
+    return instance;
+  }
+
+  /**
+   * Listen to the changes of inquiries and start dropping expired inquiries. The index itself is
+   * loaded by {@link #reloadAll()}, which is left to the warm-up.
+   */
+  public synchronized void start() {
+    if (timer != null) {
+      return;
+    }
+    if (!subscribed) {
+      InvalidationBus.getInstance().subscribe(Topic.INQUIRY, this::changed);
+      subscribed = true;
+    }
+    timer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("open-inquiry-index").setDaemon(true).build());
+    timer.scheduleAtFixedRate(this::expireDue, TICK.toMillis(), TICK.toMillis(),
+        TimeUnit.MILLISECONDS);
+    timer.scheduleWithFixedDelay(() -> {
+      try {
+        reloadAll();
+      } catch (RuntimeException e) {
+        logger.warn("Could not reload the open inquiries", e);
+      }
+    }, RELOAD_INTERVAL.toMillis(), RELOAD_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop dropping expired inquiries. The index is still read, but expired inquiries are then only
+   * hidden.
+   */
+  public synchronized void stop() {
+    if (timer != null) {
+      timer.shutdownNow();
+      timer = null;
+    }
+  }
+
+  /**
+   * Tell a listener about the inquiries released from now on.
+   *
+   * @param listener the listener, called on the thread that changed the index
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Check if the index has been loaded.
+   *
+   * @return false until the first load has finished
+   */
+  public boolean isLoaded() {
+    return snapshot != null;
+  }
+
+  /**
+   * Get the open inquiries of a site.
+   *
+   * @param siteId the id of the site
+   * @return the open inquiries ordered by id, or null if the index has not been loaded yet
+   */
+  public List<OpenInquiry> getOpenInquiries(int siteId) {
+    Snapshot currentSnapshot = snapshot;
+    if (currentSnapshot == null) {
+      return null;
+    }
+    int[] inquiryIds = currentSnapshot.inquiryIdsBySite.getOrDefault(siteId, NO_IDS);
+    Instant now = clock.instant();
+    List<OpenInquiry> openInquiries = new ArrayList<>(inquiryIds.length);
+    for (int inquiryId : inquiryIds) {
+      OpenInquiry inquiry = currentSnapshot.inquiries.get(inquiryId);
+      // hide the inquiries expired since the last tick
+      if (inquiry.getExpiresAt().isAfter(now)) {
+        openInquiries.add(inquiry);
+      }
+    }
+    return openInquiries;
+  }
+
+  /**
+   * Get the number of open inquiries.
+   *
+   * @return the number of inquiries in the index
+   */
+  public int size() {
+    Snapshot currentSnapshot = snapshot;
+    return currentSnapshot == null ? 0 : currentSnapshot.inquiries.size();
+  }
+
+  /**
+   * Load all open inquiries from the database. Changes announced while loading are applied on top,
+   * as they may have been read before the change.
+   */
+  public void reloadAll() {
+    List<OpenInquiry> released = new ArrayList<>();
+    synchronized (loadLock) {
+      synchronized (this) {
+        changesWhileLoading = new HashMap<>();
+      }
+      try {
+        List<OpenInquiry> loaded = store.fetchAll();
+        synchronized (this) {
+          Map<Integer, OpenInquiry> previous = snapshot == null ? null : new HashMap<>(inquiries);
+          inquiries.clear();
+          expiries.clear();
+          Instant now = clock.instant();
+          loaded.forEach(inquiry -> apply(inquiry.getId(), inquiry, now));
+          changesWhileLoading.forEach((inquiryId, inquiry) ->
+              apply(inquiryId, inquiry.orElse(null), now));
+          updateSnapshot();
+          if (previous != null) {
+            inquiries.values().stream()
+                .filter(inquiry -> isReleased(previous.get(inquiry.getId()), inquiry))
+                .forEach(released::add);
+          }
+        }
+        logger.debug(loaded.size() + " open inquiries loaded");
+      } finally {
+        synchronized (this) {
+          changesWhileLoading = null;
+        }
+      }
+    }
+    notifyReleased(released);
+  }
+
+  /**
+   * Load an inquiry from the database after it has been released, extended or expired.
+   *
+   * @param inquiryId the id of the inquiry
+   */
+  void reload(int inquiryId) {
+    OpenInquiry inquiry = store.fetch(inquiryId);
+    boolean released;
+    synchronized (this) {
+      if (changesWhileLoading != null) {
+        changesWhileLoading.put(inquiryId, Optional.ofNullable(inquiry));
+      }
+      if (snapshot == null) {
+        // not loaded yet, an index of single inquiries would hide the others
+        return;
+      }
+      OpenInquiry previous = inquiries.get(inquiryId);
+      apply(inquiryId, inquiry, clock.instant());
+      updateSnapshot();
+      released = inquiry != null && inquiries.get(inquiryId) == inquiry
+          && isReleased(previous, inquiry);
+    }
+    if (released) {
+      notifyReleased(Collections.singletonList(inquiry));
+    }
+  }
+
+  /**
+   * Drop the inquiries whose expiry has passed.
+   */
+  void expireDue() {
+    try {
+      synchronized (this) {
+        Instant now = clock.instant();
+        boolean changed = false;
+        for (Integer inquiryId : expiries.advance(now)) {
+          OpenInquiry inquiry = inquiries.get(inquiryId);
+          // an extended inquiry has been scheduled again
+          if (inquiry != null && !inquiry.getExpiresAt().isAfter(now)) {
+            inquiries.remove(inquiryId);
+            changed = true;
+          }
+        }
+        if (changed && snapshot != null) {
+          updateSnapshot();
+        }
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Could not drop the expired inquiries", e);
+    }
+  }
+
+  private void changed(String key) {
+    try {
+      if (key == null) {
+        reloadAll();
+      } else {
+        reload(Integer.parseInt(key));
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Could not reload inquiry " + key + ", it is reloaded with the next full reload",
+          e);
+    }
+  }
+
+  private static boolean isReleased(OpenInquiry previous, OpenInquiry inquiry) {
+    return previous == null || previous.getRevision() != inquiry.getRevision();
+  }
+
+  private void notifyReleased(List<OpenInquiry> released) {
+    for (OpenInquiry inquiry : released) {
+      for (Listener listener : listeners) {
+        try {
+          listener.released(inquiry);
+        } catch (RuntimeException e) {
+          logger.warn("Could not announce the release of inquiry " + inquiry.getId(), e);
+        }
+      }
+    }
+  }
+
+  private void apply(int inquiryId, OpenInquiry inquiry, Instant now) {
+    if (inquiry == null || !inquiry.getExpiresAt().isAfter(now)) {
+      inquiries.remove(inquiryId);
+      return;
+    }
+    inquiries.put(inquiryId, inquiry);
+    expiries.schedule(inquiryId, inquiry.getExpiresAt());
+  }
+
+  private void updateSnapshot() {
+    Map<Integer, Integer> counts = new HashMap<>();
+    for (OpenInquiry inquiry : inquiries.values()) {
+      for (int siteId : inquiry.siteIds) {
+        counts.merge(siteId, 1, Integer::sum);
+      }
+    }
+    Map<Integer, int[]> inquiryIdsBySite = new HashMap<>();
+    counts.forEach((siteId, count) -> inquiryIdsBySite.put(siteId, new int[count]));
+    // fill from the back, so the ids of every site are sorted
+    for (OpenInquiry inquiry : inquiries.descendingMap().values()) {
+      for (int siteId : inquiry.siteIds) {
+        int position = counts.merge(siteId, -1, Integer::sum);
+        inquiryIdsBySite.get(siteId)[position] = inquiry.getId();
+      }
+    }
+    snapshot = new Snapshot(inquiryIdsBySite, new HashMap<>(inquiries));
+  }
+
+  /**
+   * The ids of the open inquiries of every site, and the inquiries by id.
+   */
+  private static class Snapshot {
+
+    private final Map<Integer, int[]> inquiryIdsBySite;
+    private final Map<Integer, OpenInquiry> inquiries;
+
+    Snapshot(Map<Integer, int[]> inquiryIdsBySite, Map<Integer, OpenInquiry> inquiries) {
+      this.inquiryIdsBySite = inquiryIdsBySite;
+      this.inquiries = inquiries;
+    }
+  }
+
+  /**
+   * A released inquiry that has not expired yet.
+   */
+  public static class OpenInquiry {
+
+    private final int id;
+    private final int revision;
+    private final Instant expiresAt;
+    private final int[] siteIds;
+
+    OpenInquiry(int id, int revision, Instant expiresAt, int[] siteIds) {
+      this.id = id;
+      this.revision = revision;
+      this.expiresAt = expiresAt;
+      this.siteIds = siteIds;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public int getRevision() {
+      return revision;
+    }
+
+    /**
+     * Get the end of the inquiry.
+     *
+     * @return the time the inquiry expires
+     */
+    public Instant getExpiresAt() {
+      return expiresAt;
+    }
+
+    /**
+     * Get the sites the inquiry has been sent to.
+     *
+     * @return a copy of the ids of the sites
+     */
+    public int[] getSiteIds() {
+      return siteIds.clone();
+    }
+  }
+
+  /**
+   * Is told about the inquiries released while the broker is running.
+   */
+  public interface Listener {
+
+    /**
+     * Called once an inquiry has been released, or released again with a new revision.
+     *
+     * @param inquiry the open inquiry
+     */
+    void released(OpenInquiry inquiry);
+  }
+
+  /**
+   * Loads the open inquiries.
+   */
+  interface Store {
+
+    List<OpenInquiry> fetchAll();
+
+    OpenInquiry fetch(int inquiryId);
+  }
+
+  private static class DatabaseStore implements Store {
+
+    @Override
+    public List<OpenInquiry> fetchAll() {
+      return toOpenInquiries(InquiryUtil.fetchOpenInquirySites(null));
+    }
+
+    @Override
+    public OpenInquiry fetch(int inquiryId) {
+      List<OpenInquiry> inquiries = toOpenInquiries(InquiryUtil.fetchOpenInquirySites(inquiryId));
+      return inquiries.isEmpty() ? null : inquiries.get(0);
+    }
+
+    private static List<OpenInquiry> toOpenInquiries(
+        List<Record4<Integer, Integer, Date, Integer>> records) {
+      Map<Integer, List<Record4<Integer, Integer, Date, Integer>>> recordsByInquiry =
+          new LinkedHashMap<>();
+      for (Record4<Integer, Integer, Date, Integer> record : records) {
+        recordsByInquiry.computeIfAbsent(record.value1(), id -> new ArrayList<>()).add(record);
+      }
+      List<OpenInquiry> inquiries = new ArrayList<>(recordsByInquiry.size());
+      for (List<Record4<Integer, Integer, Date, Integer>> sites : recordsByInquiry.values()) {
+        Record4<Integer, Integer, Date, Integer> first = sites.get(0);
+        int[] siteIds = sites.stream().mapToInt(Record4::value4).toArray();
+        inquiries.add(new OpenInquiry(first.value1(), first.value2(), endOfDay(first.value3()),
+            siteIds));
+      }
+      return Collections.unmodifiableList(inquiries);
+    }
+
+    /**
+     * An inquiry is open until the end of the day it expires, as the database only compares the
+     * dates in the time zone of the broker.
+     */
+    private static Instant endOfDay(Date expires) {
+      return expires.toLocalDate().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package de.samply.share.broker.jdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
+import de.samply.share.broker.utils.Config;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decides whether a read may go to the read-only replica.
+ * The replica is used only while its replication lag is below the configured maximum. Reads of
+ * inquiries and replies that have been written within that time go to the primary, so a client
+ * sees its own writes. Writes of other broker instances are learned from the
+ * {@link InvalidationBus}.
+ */
+public class ReplicaLagGuard {
+
+  private static final Logger logger = LogManager.getLogger(ReplicaLagGuard.class);
+
+  private static final String CFG_MAX_LAG_SECONDS = "db.replica.max.lag.seconds";
+  private static final int DEFAULT_MAX_LAG_SECONDS = 10;
+  private static final Duration CHECK_INTERVAL = Duration.ofSeconds(5);
+  private static final int MAX_RECENT_WRITES = 10000;
+
+  /**
+   * Seconds the replica is behind the primary, 0 if it has replayed everything it received or if
+   * it is no replica at all.
+   */
+  static final String LAG_QUERY = "SELECT CASE"
+      + " WHEN NOT pg_is_in_recovery() THEN 0"
+      + " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+      + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+  private final LagProbe probe;
+  private final Duration maxLag;
+  private final Clock clock;
+  private final Cache<String, Instant> recentWrites;
+
+  private volatile Instant checkedAt;
+  private volatile Duration lag;
+  private volatile Instant everythingRecentUntil = Instant.MIN;
+
+  /**
+   * Create a guard with the configured maximum lag.
+   *
+   * @param probe measures the lag of the replica
+   */
+  public ReplicaLagGuard(LagProbe probe) {
+    this(probe,
+        Duration.ofSeconds(Config.getIntProperty(CFG_MAX_LAG_SECONDS, DEFAULT_MAX_LAG_SECONDS)),
+        Clock.systemUTC(), InvalidationBus.getInstance());
+  }
+
+  ReplicaLagGuard(LagProbe probe, Duration maxLag, Clock clock, InvalidationBus bus) {
+    this.probe = probe;
+    this.maxLag = maxLag;
+    this.clock = clock;
+    this.recentWrites = CacheBuilder.newBuilder()
+        .maximumSize(MAX_RECENT_WRITES)
+        .expireAfterWrite(maxLag.toNanos(), TimeUnit.NANOSECONDS)
+        .build();
+    bus.subscribe(Topic.INQUIRY, key -> recordWrite(Topic.INQUIRY, key));
+    bus.subscribe(Topic.REPLY, key -> recordWrite(Topic.REPLY, key));
+  }
+
+  private void recordWrite(Topic topic, String key) {
+    Instant now = clock.instant();
+    if (key == null) {
+      // writes may have been missed, so treat everything as written just now
+      everythingRecentUntil = now.plus(maxLag);
+    } else {
+      recentWrites.put(topic + ":" + key, now);
+    }
+  }
+
+  /**
+   * Check if an entity has been written so recently that the replica may not have it yet.
+   *
+   * @param topic the kind of entity
+   * @param key   the id of the entity
+   * @return true if the entity must be read from the primary
+   */
+  public boolean isRecentlyWritten(Topic topic, Object key) {
+    Instant now = clock.instant();
+    if (now.isBefore(everythingRecentUntil)) {
+      return true;
+    }
+    Instant writtenAt = recentWrites.getIfPresent(topic + ":" + key);
+    return writtenAt != null && now.isBefore(writtenAt.plus(maxLag));
+  }
+
+  /**
+   * Check if the replica is close enough to the primary. The lag is measured at most every five
+   * seconds, a failed measurement counts as too much lag.
+   *
+   * @return true if the replica may be read
+   */
+  public boolean isReplicaUsable() {
+    Instant now = clock.instant();
+    if (checkedAt == null || !now.isBefore(checkedAt.plus(CHECK_INTERVAL))) {
+      measure(now);
+    }
+    Duration current = lag;
+    return current != null && current.compareTo(maxLag) <= 0;
+  }
+
+  private synchronized void measure(Instant now) {
+    if (checkedAt != null && now.isBefore(checkedAt.plus(CHECK_INTERVAL))) {
+      return;
+    }
+    checkedAt = now;
+    try {
+      Duration measured = probe.measure();
+      if (lag != null && measured.compareTo(maxLag) > 0 && lag.compareTo(maxLag) <= 0) {
+        logger.warn("Replica is " + measured.getSeconds() + " s behind, reading from the primary");
+      }
+      lag = measured;
+    } catch (SQLException | RuntimeException e) {
+      logger.warn("Could not measure the replica lag, reading from the primary", e);
+      lag = null;
+    }
+  }
+
+  /**
+   * Get the last measured lag.
+   *
+   * @return the lag or null if it could not be measured
+   */
+  public Duration getLag() {
+    return lag;
+  }
+
+  /**
+   * Measures how far the replica is behind the primary.
+   */
+  @FunctionalInterface
+  public interface LagProbe {
+
+    Duration measure() throws SQLException;
+  }
+}
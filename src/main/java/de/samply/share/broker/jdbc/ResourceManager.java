@@ -1,16 +1,20 @@
 package de.samply.share.broker.jdbc;
 
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.ExecuteListenerProvider;
 import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
 import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 
 /**
  * The Class ResourceManager.
@@ -19,20 +23,48 @@ public class ResourceManager {
 
   private static final DataSource dataSource;
 
+  private static final DataSource readOnlyDataSource;
+
+  private static final DataSource listenDataSource;
+
+  private static final ReplicaLagGuard replicaLagGuard;
+
+  private static final ConnectionPoolMetrics poolMetrics;
+
   private static final String JAVA_COMP_ENV = "java:comp/env";
 
   private static final String JDBC_POSTGRES = "jdbc/postgres/samply.share.broker";
 
+  private static final String JDBC_POSTGRES_READ_ONLY =
+      "jdbc/postgres/samply.share.broker.readonly";
+
+  private static final String JDBC_POSTGRES_LISTEN = "jdbc/postgres/samply.share.broker.listen";
+
+  private static final ExecuteListenerProvider EXECUTE_LISTENER_PROVIDER =
+      new DefaultExecuteListenerProvider(new SqlTimingListener());
+
   static {
     try {
       Context initContext = new InitialContext();
       Context context = (Context) initContext.lookup(JAVA_COMP_ENV);
       dataSource = (DataSource) context.lookup(JDBC_POSTGRES);
+      poolMetrics = new ConnectionPoolMetrics(dataSource);
+      readOnlyDataSource = lookupOptional(context, JDBC_POSTGRES_READ_ONLY);
+      listenDataSource = lookupOptional(context, JDBC_POSTGRES_LISTEN);
+      replicaLagGuard = new ReplicaLagGuard(ResourceManager::measureReplicaLag);
     } catch (NamingException ex) {
       throw new ExceptionInInitializerError("dataSource not initialized");
     }
   }
 
+  private static DataSource lookupOptional(Context context, String name) {
+    try {
+      return (DataSource) context.lookup(name);
+    } catch (NamingException ex) {
+      return null;
+    }
+  }
+
   /**
    * Gets the DSL context.
    *
@@ -40,9 +72,20 @@ public class ResourceManager {
    * @return the DSL context
    */
   public static DSLContext getDslContext(Connection connection) {
-    Configuration configuration = new DefaultConfiguration().set(connection)
-        .set(SQLDialect.POSTGRES);
-    return DSL.using(configuration);
+    return DSL.using(getConfiguration(connection));
+  }
+
+  /**
+   * Gets the jOOQ configuration for a connection, e.g. to create DAOs.
+   * Every statement executed with it is timed by the {@link SqlTimingListener}.
+   *
+   * @param connection the sql connection
+   * @return the configuration
+   */
+  public static Configuration getConfiguration(Connection connection) {
+    return new DefaultConfiguration().set(connection)
+        .set(SQLDialect.POSTGRES)
+        .set(EXECUTE_LISTENER_PROVIDER);
   }
 
   /**
@@ -52,11 +95,92 @@ public class ResourceManager {
    * @throws SQLException the SQL exception
    */
   public static Connection getConnection() throws SQLException {
-    return dataSource.getConnection();
+    long start = System.nanoTime();
+    poolMetrics.beforeAcquire();
+    try {
+      return dataSource.getConnection();
+    } finally {
+      poolMetrics.afterAcquire(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Gets a connection for reads that tolerate a few seconds of staleness, e.g. polling and
+   * reporting. It is taken from the read-only replica if one is configured and close enough to the
+   * primary, otherwise from the primary.
+   *
+   * @return the connection, which must only be used for reading
+   * @throws SQLException the SQL exception
+   */
+  public static Connection getReadOnlyConnection() throws SQLException {
+    if (readOnlyDataSource == null || !replicaLagGuard.isReplicaUsable()) {
+      return getConnection();
+    }
+    try {
+      return readOnlyDataSource.getConnection();
+    } catch (SQLException e) {
+      // the replica is optional, the primary can serve the read as well
+      return getConnection();
+    }
+  }
+
+  /**
+   * Gets a connection to read an entity that may just have been written. If the entity has been
+   * written within the tolerated replica lag, the connection is taken from the primary, so the
+   * writer sees its own write.
+   *
+   * @param topic the kind of entity
+   * @param key   the id of the entity
+   * @return the connection, which must only be used for reading
+   * @throws SQLException the SQL exception
+   */
+  public static Connection getReadOnlyConnection(Topic topic, Object key) throws SQLException {
+    if (readOnlyDataSource != null && replicaLagGuard.isRecentlyWritten(topic, key)) {
+      return getConnection();
+    }
+    return getReadOnlyConnection();
+  }
+
+  /**
+   * Gets a connection to be held open for LISTEN. It is taken from a pool of its own if one is
+   * configured, as the main pool treats connections held longer than its removeAbandonedTimeout
+   * as abandoned.
+   *
+   * @return the connection
+   * @throws SQLException the SQL exception
+   */
+  public static Connection getListenConnection() throws SQLException {
+    if (listenDataSource == null) {
+      return getConnection();
+    }
+    return listenDataSource.getConnection();
+  }
+
+  private static Duration measureReplicaLag() throws SQLException {
+    try (Connection connection = readOnlyDataSource.getConnection()) {
+      Object seconds = getDslContext(connection).fetchValue(ReplicaLagGuard.LAG_QUERY);
+      return Duration.ofMillis(Math.round(((Number) seconds).doubleValue() * 1000));
+    }
   }
 
   public static DataSource getDataSource() {
     return dataSource;
   }
 
+  public static ConnectionPoolMetrics getPoolMetrics() {
+    return poolMetrics;
+  }
+
+  public static boolean hasListenDataSource() {
+    return listenDataSource != null;
+  }
+
+  public static boolean hasReadOnlyDataSource() {
+    return readOnlyDataSource != null;
+  }
+
+  public static ReplicaLagGuard getReplicaLagGuard() {
+    return replicaLagGuard;
+  }
+
 }
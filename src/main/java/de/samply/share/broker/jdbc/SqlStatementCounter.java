@@ -0,0 +1,39 @@
+package de.samply.share.broker.jdbc;
+
+/**
+ * Counts the SQL statements executed by the current thread between {@link #start()} and
+ * {@link #stop()}, e.g. while a rest request is processed.
+ */
+public final class SqlStatementCounter {
+
+  private static final ThreadLocal<int[]> count = new ThreadLocal<>();
+
+  // Prevent instantiation
+  private SqlStatementCounter() {
+  }
+
+  /**
+   * Start counting the statements of the current thread.
+   */
+  public static void start() {
+    count.set(new int[1]);
+  }
+
+  /**
+   * Stop counting the statements of the current thread.
+   *
+   * @return the number of statements executed since {@link #start()}
+   */
+  public static int stop() {
+    int[] current = count.get();
+    count.remove();
+    return current == null ? 0 : current[0];
+  }
+
+  static void increment() {
+    int[] current = count.get();
+    if (current != null) {
+      current[0]++;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package de.samply.share.broker.jdbc;
+
+import de.samply.share.broker.utils.Config;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+
+/**
+ * Times every statement executed by jOOQ, attributes it to the method of the broker that issued
+ * it and logs statements slower than the configured threshold.
+ */
+public class SqlTimingListener extends DefaultExecuteListener {
+
+  private static final Logger logger = LogManager.getLogger(SqlTimingListener.class);
+
+  private static final String CFG_SLOW_THRESHOLD_MILLIS = "sql.slow.threshold.millis";
+  private static final int DEFAULT_SLOW_THRESHOLD_MILLIS = 500;
+
+  private static final String START_NANOS = SqlTimingListener.class.getName() + ".start";
+  private static final String BROKER_PACKAGE = "de.samply.share.broker.";
+  private static final String JDBC_PACKAGE = "de.samply.share.broker.jdbc.";
+  private static final String GENERATED_PACKAGE = "de.samply.share.broker.model.db.";
+
+  private static final SqlTimings timings = new SqlTimings();
+  private static final long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+      Config.getIntProperty(CFG_SLOW_THRESHOLD_MILLIS, DEFAULT_SLOW_THRESHOLD_MILLIS));
+
+  public static SqlTimings getTimings() {
+    return timings;
+  }
+
+  @Override
+  public void executeStart(ExecuteContext ctx) {
+    SqlStatementCounter.increment();
+    ctx.data(START_NANOS, System.nanoTime());
+  }
+
+  @Override
+  public void executeEnd(ExecuteContext ctx) {
+    Object start = ctx.data(START_NANOS);
+    if (!(start instanceof Long)) {
+      return;
+    }
+    long nanos = System.nanoTime() - (Long) start;
+    String caller = findCaller(Thread.currentThread().getStackTrace());
+    timings.record(caller, ctx.sql(), nanos);
+
+    if (slowThresholdNanos > 0 && nanos >= slowThresholdNanos) {
+      logger.warn("Slow SQL (" + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms) in " + caller
+          + ": " + ctx.sql());
+    }
+  }
+
+  /**
+   * Find the first method of the broker on the stack, skipping this package and the generated
+   * jOOQ classes (DAOs).
+   *
+   * @param stackTrace the current stack trace
+   * @return the simple class name and method name, e.g. SiteUtil.fetchSiteById
+   */
+  static String findCaller(StackTraceElement[] stackTrace) {
+    for (StackTraceElement element : stackTrace) {
+      String className = element.getClassName();
+      if (className.startsWith(BROKER_PACKAGE)
+          && !className.startsWith(JDBC_PACKAGE)
+          && !className.startsWith(GENERATED_PACKAGE)) {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        int nested = simpleName.indexOf('$');
+        if (nested > 0) {
+          simpleName = simpleName.substring(0, nested);
+        }
+        return simpleName + "." + element.getMethodName();
+      }
+    }
+    return "unknown";
+  }
+}
@@ -0,0 +1,177 @@
+package de.samply.share.broker.jdbc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregates the execution times of SQL statements per calling method and statement shape.
+ */
+public class SqlTimings {
+
+  static final int MAX_ENTRIES = 2000;
+
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+  private static final String OTHER_STATEMENTS = "(other statements)";
+
+  private final Map<Key, Timing> timings = new ConcurrentHashMap<>();
+
+  /**
+   * Record the execution of a statement.
+   *
+   * @param caller the method that issued the statement, e.g. SiteUtil.fetchSiteById
+   * @param sql    the rendered statement, with bind variables as placeholders
+   * @param nanos  the execution time
+   */
+  public void record(String caller, String sql, long nanos) {
+    Key key = new Key(caller, shapeOf(sql));
+    Timing timing = timings.get(key);
+    if (timing == null) {
+      if (timings.size() >= MAX_ENTRIES) {
+        // keep the memory bounded if statements are generated dynamically
+        key = new Key(caller, OTHER_STATEMENTS);
+      }
+      timing = timings.computeIfAbsent(key, k -> new Timing(k.caller, k.shape));
+    }
+    timing.record(nanos);
+  }
+
+  /**
+   * Reduce a statement to its shape, so statements only differing in the length of parameter
+   * lists are counted together.
+   *
+   * @param sql the rendered statement
+   * @return the shape of the statement
+   */
+  static String shapeOf(String sql) {
+    return sql == null ? "" : PARAMETER_LIST.matcher(sql).replaceAll("?, ...");
+  }
+
+  /**
+   * Get the timings, ordered by total execution time.
+   *
+   * @param limit the maximum number of timings to return
+   * @return the timings which took the most time in total
+   */
+  public List<Timing> getTopTimings(int limit) {
+    List<Timing> sorted = new ArrayList<>(timings.values());
+    sorted.sort(Comparator.comparingLong(Timing::getTotalNanos).reversed());
+    return new ArrayList<>(sorted.subList(0, Math.min(limit, sorted.size())));
+  }
+
+  /**
+   * Get the timings summed up per calling method, ordered by total execution time.
+   *
+   * @return the timings per calling method
+   */
+  public List<Timing> getTimingsPerCaller() {
+    Map<String, Timing> perCaller = new ConcurrentHashMap<>();
+    for (Timing timing : timings.values()) {
+      perCaller.computeIfAbsent(timing.caller, caller -> new Timing(caller, null)).add(timing);
+    }
+    List<Timing> sorted = new ArrayList<>(perCaller.values());
+    sorted.sort(Comparator.comparingLong(Timing::getTotalNanos).reversed());
+    return sorted;
+  }
+
+  public void reset() {
+    timings.clear();
+  }
+
+  private static class Key {
+
+    private final String caller;
+    private final String shape;
+
+    Key(String caller, String shape) {
+      this.caller = caller;
+      this.shape = shape;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return caller.equals(key.caller) && shape.equals(key.shape);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * caller.hashCode() + shape.hashCode();
+    }
+  }
+
+  /**
+   * Execution count and times of the statements of one shape issued by one method.
+   */
+  public static class Timing {
+
+    private final String caller;
+    private final String sql;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    Timing(String caller, String sql) {
+      this.caller = caller;
+      this.sql = sql;
+    }
+
+    void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void add(Timing other) {
+      count.add(other.getCount());
+      totalNanos.add(other.getTotalNanos());
+      maxNanos.accumulateAndGet(other.maxNanos.get(), Math::max);
+    }
+
+    public String getCaller() {
+      return caller;
+    }
+
+    /**
+     * Get the shape of the statement.
+     *
+     * @return the statement or null for the timings summed up per method
+     */
+    public String getSql() {
+      return sql;
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    long getTotalNanos() {
+      return totalNanos.sum();
+    }
+
+    public double getTotalMillis() {
+      return getTotalNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMeanMillis() {
+      long executions = getCount();
+      return executions == 0 ? 0 : getTotalMillis() / executions;
+    }
+
+    public double getMaxMillis() {
+      return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package de.samply.share.broker.jdbc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A hashed timer wheel. A deadline is put into the slot of its tick, and advancing the wheel only
+ * looks at the slots of the ticks passed, so scheduling and expiring take constant time however
+ * many deadlines are pending. A deadline more than one round ahead stays in its slot until its
+ * round has come.
+ *
+ * <p>Not thread-safe.
+ */
+class TimerWheel {
+
+  private final long tickMillis;
+  private final List<List<Timeout>> slots;
+  private long currentTick;
+  private int size;
+
+  /**
+   * Create a wheel.
+   *
+   * @param tick      the resolution of the deadlines
+   * @param slotCount the number of slots, deadlines are spread over one round of them
+   * @param start     the current time
+   */
+  TimerWheel(Duration tick, int slotCount, Instant start) {
+    this.tickMillis = tick.toMillis();
+    this.slots = new ArrayList<>(slotCount);
+    for (int i = 0; i < slotCount; i++) {
+      slots.add(new ArrayList<>());
+    }
+    this.currentTick = Math.floorDiv(start.toEpochMilli(), tickMillis);
+  }
+
+  /**
+   * Schedule a deadline. A key may be scheduled several times, it is then returned once for each
+   * deadline.
+   *
+   * @param key      the key to return when the deadline has passed
+   * @param deadline the deadline, a deadline in the past is returned by the next tick
+   */
+  void schedule(int key, Instant deadline) {
+    // round up, so a deadline is never returned before it has passed
+    long deadlineTick = Math.max(-Math.floorDiv(-deadline.toEpochMilli(), tickMillis),
+        currentTick + 1);
+    slots.get(slot(deadlineTick)).add(new Timeout(key, deadlineTick));
+    size++;
+  }
+
+  /**
+   * Advance the wheel to the current time and remove the deadlines that have passed.
+   *
+   * @param now the current time
+   * @return the keys of the deadlines that have passed
+   */
+  List<Integer> advance(Instant now) {
+    List<Integer> due = new ArrayList<>();
+    long nowTick = Math.floorDiv(now.toEpochMilli(), tickMillis);
+    long ticks = Math.min(nowTick - currentTick, slots.size());
+    for (long tick = currentTick + 1; tick <= currentTick + ticks; tick++) {
+      Iterator<Timeout> timeouts = slots.get(slot(tick)).iterator();
+      while (timeouts.hasNext()) {
+        Timeout timeout = timeouts.next();
+        if (timeout.deadlineTick <= nowTick) {
+          due.add(timeout.key);
+          timeouts.remove();
+          size--;
+        }
+      }
+    }
+    currentTick = Math.max(currentTick, nowTick);
+    return due;
+  }
+
+  /**
+   * Remove all deadlines.
+   */
+  void clear() {
+    slots.forEach(List::clear);
+    size = 0;
+  }
+
+  /**
+   * Get the number of pending deadlines.
+   *
+   * @return the number of deadlines
+   */
+  int size() {
+    return size;
+  }
+
+  private int slot(long tick) {
+    return (int) Math.floorMod(tick, (long) slots.size());
+  }
+
+  private static class Timeout {
+
+    private final int key;
+    private final long deadlineTick;
+
+    Timeout(int key, long deadlineTick) {
+      this.key = key;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+}
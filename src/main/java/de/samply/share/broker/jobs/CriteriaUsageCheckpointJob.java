@@ -0,0 +1,18 @@
+package de.samply.share.broker.jobs;
+
+import de.samply.share.broker.statistics.CriteriaUsageSketches;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Adds the criteria usage counted since the last checkpoint to the counts in the database.
+ */
+@DisallowConcurrentExecution
+public class CriteriaUsageCheckpointJob implements Job {
+
+  @Override
+  public void execute(JobExecutionContext jobExecutionContext) {
+    CriteriaUsageSketches.getInstance().checkpoint();
+  }
+}
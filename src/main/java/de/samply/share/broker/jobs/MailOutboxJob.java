@@ -0,0 +1,19 @@
+package de.samply.share.broker.jobs;
+
+import de.samply.share.broker.control.MailDispatcher;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Queues the mails of the outbox that are due, e.g. because the queue was full when they were
+ * stored or the broker instance sending them has been stopped.
+ */
+@DisallowConcurrentExecution
+public class MailOutboxJob implements Job {
+
+  @Override
+  public void execute(JobExecutionContext jobExecutionContext) {
+    MailDispatcher.getInstance().submitDue();
+  }
+}
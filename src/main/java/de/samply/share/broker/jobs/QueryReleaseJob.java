@@ -0,0 +1,19 @@
+package de.samply.share.broker.jobs;
+
+import de.samply.share.broker.control.QueryReleaseExecutor;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Queues the query releases that are due, e.g. because the queue was full when they were sent
+ * or the broker instance releasing them has been stopped.
+ */
+@DisallowConcurrentExecution
+public class QueryReleaseJob implements Job {
+
+  @Override
+  public void execute(JobExecutionContext jobExecutionContext) {
+    QueryReleaseExecutor.getInstance().submitDue();
+  }
+}
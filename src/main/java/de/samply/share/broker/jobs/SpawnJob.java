@@ -1,14 +1,18 @@
 package de.samply.share.broker.jobs;
 
 import static org.quartz.CronScheduleBuilder.cronSchedule;
+import static org.quartz.DateBuilder.futureDate;
 import static org.quartz.JobBuilder.newJob;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
 import static org.quartz.TriggerBuilder.newTrigger;
 
 import org.quartz.CronTrigger;
+import org.quartz.DateBuilder.IntervalUnit;
 import org.quartz.JobDetail;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.SchedulerFactory;
+import org.quartz.SimpleTrigger;
 import org.quartz.impl.StdSchedulerFactory;
 
 public class SpawnJob {
@@ -34,4 +38,86 @@ public class SpawnJob {
       e.printStackTrace();
     }
   }
+
+  /**
+   * Spawn a job queueing the query releases that are due every 30 seconds.
+   */
+  public void spawnQueryReleaseJob() {
+    try {
+      Scheduler sched = new StdSchedulerFactory().getScheduler();
+      sched.start();
+      JobDetail job = newJob(QueryReleaseJob.class)
+          .withIdentity("queryReleaseJob", "group1")
+          .build();
+      SimpleTrigger trigger = newTrigger()
+          .withIdentity("queryReleaseTrigger", "group1")
+          .withSchedule(simpleSchedule().withIntervalInSeconds(30).repeatForever())
+          .build();
+      sched.scheduleJob(job, trigger);
+    } catch (SchedulerException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Spawn a job adding the query statistics missing in the daily aggregates, right away and then
+   * every 10 minutes.
+   */
+  public void spawnStatisticsRollupJob() {
+    try {
+      Scheduler sched = new StdSchedulerFactory().getScheduler();
+      sched.start();
+      JobDetail job = newJob(StatisticsRollupJob.class)
+          .withIdentity("statisticsRollupJob", "group1")
+          .build();
+      SimpleTrigger trigger = newTrigger()
+          .withIdentity("statisticsRollupTrigger", "group1")
+          .withSchedule(simpleSchedule().withIntervalInMinutes(10).repeatForever())
+          .build();
+      sched.scheduleJob(job, trigger);
+    } catch (SchedulerException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Spawn a job checkpointing the criteria usage every 5 minutes.
+   */
+  public void spawnCriteriaUsageCheckpointJob() {
+    try {
+      Scheduler sched = new StdSchedulerFactory().getScheduler();
+      sched.start();
+      JobDetail job = newJob(CriteriaUsageCheckpointJob.class)
+          .withIdentity("criteriaUsageCheckpointJob", "group1")
+          .build();
+      SimpleTrigger trigger = newTrigger()
+          .withIdentity("criteriaUsageCheckpointTrigger", "group1")
+          .startAt(futureDate(5, IntervalUnit.MINUTE))
+          .withSchedule(simpleSchedule().withIntervalInMinutes(5).repeatForever())
+          .build();
+      sched.scheduleJob(job, trigger);
+    } catch (SchedulerException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Spawn a job queueing the mails of the outbox that are due every minute.
+   */
+  public void spawnMailOutboxJob() {
+    try {
+      Scheduler sched = new StdSchedulerFactory().getScheduler();
+      sched.start();
+      JobDetail job = newJob(MailOutboxJob.class)
+          .withIdentity("mailOutboxJob", "group1")
+          .build();
+      SimpleTrigger trigger = newTrigger()
+          .withIdentity("mailOutboxTrigger", "group1")
+          .withSchedule(simpleSchedule().withIntervalInMinutes(1).repeatForever())
+          .build();
+      sched.scheduleJob(job, trigger);
+    } catch (SchedulerException e) {
+      e.printStackTrace();
+    }
+  }
 }
@@ -0,0 +1,33 @@
+package de.samply.share.broker.jobs;
+
+import de.samply.share.broker.utils.db.StatisticsRollupUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Adds the query statistics not yet in the daily aggregates, i.e. those written before the
+ * aggregates existed or by an older broker instance.
+ */
+@DisallowConcurrentExecution
+public class StatisticsRollupJob implements Job {
+
+  private static final Logger logger = LogManager.getLogger(StatisticsRollupJob.class);
+
+  private static final int CHUNK_SIZE = 1000;
+
+  @Override
+  public void execute(JobExecutionContext jobExecutionContext) {
+    int total = 0;
+    int added;
+    do {
+      added = StatisticsRollupUtil.rollUpPending(CHUNK_SIZE);
+      total += added;
+    } while (added == CHUNK_SIZE);
+    if (total > 0) {
+      logger.info("Added the statistics of " + total + " queries to the daily aggregates");
+    }
+  }
+}
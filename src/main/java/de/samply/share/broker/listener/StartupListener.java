@@ -3,7 +3,16 @@ package de.samply.share.broker.listener;
 import de.samply.common.http.HttpConnector;
 import de.samply.common.mdrclient.MdrClient;
 import de.samply.config.util.FileFinderUtil;
+import de.samply.share.broker.control.MailDispatcher;
+import de.samply.share.broker.control.QueryReleaseExecutor;
+import de.samply.share.broker.jdbc.InvalidationBus;
+import de.samply.share.broker.jdbc.OpenInquiryIndex;
 import de.samply.share.broker.jobs.SpawnJob;
+import de.samply.share.broker.monitoring.BrokerMetrics;
+import de.samply.share.broker.rest.InquiryChannel;
+import de.samply.share.broker.rest.InquiryChannelEndpoint;
+import de.samply.share.broker.statistics.CriteriaUsageSketches;
+import de.samply.share.broker.statistics.StatisticsRecorder;
 import de.samply.share.broker.utils.Config;
 import de.samply.share.broker.utils.db.Migration;
 import de.samply.share.common.utils.ProjectInfo;
@@ -40,6 +49,14 @@ public class StartupListener implements javax.servlet.ServletContextListener {
    */
   @Override
   public void contextDestroyed(ServletContextEvent sce) {
+    BrokerMetrics.getInstance().unregister();
+    QueryReleaseExecutor.getInstance().stop();
+    InquiryChannel.getInstance().stop();
+    MailDispatcher.getInstance().stop();
+    OpenInquiryIndex.getInstance().stop();
+    StatisticsRecorder.getInstance().stop();
+    CriteriaUsageSketches.getInstance().checkpoint();
+    InvalidationBus.getInstance().stop();
     // This manually deregisters JDBC driver, which prevents Tomcat 7 from complaining about memory
     // leaks to this class
     Enumeration<Driver> drivers = DriverManager.getDrivers();
@@ -82,12 +99,25 @@ public class StartupListener implements javax.servlet.ServletContextListener {
       e.printStackTrace();
     }
     Migration.doUpgrade();
+    InvalidationBus.getInstance().start();
     String mdrUrl = c.getProperty("mdr.url");
     HttpConnector httpConnector = Proxy.getHttpConnector();
     MdrClient mdrClient = new MdrClient(mdrUrl, httpConnector.getJerseyClient(mdrUrl));
     MdrContext.getMdrContext().init(mdrClient);
     SpawnJob spawnJob = new SpawnJob();
     spawnJob.spawnStatisticJob();
+    spawnJob.spawnStatisticsRollupJob();
+    CriteriaUsageSketches.getInstance().load();
+    spawnJob.spawnCriteriaUsageCheckpointJob();
+    StatisticsRecorder.getInstance().start();
+    QueryReleaseExecutor.getInstance().start();
+    spawnJob.spawnQueryReleaseJob();
+    MailDispatcher.getInstance().start();
+    spawnJob.spawnMailOutboxJob();
+    OpenInquiryIndex.getInstance().start();
+    InquiryChannelEndpoint.deploy(sce.getServletContext());
+    BrokerMetrics.getInstance().register();
+    WarmUp.getInstance().start();
   }
 
 }
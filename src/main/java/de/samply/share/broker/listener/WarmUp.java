@@ -0,0 +1,220 @@
+package de.samply.share.broker.listener;
+
+import de.samply.share.broker.jdbc.OpenInquiryIndex;
+import de.samply.share.broker.model.DefaultInquiryCriteriaTranslatable;
+import de.samply.share.broker.utils.JaxbContexts;
+import de.samply.share.broker.utils.MailUtils;
+import de.samply.share.broker.utils.Utils;
+import de.samply.share.broker.utils.db.BankUtil;
+import de.samply.share.essentialquery.EssentialSimpleFieldDto;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import de.samply.share.essentialquery.EssentialSimpleValueDto;
+import de.samply.share.essentialquery.EssentialValueType;
+import de.samply.share.model.common.Contact;
+import de.samply.share.model.common.Info;
+import de.samply.share.model.common.ObjectFactory;
+import de.samply.share.model.common.inquiry.InquiriesIdList;
+import de.samply.share.query.enums.SimpleValueCondition;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Prepares everything the first requests would otherwise create lazily: the JAXB contexts, the
+ * CQL config and translators, the mail templates, the caches of sites and banks and the index of
+ * open inquiries. The broker is ready for traffic only after the warm-up, see
+ * {@link de.samply.share.broker.rest.HealthCheck}.
+ *
+ * <p>The warm-up runs in the background, so the start of the application is not delayed. A
+ * failing step is logged and does not keep the broker from getting ready, as the request needing
+ * it would fail the same way.
+ */
+public class WarmUp {
+
+  private static final Logger logger = LogManager.getLogger(WarmUp.class);
+
+  private static final String SAMPLE_URN = "urn:mdr16:dataelement:23:1";
+
+  private static final WarmUp instance = new WarmUp(createSteps());
+
+  private final Map<String, Step> steps;
+
+  private volatile boolean started;
+  private volatile boolean done;
+  private volatile long durationMillis;
+  private final List<StepResult> results = new ArrayList<>();
+
+  WarmUp(Map<String, Step> steps) {
+    this.steps = steps;
+  }
+
+  public static WarmUp getInstance() {
+    return instance;
+  }
+
+  private static Map<String, Step> createSteps() {
+    Map<String, Step> steps = new LinkedHashMap<>();
+    steps.put("jaxb", () -> {
+      JaxbContexts.get(ObjectFactory.class);
+      JaxbContexts.get(InquiriesIdList.class);
+      JaxbContexts.get(Contact.class);
+      JaxbContexts.get(Info.class);
+      JaxbContexts.get(de.samply.share.model.ccp.Query.class);
+    });
+    steps.put("translation",
+        () -> new DefaultInquiryCriteriaTranslatable("{}").translate(createSampleQuery()));
+    steps.put("mailTemplates", MailUtils::getSmtpMailSender);
+    steps.put("sites", () -> logger.debug(BankUtil.preloadSites() + " sites preloaded"));
+    steps.put("bankIds", () -> logger.debug(Utils.preloadBankIds() + " bank ids preloaded"));
+    steps.put("openInquiries", OpenInquiryIndex.getInstance()::reloadAll);
+    return steps;
+  }
+
+  private static EssentialSimpleQueryDto createSampleQuery() {
+    EssentialSimpleValueDto valueDto = new EssentialSimpleValueDto();
+    valueDto.setCondition(SimpleValueCondition.EQUALS);
+    valueDto.setValue("female");
+    EssentialSimpleFieldDto fieldDto = new EssentialSimpleFieldDto();
+    fieldDto.setUrn(SAMPLE_URN);
+    fieldDto.setValueType(EssentialValueType.PERMITTEDVALUE);
+    fieldDto.getValueDtos().add(valueDto);
+    EssentialSimpleQueryDto queryDto = new EssentialSimpleQueryDto();
+    queryDto.getFieldDtos().add(fieldDto);
+    return queryDto;
+  }
+
+  /**
+   * Start the warm-up in the background.
+   */
+  public synchronized void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+    Thread thread = new Thread(this::run, "warm-up");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Run all steps, each one even if another one failed.
+   */
+  void run() {
+    long start = System.nanoTime();
+    for (Map.Entry<String, Step> step : steps.entrySet()) {
+      long stepStart = System.nanoTime();
+      String error = null;
+      try {
+        step.getValue().run();
+      } catch (Exception e) {
+        logger.warn("Warm-up step " + step.getKey() + " failed", e);
+        error = e.toString();
+      }
+      long stepMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart);
+      synchronized (results) {
+        results.add(new StepResult(step.getKey(), stepMillis, error));
+      }
+    }
+    durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    done = true;
+    logger.info("Warm-up finished in " + durationMillis + " ms");
+  }
+
+  /**
+   * Check if the warm-up is finished, so the broker can take traffic.
+   *
+   * @return true if all steps have run
+   */
+  public boolean isReady() {
+    return done;
+  }
+
+  /**
+   * Get the duration of the warm-up.
+   *
+   * @return the duration in milliseconds, 0 while the warm-up is running
+   */
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  /**
+   * Get the state of the warm-up and the duration of the steps run so far.
+   *
+   * @return the report
+   */
+  public Report getReport() {
+    synchronized (results) {
+      return new Report(done, durationMillis, new ArrayList<>(results));
+    }
+  }
+
+  /**
+   * A step of the warm-up.
+   */
+  @FunctionalInterface
+  interface Step {
+
+    void run() throws Exception;
+  }
+
+  /**
+   * The duration of a step, and why it failed.
+   */
+  public static class StepResult {
+
+    private final String name;
+    private final long durationMillis;
+    private final String error;
+
+    StepResult(String name, long durationMillis, String error) {
+      this.name = name;
+      this.durationMillis = durationMillis;
+      this.error = error;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getDurationMillis() {
+      return durationMillis;
+    }
+
+    public String getError() {
+      return error;
+    }
+  }
+
+  /**
+   * The state of the warm-up, as reported by the readiness check.
+   */
+  public static class Report {
+
+    private final boolean ready;
+    private final long durationMillis;
+    private final List<StepResult> steps;
+
+    Report(boolean ready, long durationMillis, List<StepResult> steps) {
+      this.ready = ready;
+      this.durationMillis = durationMillis;
+      this.steps = steps;
+    }
+
+    public boolean isReady() {
+      return ready;
+    }
+
+    public long getDurationMillis() {
+      return durationMillis;
+    }
+
+    public List<StepResult> getSteps() {
+      return steps;
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package de.samply.share.broker.model;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import de.samply.share.broker.utils.Config;
+import de.samply.share.essentialquery.EssentialSimpleFieldDto;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import de.samply.share.essentialquery.EssentialSimpleValueDto;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches the translations (CQL for Patient and Specimen, share XML) of essential simple queries.
+ * Queries are keyed by a canonical form which does not depend on the order of fields or values.
+ */
+public class CriteriaTranslationCache {
+
+  private static final String CFG_MAXIMUM_SIZE = "translation.cache.size";
+  private static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+  private static final CriteriaTranslationCache instance =
+      new CriteriaTranslationCache(Config.getIntProperty(CFG_MAXIMUM_SIZE, DEFAULT_MAXIMUM_SIZE));
+
+  private final Cache<String, Translation> cache;
+  private final AtomicLong translationNanos = new AtomicLong();
+  private final AtomicLong savedNanos = new AtomicLong();
+
+  CriteriaTranslationCache(long maximumSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  public static CriteriaTranslationCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Get the translation of a query, translating it only if it is not cached yet. Concurrent
+   * requests for the same query wait for the first translation instead of translating it again.
+   * A canonically ordered copy of the query is translated, so equivalent queries always get the
+   * same translation. The query itself is left unchanged.
+   *
+   * @param queryDto   the query to translate
+   * @param translator the translation to use on a cache miss
+   * @return the (possibly cached) translation
+   */
+  public Translation get(EssentialSimpleQueryDto queryDto,
+      Function<EssentialSimpleQueryDto, Translation> translator) {
+    EssentialSimpleQueryDto canonicalDto = canonicalCopy(queryDto);
+    String key = keyOf(canonicalDto);
+
+    AtomicBoolean translated = new AtomicBoolean();
+    Translation translation;
+    try {
+      translation = cache.get(key, () -> {
+        translated.set(true);
+        return translate(canonicalDto, translator);
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+
+    if (!translated.get()) {
+      savedNanos.addAndGet(translation.getTranslationNanos());
+    }
+    return translation;
+  }
+
+  private Translation translate(EssentialSimpleQueryDto queryDto,
+      Function<EssentialSimpleQueryDto, Translation> translator) {
+    long start = System.nanoTime();
+    Translation created = translator.apply(queryDto);
+    long nanos = System.nanoTime() - start;
+    translationNanos.addAndGet(nanos);
+    return new Translation(created.getPatientCql(), created.getSpecimenCql(),
+        created.getShareXml(), nanos);
+  }
+
+  /**
+   * Compute the cache key of a query, which does not depend on the order of its fields or values.
+   *
+   * @param queryDto the query, which is left unchanged
+   * @return the SHA-256 hash of the canonical form of the query
+   */
+  static String canonicalize(EssentialSimpleQueryDto queryDto) {
+    return keyOf(canonicalCopy(queryDto));
+  }
+
+  /**
+   * Copy a query with its fields and values sorted into a canonical order. The value objects are
+   * shared with the original query, the lists holding them are not.
+   */
+  private static EssentialSimpleQueryDto canonicalCopy(EssentialSimpleQueryDto queryDto) {
+    List<EssentialSimpleFieldDto> fieldDtos = new ArrayList<>();
+    for (EssentialSimpleFieldDto fieldDto : queryDto.getFieldDtos()) {
+      List<EssentialSimpleValueDto> valueDtos = new ArrayList<>(fieldDto.getValueDtos());
+      valueDtos.sort(Comparator.comparing(CriteriaTranslationCache::canonicalValue));
+      EssentialSimpleFieldDto copy = new EssentialSimpleFieldDto();
+      copy.setUrn(fieldDto.getUrn());
+      copy.setValueType(fieldDto.getValueType());
+      copy.setValueDtos(valueDtos);
+      fieldDtos.add(copy);
+    }
+    fieldDtos.sort(Comparator.comparing(CriteriaTranslationCache::canonicalField));
+
+    EssentialSimpleQueryDto copy = new EssentialSimpleQueryDto();
+    copy.setFieldDtos(fieldDtos);
+    return copy;
+  }
+
+  private static String keyOf(EssentialSimpleQueryDto canonicalDto) {
+    List<String> canonicalFields = new ArrayList<>();
+    for (EssentialSimpleFieldDto fieldDto : canonicalDto.getFieldDtos()) {
+      canonicalFields.add(canonicalField(fieldDto));
+    }
+    return Hashing.sha256()
+        .hashString(String.join("\n", canonicalFields), StandardCharsets.UTF_8)
+        .toString();
+  }
+
+  private static String canonicalField(EssentialSimpleFieldDto fieldDto) {
+    StringBuilder builder = new StringBuilder();
+    appendPart(builder, fieldDto.getUrn());
+    builder.append('|');
+    appendPart(builder, fieldDto.getValueType());
+    for (EssentialSimpleValueDto valueDto : fieldDto.getValueDtos()) {
+      builder.append('|').append(canonicalValue(valueDto));
+    }
+    return builder.toString();
+  }
+
+  private static String canonicalValue(EssentialSimpleValueDto valueDto) {
+    StringBuilder builder = new StringBuilder();
+    appendPart(builder, valueDto.getCondition());
+    builder.append(':');
+    appendPart(builder, valueDto.getValue());
+    builder.append(':');
+    appendPart(builder, valueDto.getMaxValue());
+    return builder.toString();
+  }
+
+  /**
+   * Append a part of the canonical form prefixed with its length, so separators within a value
+   * cannot make two different queries look the same. A missing part is written as a dash.
+   */
+  private static void appendPart(StringBuilder builder, Object part) {
+    if (part == null) {
+      builder.append('-');
+      return;
+    }
+    String text = part.toString();
+    builder.append(text.length()).append('#').append(text);
+  }
+
+  /**
+   * Get the statistics of this cache.
+   *
+   * @return the current statistics
+   */
+  public Statistics getStatistics() {
+    CacheStats stats = cache.stats();
+    Statistics statistics = new Statistics();
+    statistics.size = cache.size();
+    statistics.hitCount = stats.hitCount();
+    statistics.missCount = stats.missCount();
+    statistics.hitRate = stats.hitRate();
+    statistics.translationMillis = TimeUnit.NANOSECONDS.toMillis(translationNanos.get());
+    statistics.savedMillis = TimeUnit.NANOSECONDS.toMillis(savedNanos.get());
+    return statistics;
+  }
+
+  /**
+   * The translations of one query.
+   */
+  public static class Translation {
+
+    private final String patientCql;
+    private final String specimenCql;
+    private final String shareXml;
+    private final long translationNanos;
+
+    public Translation(String patientCql, String specimenCql, String shareXml) {
+      this(patientCql, specimenCql, shareXml, 0);
+    }
+
+    private Translation(String patientCql, String specimenCql, String shareXml,
+        long translationNanos) {
+      this.patientCql = patientCql;
+      this.specimenCql = specimenCql;
+      this.shareXml = shareXml;
+      this.translationNanos = translationNanos;
+    }
+
+    public String getPatientCql() {
+      return patientCql;
+    }
+
+    public String getSpecimenCql() {
+      return specimenCql;
+    }
+
+    /**
+     * Get the share XML of the query.
+     *
+     * @return the marshalled query or null if marshalling failed
+     */
+    public String getShareXml() {
+      return shareXml;
+    }
+
+    long getTranslationNanos() {
+      return translationNanos;
+    }
+  }
+
+  /**
+   * Hit rate and saved translation time of the cache.
+   */
+  public static class Statistics {
+
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long translationMillis;
+    private long savedMillis;
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    public long getMissCount() {
+      return missCount;
+    }
+
+    public double getHitRate() {
+      return hitRate;
+    }
+
+    public long getTranslationMillis() {
+      return translationMillis;
+    }
+
+    public long getSavedMillis() {
+      return savedMillis;
+    }
+  }
+}
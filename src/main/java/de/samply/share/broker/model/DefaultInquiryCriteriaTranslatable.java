@@ -8,8 +8,9 @@ import static javax.xml.bind.Marshaller.JAXB_FRAGMENT;
 import com.google.gson.Gson;
 import de.samply.share.broker.model.db.tables.pojos.Inquiry;
 import de.samply.share.broker.model.db.tables.pojos.InquiryCriteria;
-import de.samply.share.broker.statistics.StatisticsHandler;
+import de.samply.share.broker.statistics.StatisticsRecorder;
 import de.samply.share.broker.utils.EssentialSimpleQueryDto2ShareXmlTransformer;
+import de.samply.share.broker.utils.JaxbContexts;
 import de.samply.share.broker.utils.cql.EssentialSimpleQueryDto2CqlTransformer;
 import de.samply.share.essentialquery.EssentialSimpleFieldDto;
 import de.samply.share.essentialquery.EssentialSimpleQueryDto;
@@ -58,19 +59,22 @@ public class DefaultInquiryCriteriaTranslatable implements
    */
   public static Optional<InquiryCriteria> createInquiryCriteriaTypeQuery(Query query,
       Inquiry inquiry) {
-    return marshallQuery(query).map(criteria -> {
-      InquiryCriteria inquiryCriteria = new InquiryCriteria();
-      inquiryCriteria.setCriteria(criteria);
-      inquiryCriteria.setInquiryId(inquiry.getId());
-      inquiryCriteria.setType(IC_QUERY);
-      inquiryCriteria.setEntityType(ENTITY_TYPE_FOR_QUERY);
-      return inquiryCriteria;
-    });
+    return marshallQuery(query).map(criteria -> createInquiryCriteriaTypeQuery(criteria, inquiry));
+  }
+
+  private static InquiryCriteria createInquiryCriteriaTypeQuery(String criteria,
+      Inquiry inquiry) {
+    InquiryCriteria inquiryCriteria = new InquiryCriteria();
+    inquiryCriteria.setCriteria(criteria);
+    inquiryCriteria.setInquiryId(inquiry.getId());
+    inquiryCriteria.setType(IC_QUERY);
+    inquiryCriteria.setEntityType(ENTITY_TYPE_FOR_QUERY);
+    return inquiryCriteria;
   }
 
   private static Optional<String> marshallQuery(Query query) {
     try {
-      JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+      JAXBContext jaxbContext = JaxbContexts.get(ObjectFactory.class);
       StringWriter stringWriter = new StringWriter();
       Marshaller marshaller = jaxbContext.createMarshaller();
       marshaller.setProperty(JAXB_FRAGMENT, TRUE);
@@ -89,6 +93,26 @@ public class DefaultInquiryCriteriaTranslatable implements
     return createInquiryCriteria(essentialSimpleQueryDto, inquiry);
   }
 
+  /**
+   * Get a key which is equal for all queries with the same fields and values, regardless of their
+   * order.
+   *
+   * @return the canonical key of the query
+   */
+  public String getCanonicalKey() {
+    return CriteriaTranslationCache.canonicalize(jsonString2EssentialDto(query));
+  }
+
+  /**
+   * Save the statistics of the query for an inquiry without creating any criteria. Used if the
+   * query is attached to an inquiry that has already been released.
+   *
+   * @param inquiryId the id of the inquiry the query is attached to
+   */
+  public void saveStatistics(int inquiryId) {
+    createAndSaveStatistics(jsonString2EssentialDto(query), inquiryId);
+  }
+
   private EssentialSimpleQueryDto jsonString2EssentialDto(String simpleQueryDtoJson) {
     EssentialSimpleQueryDto queryDto = new EssentialSimpleQueryDto();
 
@@ -130,27 +154,40 @@ public class DefaultInquiryCriteriaTranslatable implements
 
   private void createAndSaveStatistics(EssentialSimpleQueryDto essentialSimpleQueryDto,
       Integer inquiryId) {
-    StatisticsHandler statisticsHandler = new StatisticsHandler();
-    statisticsHandler.save(essentialSimpleQueryDto, inquiryId);
+    StatisticsRecorder.getInstance().record(essentialSimpleQueryDto, inquiryId);
   }
 
   private List<InquiryCriteria> createInquiryCriteria(
       EssentialSimpleQueryDto essentialSimpleQueryDto, Inquiry inquiry) {
-    List<InquiryCriteria> inquiryCriteria = new ArrayList<>(this.createInquiryCriteriaTypeCql(
-        essentialSimpleQueryDto, inquiry));
+    CriteriaTranslationCache.Translation translation = CriteriaTranslationCache.getInstance()
+        .get(essentialSimpleQueryDto, this::translate);
+
+    List<InquiryCriteria> inquiryCriteria = new ArrayList<>();
+    inquiryCriteria.add(createInquiryCriteriaTypeCql(translation.getPatientCql(), inquiry,
+        ENTITY_TYPE_FOR_CQL_PATIENT));
+    inquiryCriteria.add(createInquiryCriteriaTypeCql(translation.getSpecimenCql(), inquiry,
+        ENTITY_TYPE_FOR_CQL_SPECIMEN));
 
-    createInquiryCriteriaTypeEssentialSimpleQueryDto(essentialSimpleQueryDto, inquiry)
-        .ifPresent(inquiryCriteria::add);
+    if (translation.getShareXml() != null) {
+      inquiryCriteria.add(createInquiryCriteriaTypeQuery(translation.getShareXml(), inquiry));
+    }
 
     return inquiryCriteria;
   }
 
-  private List<InquiryCriteria> createInquiryCriteriaTypeCql(
-      EssentialSimpleQueryDto essentialSimpleQueryDto, Inquiry inquiry) {
-    List<InquiryCriteria> inquiryCriteria = new ArrayList<>();
-    inquiryCriteria.add(createInquiryCriteriaTypeCqlPatient(essentialSimpleQueryDto, inquiry));
-    inquiryCriteria.add(createInquiryCriteriaTypeCqlSpecimen(essentialSimpleQueryDto, inquiry));
-    return inquiryCriteria;
+  /**
+   * Translate a query into CQL and share XML, without caching the translation. Used on a cache
+   * miss and to warm the translators up.
+   *
+   * @param essentialSimpleQueryDto the query to translate
+   * @return the translation
+   */
+  public CriteriaTranslationCache.Translation translate(
+      EssentialSimpleQueryDto essentialSimpleQueryDto) {
+    return new CriteriaTranslationCache.Translation(
+        createCqlPatient(essentialSimpleQueryDto),
+        createCqlSpecimen(essentialSimpleQueryDto),
+        marshallQuery(createShareXmlQuery(essentialSimpleQueryDto)).orElse(null));
   }
 
   private InquiryCriteria createInquiryCriteriaTypeCql(String cql, Inquiry inquiry,
@@ -163,20 +200,6 @@ public class DefaultInquiryCriteriaTranslatable implements
     return inquiryCriteria;
   }
 
-  private InquiryCriteria createInquiryCriteriaTypeCqlPatient(
-      EssentialSimpleQueryDto essentialSimpleQueryDto, Inquiry inquiry) {
-    String cql = createCqlPatient(essentialSimpleQueryDto);
-
-    return createInquiryCriteriaTypeCql(cql, inquiry, ENTITY_TYPE_FOR_CQL_PATIENT);
-  }
-
-  private InquiryCriteria createInquiryCriteriaTypeCqlSpecimen(
-      EssentialSimpleQueryDto essentialSimpleQueryDto, Inquiry inquiry) {
-    String cql = createCqlSpecimen(essentialSimpleQueryDto);
-
-    return createInquiryCriteriaTypeCql(cql, inquiry, ENTITY_TYPE_FOR_CQL_SPECIMEN);
-  }
-
   private String createCqlPatient(EssentialSimpleQueryDto essentialSimpleQueryDto) {
     return createCql(essentialSimpleQueryDto, ENTITY_TYPE_FOR_CQL_PATIENT);
   }
@@ -190,8 +213,7 @@ public class DefaultInquiryCriteriaTranslatable implements
         .toQuery(essentialSimpleQueryDto, entityType);
   }
 
-  private Optional<InquiryCriteria> createInquiryCriteriaTypeEssentialSimpleQueryDto(
-      EssentialSimpleQueryDto essentialSimpleQueryDto, Inquiry inquiry) {
+  private Query createShareXmlQuery(EssentialSimpleQueryDto essentialSimpleQueryDto) {
     Query query;
 
     if (CollectionUtils.isEmpty(essentialSimpleQueryDto.getFieldDtos())) {
@@ -204,6 +226,6 @@ public class DefaultInquiryCriteriaTranslatable implements
       query.setWhere(where);
     }
 
-    return createInquiryCriteriaTypeQuery(query, inquiry);
+    return query;
   }
 }
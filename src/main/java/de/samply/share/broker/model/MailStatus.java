@@ -0,0 +1,24 @@
+package de.samply.share.broker.model;
+
+/**
+ * The states of a mail in the outbox.
+ */
+public enum MailStatus {
+
+  /**
+   * Stored, waiting to be sent (again).
+   */
+  PENDING,
+  /**
+   * Being sent by a worker.
+   */
+  SENDING,
+  /**
+   * Accepted by the mail server.
+   */
+  SENT,
+  /**
+   * Given up after the maximum number of attempts.
+   */
+  FAILED
+}
@@ -0,0 +1,24 @@
+package de.samply.share.broker.model;
+
+/**
+ * The states of a query sent by the UI on its way to the sites.
+ */
+public enum QueryReleaseStatus {
+
+  /**
+   * Stored, waiting to be released (again).
+   */
+  PENDING,
+  /**
+   * Being translated and released by a worker.
+   */
+  RUNNING,
+  /**
+   * Released to the sites, the inquiry id is known.
+   */
+  RELEASED,
+  /**
+   * Given up after the maximum number of attempts.
+   */
+  FAILED
+}
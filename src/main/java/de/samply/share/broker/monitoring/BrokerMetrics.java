@@ -0,0 +1,339 @@
+package de.samply.share.broker.monitoring;
+
+import de.samply.share.broker.control.MailDispatcher;
+import de.samply.share.broker.control.QueryReleaseExecutor;
+import de.samply.share.broker.control.SearchController;
+import de.samply.share.broker.filter.RateLimitClass;
+import de.samply.share.broker.filter.RateLimiter;
+import de.samply.share.broker.jdbc.ConnectionPoolMetricsMXBean;
+import de.samply.share.broker.jdbc.OpenInquiryIndex;
+import de.samply.share.broker.jdbc.ResourceManager;
+import de.samply.share.broker.jdbc.SqlTimingListener;
+import de.samply.share.broker.jdbc.SqlTimings;
+import de.samply.share.broker.listener.WarmUp;
+import de.samply.share.broker.model.CriteriaTranslationCache;
+import de.samply.share.broker.rest.InquiryChannel;
+import de.samply.share.broker.statistics.StatisticsRecorder;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects the metrics of the broker (rest endpoints, connection pool and business events) and
+ * exposes them via JMX and in the Prometheus text format.
+ */
+public class BrokerMetrics implements BrokerMetricsMXBean {
+
+  private static final Logger logger = LogManager.getLogger(BrokerMetrics.class);
+
+  static final String DOMAIN = "de.samply.share.broker";
+
+  private static final BrokerMetrics instance = new BrokerMetrics();
+
+  private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+  private final LongAdder inquiriesReleased = new LongAdder();
+  private final LongAdder repliesReceived = new LongAdder();
+
+  private volatile MBeanServer mbeanServer;
+
+  BrokerMetrics() {
+  }
+
+  public static BrokerMetrics getInstance() {
+    return instance;
+  }
+
+  /**
+   * Register the metrics at the platform MBean server.
+   */
+  public void register() {
+    mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    registerMbean(this, DOMAIN + ":type=Broker");
+    registerMbean(ResourceManager.getPoolMetrics(), DOMAIN + ":type=ConnectionPool");
+    endpoints.values().forEach(this::registerEndpoint);
+  }
+
+  /**
+   * Remove all metrics from the platform MBean server.
+   */
+  public void unregister() {
+    MBeanServer server = mbeanServer;
+    mbeanServer = null;
+    if (server == null) {
+      return;
+    }
+    try {
+      for (ObjectName name : server.queryNames(new ObjectName(DOMAIN + ":*"), null)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      logger.warn("Could not unregister metrics", e);
+    }
+  }
+
+  /**
+   * Get the metrics of a rest endpoint, creating them on first use.
+   *
+   * @param resource the name of the resource class
+   * @param method   the name of the resource method
+   * @return the metrics of the endpoint
+   */
+  public EndpointMetrics getEndpoint(String resource, String method) {
+    return endpoints.computeIfAbsent(resource + "." + method, key -> {
+      EndpointMetrics metrics = new EndpointMetrics(resource, method);
+      registerEndpoint(metrics);
+      return metrics;
+    });
+  }
+
+  private void registerEndpoint(EndpointMetrics metrics) {
+    registerMbean(metrics, DOMAIN + ":type=Endpoint,resource=" + metrics.getResource()
+        + ",method=" + metrics.getMethod());
+  }
+
+  private void registerMbean(Object mbean, String name) {
+    MBeanServer server = mbeanServer;
+    if (server == null) {
+      return;
+    }
+    try {
+      ObjectName objectName = new ObjectName(name);
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+      server.registerMBean(mbean, objectName);
+    } catch (JMException e) {
+      logger.warn("Could not register metrics " + name, e);
+    }
+  }
+
+  public void inquiryReleased() {
+    inquiriesReleased.increment();
+  }
+
+  public void replyReceived() {
+    repliesReceived.increment();
+  }
+
+  @Override
+  public long getInquiriesReleased() {
+    return inquiriesReleased.sum();
+  }
+
+  @Override
+  public long getRepliesReceived() {
+    return repliesReceived.sum();
+  }
+
+  @Override
+  public long getQueriesCoalesced() {
+    return SearchController.getQueryCoalescer().getCoalescedCount();
+  }
+
+  @Override
+  public long getTranslationCacheHits() {
+    return CriteriaTranslationCache.getInstance().getStatistics().getHitCount();
+  }
+
+  @Override
+  public long getTranslationCacheMisses() {
+    return CriteriaTranslationCache.getInstance().getStatistics().getMissCount();
+  }
+
+  /**
+   * Write all metrics in the Prometheus text exposition format.
+   *
+   * @return the metrics
+   */
+  public String toPrometheusText() {
+    StringBuilder builder = new StringBuilder();
+    appendEndpoints(builder);
+
+    ConnectionPoolMetricsMXBean pool = ResourceManager.getPoolMetrics();
+    appendMetric(builder, "samply_broker_db_pool_active", "gauge",
+        "Connections currently in use", pool.getActive());
+    appendMetric(builder, "samply_broker_db_pool_idle", "gauge",
+        "Idle connections", pool.getIdle());
+    appendMetric(builder, "samply_broker_db_pool_max", "gauge",
+        "Maximum number of connections", pool.getMaxTotal());
+    appendMetric(builder, "samply_broker_db_pool_waiters", "gauge",
+        "Threads waiting for a connection", pool.getWaiters());
+    appendMetric(builder, "samply_broker_db_pool_acquires_total", "counter",
+        "Connections acquired", pool.getAcquireCount());
+    appendMetric(builder, "samply_broker_db_pool_acquire_seconds_total", "counter",
+        "Time spent acquiring connections", pool.getAcquireTimeSeconds());
+    if (ResourceManager.hasReadOnlyDataSource()) {
+      Duration lag = ResourceManager.getReplicaLagGuard().getLag();
+      appendMetric(builder, "samply_broker_db_replica_lag_seconds", "gauge",
+          "Last measured lag of the read-only replica, -1 if unknown",
+          lag == null ? -1 : lag.toMillis() / 1000.0);
+    }
+
+    appendSqlTimings(builder);
+
+    appendMetric(builder, "samply_broker_warmup_seconds", "gauge",
+        "Duration of the warm-up after the start, 0 while it is running",
+        WarmUp.getInstance().getDurationMillis() / 1000.0);
+    appendMetric(builder, "samply_broker_inquiries_released_total", "counter",
+        "Inquiries released to the bridgeheads", getInquiriesReleased());
+    appendMetric(builder, "samply_broker_query_releases_queued", "gauge",
+        "Queries from the UI waiting for a release worker",
+        QueryReleaseExecutor.getInstance().getQueueSize());
+    appendMetric(builder, "samply_broker_open_inquiries", "gauge",
+        "Released inquiries not expired yet, as held by the index",
+        OpenInquiryIndex.getInstance().size());
+    appendMetric(builder, "samply_broker_channel_connections", "gauge",
+        "Bridgeheads connected over the inquiry channel",
+        InquiryChannel.getInstance().getConnectionCount());
+    appendMetric(builder, "samply_broker_mails_queued", "gauge",
+        "Mails of the outbox waiting for a mail worker",
+        MailDispatcher.getInstance().getQueueSize());
+    appendMetric(builder, "samply_broker_replies_received_total", "counter",
+        "Replies received from the bridgeheads", getRepliesReceived());
+    appendMetric(builder, "samply_broker_queries_coalesced_total", "counter",
+        "Queries attached to an identical inquiry", getQueriesCoalesced());
+    appendMetric(builder, "samply_broker_translation_cache_hits_total", "counter",
+        "Query translations served from the cache", getTranslationCacheHits());
+    appendMetric(builder, "samply_broker_translation_cache_misses_total", "counter",
+        "Query translations not found in the cache", getTranslationCacheMisses());
+
+    appendRateLimits(builder);
+    appendStatistics(builder);
+    return builder.toString();
+  }
+
+  private void appendEndpoints(StringBuilder builder) {
+    List<EndpointMetrics> sorted = new ArrayList<>(endpoints.values());
+    sorted.sort(Comparator.comparing(EndpointMetrics::getResource)
+        .thenComparing(EndpointMetrics::getMethod));
+
+    appendHeader(builder, "samply_broker_http_requests_total", "counter", "Requests per endpoint");
+    for (EndpointMetrics metrics : sorted) {
+      appendSample(builder, "samply_broker_http_requests_total", labels(metrics),
+          metrics.getRequestCount());
+    }
+    appendHeader(builder, "samply_broker_http_errors_total", "counter",
+        "Requests answered with a server error");
+    for (EndpointMetrics metrics : sorted) {
+      appendSample(builder, "samply_broker_http_errors_total", labels(metrics),
+          metrics.getErrorCount());
+    }
+    appendHeader(builder, "samply_broker_http_client_errors_total", "counter",
+        "Requests answered with a client error");
+    for (EndpointMetrics metrics : sorted) {
+      appendSample(builder, "samply_broker_http_client_errors_total", labels(metrics),
+          metrics.getClientErrorCount());
+    }
+
+    String histogram = "samply_broker_http_request_duration_seconds";
+    appendHeader(builder, histogram, "histogram", "Response time per endpoint");
+    for (EndpointMetrics metrics : sorted) {
+      String labels = labels(metrics);
+      long[] buckets = metrics.getCumulativeBucketCounts();
+      for (int i = 0; i < buckets.length; i++) {
+        appendSample(builder, histogram + "_bucket",
+            labels + ",le=\"" + EndpointMetrics.BUCKETS_SECONDS[i] + "\"", buckets[i]);
+      }
+      appendSample(builder, histogram + "_bucket", labels + ",le=\"+Inf\"",
+          metrics.getRequestCount());
+      appendSample(builder, histogram + "_sum", labels, metrics.getTotalTimeSeconds());
+      appendSample(builder, histogram + "_count", labels, metrics.getRequestCount());
+    }
+  }
+
+  private static void appendSqlTimings(StringBuilder builder) {
+    List<SqlTimings.Timing> perCaller = SqlTimingListener.getTimings().getTimingsPerCaller();
+    appendHeader(builder, "samply_broker_sql_statements_total", "counter",
+        "SQL statements per calling method");
+    for (SqlTimings.Timing timing : perCaller) {
+      appendSample(builder, "samply_broker_sql_statements_total",
+          "caller=\"" + timing.getCaller() + "\"", timing.getCount());
+    }
+    appendHeader(builder, "samply_broker_sql_seconds_total", "counter",
+        "Execution time of the SQL statements per calling method");
+    for (SqlTimings.Timing timing : perCaller) {
+      appendSample(builder, "samply_broker_sql_seconds_total",
+          "caller=\"" + timing.getCaller() + "\"", timing.getTotalMillis() / 1000);
+    }
+  }
+
+  private static void appendRateLimits(StringBuilder builder) {
+    appendHeader(builder, "samply_broker_rate_limited_total", "counter",
+        "Requests rejected with 429 per endpoint class and client");
+    for (RateLimitClass rateLimitClass : RateLimitClass.values()) {
+      Map<String, Long> counts = RateLimiter.getInstance().getThrottledCounts(rateLimitClass);
+      for (String client : new TreeSet<>(counts.keySet())) {
+        appendSample(builder, "samply_broker_rate_limited_total",
+            "class=\"" + rateLimitClass + "\",client=\"" + escapeLabel(client) + "\"",
+            counts.get(client));
+      }
+    }
+  }
+
+  private static void appendStatistics(StringBuilder builder) {
+    StatisticsRecorder recorder = StatisticsRecorder.getInstance();
+    appendMetric(builder, "samply_broker_statistics_written_total", "counter",
+        "Query statistics written to the database", recorder.getWritten());
+    appendHeader(builder, "samply_broker_statistics_dropped_total", "counter",
+        "Query statistics lost because the queue was full or the batch could not be written");
+    appendSample(builder, "samply_broker_statistics_dropped_total", "reason=\"queue_full\"",
+        recorder.getDroppedQueueFull());
+    appendSample(builder, "samply_broker_statistics_dropped_total", "reason=\"write_failed\"",
+        recorder.getDroppedWriteFailed());
+    appendMetric(builder, "samply_broker_statistics_queued", "gauge",
+        "Query statistics waiting to be written", recorder.getQueueSize());
+    appendMetric(builder, "samply_broker_statistics_lag_seconds", "gauge",
+        "Time the oldest query statistics of the last batch waited to be written",
+        recorder.getLagMillis() / 1000.0);
+  }
+
+  /**
+   * Escape a label value, as clients are identified by the unverified subject of their token.
+   */
+  private static String escapeLabel(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String labels(EndpointMetrics metrics) {
+    return "resource=\"" + metrics.getResource() + "\",method=\"" + metrics.getMethod() + "\"";
+  }
+
+  private static void appendMetric(StringBuilder builder, String name, String type, String help,
+      Number value) {
+    appendHeader(builder, name, type, help);
+    appendSample(builder, name, null, value);
+  }
+
+  private static void appendHeader(StringBuilder builder, String name, String type,
+      String help) {
+    builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void appendSample(StringBuilder builder, String name, String labels,
+      Number value) {
+    builder.append(name);
+    if (labels != null) {
+      builder.append('{').append(labels).append('}');
+    }
+    builder.append(' ');
+    if (value instanceof Double) {
+      builder.append(String.format(Locale.ROOT, "%.6f", value.doubleValue()));
+    } else {
+      builder.append(value);
+    }
+    builder.append('\n');
+  }
+}
@@ -0,0 +1,17 @@
+package de.samply.share.broker.monitoring;
+
+/**
+ * Counters of business events of the broker.
+ */
+public interface BrokerMetricsMXBean {
+
+  long getInquiriesReleased();
+
+  long getRepliesReceived();
+
+  long getQueriesCoalesced();
+
+  long getTranslationCacheHits();
+
+  long getTranslationCacheMisses();
+}
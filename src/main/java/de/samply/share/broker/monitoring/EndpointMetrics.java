@@ -0,0 +1,105 @@
+package de.samply.share.broker.monitoring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the requests, errors and response times of one rest endpoint.
+ * Response times are additionally collected in fixed buckets, so they can be exported as a
+ * histogram.
+ */
+public class EndpointMetrics implements EndpointMetricsMXBean {
+
+  static final double[] BUCKETS_SECONDS =
+      {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+  private final String resource;
+  private final String method;
+
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder errorCount = new LongAdder();
+  private final LongAdder clientErrorCount = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS_SECONDS.length);
+
+  EndpointMetrics(String resource, String method) {
+    this.resource = resource;
+    this.method = method;
+  }
+
+  /**
+   * Record a finished request.
+   *
+   * @param nanos  the time it took to answer the request
+   * @param status the http status of the response
+   */
+  public void record(long nanos, int status) {
+    requestCount.increment();
+    if (status >= 500) {
+      errorCount.increment();
+    } else if (status >= 400) {
+      clientErrorCount.increment();
+    }
+    totalNanos.add(nanos);
+    maxNanos.accumulateAndGet(nanos, Math::max);
+
+    double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    for (int i = 0; i < BUCKETS_SECONDS.length; i++) {
+      if (seconds <= BUCKETS_SECONDS[i]) {
+        bucketCounts.incrementAndGet(i);
+        break;
+      }
+    }
+  }
+
+  public String getResource() {
+    return resource;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errorCount.sum();
+  }
+
+  @Override
+  public long getClientErrorCount() {
+    return clientErrorCount.sum();
+  }
+
+  @Override
+  public double getTotalTimeSeconds() {
+    return totalNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  @Override
+  public double getMaxTimeSeconds() {
+    return maxNanos.get() / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  /**
+   * Get the cumulative number of requests per bucket of {@link #BUCKETS_SECONDS}.
+   *
+   * @return the number of requests answered within the upper bound of each bucket
+   */
+  long[] getCumulativeBucketCounts() {
+    long[] cumulative = new long[BUCKETS_SECONDS.length];
+    long sum = 0;
+    for (int i = 0; i < BUCKETS_SECONDS.length; i++) {
+      sum += bucketCounts.get(i);
+      cumulative[i] = sum;
+    }
+    return cumulative;
+  }
+}
@@ -0,0 +1,27 @@
+package de.samply.share.broker.monitoring;
+
+/**
+ * Request timer and error counters of one rest endpoint.
+ */
+public interface EndpointMetricsMXBean {
+
+  long getRequestCount();
+
+  /**
+   * Get the number of requests answered with a server error (5xx).
+   *
+   * @return the number of server errors
+   */
+  long getErrorCount();
+
+  /**
+   * Get the number of requests answered with a client error (4xx).
+   *
+   * @return the number of client errors
+   */
+  long getClientErrorCount();
+
+  double getTotalTimeSeconds();
+
+  double getMaxTimeSeconds();
+}
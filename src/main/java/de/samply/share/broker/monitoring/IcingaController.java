@@ -1,15 +1,20 @@
 package de.samply.share.broker.monitoring;
 
+import com.google.common.base.Splitter;
+import de.samply.share.broker.jdbc.InvalidationBus;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.utils.Utils;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +27,7 @@ public class IcingaController {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(IcingaController.class);
   private static final int VERSION_REPORT_SEND_QUEUE_CAPACITY = 100;
+  private static final String KEY_SEPARATOR = ":";
 
   private final Map<Integer, Instant> lastBankSendInstants = new ConcurrentHashMap<>();
 
@@ -30,6 +36,14 @@ public class IcingaController {
       new LinkedBlockingQueue<>(VERSION_REPORT_SEND_QUEUE_CAPACITY),
       new ThreadPoolExecutor.DiscardOldestPolicy());
 
+  /**
+   * Take over the reports sent by the other broker instances, so a bridgehead that polls several
+   * instances is still reported only once a minute.
+   */
+  @PostConstruct
+  void subscribeToOtherInstances() {
+    InvalidationBus.getInstance().subscribe(Topic.VERSION_REPORT, this::recordOtherInstance);
+  }
 
   /**
    * Send version of the bridgehead every minute to icinga.
@@ -39,7 +53,13 @@ public class IcingaController {
   public void asyncSendVersionReportEveryMinute(String userAgent, int bankId) {
     if (updateBankLastSendInstantIfExpired(Clock.systemUTC(), bankId)) {
       LOGGER.debug("Schedule sending of version report to bank with ID: " + bankId);
-      sender.execute(() -> Utils.sendVersionReportsToIcinga(bankId, userAgent));
+      Instant scheduledAt = lastBankSendInstants.get(bankId);
+      sender.execute(() -> {
+        Utils.sendVersionReportsToIcinga(bankId, userAgent);
+        // only a report that has been sent keeps the other instances from sending it
+        InvalidationBus.getInstance().publish(Topic.VERSION_REPORT,
+            bankId + KEY_SEPARATOR + scheduledAt.toEpochMilli());
+      });
     }
   }
 
@@ -58,4 +78,26 @@ public class IcingaController {
         (old, val) -> ChronoUnit.MINUTES.between(old, val) >= 1 ? val : old
     ).equals(instant);
   }
+
+  /**
+   * Record a report sent by another instance, announced as bank id and epoch millis.
+   *
+   * @param key the key of the change, null if reports may have been missed
+   */
+  void recordOtherInstance(String key) {
+    if (key == null) {
+      return;
+    }
+    List<String> parts = Splitter.on(KEY_SEPARATOR).splitToList(key);
+    if (parts.size() != 2) {
+      return;
+    }
+    try {
+      int bankId = Integer.parseInt(parts.get(0));
+      Instant instant = Instant.ofEpochMilli(Long.parseLong(parts.get(1)));
+      lastBankSendInstants.merge(bankId, instant, (old, val) -> val.isAfter(old) ? val : old);
+    } catch (NumberFormatException e) {
+      LOGGER.debug("Ignoring invalid version report notification " + key);
+    }
+  }
 }
@@ -0,0 +1,116 @@
+package de.samply.share.broker.monitoring;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * A histogram of durations over a rolling time window.
+ * The window is split into slices which are discarded as a whole once they have left the window.
+ * Durations are counted in exponentially growing buckets, so percentiles are accurate to about
+ * 10 percent while the memory per histogram stays constant.
+ */
+public class RollingHistogram {
+
+  private static final double GROWTH = 1.1;
+  private static final int BUCKET_COUNT = 256;
+
+  private final long sliceMillis;
+  private final Clock clock;
+  private final long[][] slices;
+  private final long[] sliceIndexes;
+
+  /**
+   * Create a histogram.
+   *
+   * @param window     the time window covered by the histogram
+   * @param sliceCount the number of slices the window is split into
+   * @param clock      the clock to use
+   */
+  public RollingHistogram(Duration window, int sliceCount, Clock clock) {
+    this.sliceMillis = Math.max(1, window.toMillis() / sliceCount);
+    this.clock = clock;
+    this.slices = new long[sliceCount][];
+    this.sliceIndexes = new long[sliceCount];
+  }
+
+  /**
+   * Record a duration.
+   *
+   * @param duration the duration, negative durations are counted as zero
+   */
+  public synchronized void record(Duration duration) {
+    long sliceIndex = clock.millis() / sliceMillis;
+    int slot = (int) (sliceIndex % slices.length);
+    if (slices[slot] == null || sliceIndexes[slot] != sliceIndex) {
+      slices[slot] = new long[BUCKET_COUNT];
+      sliceIndexes[slot] = sliceIndex;
+    }
+    slices[slot][bucketOf(Math.max(0, duration.toMillis()))]++;
+  }
+
+  /**
+   * Get the number of durations recorded within the window.
+   *
+   * @return the number of durations
+   */
+  public synchronized long getCount() {
+    long count = 0;
+    for (long bucketCount : merge()) {
+      count += bucketCount;
+    }
+    return count;
+  }
+
+  /**
+   * Get a percentile of the durations recorded within the window.
+   *
+   * @param percentile the percentile between 0 and 1, e.g. 0.95
+   * @return the upper bound of the bucket containing the percentile or null if nothing has been
+   *     recorded within the window
+   */
+  public synchronized Duration getPercentile(double percentile) {
+    long[] merged = merge();
+    long count = 0;
+    for (long bucketCount : merged) {
+      count += bucketCount;
+    }
+    if (count == 0) {
+      return null;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < merged.length; bucket++) {
+      seen += merged[bucket];
+      if (seen >= rank) {
+        return Duration.ofMillis(upperBoundOf(bucket));
+      }
+    }
+    return Duration.ofMillis(upperBoundOf(merged.length - 1));
+  }
+
+  private long[] merge() {
+    long currentSliceIndex = clock.millis() / sliceMillis;
+    long[] merged = new long[BUCKET_COUNT];
+    for (int slot = 0; slot < slices.length; slot++) {
+      if (slices[slot] != null && currentSliceIndex - sliceIndexes[slot] < slices.length) {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+          merged[bucket] += slices[slot][bucket];
+        }
+      }
+    }
+    return merged;
+  }
+
+  static int bucketOf(long millis) {
+    if (millis <= 1) {
+      return 0;
+    }
+    int bucket = (int) Math.ceil(Math.log(millis) / Math.log(GROWTH));
+    return Math.min(bucket, BUCKET_COUNT - 1);
+  }
+
+  static long upperBoundOf(int bucket) {
+    return (long) Math.floor(Math.pow(GROWTH, bucket));
+  }
+}
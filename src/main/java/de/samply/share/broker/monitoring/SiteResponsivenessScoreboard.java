@@ -0,0 +1,173 @@
+package de.samply.share.broker.monitoring;
+
+import de.samply.share.broker.utils.Config;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Tracks per site how long its bridgehead takes to retrieve a released inquiry and how long it
+ * takes from its first retrieval to the first reply, over a rolling time window.
+ */
+public class SiteResponsivenessScoreboard {
+
+  private static final String CFG_WINDOW_MINUTES = "scoreboard.window.minutes";
+  private static final int DEFAULT_WINDOW_MINUTES = 60;
+  private static final int SLICE_COUNT = 12;
+
+  private static final SiteResponsivenessScoreboard instance = new SiteResponsivenessScoreboard(
+      Duration.ofMinutes(Config.getIntProperty(CFG_WINDOW_MINUTES, DEFAULT_WINDOW_MINUTES)),
+      Clock.systemUTC());
+
+  private final Map<Integer, SiteHistograms> sites = new ConcurrentHashMap<>();
+  private final Duration window;
+  private final Clock clock;
+
+  SiteResponsivenessScoreboard(Duration window, Clock clock) {
+    this.window = window;
+    this.clock = clock;
+  }
+
+  public static SiteResponsivenessScoreboard getInstance() {
+    return instance;
+  }
+
+  /**
+   * Record the first retrieval of an inquiry by a site.
+   *
+   * @param siteId      the id of the site
+   * @param releasedAt  the time the inquiry has been released
+   * @param retrievedAt the time the inquiry has been retrieved
+   */
+  public void recordRetrieval(int siteId, Instant releasedAt, Instant retrievedAt) {
+    getSite(siteId).retrieval.record(Duration.between(releasedAt, retrievedAt));
+  }
+
+  /**
+   * Record the first reply of a site to an inquiry.
+   *
+   * @param siteId      the id of the site
+   * @param retrievedAt the time the inquiry has been retrieved
+   * @param repliedAt   the time the reply has been received
+   */
+  public void recordReply(int siteId, Instant retrievedAt, Instant repliedAt) {
+    getSite(siteId).reply.record(Duration.between(retrievedAt, repliedAt));
+  }
+
+  private SiteHistograms getSite(int siteId) {
+    return sites.computeIfAbsent(siteId, id -> new SiteHistograms());
+  }
+
+  /**
+   * Get the scores of all sites which have been active within the window.
+   *
+   * @param siteNames resolves the id of a site to its name
+   * @return the scores, ordered by the p95 of the retrieval time, slowest site first
+   */
+  public List<SiteScore> getScores(Function<Integer, String> siteNames) {
+    List<SiteScore> scores = new ArrayList<>();
+    for (Map.Entry<Integer, SiteHistograms> entry : sites.entrySet()) {
+      PhaseScore retrieval = new PhaseScore(entry.getValue().retrieval);
+      PhaseScore reply = new PhaseScore(entry.getValue().reply);
+      if (retrieval.count > 0 || reply.count > 0) {
+        scores.add(new SiteScore(entry.getKey(), siteNames.apply(entry.getKey()), retrieval,
+            reply));
+      }
+    }
+    scores.sort((score1, score2) -> Double.compare(
+        score2.retrieval.p95Seconds == null ? -1 : score2.retrieval.p95Seconds,
+        score1.retrieval.p95Seconds == null ? -1 : score1.retrieval.p95Seconds));
+    return scores;
+  }
+
+  public Duration getWindow() {
+    return window;
+  }
+
+  private class SiteHistograms {
+
+    private final RollingHistogram retrieval = new RollingHistogram(window, SLICE_COUNT, clock);
+    private final RollingHistogram reply = new RollingHistogram(window, SLICE_COUNT, clock);
+  }
+
+  /**
+   * The responsiveness of one site.
+   */
+  public static class SiteScore {
+
+    private final int siteId;
+    private final String site;
+    private final PhaseScore retrieval;
+    private final PhaseScore reply;
+
+    SiteScore(int siteId, String site, PhaseScore retrieval, PhaseScore reply) {
+      this.siteId = siteId;
+      this.site = site;
+      this.retrieval = retrieval;
+      this.reply = reply;
+    }
+
+    public int getSiteId() {
+      return siteId;
+    }
+
+    public String getSite() {
+      return site;
+    }
+
+    /**
+     * Get the time from the release of an inquiry to its first retrieval.
+     *
+     * @return the score of the retrieval
+     */
+    public PhaseScore getRetrieval() {
+      return retrieval;
+    }
+
+    /**
+     * Get the time from the retrieval of an inquiry to the reply.
+     *
+     * @return the score of the reply
+     */
+    public PhaseScore getReply() {
+      return reply;
+    }
+  }
+
+  /**
+   * Percentiles of one phase of the processing of an inquiry by a site.
+   */
+  public static class PhaseScore {
+
+    private final long count;
+    private final Double p50Seconds;
+    private final Double p95Seconds;
+
+    PhaseScore(RollingHistogram histogram) {
+      this.count = histogram.getCount();
+      this.p50Seconds = toSeconds(histogram.getPercentile(0.5));
+      this.p95Seconds = toSeconds(histogram.getPercentile(0.95));
+    }
+
+    private static Double toSeconds(Duration duration) {
+      return duration == null ? null : duration.toMillis() / 1000.0;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public Double getP50Seconds() {
+      return p50Seconds;
+    }
+
+    public Double getP95Seconds() {
+      return p95Seconds;
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package de.samply.share.broker.rest;
 
+import de.samply.share.broker.jdbc.InvalidationBus;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.jdbc.ResourceManager;
 import de.samply.share.broker.model.db.Tables;
 import de.samply.share.broker.model.db.tables.daos.AuthtokenDao;
@@ -27,8 +29,6 @@ import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * Handles the whole management of connected banks. Registration, activation, deletion.
@@ -58,8 +58,7 @@ public class BankRegistration {
     List<Tokenrequest> tokenRequestList = null;
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
       tokenrequestDao = new TokenrequestDao(configuration);
       tokenRequestList = tokenrequestDao.fetchByEmail(email);
     } catch (SQLException e) {
@@ -74,7 +73,7 @@ public class BankRegistration {
       // 1 Create Token
       tokenRequest = TokenRequestUtil.createTokenRequestForEmail(email);
       // 2 send email
-      MailUtils.sendActivationmail(email, tokenRequest.getAuthcode());
+      MailUtils.sendActivationmail(email, tokenRequest);
       // 3 send 401
       responseStatus = Response.Status.UNAUTHORIZED;
     }
@@ -127,10 +126,10 @@ public class BankRegistration {
     Authtoken authToken;
     BankSite bankSite;
     BankSiteDao bankSiteDao;
+    Integer deletedBankId = null;
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
       bankDao = new BankDao(configuration);
       bank = bankDao.fetchOneByEmail(email);
 
@@ -154,6 +153,7 @@ public class BankRegistration {
           }
           authtokenDao.delete(authToken);
           bankDao.delete(bank);
+          deletedBankId = bank.getId();
 
           responseStatus = Response.Status.NO_CONTENT;
         }
@@ -165,6 +165,9 @@ public class BankRegistration {
       e.printStackTrace();
     }
 
+    if (deletedBankId != null) {
+      InvalidationBus.getInstance().publish(Topic.BANK, deletedBankId);
+    }
     return responseStatus;
   }
 
@@ -194,8 +197,7 @@ public class BankRegistration {
         Site site = SiteUtil.fetchSiteByName(locationId);
         BankSiteUtil.setSiteForBank(bank, site, true);
       }
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
       BankDao bankDao = new BankDao(configuration);
       bankDao.insert(bank);
 
@@ -235,8 +237,7 @@ public class BankRegistration {
     List<Tokenrequest> tokenRequestList;
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       bankDao = new BankDao(configuration);
       bank = bankDao.fetchOneByEmail(email);
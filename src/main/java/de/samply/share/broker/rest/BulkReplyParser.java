@@ -0,0 +1,171 @@
+package de.samply.share.broker.rest;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Reads the replies of a bulk submission one after the other from the request body, so a large
+ * backlog is checked in one pass without holding the whole document. The body is an array of
+ * objects with the id of the inquiry and the reply, as sent to
+ * {@code /inquiries/{inquiryid}/replies/{bankemail}}:
+ *
+ * <pre>
+ * [{"inquiryId": 12, "reply": {...}}, ...]
+ * </pre>
+ *
+ * <p>An invalid reply is reported with its error instead of failing the whole submission. If an
+ * inquiry is answered twice, only the later reply is kept.
+ */
+class BulkReplyParser {
+
+  private final int maxReplies;
+
+  BulkReplyParser(int maxReplies) {
+    this.maxReplies = maxReplies;
+  }
+
+  /**
+   * Read and check the replies.
+   *
+   * @param body     the request body
+   * @param siteName the name of the site the replies are from, set in every reply
+   * @return one item per reply in the order of the body, those without a status are valid
+   * @throws JsonParseException      if the body is not an array of objects
+   * @throws TooManyRepliesException if the body has more replies than allowed
+   */
+  List<Item> parse(Reader body, String siteName) {
+    List<Item> items = new ArrayList<>();
+    Map<Integer, Item> validItems = new HashMap<>();
+    try (JsonReader reader = new JsonReader(body)) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        if (items.size() == maxReplies) {
+          throw new TooManyRepliesException(maxReplies);
+        }
+        Item item = parseItem(items.size(), JsonParser.parseReader(reader), siteName);
+        items.add(item);
+        if (item.isValid()) {
+          Item replaced = validItems.put(item.getInquiryId(), item);
+          if (replaced != null) {
+            replaced.reject(Status.CONFLICT, "Replaced by a later reply to the same inquiry");
+          }
+        }
+      }
+      reader.endArray();
+    } catch (IOException | IllegalStateException e) {
+      throw new JsonParseException("The replies are not a JSON array: " + e.getMessage(), e);
+    }
+    return items;
+  }
+
+  /**
+   * Check a single reply and rewrite it for the site.
+   *
+   * @param index    the position of the reply in the submission
+   * @param element  the object with the inquiryId and the reply
+   * @param siteName the name of the site the reply is from
+   * @return the reply, rejected if it is invalid
+   */
+  static Item parseItem(int index, JsonElement element, String siteName) {
+    if (!element.isJsonObject()) {
+      return new Item(index, null).reject(Status.BAD_REQUEST, "Not an object");
+    }
+    JsonObject object = element.getAsJsonObject();
+    Integer inquiryId;
+    try {
+      inquiryId = object.has("inquiryId") ? object.get("inquiryId").getAsInt() : null;
+    } catch (RuntimeException e) {
+      inquiryId = null;
+    }
+    Item item = new Item(index, inquiryId);
+    if (inquiryId == null) {
+      return item.reject(Status.BAD_REQUEST, "No valid inquiryId");
+    }
+
+    JsonElement reply = object.get("reply");
+    String content;
+    if (reply == null || reply.isJsonNull()) {
+      content = null;
+    } else if (reply.isJsonPrimitive()) {
+      // the reply as a string, as in the body of a single reply
+      content = reply.getAsString();
+    } else {
+      content = reply.toString();
+    }
+    if (content == null || content.isEmpty()) {
+      return item.reject(Status.BAD_REQUEST, "Empty reply");
+    }
+    try {
+      item.content = InquiryHandler.rewriteReply(content, siteName);
+    } catch (RuntimeException e) {
+      return item.reject(Status.BAD_REQUEST, "Invalid reply: " + e.getMessage());
+    }
+    return item;
+  }
+
+  /**
+   * A reply of a bulk submission and what became of it. Serialized as the response.
+   */
+  static class Item {
+
+    private final int index;
+    private final Integer inquiryId;
+    private Integer status;
+    private String error;
+    private transient String content;
+
+    Item(int index, Integer inquiryId) {
+      this.index = index;
+      this.inquiryId = inquiryId;
+    }
+
+    int getIndex() {
+      return index;
+    }
+
+    Integer getInquiryId() {
+      return inquiryId;
+    }
+
+    Integer getStatus() {
+      return status;
+    }
+
+    String getError() {
+      return error;
+    }
+
+    String getContent() {
+      return content;
+    }
+
+    /**
+     * Check if the reply is valid and has not been rejected or stored yet.
+     *
+     * @return true if the reply is still to be stored
+     */
+    boolean isValid() {
+      return status == null;
+    }
+
+    Item reject(Status status, String error) {
+      this.status = status.getStatusCode();
+      this.error = error;
+      return this;
+    }
+
+    void stored() {
+      this.status = Status.OK.getStatusCode();
+    }
+  }
+}
@@ -2,6 +2,7 @@ package de.samply.share.broker.rest;
 
 import de.samply.common.mdrclient.MdrClient;
 import de.samply.share.broker.model.db.tables.pojos.User;
+import de.samply.share.broker.utils.JaxbContexts;
 import de.samply.share.broker.utils.db.DocumentUtil;
 import de.samply.share.broker.utils.db.InquiryUtil;
 import de.samply.share.broker.utils.db.UserUtil;
@@ -28,7 +29,6 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -92,7 +92,7 @@ public class CentralSearchPlug {
       TreeModel<QueryItem> queryTree;
       if (translateToCcpNamespace) {
         de.samply.share.model.ccp.Query ccpQuery = QueryConverter
-            .unmarshal(queryString, JAXBContext.newInstance(de.samply.share.model.ccp.Query.class),
+            .unmarshal(queryString, JaxbContexts.get(de.samply.share.model.ccp.Query.class),
                 de.samply.share.model.ccp.Query.class);
         Query sourceQuery = QueryConverter.convertCcpQueryToCommonQuery(ccpQuery);
         queryTree = QueryTreeUtil.queryToTree(sourceQuery);
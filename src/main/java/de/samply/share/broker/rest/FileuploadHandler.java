@@ -1,8 +1,8 @@
 package de.samply.share.broker.rest;
 
 import de.samply.share.broker.model.db.enums.DocumentType;
-import de.samply.share.broker.utils.Utils;
-import java.io.File;
+import de.samply.share.broker.utils.UploadRejectedException;
+import de.samply.share.broker.utils.UploadValidatingInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -14,7 +14,6 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
-import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codehaus.jettison.json.JSONException;
@@ -32,16 +31,27 @@ public class FileuploadHandler {
 
   private static final String DOC_TYPE = "documentType";
   private static final String DOC_ID = "documentId";
+  private static final String DOC_HASH = "sha256";
   private static final String ERROR = "error";
 
+  /**
+   * The maximum size of an uploaded document (10MB).
+   */
+  static final long MAX_DOCUMENT_SIZE = 10485760;
+
   /**
    * Accept a file upload from the webinterface.
+   * The upload is read exactly once, while it is streamed into the database. While reading, it is
+   * hashed, checked against the size limit and, for exposes and votes, checked for a pdf header.
+   * Invalid uploads are rejected as soon as the violation is detected, and nothing is stored.
    *
    * @param userId                   the id of the user that uploads the file
    * @param docType                  the type of the document (expose, vote...)
    * @param fileInputStream          the file itself
    * @param contentDispositionHeader the content information
    * @return <CODE>200</CODE> on success
+   * <CODE>413</CODE> if the file is bigger than the allowed maximum
+   * <CODE>415</CODE> if a pdf file was expected but not received
    * <CODE>500</CODE> on any error
    */
   @POST
@@ -55,16 +65,8 @@ public class FileuploadHandler {
       throws UnsupportedEncodingException, JSONException {
     JSONObject jsonObject = new JSONObject();
     int documentId;
-    byte[] buf;
-
-    try {
-      buf = IOUtils.toByteArray(fileInputStream);
-      logger.debug(buf.length);
-    } catch (IOException e1) {
-      return Response.status(Status.INTERNAL_SERVER_ERROR).build();
-    }
 
-    if (contentDispositionHeader == null) {
+    if (contentDispositionHeader == null || fileInputStream == null) {
       return Response.status(Status.INTERNAL_SERVER_ERROR).build();
     }
 
@@ -84,14 +86,20 @@ public class FileuploadHandler {
     logger.debug("file type: " + filetype);
     logger.debug("document type: " + documentType);
 
+    UploadValidatingInputStream validatingInputStream = new UploadValidatingInputStream(
+        fileInputStream, MAX_DOCUMENT_SIZE, documentType != DocumentType.DT_OTHER);
     try {
-      File documentFile = Utils.saveByteArrayToTmpFile("document", buf, contentDispositionHeader);
       InquiryHandler inquiryHandler = new InquiryHandler();
-      documentId = inquiryHandler
-          .addDocument(null, null, userId, documentFile, filename, filetype, documentType);
-      documentFile.delete();
+      documentId = inquiryHandler.addDocument(null, null, userId, validatingInputStream,
+          filename, filetype, documentType);
+    } catch (UploadRejectedException e) {
+      logger.warn("Rejected upload of " + filename + ": " + e.getReason());
+      jsonObject.put(ERROR, e.getReason().name());
+      Status status = e.getReason() == UploadRejectedException.Reason.TOO_LARGE
+          ? Status.REQUEST_ENTITY_TOO_LARGE : Status.UNSUPPORTED_MEDIA_TYPE;
+      return Response.status(status).entity(jsonObject.toString()).build();
     } catch (IOException e) {
-      logger.error("Could not save uploaded file.", e);
+      logger.error("Could not read uploaded file.", e);
       jsonObject.put(ERROR, "IOException");
       return Response.status(Status.INTERNAL_SERVER_ERROR).entity(jsonObject.toString()).build();
     } catch (NullPointerException npe) {
@@ -99,8 +107,12 @@ public class FileuploadHandler {
       jsonObject.put(ERROR, "Null Pointer Exception");
       return Response.status(Status.INTERNAL_SERVER_ERROR).entity(jsonObject.toString()).build();
     }
+    logger.debug(validatingInputStream.getByteCount() + " bytes, sha256: "
+        + validatingInputStream.getSha256Hex());
+
     jsonObject.put(DOC_TYPE, docType);
     jsonObject.put(DOC_ID, documentId);
+    jsonObject.put(DOC_HASH, validatingInputStream.getSha256Hex());
 
     logger.debug(jsonObject);
     return Response.ok(jsonObject.toString()).build();
@@ -1,14 +1,22 @@
 package de.samply.share.broker.rest;
 
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 
+import com.google.gson.Gson;
+import de.samply.share.broker.listener.WarmUp;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 /**
  * REST resource based health check endpoint to monitor status of the component.
+ *
+ * <p>The liveness check only tells the broker is running, e.g. to restart it if not. The
+ * readiness check tells the broker has warmed up and should get traffic, e.g. from a load
+ * balancer after a deployment.
  */
 @Path("/health")
 public class HealthCheck {
@@ -23,4 +31,32 @@ public class HealthCheck {
   public Response getHealthStatus() {
     return Response.ok("OK").build();
   }
+
+  /**
+   * Check if the searchbroker is running.
+   *
+   * @return code 200, 'OK'
+   */
+  @Path("/live")
+  @GET
+  @Produces(TEXT_PLAIN)
+  public Response getLiveness() {
+    return Response.ok("OK").build();
+  }
+
+  /**
+   * Check if the searchbroker has warmed up and is ready for traffic.
+   *
+   * @return code 200 if it is ready, 503 while it is warming up, with the duration of the
+   *     warm-up steps
+   */
+  @Path("/ready")
+  @GET
+  @Produces(APPLICATION_JSON)
+  public Response getReadiness() {
+    WarmUp.Report report = WarmUp.getInstance().getReport();
+    return Response.status(report.isReady() ? Status.OK : Status.SERVICE_UNAVAILABLE)
+        .entity(new Gson().toJson(report))
+        .build();
+  }
 }
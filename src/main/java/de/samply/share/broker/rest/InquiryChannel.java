@@ -0,0 +1,601 @@
+package de.samply.share.broker.rest;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.samply.share.broker.jdbc.OpenInquiryIndex;
+import de.samply.share.common.utils.SamplyShareUtils;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pushes the released inquiries to the bridgeheads connected over a WebSocket (see
+ * {@link InquiryChannelEndpoint}) and takes their replies, so a connected site neither polls the
+ * list of inquiries nor fetches every inquiry on its own. The HTTP API stays the fallback: a site
+ * that is not connected, or whose connection drops, polls as before.
+ *
+ * <p>Every message is a JSON object with a {@code type}:
+ *
+ * <ul>
+ *   <li>{@code resume} from the site, with the revisions of the inquiries it already has by
+ *   inquiry id in {@code known}. Sent after connecting; nothing is pushed before. Every open
+ *   inquiry the site does not have in that revision is pushed then, so the inquiries released
+ *   while the site was disconnected are not missed. The broker answers with {@code resumed}.</li>
+ *   <li>{@code inquiry} from the broker, with the {@code inquiryId}, the {@code revision} and the
+ *   {@code inquiry} as a BulkInquiry element of {@code /searchbroker/inquiries/bulk}.</li>
+ *   <li>{@code ack} from the site, with the {@code inquiryId} and the {@code revision} of a pushed
+ *   inquiry once it has been stored. At most {@value #MAX_IN_FLIGHT} inquiries are pushed to a
+ *   site without an ack. An inquiry not acked within two minutes is pushed again, and one not
+ *   acked before the connection drops is pushed again after the next resume. The retrieval of an
+ *   inquiry is only recorded with its ack.</li>
+ *   <li>{@code reply} from the site, with the {@code inquiryId} and the {@code reply} as in a bulk
+ *   submission to {@code /searchbroker/inquiries/replies/{bankemail}}.</li>
+ *   <li>{@code replied} from the broker, with the {@code inquiryId}, the {@code status} of the
+ *   reply as in a bulk submission and the {@code error} if it has not been stored. A reply may be
+ *   sent again until it has been answered, as a stored reply is replaced.</li>
+ *   <li>{@code error} from the broker, with the {@code error} if a message is invalid.</li>
+ * </ul>
+ */
+public class InquiryChannel {
+
+  private static final Logger logger = LogManager.getLogger(InquiryChannel.class);
+
+  static final int MAX_IN_FLIGHT = 16;
+  static final int MAX_PUSHES = 3;
+  static final Duration ACK_TIMEOUT = Duration.ofMinutes(2);
+  private static final Duration ACK_CHECK_INTERVAL = Duration.ofSeconds(30);
+  private static final int MAX_OUTBOX = 4 * MAX_IN_FLIGHT;
+  private static final int QUEUE_SIZE = 1000;
+
+  private static final InquiryChannel instance =
+      new InquiryChannel(new DatabaseBackend(), createPushExecutor(), Clock.systemUTC());
+
+  private final Backend backend;
+  private final Executor pushExecutor;
+  private final Clock clock;
+  private final Map<Integer, Set<Connection>> connectionsBySite = new ConcurrentHashMap<>();
+  private ScheduledExecutorService timer;
+  private boolean listening;
+
+  InquiryChannel(Backend backend, Executor pushExecutor, Clock clock) {
+    this.backend = backend;
+    this.pushExecutor = pushExecutor;
+    this.clock = clock;
+  }
+
+  public static InquiryChannel getInstance() {
+    return instance;
+  }
+
+  /**
+   * Push the inquiries released from now on, and push again those not acked in time.
+   */
+  public synchronized void start() {
+    if (timer != null) {
+      return;
+    }
+    if (!listening) {
+      OpenInquiryIndex.getInstance().addListener(inquiry ->
+          released(inquiry.getId(), inquiry.getRevision(), inquiry.getSiteIds()));
+      listening = true;
+    }
+    timer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("inquiry-channel-acks").setDaemon(true).build());
+    timer.scheduleAtFixedRate(() -> {
+      try {
+        expireInFlight(clock.instant());
+      } catch (RuntimeException e) {
+        logger.warn("Could not push the inquiries not acked", e);
+      }
+    }, ACK_CHECK_INTERVAL.toMillis(), ACK_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Close all connections. The sites poll over HTTP until they are connected again.
+   */
+  public synchronized void stop() {
+    if (timer != null) {
+      timer.shutdownNow();
+      timer = null;
+    }
+    for (Set<Connection> connections : connectionsBySite.values()) {
+      for (Connection connection : connections) {
+        connection.peer.close("The broker is stopping");
+      }
+    }
+    connectionsBySite.clear();
+  }
+
+  /**
+   * Get the number of connected sites.
+   *
+   * @return the number of open connections
+   */
+  public int getConnectionCount() {
+    return connectionsBySite.values().stream().mapToInt(Set::size).sum();
+  }
+
+  /**
+   * Add the connection of a site. Nothing is pushed until the site resumes.
+   *
+   * @param connection the authenticated connection
+   */
+  void open(Connection connection) {
+    connectionsBySite.computeIfAbsent(connection.siteId, siteId -> ConcurrentHashMap.newKeySet())
+        .add(connection);
+    logger.debug("Site " + connection.siteId + " connected to the inquiry channel");
+  }
+
+  /**
+   * Remove the connection of a site.
+   *
+   * @param connection the closed connection
+   */
+  void close(Connection connection) {
+    synchronized (connection) {
+      connection.closed = true;
+    }
+    connectionsBySite.computeIfPresent(connection.siteId, (siteId, connections) -> {
+      connections.remove(connection);
+      return connections.isEmpty() ? null : connections;
+    });
+    logger.debug("Site " + connection.siteId + " disconnected from the inquiry channel");
+  }
+
+  /**
+   * Handle a message of a site.
+   *
+   * @param connection the connection the message has been received on
+   * @param text       the message
+   */
+  void receive(Connection connection, String text) {
+    JsonObject message;
+    String type;
+    try {
+      message = JsonParser.parseString(text).getAsJsonObject();
+      type = message.has("type") ? message.get("type").getAsString() : null;
+    } catch (RuntimeException e) {
+      sendError(connection, "Not a JSON object with a type");
+      return;
+    }
+
+    try {
+      if ("resume".equals(type)) {
+        resume(connection, message);
+      } else if ("ack".equals(type)) {
+        ack(connection, message);
+      } else if ("reply".equals(type)) {
+        reply(connection, message);
+      } else {
+        sendError(connection, "Unknown type " + type);
+      }
+    } catch (RuntimeException e) {
+      logger.debug("Could not handle a message from site " + connection.siteId, e);
+      sendError(connection, "Could not handle " + type + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Push an inquiry to the connected sites it has been sent to.
+   *
+   * @param inquiryId the id of the inquiry
+   * @param revision  the revision of the inquiry
+   * @param siteIds   the ids of the sites the inquiry has been sent to
+   */
+  void released(int inquiryId, int revision, int[] siteIds) {
+    for (int siteId : siteIds) {
+      for (Connection connection : connectionsBySite.getOrDefault(siteId,
+          Collections.emptySet())) {
+        try {
+          pushExecutor.execute(() -> offer(connection, inquiryId, revision));
+        } catch (RejectedExecutionException e) {
+          logger.warn("Not pushing inquiry " + inquiryId + " to site " + siteId
+              + ", the queue is full. It is delivered with the next poll or resume.");
+        }
+      }
+    }
+  }
+
+  /**
+   * Push again the inquiries not acked in time. An inquiry is pushed at most
+   * {@value #MAX_PUSHES} times; a site that does not ack it then is disconnected, and gets it
+   * with its next poll or resume.
+   *
+   * @param now the current time
+   */
+  void expireInFlight(Instant now) {
+    for (Set<Connection> connections : connectionsBySite.values()) {
+      for (Connection connection : connections) {
+        List<Push> due = new ArrayList<>();
+        boolean abandoned = false;
+        synchronized (connection) {
+          for (Push push : connection.inFlight.values()) {
+            if (push.deadline.isAfter(now)) {
+              continue;
+            }
+            if (push.attempts >= MAX_PUSHES) {
+              abandoned = true;
+              break;
+            }
+            push.attempts++;
+            push.deadline = now.plus(ACK_TIMEOUT);
+            due.add(push);
+          }
+        }
+        if (abandoned) {
+          logger.info("Site " + connection.siteId + " does not ack the pushed inquiries, "
+              + "closing the connection");
+          disconnect(connection, "Inquiries not acked");
+        } else if (!deliver(connection, due)) {
+          pump(connection);
+        }
+      }
+    }
+  }
+
+  private void resume(Connection connection, JsonObject message) {
+    Map<Integer, Integer> known = new HashMap<>();
+    JsonElement knownElement = message.get("known");
+    if (knownElement != null && !knownElement.isJsonNull()) {
+      for (Map.Entry<String, JsonElement> entry : knownElement.getAsJsonObject().entrySet()) {
+        known.put(Integer.parseInt(entry.getKey()), entry.getValue().getAsInt());
+      }
+    }
+    SortedMap<Integer, Integer> openInquiries = backend.fetchOpenInquiryRevisions(
+        connection.siteId);
+
+    synchronized (connection) {
+      connection.resumed = true;
+      connection.known.clear();
+      connection.known.putAll(known);
+      connection.inFlight.clear();
+      connection.queued.clear();
+      openInquiries.forEach((inquiryId, revision) -> {
+        if (!revision.equals(known.get(inquiryId))) {
+          connection.queued.put(inquiryId, revision);
+        }
+      });
+
+      // queued while holding the lock, so no inquiry is pushed before
+      JsonObject resumed = new JsonObject();
+      resumed.addProperty("type", "resumed");
+      resumed.addProperty("queued", connection.queued.size());
+      enqueue(connection, resumed);
+    }
+    flush(connection);
+    pump(connection);
+  }
+
+  private void ack(Connection connection, JsonObject message) {
+    int inquiryId = message.get("inquiryId").getAsInt();
+    int revision = message.get("revision").getAsInt();
+    boolean acked;
+    synchronized (connection) {
+      Push push = connection.inFlight.get(inquiryId);
+      acked = push != null && push.revision == revision;
+      if (acked) {
+        connection.inFlight.remove(inquiryId);
+        connection.known.put(inquiryId, revision);
+      }
+    }
+    if (acked) {
+      pump(connection);
+      backend.recordRetrieval(connection.siteId, inquiryId);
+    }
+  }
+
+  private void reply(Connection connection, JsonObject message) {
+    BulkReplyParser.Item item = backend.saveReply(connection.bankId, message);
+    JsonObject replied = new JsonObject();
+    replied.addProperty("type", "replied");
+    replied.addProperty("inquiryId", item.getInquiryId());
+    replied.addProperty("status", item.getStatus());
+    if (item.getError() != null) {
+      replied.addProperty("error", item.getError());
+    }
+    send(connection, replied);
+  }
+
+  private void offer(Connection connection, int inquiryId, int revision) {
+    synchronized (connection) {
+      if (!connection.resumed || connection.closed) {
+        return;
+      }
+      Integer offered = revision;
+      Push inFlight = connection.inFlight.get(inquiryId);
+      if (offered.equals(connection.known.get(inquiryId))
+          || inFlight != null && inFlight.revision == revision
+          || offered.equals(connection.queued.get(inquiryId))) {
+        return;
+      }
+      connection.queued.put(inquiryId, revision);
+    }
+    pump(connection);
+  }
+
+  /**
+   * Push the queued inquiries of a connection while it has room for them. The inquiries are
+   * taken from the queue while holding the lock of the connection, and read and sent without it.
+   */
+  private void pump(Connection connection) {
+    List<Push> pushes;
+    do {
+      pushes = new ArrayList<>();
+      synchronized (connection) {
+        if (connection.closed) {
+          return;
+        }
+        Instant deadline = clock.instant().plus(ACK_TIMEOUT);
+        Iterator<Map.Entry<Integer, Integer>> queued = connection.queued.entrySet().iterator();
+        while (connection.inFlight.size() < MAX_IN_FLIGHT && queued.hasNext()) {
+          Map.Entry<Integer, Integer> next = queued.next();
+          queued.remove();
+          Push push = new Push(next.getKey(), next.getValue(), deadline);
+          connection.inFlight.put(push.inquiryId, push);
+          pushes.add(push);
+        }
+      }
+    } while (!deliver(connection, pushes));
+  }
+
+  /**
+   * Read and send pushed inquiries. An inquiry that is no longer open is dropped.
+   *
+   * @return false if an inquiry has been dropped, so there is room for another one
+   */
+  private boolean deliver(Connection connection, List<Push> pushes) {
+    boolean delivered = true;
+    for (Push push : pushes) {
+      String inquiry = backend.fetchInquiry(connection, push.inquiryId);
+      if (inquiry == null) {
+        synchronized (connection) {
+          connection.inFlight.remove(push.inquiryId, push);
+        }
+        delivered = false;
+        continue;
+      }
+
+      JsonObject message = new JsonObject();
+      message.addProperty("type", "inquiry");
+      message.addProperty("inquiryId", push.inquiryId);
+      message.addProperty("revision", push.revision);
+      message.addProperty("inquiry", inquiry);
+      send(connection, message);
+    }
+    return delivered;
+  }
+
+  private void sendError(Connection connection, String error) {
+    JsonObject message = new JsonObject();
+    message.addProperty("type", "error");
+    message.addProperty("error", error);
+    send(connection, message);
+  }
+
+  private void send(Connection connection, JsonObject message) {
+    synchronized (connection) {
+      enqueue(connection, message);
+    }
+    flush(connection);
+  }
+
+  /**
+   * Add a message to the outbox of a connection. Called while holding the lock of the
+   * connection.
+   */
+  private static void enqueue(Connection connection, JsonObject message) {
+    if (!connection.closed) {
+      connection.outbox.add(message.toString());
+    }
+  }
+
+  /**
+   * Start sending the next message of the outbox, unless a message is being sent. The site gets
+   * one message at a time, so a slow site only holds up its own messages. A site that falls too
+   * far behind is disconnected.
+   */
+  private void flush(Connection connection) {
+    String text;
+    synchronized (connection) {
+      if (connection.closed) {
+        return;
+      }
+      if (connection.outbox.size() > MAX_OUTBOX) {
+        text = null;
+      } else if (connection.sending || connection.outbox.isEmpty()) {
+        return;
+      } else {
+        text = connection.outbox.poll();
+        connection.sending = true;
+      }
+    }
+    if (text == null) {
+      logger.info("Site " + connection.siteId + " does not keep up with the inquiry channel, "
+          + "closing the connection");
+      disconnect(connection, "Too slow");
+      return;
+    }
+    try {
+      connection.peer.send(text, failure -> sent(connection, failure));
+    } catch (RuntimeException e) {
+      sent(connection, e);
+    }
+  }
+
+  private void sent(Connection connection, Throwable failure) {
+    if (failure != null) {
+      logger.info("Could not send to site " + connection.siteId + ", closing the connection: "
+          + failure.getMessage());
+      disconnect(connection, "Could not send");
+      return;
+    }
+    synchronized (connection) {
+      connection.sending = false;
+    }
+    flush(connection);
+  }
+
+  private void disconnect(Connection connection, String reason) {
+    close(connection);
+    connection.peer.close(reason);
+  }
+
+  private static Executor createPushExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES,
+        new ArrayBlockingQueue<>(QUEUE_SIZE),
+        new ThreadFactoryBuilder().setNameFormat("inquiry-channel").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * The connection of a site, with what has been pushed over it.
+   */
+  static class Connection {
+
+    private final int bankId;
+    private final int siteId;
+    private final Peer peer;
+    private final URI baseUri;
+    private final String userAgent;
+    private final String queryLanguage;
+    private final String xmlNamespace;
+
+    // guarded by this
+    private final Map<Integer, Integer> known = new HashMap<>();
+    private final Map<Integer, Push> inFlight = new HashMap<>();
+    private final Map<Integer, Integer> queued = new LinkedHashMap<>();
+    private final Queue<String> outbox = new ArrayDeque<>();
+    private boolean sending;
+    private boolean resumed;
+    private boolean closed;
+
+    /**
+     * Create the connection of a site.
+     *
+     * @param bankId        the id of the authenticated bank
+     * @param siteId        the id of the site of the bank
+     * @param peer          sends to the site
+     * @param baseUri       the base uri of the REST API, for the links to the exposes
+     * @param userAgent     the user agent of the bridgehead
+     * @param queryLanguage the query language of the criteria, as for a single inquiry
+     * @param xmlNamespace  the xml namespace requested by the bridgehead
+     */
+    Connection(int bankId, int siteId, Peer peer, URI baseUri, String userAgent,
+        String queryLanguage, String xmlNamespace) {
+      this.bankId = bankId;
+      this.siteId = siteId;
+      this.peer = peer;
+      this.baseUri = baseUri;
+      this.userAgent = userAgent;
+      this.queryLanguage = queryLanguage;
+      this.xmlNamespace = xmlNamespace;
+    }
+  }
+
+  /**
+   * An inquiry pushed to a site and not acked yet.
+   */
+  private static class Push {
+
+    private final int inquiryId;
+    private final int revision;
+
+    // guarded by the connection
+    private Instant deadline;
+    private int attempts = 1;
+
+    Push(int inquiryId, int revision, Instant deadline) {
+      this.inquiryId = inquiryId;
+      this.revision = revision;
+      this.deadline = deadline;
+    }
+  }
+
+  /**
+   * Sends to a connected site.
+   */
+  interface Peer {
+
+    /**
+     * Start sending a message without waiting for it to be sent. The next message is only sent
+     * once the completion of the previous one has been called.
+     *
+     * @param text       the message
+     * @param completion called with null once the message has been sent, or with the failure
+     */
+    void send(String text, Consumer<Throwable> completion);
+
+    /**
+     * Close the connection.
+     *
+     * @param reason why the connection is closed
+     */
+    void close(String reason);
+  }
+
+  /**
+   * Reads the inquiries pushed and stores the replies received.
+   */
+  interface Backend {
+
+    SortedMap<Integer, Integer> fetchOpenInquiryRevisions(int siteId);
+
+    String fetchInquiry(Connection connection, int inquiryId);
+
+    void recordRetrieval(int siteId, int inquiryId);
+
+    BulkReplyParser.Item saveReply(int bankId, JsonObject message);
+  }
+
+  private static class DatabaseBackend implements Backend {
+
+    private final InquiryHandler inquiryHandler = new InquiryHandler();
+
+    @Override
+    public SortedMap<Integer, Integer> fetchOpenInquiryRevisions(int siteId) {
+      return inquiryHandler.fetchOpenInquiryRevisions(siteId);
+    }
+
+    @Override
+    public String fetchInquiry(Connection connection, int inquiryId) {
+      return inquiryHandler.getBulkInquiry(inquiryId, connection.baseUri, connection.userAgent,
+          connection.queryLanguage, connection.xmlNamespace);
+    }
+
+    @Override
+    public void recordRetrieval(int siteId, int inquiryId) {
+      inquiryHandler.recordRetrieval(siteId, Collections.singletonList(inquiryId));
+    }
+
+    @Override
+    public BulkReplyParser.Item saveReply(int bankId, JsonObject message) {
+      return inquiryHandler.saveReply(bankId, message, SamplyShareUtils.getCurrentSqlTimestamp());
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package de.samply.share.broker.rest;
+
+import de.samply.share.broker.utils.Config;
+import de.samply.share.broker.utils.Utils;
+import de.samply.share.common.utils.Constants;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.servlet.ServletContext;
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCode;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerContainer;
+import javax.websocket.server.ServerEndpointConfig;
+import javax.ws.rs.core.HttpHeaders;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The WebSocket endpoint of the {@link InquiryChannel} at {@value #PATH}. It is only deployed if
+ * {@code channel.enabled} is set in the configuration. A bridgehead opens it with the same headers
+ * as for {@code /searchbroker/inquiries/bulk}: the Authorization header with its api key, and
+ * optionally the user agent, the query language and the xml namespace of the inquiries.
+ *
+ * <p>A connection without a message for {@code channel.max.idle.minutes} is closed, so a
+ * bridgehead sends pings while it has nothing else to send.
+ */
+public class InquiryChannelEndpoint extends Endpoint {
+
+  private static final Logger logger = LogManager.getLogger(InquiryChannelEndpoint.class);
+
+  static final String PATH = "/channel";
+
+  private static final String CFG_ENABLED = "channel.enabled";
+  private static final String CFG_MAX_IDLE_MINUTES = "channel.max.idle.minutes";
+  private static final int DEFAULT_MAX_IDLE_MINUTES = 10;
+  private static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+
+  private static final long SEND_TIMEOUT_MILLIS = 10_000L;
+
+  private static final String AUTHORIZATION = "authorization";
+  private static final String USER_AGENT = "userAgent";
+  private static final String QUERY_LANGUAGE = "queryLanguage";
+  private static final String XML_NAMESPACE = "xmlNamespace";
+  private static final String BASE_URI = "baseUri";
+
+  private InquiryChannel.Connection connection;
+
+  /**
+   * Deploy the endpoint if it is enabled in the configuration.
+   *
+   * @param context the context of the web application
+   */
+  public static void deploy(ServletContext context) {
+    if (!Config.getBooleanProperty(CFG_ENABLED, false)) {
+      return;
+    }
+    ServerContainer container =
+        (ServerContainer) context.getAttribute(ServerContainer.class.getName());
+    if (container == null) {
+      logger.warn("The servlet container does not support WebSockets, "
+          + "the inquiry channel is not available");
+      return;
+    }
+    try {
+      container.addEndpoint(ServerEndpointConfig.Builder.create(InquiryChannelEndpoint.class, PATH)
+          .configurator(new HandshakeConfigurator()).build());
+    } catch (DeploymentException e) {
+      logger.error("Could not deploy the inquiry channel", e);
+      return;
+    }
+    InquiryChannel.getInstance().start();
+    logger.info("Inquiry channel available at " + PATH);
+  }
+
+  @Override
+  public void onOpen(Session session, EndpointConfig config) {
+    Map<String, Object> properties = config.getUserProperties();
+    int bankId = Utils.getBankId((String) properties.get(AUTHORIZATION));
+    Integer siteId = bankId < 0 ? null : new InquiryHandler().getApprovedSiteId(bankId);
+    if (siteId == null) {
+      logger.warn("Unauthorized attempt to open the inquiry channel");
+      close(session, CloseCodes.VIOLATED_POLICY, "Unauthorized");
+      return;
+    }
+
+    session.setMaxIdleTimeout(Duration.ofMinutes(
+        Config.getIntProperty(CFG_MAX_IDLE_MINUTES, DEFAULT_MAX_IDLE_MINUTES)).toMillis());
+    session.setMaxTextMessageBufferSize(MAX_MESSAGE_SIZE);
+    session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MILLIS);
+
+    InquiryChannel channel = InquiryChannel.getInstance();
+    connection = new InquiryChannel.Connection(bankId, siteId, new SessionPeer(session),
+        (URI) properties.get(BASE_URI), (String) properties.get(USER_AGENT),
+        (String) properties.get(QUERY_LANGUAGE), (String) properties.get(XML_NAMESPACE));
+    channel.open(connection);
+    session.addMessageHandler(String.class, text -> channel.receive(connection, text));
+  }
+
+  @Override
+  public void onClose(Session session, CloseReason closeReason) {
+    if (connection != null) {
+      InquiryChannel.getInstance().close(connection);
+    }
+  }
+
+  @Override
+  public void onError(Session session, Throwable thr) {
+    logger.debug("Error on the inquiry channel", thr);
+  }
+
+  private static void close(Session session, CloseCode code, String reason) {
+    try {
+      session.close(new CloseReason(code, reason));
+    } catch (IOException e) {
+      logger.debug("Could not close the inquiry channel", e);
+    }
+  }
+
+  /**
+   * Sends over a WebSocket session without blocking the sending thread.
+   */
+  private static class SessionPeer implements InquiryChannel.Peer {
+
+    private final Session session;
+
+    SessionPeer(Session session) {
+      this.session = session;
+    }
+
+    @Override
+    public void send(String text, Consumer<Throwable> completion) {
+      session.getAsyncRemote().sendText(text,
+          result -> completion.accept(result.isOK() ? null : result.getException()));
+    }
+
+    @Override
+    public void close(String reason) {
+      InquiryChannelEndpoint.close(session, CloseCodes.GOING_AWAY, reason);
+    }
+  }
+
+  /**
+   * Keeps the headers of the handshake for {@link #onOpen}. Tomcat hands every handshake its own
+   * copy of the endpoint configuration, so the properties of concurrent handshakes do not mix.
+   */
+  private static class HandshakeConfigurator extends ServerEndpointConfig.Configurator {
+
+    @Override
+    public void modifyHandshake(ServerEndpointConfig config, HandshakeRequest request,
+        HandshakeResponse response) {
+      Map<String, Object> properties = config.getUserProperties();
+      properties.put(AUTHORIZATION, getHeader(request, HttpHeaders.AUTHORIZATION, null));
+      properties.put(USER_AGENT, getHeader(request, HttpHeaders.USER_AGENT, ""));
+      properties.put(QUERY_LANGUAGE,
+          getHeader(request, Constants.HEADER_KEY_QUERY_LANGUAGE, "QUERY"));
+      properties.put(XML_NAMESPACE, getHeader(request, Constants.HEADER_XML_NAMESPACE, null));
+      properties.put(BASE_URI, getRestBaseUri(request.getRequestURI()));
+    }
+
+    private static String getHeader(HandshakeRequest request, String name, String defaultValue) {
+      for (Map.Entry<String, List<String>> header : request.getHeaders().entrySet()) {
+        if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+          return header.getValue().get(0);
+        }
+      }
+      return defaultValue;
+    }
+
+    /**
+     * Get the base uri of the REST API next to the endpoint, as the links to the exposes point
+     * there.
+     */
+    private static URI getRestBaseUri(URI requestUri) {
+      String scheme = "wss".equalsIgnoreCase(requestUri.getScheme()) ? "https" : "http";
+      String path = requestUri.getRawPath();
+      String contextPath = path.endsWith(PATH)
+          ? path.substring(0, path.length() - PATH.length()) : "";
+      return URI.create(scheme + "://" + requestUri.getRawAuthority() + contextPath + "/rest/");
+    }
+  }
+}
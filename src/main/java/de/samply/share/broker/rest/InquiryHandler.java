@@ -7,6 +7,11 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import de.samply.share.broker.jdbc.InvalidationBus;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
+import de.samply.share.broker.jdbc.OpenInquiryIndex;
+import de.samply.share.broker.jdbc.OpenInquiryIndex.OpenInquiry;
 import de.samply.share.broker.jdbc.ResourceManager;
 import de.samply.share.broker.model.DefaultInquiryCriteriaTranslatable;
 import de.samply.share.broker.model.InquiryCriteriaTranslatable;
@@ -16,20 +21,27 @@ import de.samply.share.broker.model.db.enums.InquiryStatus;
 import de.samply.share.broker.model.db.enums.ProjectStatus;
 import de.samply.share.broker.model.db.tables.daos.ContactDao;
 import de.samply.share.broker.model.db.tables.daos.InquiryDao;
-import de.samply.share.broker.model.db.tables.daos.ReplyDao;
 import de.samply.share.broker.model.db.tables.daos.UserDao;
 import de.samply.share.broker.model.db.tables.pojos.BankSite;
 import de.samply.share.broker.model.db.tables.pojos.Document;
 import de.samply.share.broker.model.db.tables.pojos.Inquiry;
 import de.samply.share.broker.model.db.tables.pojos.InquiryCriteria;
-import de.samply.share.broker.model.db.tables.pojos.Reply;
+import de.samply.share.broker.model.db.tables.pojos.InquirySite;
 import de.samply.share.broker.model.db.tables.pojos.Site;
 import de.samply.share.broker.model.db.tables.pojos.User;
+import de.samply.share.broker.model.db.tables.records.InquirySiteRecord;
+import de.samply.share.broker.monitoring.BrokerMetrics;
+import de.samply.share.broker.monitoring.SiteResponsivenessScoreboard;
+import de.samply.share.broker.utils.JaxbContexts;
+import de.samply.share.broker.utils.Utils;
 import de.samply.share.broker.utils.db.BankSiteUtil;
+import de.samply.share.broker.utils.db.BankUtil;
 import de.samply.share.broker.utils.db.ContactUtil;
 import de.samply.share.broker.utils.db.DocumentUtil;
 import de.samply.share.broker.utils.db.InquiryCriteriaUtil;
+import de.samply.share.broker.utils.db.InquirySiteUtil;
 import de.samply.share.broker.utils.db.InquiryUtil;
+import de.samply.share.broker.utils.db.ReplyUtil;
 import de.samply.share.broker.utils.db.SiteUtil;
 import de.samply.share.common.utils.Constants;
 import de.samply.share.common.utils.ProjectInfo;
@@ -41,16 +53,29 @@ import de.samply.share.model.common.Query;
 import de.samply.share.model.common.inquiry.InquiriesIdList;
 import de.samply.share.model.cql.CqlQuery;
 import de.samply.share.model.cql.CqlQueryList;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.Writer;
+import java.net.URI;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.xml.bind.JAXBContext;
@@ -62,9 +87,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep2;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
 
 /**
  * The Class InquiryHandler.
@@ -76,6 +102,12 @@ public class InquiryHandler {
   private static final String QUERYLANGUAGE_QUERY = "QUERY";
   private static final String QUERYLANGUAGE_CQL = "CQL";
   private static final String QUERYLANGUAGE_STRUCTURED_QUERY = "STRUCTURED_QUERY";
+  private static final int MAX_BULK_REPLIES = 1000;
+  private static final String XML_DECLARATION =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+  private static final String INSERT_DOCUMENT = "INSERT INTO samply.document"
+      + " (data, filename, filetype, project_id, inquiry_id, user_id, document_type)"
+      + " VALUES (?, ?, ?, ?, ?, ?, CAST(? AS samply.document_type)) RETURNING id";
 
   public InquiryHandler() {
   }
@@ -114,6 +146,9 @@ public class InquiryHandler {
         exposeId, voteId, resultTypes);
     Inquiry inquiry = InquiryUtil.fetchInquiryById(inquiryId);
     release(inquiry, bypassExamination);
+    if (inquiryId > 0) {
+      BrokerMetrics.getInstance().inquiryReleased();
+    }
     return inquiryId;
   }
 
@@ -141,8 +176,7 @@ public class InquiryHandler {
     boolean isDktk = projectName.equalsIgnoreCase("dktk");
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       userDao = new UserDao(configuration);
       user = userDao.fetchOneById(userid);
@@ -211,8 +245,7 @@ public class InquiryHandler {
     boolean isDktk = projectName.equalsIgnoreCase("dktk");
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
       DSLContext dslContext = ResourceManager.getDslContext(connection);
 
       inquiry.setStatus(InquiryStatus.IS_RELEASED);
@@ -248,6 +281,7 @@ public class InquiryHandler {
         inquiryDao = new InquiryDao(configuration);
         inquiryDao.update(inquiry);
       }
+      InvalidationBus.getInstance().publish(Topic.INQUIRY, inquiry.getId());
 
     } catch (SQLException e) {
       logger.error("SQL Exception when trying to spawn project.");
@@ -265,8 +299,7 @@ public class InquiryHandler {
    */
   int createTentative(Query query, int userid) {
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       UserDao userDao = new UserDao(configuration);
       User user = userDao.fetchOneById(userid);
@@ -295,43 +328,71 @@ public class InquiryHandler {
 
   /**
    * Link a document with a project and/or inquiry.
+   * The content is bound as a stream, so it is passed on to the database while it is read and
+   * never held as a whole in memory.
    *
    * @param projectId        the id of the project to link the document with, if any
    * @param inquiryId        the id of the inquiry to link the document with
    * @param userId           the id of the user that uploaded the document
-   * @param documentData     the document itself
+   * @param documentData     the content of the document
    * @param documentFilename the name of the document
    * @param documentFiletype the filetype of the document
    * @param documentType     the type of the document (expose, vote, report...)
    * @return the id of the newly added document
+   * @throws IOException if reading the content failed, e.g. because the upload was rejected
    */
-  int addDocument(Integer projectId, Integer inquiryId, int userId, File documentData,
-      String documentFilename, String documentFiletype, DocumentType documentType) {
+  int addDocument(Integer projectId, Integer inquiryId, int userId, InputStream documentData,
+      String documentFilename, String documentFiletype, DocumentType documentType)
+      throws IOException {
     int returnValue = 0;
 
-    try (Connection connection = ResourceManager.getConnection()) {
-      DSLContext dslContext = ResourceManager.getDslContext(connection);
-
-      if (documentData != null) {
-        Path path = documentData.toPath();
-        Record documentRecord = dslContext.insertInto(Tables.DOCUMENT, Tables.DOCUMENT.DATA,
-                Tables.DOCUMENT.FILENAME, Tables.DOCUMENT.FILETYPE, Tables.DOCUMENT.PROJECT_ID,
-                Tables.DOCUMENT.INQUIRY_ID, Tables.DOCUMENT.USER_ID, Tables.DOCUMENT.DOCUMENT_TYPE)
-            .values(Files.readAllBytes(path),
-                documentFilename, documentFiletype, projectId,
-                inquiryId, userId, documentType).returning(Tables.DOCUMENT.ID).fetchOne();
+    if (documentData == null) {
+      return returnValue;
+    }
 
-        returnValue = documentRecord.getValue(Tables.DOCUMENT.ID);
+    try (Connection connection = ResourceManager.getConnection();
+        PreparedStatement statement = connection.prepareStatement(INSERT_DOCUMENT)) {
+      statement.setBinaryStream(1, documentData);
+      statement.setString(2, documentFilename);
+      statement.setString(3, documentFiletype);
+      statement.setObject(4, projectId, Types.INTEGER);
+      statement.setObject(5, inquiryId, Types.INTEGER);
+      statement.setInt(6, userId);
+      statement.setString(7, documentType.getLiteral());
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (resultSet.next()) {
+          returnValue = resultSet.getInt(1);
+        }
       }
-    } catch (SQLException | IOException e) {
-      e.printStackTrace();
+    } catch (SQLException e) {
+      IOException readFailure = readFailureOf(e);
+      if (readFailure != null) {
+        throw readFailure;
+      }
+      logger.error("Could not store document " + documentFilename, e);
     }
 
     return returnValue;
   }
 
   /**
-   * Link the inquiry with the sites it will be sent to.
+   * The driver reports a failure to read a bound stream as an SQLException. Find the
+   * IOException that caused it, so the caller can tell a rejected upload from a database error.
+   */
+  private static IOException readFailureOf(SQLException e) {
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return (IOException) cause;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Link the inquiry with the sites it will be sent to. The sites are replaced in one
+   * transaction, and the change is announced once it has been committed, so the inquiry is
+   * listed for the bridgeheads of the sites right away.
    *
    * @param inquiryId the id of the inquiry
    * @param siteIds   a list of the ids of the sites to send the inquiry to
@@ -339,24 +400,30 @@ public class InquiryHandler {
    */
   public boolean setSitesForInquiry(int inquiryId, List<String> siteIds) {
     try (Connection connection = ResourceManager.getConnection()) {
-      DSLContext dslContext = ResourceManager.getDslContext(connection);
-
-      // Clear all sites first. In case this is a modification by the ccp office.
-
-      dslContext.deleteFrom(Tables.INQUIRY_SITE)
-          .where(Tables.INQUIRY_SITE.INQUIRY_ID.equal(inquiryId))
-          .execute();
-
-      for (String site : siteIds) {
-        dslContext.insertInto(Tables.INQUIRY_SITE, Tables.INQUIRY_SITE.INQUIRY_ID,
-                Tables.INQUIRY_SITE.SITE_ID)
-            .values(inquiryId, Integer.parseInt(site)).execute();
-      }
-      return true;
-    } catch (SQLException e) {
+      ResourceManager.getDslContext(connection).transaction(configuration -> {
+        DSLContext dslContext = DSL.using(configuration);
+
+        // Clear all sites first. In case this is a modification by the ccp office.
+        dslContext.deleteFrom(Tables.INQUIRY_SITE)
+            .where(Tables.INQUIRY_SITE.INQUIRY_ID.equal(inquiryId))
+            .execute();
+
+        InsertValuesStep2<InquirySiteRecord, Integer, Integer> insert = dslContext
+            .insertInto(Tables.INQUIRY_SITE, Tables.INQUIRY_SITE.INQUIRY_ID,
+                Tables.INQUIRY_SITE.SITE_ID);
+        for (String site : siteIds) {
+          insert = insert.values(inquiryId, Integer.parseInt(site));
+        }
+        if (!siteIds.isEmpty()) {
+          insert.execute();
+        }
+      });
+    } catch (SQLException | DataAccessException e) {
       logger.error("Error adding sites for distribution for inquiry " + inquiryId, e);
       return false;
     }
+    InvalidationBus.getInstance().publish(Topic.INQUIRY, inquiryId);
+    return true;
   }
 
   /**
@@ -368,11 +435,35 @@ public class InquiryHandler {
   protected String list(int bankId) {
     InquiriesIdList inquiriesIdList = new InquiriesIdList();
 
+    Integer siteId = getApprovedSiteId(bankId);
+    if (siteId == null) {
+      return writeXml(inquiriesIdList);
+    }
+
+    for (Map.Entry<Integer, Integer> inquiry : fetchOpenInquiryRevisions(siteId).entrySet()) {
+      InquiriesIdList.InquiryId inquiryXml = new InquiriesIdList.InquiryId();
+      inquiriesIdList.getInquiryIds().add(inquiryXml);
+
+      inquiryXml.setId(Integer.toString(inquiry.getKey()));
+      inquiryXml.setRevision(Integer.toString(inquiry.getValue()));
+    }
+
+    return writeXml(inquiriesIdList);
+  }
+
+  /**
+   * Get the site a bank may receive inquiries for.
+   *
+   * @param bankId the id of the bank
+   * @return the id of the site, or null if the bank is not associated with a site or the
+   *     association has not been approved
+   */
+  Integer getApprovedSiteId(int bankId) {
     BankSite bankSite = BankSiteUtil.fetchBankSiteByBankId(bankId);
     if (bankSite == null) {
       logger.warn(
           "No Bank site for bank id '" + bankId + "' is found. Not providing any inquiries.");
-      return writeXml(inquiriesIdList);
+      return null;
     }
 
     Site site = SiteUtil.fetchSiteById(bankSite.getSiteId());
@@ -381,38 +472,161 @@ public class InquiryHandler {
     if (siteIdForBank == null || siteIdForBank < 1) {
       logger.warn(
           "Bank " + bankId + " is not associated with a site. Not providing any inquiries.");
-      return writeXml(inquiriesIdList);
+      return null;
     }
 
     if (!bankSite.getApproved()) {
       logger.warn("Bank " + bankId
           + " is associated with a site, but that association has not been approved. "
           + "Not providing any inquiries.");
-      return writeXml(inquiriesIdList);
+      return null;
     }
+    return siteIdForBank;
+  }
 
-    for (Inquiry inquiry : InquiryUtil.fetchInquiriesForSite(siteIdForBank)) {
-      if (inquiry.getRevision() == null || inquiry.getRevision() < 1) {
-        continue;
+  /**
+   * Get the released, unexpired inquiries of a site. Tentative inquiries are left out.
+   *
+   * @param siteId the id of the site
+   * @return the revisions of the inquiries by inquiry id, ordered by inquiry id
+   */
+  SortedMap<Integer, Integer> fetchOpenInquiryRevisions(int siteId) {
+    SortedMap<Integer, Integer> revisions = new TreeMap<>();
+    List<OpenInquiry> openInquiries = OpenInquiryIndex.getInstance().getOpenInquiries(siteId);
+    if (openInquiries != null) {
+      for (OpenInquiry inquiry : openInquiries) {
+        revisions.put(inquiry.getId(), inquiry.getRevision());
       }
+      return revisions;
+    }
 
-      InquiriesIdList.InquiryId inquiryXml = new InquiriesIdList.InquiryId();
-      inquiriesIdList.getInquiryIds().add(inquiryXml);
+    // the index is still loading
+    for (Inquiry inquiry : InquiryUtil.fetchInquiriesForSite(siteId)) {
+      if (inquiry.getRevision() != null && inquiry.getRevision() >= 1) {
+        revisions.put(inquiry.getId(), inquiry.getRevision());
+      }
+    }
+    return revisions;
+  }
 
-      inquiryXml.setId(Integer.toString(inquiry.getId()));
-      if (inquiry.getRevision() != null) {
-        inquiryXml.setRevision(Integer.toString(inquiry.getRevision()));
-      } else {
-        inquiryXml.setRevision("1");
+  /**
+   * Write all open inquiries of a site as one document, each one with the contact of its author,
+   * its info and whether it has an expose. Every inquiry is flushed once written, so the client
+   * may process it while the next one is read. The retrieval of the inquiries is recorded in one
+   * batch after the last one.
+   *
+   * @param siteId          the id of the site, or null to write an empty document
+   * @param baseUri         the base uri of the REST API, for the links to the exposes
+   * @param userAgentHeader the user agent header of the requesting client
+   * @param queryLanguage   the query language of the criteria, as for a single inquiry
+   * @param xmlNamespace    the xml namespace requested by the client
+   * @param writer          receives the document
+   * @throws IOException if the document could not be written
+   */
+  void writeBulkInquiries(Integer siteId, URI baseUri, String userAgentHeader,
+      String queryLanguage, String xmlNamespace, Writer writer) throws IOException {
+    writer.write(XML_DECLARATION);
+    writer.write("<BulkInquiries>");
+    List<Integer> writtenInquiryIds = new ArrayList<>();
+    Set<Integer> inquiryIds = siteId == null ? Collections.emptySet()
+        : fetchOpenInquiryRevisions(siteId).keySet();
+    for (int inquiryId : inquiryIds) {
+      String bulkInquiry = getBulkInquiry(inquiryId, baseUri, userAgentHeader, queryLanguage,
+          xmlNamespace);
+      if (bulkInquiry == null) {
+        continue;
       }
+      writer.write(bulkInquiry);
+      writer.flush();
+      writtenInquiryIds.add(inquiryId);
     }
+    writer.write("</BulkInquiries>");
+    writer.flush();
 
-    return writeXml(inquiriesIdList);
+    if (siteId != null) {
+      recordRetrieval(siteId, writtenInquiryIds);
+    }
+  }
+
+  /**
+   * Gets an inquiry with the contact of its author, its info and whether it has an expose, as
+   * written by {@link #writeBulkInquiries}.
+   *
+   * @param inquiryId       the id of the inquiry
+   * @param baseUri         the base uri of the REST API, for the link to the expose
+   * @param userAgentHeader the user agent header of the requesting client
+   * @param queryLanguage   the query language of the criteria, as for a single inquiry
+   * @param xmlNamespace    the xml namespace requested by the client
+   * @return the serialized BulkInquiry element, or null if the inquiry could not be serialized
+   */
+  String getBulkInquiry(int inquiryId, URI baseUri, String userAgentHeader, String queryLanguage,
+      String xmlNamespace) {
+    String inquiry = getInquiry(inquiryId, baseUri, userAgentHeader, queryLanguage);
+    if (!inquiry.startsWith("<")) {
+      logger.warn("Leaving out inquiry " + inquiryId + ": " + inquiry);
+      return null;
+    }
+    String contact;
+    String info;
+    try {
+      contact = getContact(inquiryId);
+      info = getInfo(inquiryId);
+    } catch (JAXBException e) {
+      logger.warn("Leaving out inquiry " + inquiryId, e);
+      return null;
+    }
+
+    return "<BulkInquiry>"
+        + Utils.fixNamespaces(inquiry, xmlNamespace)
+        + Utils.fixNamespaces(contact, xmlNamespace)
+        + Utils.fixNamespaces(info, xmlNamespace)
+        + "<HasExpose>" + InquiryUtil.inquiryHasExpose(inquiryId) + "</HasExpose>"
+        + "</BulkInquiry>";
+  }
+
+  /**
+   * Record that a site has retrieved inquiries.
+   *
+   * @param siteId     the id of the site
+   * @param inquiryIds the ids of the retrieved inquiries
+   */
+  void recordRetrieval(int siteId, List<Integer> inquiryIds) {
+    Timestamp now = SamplyShareUtils.getCurrentSqlTimestamp();
+    markRetrieved(siteId, inquiryIds, now).forEach((inquiryId, created) -> {
+      if (created != null) {
+        recordFirstRetrieval(siteId, created, now);
+      }
+    });
+  }
+
+  /**
+   * Mark inquiries as retrieved by a site.
+   *
+   * @param siteId      the id of the site
+   * @param inquiryIds  the ids of the retrieved inquiries
+   * @param retrievedAt the time of the retrieval
+   * @return the creation times by inquiry id of the inquiries retrieved for the first time
+   */
+  Map<Integer, Timestamp> markRetrieved(int siteId, List<Integer> inquiryIds,
+      Timestamp retrievedAt) {
+    return InquirySiteUtil.markRetrieved(siteId, inquiryIds, retrievedAt);
+  }
+
+  /**
+   * Record how long it took a site to retrieve an inquiry for the first time.
+   *
+   * @param siteId      the id of the site
+   * @param created     the time the inquiry has been created
+   * @param retrievedAt the time of the retrieval
+   */
+  void recordFirstRetrieval(int siteId, Timestamp created, Timestamp retrievedAt) {
+    SiteResponsivenessScoreboard.getInstance().recordRetrieval(siteId, created.toInstant(),
+        retrievedAt.toInstant());
   }
 
-  private String writeXml(InquiriesIdList inquiries) {
+  String writeXml(InquiriesIdList inquiries) {
     try {
-      JAXBContext jaxbContext = JAXBContext.newInstance(InquiriesIdList.class);
+      JAXBContext jaxbContext = JaxbContexts.get(InquiriesIdList.class);
       Marshaller marshaller = jaxbContext.createMarshaller();
       StringWriter writer = new StringWriter();
       marshaller.marshal(inquiries, writer);
@@ -435,6 +649,11 @@ public class InquiryHandler {
    * @return the serialized inquiry
    */
   String getInquiry(int inquiryId, UriInfo uriInfo, String userAgentHeader, String queryLanguage) {
+    return getInquiry(inquiryId, uriInfo.getBaseUri(), userAgentHeader, queryLanguage);
+  }
+
+  private String getInquiry(int inquiryId, URI baseUri, String userAgentHeader,
+      String queryLanguage) {
     StringBuilder returnValue = new StringBuilder();
     Inquiry inquiry;
     InquiryDao inquiryDao;
@@ -442,8 +661,7 @@ public class InquiryHandler {
     UserDao userDao;
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       inquiryDao = new InquiryDao(configuration);
       inquiry = inquiryDao.findById(inquiryId);
@@ -461,7 +679,7 @@ public class InquiryHandler {
 
       de.samply.share.model.common.Inquiry inq = new de.samply.share.model.common.Inquiry();
 
-      UriBuilder uriBuilder = uriInfo.getBaseUriBuilder();
+      UriBuilder uriBuilder = UriBuilder.fromUri(baseUri);
       inq.setExposeUrl(
           uriBuilder.path(Searchbroker.class, "getSynopsis").build(inquiryId).toString());
       inq.setId(Integer.toString(inquiryId));
@@ -500,16 +718,7 @@ public class InquiryHandler {
         }
       }
 
-      StringWriter stringWriter = new StringWriter();
-      JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
-      Marshaller marshaller = jaxbContext.createMarshaller();
-      marshaller.setProperty(JAXB_FRAGMENT, TRUE);
-
-      ObjectFactory objectFactory = new ObjectFactory();
-
-      marshaller.marshal(objectFactory.createInquiry(inq), stringWriter);
-
-      returnValue.append(stringWriter);
+      returnValue.append(marshalInquiry(inq));
 
     } catch (SQLException e) {
       e.printStackTrace();
@@ -521,12 +730,32 @@ public class InquiryHandler {
     return returnValue.toString();
   }
 
+  /**
+   * Serialize an inquiry as xml fragment.
+   *
+   * @param inquiry the inquiry to serialize
+   * @return the serialized inquiry
+   * @throws JAXBException if the inquiry could not be marshalled
+   */
+  static String marshalInquiry(de.samply.share.model.common.Inquiry inquiry)
+      throws JAXBException {
+    StringWriter stringWriter = new StringWriter();
+    JAXBContext jaxbContext = JaxbContexts.get(ObjectFactory.class);
+    Marshaller marshaller = jaxbContext.createMarshaller();
+    marshaller.setProperty(JAXB_FRAGMENT, TRUE);
+
+    ObjectFactory objectFactory = new ObjectFactory();
+
+    marshaller.marshal(objectFactory.createInquiry(inquiry), stringWriter);
+    return stringWriter.toString();
+  }
+
   private void addCriteriaForViewQuery(int inquiryId, de.samply.share.model.common.Inquiry inq)
       throws JAXBException {
     String criteria = InquiryCriteriaUtil.fetchCriteriaForInquiryIdTypeQuery(inquiryId);
     StringReader stringReader = new StringReader(criteria);
 
-    JAXBContext jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+    JAXBContext jaxbContext = JaxbContexts.get(ObjectFactory.class);
     Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
     Query query = (Query) unmarshaller.unmarshal(stringReader);
 
@@ -598,8 +827,7 @@ public class InquiryHandler {
     String ret = "";
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       inquiryDao = new InquiryDao(configuration);
       inquiry = inquiryDao.findById(inquiryId);
@@ -628,7 +856,7 @@ public class InquiryHandler {
         contact.setTitle(contactPojo.getTitle());
       }
 
-      JAXBContext jaxbContext = JAXBContext.newInstance(Contact.class);
+      JAXBContext jaxbContext = JaxbContexts.get(Contact.class);
       ObjectFactory objectFactory = new ObjectFactory();
       StringWriter stringWriter = new StringWriter();
       Marshaller marshaller = jaxbContext.createMarshaller();
@@ -656,8 +884,7 @@ public class InquiryHandler {
     InquiryDao inquiryDao;
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       inquiryDao = new InquiryDao(configuration);
       inquiry = inquiryDao.findById(inquiryId);
@@ -687,8 +914,7 @@ public class InquiryHandler {
     InquiryDao inquiryDao;
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       inquiryDao = new InquiryDao(configuration);
       inquiry = inquiryDao.findById(inquiryId);
@@ -716,8 +942,7 @@ public class InquiryHandler {
   String getInfo(int inquiryId) throws JAXBException {
 
     try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
 
       InquiryDao inquiryDao = new InquiryDao(configuration);
       Inquiry inquiry = inquiryDao.findById(inquiryId);
@@ -737,7 +962,7 @@ public class InquiryHandler {
         info.setRevision(Integer.toString(inquiry.getRevision()));
       }
 
-      JAXBContext jaxbContext = JAXBContext.newInstance(Info.class);
+      JAXBContext jaxbContext = JaxbContexts.get(Info.class);
       ObjectFactory objectFactory = new ObjectFactory();
       StringWriter stringWriter = new StringWriter();
       Marshaller marshaller = jaxbContext.createMarshaller();
@@ -806,6 +1031,21 @@ public class InquiryHandler {
         .fetchOne();
   }
 
+  /**
+   * Set the name of the replying site in a reply.
+   *
+   * @param content  the reply as sent by the bridgehead
+   * @param siteName the name of the site the reply belongs to
+   * @return the reply with the site name
+   */
+  static String rewriteReply(String content, String siteName) {
+    Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    de.samply.share.model.common.result.Reply replyJson = gson.fromJson(content,
+        de.samply.share.model.common.result.Reply.class);
+    replyJson.setSite(siteName);
+    return gson.toJson(replyJson);
+  }
+
   /**
    * Save a reply to a given inquiry.
    *
@@ -816,41 +1056,121 @@ public class InquiryHandler {
    * @return true, if successful
    */
   boolean saveReply(int inquiryId, int bankId, String content, Timestamp timestamp) {
-    Gson gson = new GsonBuilder().disableHtmlEscaping().create();
-    de.samply.share.model.common.result.Reply replyJson = gson.fromJson(content,
-        de.samply.share.model.common.result.Reply.class);
-    replyJson.setSite(
-        SiteUtil.fetchSiteById(BankSiteUtil.fetchBankSiteByBankId(bankId).getSiteId()).getName());
-    content = gson.toJson(replyJson);
+    Site site = BankUtil.getSiteForBankId(bankId);
+    int siteId = site.getId();
+    content = rewriteReply(content, site.getName());
 
-    try (Connection connection = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(connection)
-          .set(SQLDialect.POSTGRES);
-      DSLContext dslContext = ResourceManager.getDslContext(connection);
-      ReplyDao replyDao = new ReplyDao(configuration);
-
-      Record record = dslContext.select().from(Tables.REPLY)
-          .where(Tables.REPLY.BANK_ID.equal(bankId).and(Tables.REPLY.INQUIRY_ID.equal(inquiryId)))
-          .fetchAny();
-
-      Reply reply;
-      if (record == null) {
-        reply = new Reply();
-        reply.setBankId(bankId);
-        reply.setInquiryId(inquiryId);
-        reply.setContent(content);
-        reply.setRetrievedat(timestamp);
-        replyDao.insert(reply);
-      } else {
-        reply = replyDao.findById(record.getValue(Tables.REPLY.ID));
-        reply.setContent(content);
-        reply.setRetrievedat(timestamp);
-        replyDao.update(reply);
-      }
-      return true;
-    } catch (SQLException e) {
+    Set<Integer> firstReplies;
+    try {
+      firstReplies = ReplyUtil.upsertReplies(bankId,
+          Collections.singletonMap(inquiryId, content), timestamp);
+    } catch (SQLException | DataAccessException e) {
       logger.error(e);
       return false;
     }
+
+    repliesStored(siteId, Collections.singleton(inquiryId), firstReplies, timestamp);
+    return true;
+  }
+
+  /**
+   * Save many replies of a bank at once. The replies are checked while they are read, and the
+   * valid ones sent to the site of the bank are stored in one transaction.
+   *
+   * @param bankId    the id of the bank that sent the replies
+   * @param body      the replies, see {@link BulkReplyParser}
+   * @param timestamp the time the replies have been received
+   * @return the status of every reply, in the order they have been sent
+   * @throws com.google.gson.JsonParseException if the body is not an array of objects
+   * @throws TooManyRepliesException            if the body has more replies than allowed
+   */
+  List<BulkReplyParser.Item> saveReplies(int bankId, Reader body, Timestamp timestamp) {
+    Site site = BankUtil.getSiteForBankId(bankId);
+    int siteId = site.getId();
+    List<BulkReplyParser.Item> items = new BulkReplyParser(MAX_BULK_REPLIES)
+        .parse(body, site.getName());
+    storeReplies(bankId, siteId, items, timestamp);
+    return items;
+  }
+
+  /**
+   * Save a reply sent over the {@link InquiryChannel}, with the same checks as a reply of a bulk
+   * submission.
+   *
+   * @param bankId    the id of the bank that sent the reply
+   * @param message   the message with the inquiryId and the reply
+   * @param timestamp the time the reply has been received
+   * @return the reply and what became of it
+   */
+  BulkReplyParser.Item saveReply(int bankId, JsonObject message, Timestamp timestamp) {
+    Site site = BankUtil.getSiteForBankId(bankId);
+    BulkReplyParser.Item item = BulkReplyParser.parseItem(0, message, site.getName());
+    storeReplies(bankId, site.getId(), Collections.singletonList(item), timestamp);
+    return item;
+  }
+
+  private void storeReplies(int bankId, int siteId, List<BulkReplyParser.Item> items,
+      Timestamp timestamp) {
+    Map<Integer, BulkReplyParser.Item> validItems = new LinkedHashMap<>();
+    for (BulkReplyParser.Item item : items) {
+      if (item.isValid()) {
+        validItems.put(item.getInquiryId(), item);
+      }
+    }
+
+    Set<Integer> firstReplies;
+    try {
+      Set<Integer> sentToSite = InquirySiteUtil.fetchInquiryIdsSentToSite(siteId,
+          validItems.keySet());
+      Map<Integer, String> contents = new LinkedHashMap<>();
+      for (BulkReplyParser.Item item : validItems.values()) {
+        if (sentToSite.contains(item.getInquiryId())) {
+          contents.put(item.getInquiryId(), item.getContent());
+        } else {
+          item.reject(Response.Status.NOT_FOUND, "The inquiry has not been sent to the site");
+        }
+      }
+      firstReplies = ReplyUtil.upsertReplies(bankId, contents, timestamp);
+    } catch (SQLException | DataAccessException e) {
+      logger.error("Error while storing " + validItems.size() + " replies of bank " + bankId, e);
+      for (BulkReplyParser.Item item : validItems.values()) {
+        if (item.isValid()) {
+          item.reject(Response.Status.INTERNAL_SERVER_ERROR, "The reply could not be stored");
+        }
+      }
+      return;
+    }
+
+    Set<Integer> storedInquiryIds = new TreeSet<>();
+    for (BulkReplyParser.Item item : validItems.values()) {
+      if (item.isValid()) {
+        item.stored();
+        storedInquiryIds.add(item.getInquiryId());
+      }
+    }
+    repliesStored(siteId, storedInquiryIds, firstReplies, timestamp);
+  }
+
+  /**
+   * Announce committed replies, once per inquiry.
+   */
+  private static void repliesStored(int siteId, Set<Integer> inquiryIds,
+      Set<Integer> firstReplies, Timestamp timestamp) {
+    for (int inquiryId : inquiryIds) {
+      BrokerMetrics.getInstance().replyReceived();
+      InvalidationBus.getInstance().publish(Topic.REPLY, inquiryId);
+      if (firstReplies.contains(inquiryId)) {
+        recordFirstReply(siteId, inquiryId, timestamp);
+      }
+    }
+  }
+
+  private static void recordFirstReply(int siteId, int inquiryId, Timestamp repliedAt) {
+    InquirySite inquirySite = InquirySiteUtil.fetchInquirySiteForSiteIdAndInquiryId(siteId,
+        inquiryId);
+    if (inquirySite != null && inquirySite.getFirstRetrievedAt() != null) {
+      SiteResponsivenessScoreboard.getInstance().recordReply(siteId,
+          inquirySite.getFirstRetrievedAt().toInstant(), repliedAt.toInstant());
+    }
   }
 }
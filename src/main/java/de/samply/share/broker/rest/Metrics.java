@@ -0,0 +1,48 @@
+package de.samply.share.broker.rest;
+
+import static de.samply.share.broker.filter.BasicAuthRealm.ICINGA;
+
+import de.samply.share.broker.filter.BasicAuthSecure;
+import de.samply.share.broker.monitoring.BrokerMetrics;
+import de.samply.share.broker.utils.Config;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+/**
+ * Exposes the metrics of the broker in the Prometheus text format. Disabled unless
+ * metrics.endpoint.enabled is set, the same metrics are always available via JMX.
+ */
+@Path("/metrics")
+public class Metrics {
+
+  private static final String CFG_ENABLED = "metrics.endpoint.enabled";
+  private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+  /**
+   * Get the metrics of the broker.
+   *
+   * @param auth basic auth
+   * @return the metrics or 404 if the endpoint is disabled
+   */
+  @BasicAuthSecure(ICINGA)
+  @GET
+  @Produces(PROMETHEUS_TEXT)
+  @APIResponses({
+      @APIResponse(responseCode = "200", description = "ok"),
+      @APIResponse(responseCode = "404", description = "the metrics endpoint is disabled")
+  })
+  @Operation(summary = "Get the metrics of the broker in the Prometheus text format")
+  public Response getMetrics(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth) {
+    if (!Config.getBooleanProperty(CFG_ENABLED, false)) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return Response.ok(BrokerMetrics.getInstance().toPrometheusText(), PROMETHEUS_TEXT).build();
+  }
+}
@@ -6,18 +6,26 @@ import static de.samply.share.broker.rest.InquiryHandler.isQueryLanguageViewQuer
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import de.samply.common.mdrclient.MdrClient;
 import de.samply.share.broker.control.SearchController;
 import de.samply.share.broker.filter.BasicAuthSecure;
+import de.samply.share.broker.jdbc.SqlTimingListener;
+import de.samply.share.broker.jdbc.SqlTimings;
 import de.samply.share.broker.model.CqlInquiryCriteriaTranslatable;
+import de.samply.share.broker.model.CriteriaTranslationCache;
 import de.samply.share.broker.model.QueryContainer;
 import de.samply.share.broker.model.db.tables.pojos.Site;
 import de.samply.share.broker.monitoring.QueryObject;
+import de.samply.share.broker.monitoring.SiteResponsivenessScoreboard;
+import de.samply.share.broker.statistics.CriteriaUsageSketches;
+import de.samply.share.broker.statistics.SpaceSavingSketch;
 import de.samply.share.broker.utils.Utils;
 import de.samply.share.broker.utils.connector.IcingaConnector;
 import de.samply.share.broker.utils.connector.IcingaConnectorException;
 import de.samply.share.broker.utils.db.BankUtil;
 import de.samply.share.broker.utils.db.DbUtils;
+import de.samply.share.broker.utils.db.SiteUtil;
 import de.samply.share.broker.utils.db.TokenRequestUtil;
 import de.samply.share.common.model.dto.monitoring.StatusReportItem;
 import de.samply.share.common.utils.Constants;
@@ -33,7 +41,9 @@ import de.samply.share.model.cql.CqlQuery;
 import de.samply.share.utils.QueryConverter;
 import de.samply.web.mdrfaces.MdrContext;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
@@ -44,6 +54,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -300,6 +311,127 @@ public class Monitoring {
     }
   }
 
+  /**
+   * Get the hit rate and the saved translation time of the query translation cache.
+   *
+   * @param auth basic auth
+   * @return the statistics of the translation cache
+   */
+  @BasicAuthSecure(ICINGA)
+  @Path("/translation-cache")
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @APIResponses({
+      @APIResponse(
+          responseCode = "200",
+          description = "ok",
+          content = @Content(
+              mediaType = MediaType.APPLICATION_JSON,
+              schema = @Schema(implementation = CriteriaTranslationCache.Statistics.class)))
+  })
+  @Operation(summary = "Get the statistics of the query translation cache")
+  public Response getTranslationCacheStatistics(
+      @HeaderParam(HttpHeaders.AUTHORIZATION) String auth) {
+    return Response.ok(new Gson().toJson(CriteriaTranslationCache.getInstance().getStatistics()))
+        .build();
+  }
+
+  /**
+   * Get the responsiveness of the sites within the rolling window: the time from the release of
+   * an inquiry to its first retrieval by a site, and from that retrieval to the first reply.
+   *
+   * @param auth basic auth
+   * @return the p50 and p95 per site, slowest site first
+   */
+  @BasicAuthSecure(ICINGA)
+  @Path("/sites/responsiveness")
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @APIResponses({
+      @APIResponse(
+          responseCode = "200",
+          description = "ok",
+          content = @Content(
+              mediaType = MediaType.APPLICATION_JSON,
+              schema = @Schema(implementation = SiteResponsivenessScoreboard.SiteScore.class)))
+  })
+  @Operation(summary = "Get the retrieval and reply times per site")
+  public Response getSiteResponsiveness(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth) {
+    Map<Integer, String> siteNames = new HashMap<>();
+    for (Site site : SiteUtil.fetchSites()) {
+      siteNames.put(site.getId(), site.getName());
+    }
+    return Response.ok(new Gson().toJson(
+        SiteResponsivenessScoreboard.getInstance().getScores(siteNames::get))).build();
+  }
+
+  /**
+   * Get the execution times of the SQL statements, summed up per calling method and per
+   * statement shape. The calling method is looked up for a sample of the statements only.
+   *
+   * @param auth  basic auth
+   * @param limit the maximum number of statements to return
+   * @return the timings per caller and of the statements, each ordered by total execution time
+   */
+  @BasicAuthSecure(ICINGA)
+  @Path("/sql")
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @APIResponses({
+      @APIResponse(
+          responseCode = "200",
+          description = "ok",
+          content = @Content(
+              mediaType = MediaType.APPLICATION_JSON,
+              schema = @Schema(implementation = SqlTimings.Timing.class)))
+  })
+  @Operation(summary = "Get the execution times of the SQL statements")
+  public Response getSqlTimings(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth,
+      @QueryParam("limit") @DefaultValue("50") int limit) {
+    SqlTimings timings = SqlTimingListener.getTimings();
+    JsonObject result = new JsonObject();
+    Gson gson = new Gson();
+    result.add("callers", gson.toJsonTree(timings.getTimingsPerCaller()));
+    result.add("statements", gson.toJsonTree(timings.getTopTimings(limit)));
+    return Response.ok(gson.toJson(result)).build();
+  }
+
+  /**
+   * Get the most searched fields and values and the fields most often combined in a query. The
+   * counts are estimates, each at most its error too high.
+   *
+   * @param auth  basic auth
+   * @param limit the maximum number of fields, values and pairs to return
+   * @return the counts per sketch (fields, values, pairs), most frequent first
+   */
+  @BasicAuthSecure(ICINGA)
+  @Path("/criteria-usage")
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @APIResponses({
+      @APIResponse(
+          responseCode = "200",
+          description = "ok",
+          content = @Content(
+              mediaType = MediaType.APPLICATION_JSON,
+              schema = @Schema(implementation = SpaceSavingSketch.Counter.class)))
+  })
+  @Operation(summary = "Get the most searched fields and values and combinations of fields")
+  public Response getCriteriaUsage(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth,
+      @QueryParam("limit") @DefaultValue("20") int limit) {
+    CriteriaUsageSketches sketches = CriteriaUsageSketches.getInstance();
+    Gson gson = new Gson();
+    JsonObject result = new JsonObject();
+    for (String name : Arrays.asList(CriteriaUsageSketches.FIELDS, CriteriaUsageSketches.VALUES,
+        CriteriaUsageSketches.PAIRS)) {
+      JsonObject sketch = new JsonObject();
+      sketch.addProperty("total", sketches.getTotal(name));
+      sketch.add("top", gson.toJsonTree(sketches.getTop(name, limit)));
+      result.add(name, sketch);
+    }
+    return Response.ok(gson.toJson(result)).build();
+  }
+
   private String createReferenceQueryCql() {
     // Gender and AgeClass are necessary because the Measure Resource references that Expressions
     return "library Retrieve\n"
@@ -8,11 +8,14 @@ import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.mchange.util.AlreadyExistsException;
 import de.samply.share.broker.control.SearchController;
 import de.samply.share.broker.control.SiteController;
 import de.samply.share.broker.filter.AuthenticatedUser;
 import de.samply.share.broker.filter.BasicAuthSecure;
+import de.samply.share.broker.filter.RateLimitClass;
+import de.samply.share.broker.filter.RateLimited;
 import de.samply.share.broker.filter.Secured;
 import de.samply.share.broker.model.QueryContainer;
 import de.samply.share.broker.model.StructuredQueryInquiryCriteriaTranslatable;
@@ -20,10 +23,12 @@ import de.samply.share.broker.model.db.tables.pojos.BankSite;
 import de.samply.share.broker.model.db.tables.pojos.Document;
 import de.samply.share.broker.model.db.tables.pojos.Inquiry;
 import de.samply.share.broker.model.db.tables.pojos.InquirySite;
+import de.samply.share.broker.model.db.tables.pojos.QueryRelease;
 import de.samply.share.broker.model.db.tables.pojos.Reply;
 import de.samply.share.broker.model.db.tables.pojos.Site;
 import de.samply.share.broker.model.db.tables.pojos.User;
 import de.samply.share.broker.monitoring.IcingaController;
+import de.samply.share.broker.monitoring.SiteResponsivenessScoreboard;
 import de.samply.share.broker.statistics.NTokenHandler;
 import de.samply.share.broker.utils.Utils;
 import de.samply.share.broker.utils.db.BankSiteUtil;
@@ -31,14 +36,22 @@ import de.samply.share.broker.utils.db.BankUtil;
 import de.samply.share.broker.utils.db.DocumentUtil;
 import de.samply.share.broker.utils.db.InquirySiteUtil;
 import de.samply.share.broker.utils.db.InquiryUtil;
+import de.samply.share.broker.utils.db.QueryReleaseUtil;
 import de.samply.share.broker.utils.db.SiteUtil;
 import de.samply.share.common.model.dto.SiteInfo;
 import de.samply.share.common.utils.Constants;
 import de.samply.share.common.utils.ProjectInfo;
 import de.samply.share.common.utils.SamplyShareUtils;
 import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.UUID;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -59,6 +72,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import javax.xml.bind.JAXBException;
 import org.apache.commons.lang.StringUtils;
@@ -296,6 +310,7 @@ public class Searchbroker {
    * <CODE>404</CODE> if no inquiry with this id was found
    * <CODE>500</CODE> on any other error
    */
+  @RateLimited(RateLimitClass.RETRIEVAL)
   @Path("/inquiries/{inquiryid}")
   @GET
   @Produces(MediaType.APPLICATION_XML)
@@ -325,9 +340,15 @@ public class Searchbroker {
     if (response.getStatus() == Response.Status.OK.getStatusCode()) {
       try {
         List<InquirySite> inquirySites = InquirySiteUtil.fetchInquirySitesForInquiryId(inquiryId);
+        Integer siteId = BankUtil.getSiteIdForBankId(bankId);
         for (InquirySite is : inquirySites) {
-          if (is.getSiteId().equals(BankUtil.getSiteIdForBankId(bankId))) {
-            is.setRetrievedAt(SamplyShareUtils.getCurrentSqlTimestamp());
+          if (is.getSiteId().equals(siteId)) {
+            Timestamp now = SamplyShareUtils.getCurrentSqlTimestamp();
+            if (is.getFirstRetrievedAt() == null) {
+              recordFirstRetrieval(siteId, inquiryId, now);
+              is.setFirstRetrievedAt(now);
+            }
+            is.setRetrievedAt(now);
             InquirySiteUtil.updateInquirySite(is);
           }
         }
@@ -340,6 +361,14 @@ public class Searchbroker {
     return response;
   }
 
+  private static void recordFirstRetrieval(int siteId, int inquiryId, Timestamp retrievedAt) {
+    Inquiry inquiry = InquiryUtil.fetchInquiryById(inquiryId);
+    if (inquiry != null && inquiry.getCreated() != null) {
+      SiteResponsivenessScoreboard.getInstance().recordRetrieval(siteId,
+          inquiry.getCreated().toInstant(), retrievedAt.toInstant());
+    }
+  }
+
   /**
    * Gets the name of the searchbroker as given in the config file.
    *
@@ -361,10 +390,10 @@ public class Searchbroker {
   }
 
   /**
-   * Get query from UI.
+   * Get query from UI. The query is stored and released to the sites in the background.
    *
    * @param json the query
-   * @return 202 or 500 code
+   * @return 202 with a link to the release status in the Location header, or 500 code
    */
   @POST
   @Path("/sendQuery")
@@ -396,13 +425,60 @@ public class Searchbroker {
       @QueryParam("ntoken") String ntoken) {
     logger.info("sendQuery called");
 
-    SearchController.releaseQuery(json, ntoken, authenticatedUser);
+    UUID releaseHandle = SearchController.submitQuery(json, ntoken, authenticatedUser);
+    if (releaseHandle == null) {
+      return addCorsHeaders(Response.status(INTERNAL_SERVER_ERROR)).build();
+    }
 
-    logger.info("sendQuery with ntoken '" + ntoken + "'is sent");
-    Response.ResponseBuilder responseBuilder = Response.accepted(ntoken);
+    logger.info("sendQuery with ntoken '" + ntoken + "' is queued for release " + releaseHandle);
+    Response.ResponseBuilder responseBuilder = Response.accepted(ntoken)
+        .location(uriInfo.getBaseUriBuilder()
+            .path(Searchbroker.class)
+            .path(Searchbroker.class, "getReleaseStatus")
+            .build(releaseHandle))
+        .header("Access-Control-Expose-Headers", "Location");
     return addCorsHeaders(responseBuilder).build();
   }
 
+  /**
+   * Get the release status of a query sent to /sendQuery, whose response links to it. The link
+   * holds a random handle, so only the sender of the query can read its status, also when the
+   * query was sent without a login.
+   *
+   * @param releaseHandle the handle of the release
+   * @return the status as JSON, with the inquiry id once the query is released
+   */
+  @GET
+  @Path("/releases/{releasehandle}")
+  @Produces(MediaType.APPLICATION_JSON)
+  @RateLimited(RateLimitClass.INTERACTIVE)
+  @APIResponses({
+      @APIResponse(
+          responseCode = "200",
+          description = "ok",
+          content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+      @APIResponse(responseCode = "404", description = "No release with this handle"),
+      @APIResponse(responseCode = "500", description = "Internal Server Error")
+  })
+  @Operation(summary = "Get the release status of a query sent to /sendQuery")
+  public Response getReleaseStatus(@PathParam("releasehandle") String releaseHandle) {
+    QueryRelease release;
+    try {
+      release = QueryReleaseUtil.fetchRelease(UUID.fromString(releaseHandle));
+    } catch (IllegalArgumentException e) {
+      release = null;
+    }
+    if (release == null) {
+      return addCorsHeaders(Response.status(Response.Status.NOT_FOUND)).build();
+    }
+    JsonObject status = new JsonObject();
+    status.addProperty("status", release.getStatus());
+    status.addProperty("attempts", release.getAttempts());
+    status.addProperty("inquiryId", release.getInquiryId());
+    status.addProperty("error", release.getError());
+    return addCorsHeaders(Response.ok(status.toString())).build();
+  }
+
   /**
    * Get query from UI.
    *
@@ -468,6 +544,7 @@ public class Searchbroker {
    * <CODE>404</CODE> if no inquiry with this id was found
    * <CODE>500</CODE> on any other error
    */
+  @RateLimited(RateLimitClass.RETRIEVAL)
   @Path("/inquiries/{inquiryid}/query")
   @GET
   @Produces(MediaType.APPLICATION_XML)
@@ -512,6 +589,7 @@ public class Searchbroker {
    * @param id the id of the query
    * @return the result as JSON String
    */
+  @RateLimited(RateLimitClass.INTERACTIVE)
   @Secured
   @GET
   @Path("/getReply")
@@ -577,6 +655,7 @@ public class Searchbroker {
    * @param id the id of the query
    * @return the result as JSON String
    */
+  @RateLimited(RateLimitClass.INTERACTIVE)
   @GET
   @Path("/getAnonymousReply")
   @Produces(MediaType.APPLICATION_JSON)
@@ -847,6 +926,7 @@ public class Searchbroker {
    * <CODE>401</CODE> if no bank is found for the supplied api key
    * <CODE>500</CODE> on any other error
    */
+  @RateLimited(RateLimitClass.POLLING)
   @Path("/inquiries")
   @GET
   @Produces(MediaType.APPLICATION_XML)
@@ -882,6 +962,54 @@ public class Searchbroker {
         .header(SERVER_HEADER_KEY, serverHeaderValue).build();
   }
 
+  /**
+   * Gets all inquiries of the requesting bank (site) that are not expired, each one with the
+   * contact of its author, its info and whether it has an expose. This saves listing the inquiries
+   * and fetching each one of them. The document is streamed, and the retrieval of all inquiries is
+   * recorded at once after the last one.
+   *
+   * @param authorizationHeader the authorization header
+   * @param userAgent           user agent of the requesting client
+   * @param xmlNamespaceHeader  optional header with xml namespace
+   * @param queryLanguage       the query language of the criteria, as for a single inquiry
+   * @return <CODE>200</CODE> and the serialized inquiries on success
+   * <CODE>401</CODE> if no bank is found for the supplied api key
+   */
+  @RateLimited(RateLimitClass.POLLING)
+  @Path("/inquiries/bulk")
+  @GET
+  @Produces(MediaType.APPLICATION_XML)
+  @APIResponses({
+      @APIResponse(
+          responseCode = "200",
+          description = "ok",
+          content = @Content(mediaType = MediaType.APPLICATION_XML)),
+      @APIResponse(responseCode = "401", description = "Unauthorized")
+  })
+  public Response getInquiriesBulk(
+      @HeaderParam(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+      @HeaderParam(HttpHeaders.USER_AGENT) @DefaultValue("") String userAgent,
+      @HeaderParam(Constants.HEADER_XML_NAMESPACE) String xmlNamespaceHeader,
+      @HeaderParam(Constants.HEADER_KEY_QUERY_LANGUAGE) @DefaultValue("QUERY")
+          String queryLanguage) {
+
+    int bankId = Utils.getBankId(authorizationHeader);
+
+    if (isBankUnauthorized(bankId)) {
+      logger.warn("Unauthorized attempt to retrieve inquiries");
+      return Response.status(Response.Status.UNAUTHORIZED).build();
+    }
+
+    Integer siteId = inquiryHandler.getApprovedSiteId(bankId);
+    StreamingOutput output = outputStream -> {
+      Writer writer = new BufferedWriter(
+          new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+      inquiryHandler.writeBulkInquiries(siteId, uriInfo.getBaseUri(), userAgent,
+          queryLanguage, xmlNamespaceHeader, writer);
+    };
+    return Response.ok(output).header(SERVER_HEADER_KEY, serverHeaderValue).build();
+  }
+
   /**
    * Gets the ViewFields part of the inquiry with the given id.
    *
@@ -895,6 +1023,7 @@ public class Searchbroker {
    * <CODE>404</CODE> if no inquiry with this id was found
    * <CODE>500</CODE> on any other error
    */
+  @RateLimited(RateLimitClass.RETRIEVAL)
   @Path("/inquiries/{inquiryid}/viewfields")
   @GET
   @Produces(MediaType.APPLICATION_XML)
@@ -1092,6 +1221,64 @@ public class Searchbroker {
   }
 
 
+  /**
+   * Store many replies of a bank at once, e.g. to catch up after an outage. The body is a JSON
+   * array of objects with the inquiryId and the reply as sent to
+   * {@code /inquiries/{inquiryid}/replies/{bankemail}}. The replies are checked while they are
+   * read and stored in one transaction.
+   *
+   * @param authorizationHeader the authorization header
+   * @param bankEmail           the bank email
+   * @param body                the replies
+   * @return <CODE>200</CODE> and the status of every reply in the order they have been sent:
+   * 200 if it has been stored, 400 if it is invalid, 404 if the inquiry has not been sent to the
+   * site, 409 if a later reply to the same inquiry replaced it, 500 if it could not be stored
+   * <CODE>400</CODE> if the body is not a JSON array
+   * <CODE>401</CODE> if the provided credentials do not allow to answer inquiries
+   * <CODE>413</CODE> if the body has more replies than allowed
+   */
+  @Path("/inquiries/replies/{bankemail}")
+  @PUT
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  @APIResponses({
+      @APIResponse(
+          responseCode = "200",
+          description = "ok",
+          content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+      @APIResponse(responseCode = "400", description = "Bad Request"),
+      @APIResponse(responseCode = "413", description = "Too many replies")
+  })
+  public Response putReplies(@HeaderParam(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+      @PathParam("bankemail") String bankEmail,
+      InputStream body) {
+    Timestamp timestamp = SamplyShareUtils.getCurrentSqlTimestamp();
+    int bankId = Utils.getBankId(authorizationHeader, bankEmail);
+
+    if (bankId < 0) {
+      logger.warn("Unauthorized attempt to answer to inquiries from " + bankEmail);
+      return Response.status(Response.Status.UNAUTHORIZED).build();
+    }
+
+    List<BulkReplyParser.Item> items;
+    try {
+      items = inquiryHandler.saveReplies(bankId,
+          new InputStreamReader(body, StandardCharsets.UTF_8), timestamp);
+    } catch (JsonParseException e) {
+      logger.warn("Rejecting replies from " + bankEmail + ": " + e.getMessage());
+      return Response.status(BAD_REQUEST).entity(e.getMessage()).type(MediaType.TEXT_PLAIN)
+          .build();
+    } catch (TooManyRepliesException e) {
+      logger.warn("Rejecting replies from " + bankEmail + ": " + e.getMessage());
+      return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).entity(e.getMessage())
+          .type(MediaType.TEXT_PLAIN).build();
+    }
+
+    logger.info("Stored " + items.stream().filter(item -> item.getStatus() == 200).count()
+        + " of " + items.size() + " replies from " + bankEmail);
+    return Response.ok(gson.toJson(items)).header(SERVER_HEADER_KEY, serverHeaderValue).build();
+  }
+
   /**
    * Get the expose file for an inquiry.
    *
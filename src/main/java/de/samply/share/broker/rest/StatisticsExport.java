@@ -0,0 +1,109 @@
+package de.samply.share.broker.rest;
+
+import static de.samply.share.broker.filter.BasicAuthRealm.STATISTICS;
+
+import de.samply.share.broker.filter.BasicAuthSecure;
+import de.samply.share.broker.statistics.CsvStatisticsWriter;
+import de.samply.share.broker.statistics.StatisticsSheetWriter;
+import de.samply.share.broker.statistics.StatisticsTable;
+import de.samply.share.broker.statistics.XlsxStatisticsWriter;
+import de.samply.share.broker.utils.db.StatisticsRollupUtil;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+/**
+ * Exports the statistics of the queries sent by the UI, built from the daily aggregates. The
+ * export is streamed to the client while it is written.
+ */
+@Path("/statistics")
+public class StatisticsExport {
+
+  static final String XLSX =
+      "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+  static final String CSV = "text/csv; charset=utf-8";
+
+  /**
+   * Export the statistics of a period.
+   *
+   * @param auth   basic auth
+   * @param from   the first day of the period, e.g. 2021-01-01
+   * @param to     the last day of the period
+   * @param format xlsx or csv
+   * @param table  the only table to export, all tables if not set
+   * @return the statistics or 400 if a parameter is invalid
+   */
+  @BasicAuthSecure(STATISTICS)
+  @Path("/export")
+  @GET
+  @Produces({XLSX, CSV})
+  @APIResponses({
+      @APIResponse(responseCode = "200", description = "ok"),
+      @APIResponse(responseCode = "400", description = "invalid period, format or table")
+  })
+  @Operation(summary = "Export the statistics of the queries of a period as XLSX or CSV")
+  public Response exportStatistics(@HeaderParam(HttpHeaders.AUTHORIZATION) String auth,
+      @Parameter(description = "the first day, yyyy-MM-dd") @QueryParam("from") String from,
+      @Parameter(description = "the last day, yyyy-MM-dd") @QueryParam("to") String to,
+      @Parameter(description = "xlsx or csv") @QueryParam("format") @DefaultValue("xlsx")
+          String format,
+      @Parameter(description = "queries, fields or values") @QueryParam("table") String table) {
+    LocalDate fromDay;
+    LocalDate toDay;
+    try {
+      fromDay = LocalDate.parse(String.valueOf(from));
+      toDay = LocalDate.parse(String.valueOf(to));
+    } catch (DateTimeParseException e) {
+      return badRequest("from and to must be dates like 2021-01-31");
+    }
+    if (toDay.isBefore(fromDay)) {
+      return badRequest("to must not be before from");
+    }
+
+    List<StatisticsTable> tables;
+    try {
+      tables = table == null ? Arrays.asList(StatisticsTable.values())
+          : Collections.singletonList(StatisticsTable.valueOf(table.toUpperCase(Locale.ROOT)));
+    } catch (IllegalArgumentException e) {
+      return badRequest("table must be one of queries, fields or values");
+    }
+
+    boolean csv = "csv".equalsIgnoreCase(format);
+    if (!csv && !"xlsx".equalsIgnoreCase(format)) {
+      return badRequest("format must be xlsx or csv");
+    }
+
+    StreamingOutput output = outputStream -> {
+      try (StatisticsSheetWriter writer = csv ? new CsvStatisticsWriter(outputStream)
+          : new XlsxStatisticsWriter(outputStream)) {
+        StatisticsRollupUtil.export(tables, fromDay, toDay, writer);
+      }
+    };
+    String filename = "statistics_" + fromDay + "_" + toDay + (csv ? ".csv" : ".xlsx");
+    return Response.ok(output, csv ? CSV : XLSX)
+        .header("Content-Disposition", "attachment; filename=" + filename)
+        .build();
+  }
+
+  private static Response badRequest(String message) {
+    return Response.status(Response.Status.BAD_REQUEST).entity(message)
+        .type(MediaType.TEXT_PLAIN).build();
+  }
+}
@@ -0,0 +1,11 @@
+package de.samply.share.broker.rest;
+
+/**
+ * Thrown while reading a bulk submission that has more replies than allowed.
+ */
+class TooManyRepliesException extends RuntimeException {
+
+  TooManyRepliesException(int maxReplies) {
+    super("At most " + maxReplies + " replies per request");
+  }
+}
@@ -0,0 +1,227 @@
+package de.samply.share.broker.statistics;
+
+import com.google.gson.Gson;
+import de.samply.share.broker.utils.db.StatisticsSketchUtil;
+import de.samply.share.essentialquery.EssentialSimpleFieldDto;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import de.samply.share.essentialquery.EssentialSimpleValueDto;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Counts which fields and values are searched most and which fields are combined in a query, in
+ * fixed memory.
+ *
+ * <p>The counts are checkpointed to the database regularly. A checkpoint adds the counts since
+ * the last checkpoint to the stored ones, so the stored counts include the queries of all broker
+ * instances.
+ */
+public class CriteriaUsageSketches {
+
+  private static final Logger logger = LogManager.getLogger(CriteriaUsageSketches.class);
+
+  public static final String FIELDS = "fields";
+  public static final String VALUES = "values";
+  public static final String PAIRS = "pairs";
+
+  static final int CAPACITY = 1000;
+
+  /**
+   * Only the pairs of this many fields of a query are counted, to bound the work per query.
+   */
+  static final int MAX_PAIRED_FIELDS = 16;
+
+  private static final CriteriaUsageSketches instance =
+      new CriteriaUsageSketches(new DatabaseStore());
+
+  private final Store store;
+  private final Gson gson = new Gson();
+
+  /**
+   * The counts as of the last checkpoint.
+   */
+  private Map<String, SpaceSavingSketch> checkpointed = createSketches();
+
+  /**
+   * The counts since the last checkpoint.
+   */
+  private Map<String, SpaceSavingSketch> pending = createSketches();
+
+  CriteriaUsageSketches(Store store) {
+    this.store = store;
+  }
+
+  public static CriteriaUsageSketches getInstance() {
+    return instance;
+  }
+
+  private static Map<String, SpaceSavingSketch> createSketches() {
+    Map<String, SpaceSavingSketch> sketches = new HashMap<>();
+    sketches.put(FIELDS, new SpaceSavingSketch(CAPACITY));
+    sketches.put(VALUES, new SpaceSavingSketch(CAPACITY));
+    sketches.put(PAIRS, new SpaceSavingSketch(CAPACITY));
+    return sketches;
+  }
+
+  /**
+   * Count the fields, values and pairs of fields of a query.
+   *
+   * @param queryDto the query
+   */
+  public synchronized void record(EssentialSimpleQueryDto queryDto) {
+    TreeSet<String> urns = new TreeSet<>();
+    for (EssentialSimpleFieldDto fieldDto : queryDto.getFieldDtos()) {
+      if (fieldDto.getUrn() == null) {
+        continue;
+      }
+      pending.get(FIELDS).add(fieldDto.getUrn());
+      urns.add(fieldDto.getUrn());
+      for (EssentialSimpleValueDto valueDto : fieldDto.getValueDtos()) {
+        if (valueDto.getValue() != null) {
+          pending.get(VALUES).add(fieldDto.getUrn() + " = " + valueDto.getValue());
+        }
+      }
+    }
+
+    List<String> paired = new ArrayList<>(urns).subList(0, Math.min(urns.size(),
+        MAX_PAIRED_FIELDS));
+    for (int i = 0; i < paired.size(); i++) {
+      for (int j = i + 1; j < paired.size(); j++) {
+        pending.get(PAIRS).add(paired.get(i) + " & " + paired.get(j));
+      }
+    }
+  }
+
+  /**
+   * Get the most frequent keys of a sketch, including the counts since the last checkpoint.
+   *
+   * @param name  the name of the sketch: fields, values or pairs
+   * @param limit the maximum number of keys
+   * @return the counters, most frequent first
+   */
+  public synchronized List<SpaceSavingSketch.Counter> getTop(String name, int limit) {
+    SpaceSavingSketch sketch = copy(checkpointed.get(name));
+    sketch.merge(pending.get(name));
+    return sketch.getTop(limit);
+  }
+
+  /**
+   * Get the number of counted keys of a sketch, including the counts since the last checkpoint.
+   *
+   * @param name the name of the sketch: fields, values or pairs
+   * @return the number of counted keys
+   */
+  public synchronized long getTotal(String name) {
+    return checkpointed.get(name).getTotal() + pending.get(name).getTotal();
+  }
+
+  /**
+   * Load the counts of the last checkpoint.
+   */
+  public void load() {
+    Map<String, SpaceSavingSketch> loaded = deserialize(store.load());
+    synchronized (this) {
+      checkpointed = loaded;
+    }
+  }
+
+  /**
+   * Add the counts since the last checkpoint to the stored counts.
+   */
+  public void checkpoint() {
+    Map<String, SpaceSavingSketch> counted;
+    synchronized (this) {
+      counted = pending;
+      pending = createSketches();
+    }
+
+    try {
+      Map<String, SpaceSavingSketch> merged = new HashMap<>();
+      store.update(stored -> {
+        merged.clear();
+        merged.putAll(deserialize(stored));
+        merged.forEach((name, sketch) -> sketch.merge(counted.get(name)));
+        return serialize(merged);
+      });
+      synchronized (this) {
+        checkpointed = merged;
+      }
+    } catch (RuntimeException e) {
+      logger.error("Error while checkpointing the criteria usage", e);
+      synchronized (this) {
+        // keep the counts for the next checkpoint
+        counted.forEach((name, sketch) -> sketch.merge(pending.get(name)));
+        pending = counted;
+      }
+    }
+  }
+
+  private Map<String, SpaceSavingSketch> deserialize(Map<String, String> states) {
+    Map<String, SpaceSavingSketch> sketches = createSketches();
+    for (Map.Entry<String, String> entry : states.entrySet()) {
+      if (sketches.containsKey(entry.getKey()) && entry.getValue() != null) {
+        State state = gson.fromJson(entry.getValue(), State.class);
+        sketches.put(entry.getKey(), SpaceSavingSketch.restore(CAPACITY, state.total,
+            state.counters));
+      }
+    }
+    return sketches;
+  }
+
+  private Map<String, String> serialize(Map<String, SpaceSavingSketch> sketches) {
+    Map<String, String> states = new HashMap<>();
+    sketches.forEach((name, sketch) -> {
+      State state = new State();
+      state.total = sketch.getTotal();
+      state.counters = sketch.getCounters();
+      states.put(name, gson.toJson(state));
+    });
+    return states;
+  }
+
+  private static SpaceSavingSketch copy(SpaceSavingSketch sketch) {
+    return SpaceSavingSketch.restore(sketch.getCapacity(), sketch.getTotal(),
+        sketch.getCounters());
+  }
+
+  private static class State {
+
+    private long total;
+    private List<SpaceSavingSketch.Counter> counters = new ArrayList<>();
+  }
+
+  /**
+   * Stores the sketches, serialized by name.
+   */
+  interface Store {
+
+    Map<String, String> load();
+
+    /**
+     * Replace the stored sketches in one transaction, so no checkpoint of another broker
+     * instance gets lost.
+     *
+     * @param update computes the new sketches from the stored ones
+     */
+    void update(UnaryOperator<Map<String, String>> update);
+  }
+
+  private static class DatabaseStore implements Store {
+
+    @Override
+    public Map<String, String> load() {
+      return StatisticsSketchUtil.fetchSketches();
+    }
+
+    @Override
+    public void update(UnaryOperator<Map<String, String>> update) {
+      StatisticsSketchUtil.updateSketches(update);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package de.samply.share.broker.statistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the statistics as CSV (RFC 4180). Tables after the first one are separated by an empty
+ * line.
+ */
+public class CsvStatisticsWriter implements StatisticsSheetWriter {
+
+  private final Writer writer;
+  private boolean firstSheet = true;
+
+  public CsvStatisticsWriter(OutputStream outputStream) {
+    this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public void startSheet(String name, String... columns) throws IOException {
+    if (!firstSheet) {
+      writer.write("\r\n");
+    }
+    firstSheet = false;
+    writeRow((Object[]) columns);
+  }
+
+  @Override
+  public void writeRow(Object... values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      if (values[i] != null) {
+        writer.write(escape(values[i] instanceof String
+            ? neutralize((String) values[i]) : values[i].toString()));
+      }
+    }
+    writer.write("\r\n");
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.flush();
+  }
+
+  static String escape(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+        && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * Prevent spreadsheet programs from evaluating values entered by users as formulas.
+   */
+  static String neutralize(String value) {
+    if (value.isEmpty() || "=+-@\t\r".indexOf(value.charAt(0)) < 0 || isNumber(value)) {
+      return value;
+    }
+    return "'" + value;
+  }
+
+  private static boolean isNumber(String value) {
+    try {
+      Double.parseDouble(value);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+}
@@ -1,11 +1,7 @@
 package de.samply.share.broker.statistics;
 
-import static java.util.stream.Collectors.toList;
-
-import de.samply.share.broker.model.db.tables.pojos.StatisticsField;
 import de.samply.share.broker.utils.MailUtils;
-import de.samply.share.broker.utils.db.StatisticsFieldUtil;
-import de.samply.share.broker.utils.db.StatisticsQueryUtil;
+import de.samply.share.broker.utils.db.StatisticsRollupUtil;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -13,6 +9,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
@@ -28,10 +25,12 @@ import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 public class ExcelWriter {
 
+  private static final int COLUMN_WIDTH = 40 * 256;
+
   private static DateFormat parseFormat = new SimpleDateFormat(
       "yyyy-MM-dd");
   private HashMap<String, List<String>> columns = new HashMap<>();
@@ -50,44 +49,20 @@ public class ExcelWriter {
    * @throws IOException IOException
    */
   public void sendExcel() throws IOException {
-
-    Workbook workbook = new XSSFWorkbook();
-    setStatistic(getStatisticsData(), workbook);
-    FileOutputStream fileOut = new FileOutputStream(getPath() + ".xlsx");
-    workbook.write(fileOut);
-    fileOut.close();
-    workbook.close();
+    SXSSFWorkbook workbook = new SXSSFWorkbook(XlsxStatisticsWriter.ROWS_IN_MEMORY);
+    try (FileOutputStream fileOut = new FileOutputStream(getPath() + ".xlsx")) {
+      setStatistic(getStatisticsData(), workbook);
+      workbook.write(fileOut);
+    } finally {
+      workbook.dispose();
+      workbook.close();
+    }
     MailUtils.sendStatistics();
   }
 
   private StatisticsResult getStatisticsData() {
-    StatisticsResult statisticsResult = new StatisticsResult();
-    List<Integer> queryIds = StatisticsQueryUtil.getLastDayQueryIds();
-    List<QueryField> queryFields = queryIds.stream()
-        .map(QueryField::new)
-        .collect(toList());
-    List<StatisticsField> statisticsFields = StatisticsFieldUtil.getFieldsByQueryIds(queryIds);
-    queryFields = addFieldsToQuery(statisticsFields, queryFields);
-    statisticsResult.setQueryCount(queryIds.size());
-    for (QueryField queryField : queryFields) {
-      for (StatisticsField statisticsField : queryField.getStatisticsFields()) {
-        statisticsResult.countFields(statisticsField.getUrn());
-      }
-      statisticsResult.countSelectedFieldsPerQuery(queryField.getStatisticsFields().size());
-    }
-    return statisticsResult;
-  }
-
-  private List<QueryField> addFieldsToQuery(List<StatisticsField> statisticsFields,
-      List<QueryField> queryFields) {
-    for (StatisticsField statisticsField : statisticsFields) {
-      for (QueryField queryField : queryFields) {
-        if (queryField.getId() == statisticsField.getQueryid()) {
-          queryField.getStatisticsFields().add(statisticsField);
-        }
-      }
-    }
-    return queryFields;
+    LocalDate yesterday = LocalDate.now().minusDays(1);
+    return StatisticsRollupUtil.fetchResult(yesterday, yesterday);
   }
 
   protected String getPath() throws IOException {
@@ -107,10 +82,10 @@ public class ExcelWriter {
       totalQueryCount(statisticDto, sheet);
       mdrFieldCount(statisticDto, sheet, workbook);
       mdrFieldByName(statisticDto, sheet, workbook);
-      // Resize all columns to fit the content size
-      for (int i = 0; i < columns.get(sheetName).size(); i++) {
-        sheet.autoSizeColumn(i);
-      }
+      mdrValueByName(statisticDto, sheet, workbook);
+      // The rows are not kept in memory, so the columns cannot be sized to fit their content
+      sheet.setColumnWidth(0, COLUMN_WIDTH);
+      sheet.setColumnWidth(1, COLUMN_WIDTH);
     }
   }
 
@@ -182,7 +157,16 @@ public class ExcelWriter {
 
   private void mdrFieldByName(StatisticsResult statisticsResult, Sheet sheet, Workbook workbook) {
     boldHeader(sheet, workbook, "MdrFields");
-    HashMap<String, Integer> result = statisticsResult.getFieldCount().entrySet().stream()
+    countByName(statisticsResult.getFieldCount(), sheet);
+  }
+
+  private void mdrValueByName(StatisticsResult statisticsResult, Sheet sheet, Workbook workbook) {
+    boldHeader(sheet, workbook, "MdrValues");
+    countByName(statisticsResult.getValueCount(), sheet);
+  }
+
+  private void countByName(Map<String, Integer> counts, Sheet sheet) {
+    HashMap<String, Integer> result = counts.entrySet().stream()
         .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
             (oldValue, newValue) -> oldValue, LinkedHashMap::new));
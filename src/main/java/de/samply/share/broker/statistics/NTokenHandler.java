@@ -16,8 +16,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 
 public class NTokenHandler {
@@ -72,7 +70,7 @@ public class NTokenHandler {
    */
   public String findLatestQuery(String ntoken) {
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       NtokenQueryDao ntokenQueryDao = new NtokenQueryDao(configuration);
       List<NtokenQuery> ntokenQueries = ntokenQueryDao.fetch(Tables.NTOKEN_QUERY.NTOKEN, ntoken);
@@ -99,7 +97,7 @@ public class NTokenHandler {
    */
   public int findLatestInquiryId(String ntoken) {
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       NtokenQueryDao ntokenQueryDao = new NtokenQueryDao(configuration);
       List<NtokenQuery> ntokenQueries = ntokenQueryDao.fetch(Tables.NTOKEN_QUERY.NTOKEN, ntoken);
@@ -127,7 +125,7 @@ public class NTokenHandler {
    */
   public void deactivateNToken(String ntoken) {
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       NtokenQueryDao ntokenQueryDao = new NtokenQueryDao(configuration);
       List<NtokenQuery> ntokenQueries = ntokenQueryDao.fetch(Tables.NTOKEN_QUERY.NTOKEN, ntoken);
@@ -0,0 +1,152 @@
+package de.samply.share.broker.statistics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Counts the most frequent keys of a stream in fixed memory (Space-Saving algorithm). At most
+ * {@code capacity} keys are counted. A new key replaces the least frequent one and inherits its
+ * count as error, so the count of a key is never underestimated and overestimated by at most its
+ * error. Every key more frequent than total / capacity is guaranteed to be counted.
+ *
+ * <p>Not thread-safe.
+ */
+public class SpaceSavingSketch {
+
+  private static final Comparator<Counter> BY_COUNT = Comparator
+      .comparingLong((Counter counter) -> counter.count)
+      .thenComparing(counter -> counter.key);
+
+  private final int capacity;
+  private final Map<String, Counter> counters = new HashMap<>();
+  private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+  private long total;
+
+  public SpaceSavingSketch(int capacity) {
+    this.capacity = Math.max(capacity, 1);
+  }
+
+  /**
+   * Count a key once.
+   *
+   * @param key the key
+   */
+  public void add(String key) {
+    total++;
+    add(key, 1, 0);
+  }
+
+  private void add(String key, long count, long error) {
+    Counter counter = counters.get(key);
+    if (counter != null) {
+      byCount.remove(counter);
+      counter = new Counter(key, counter.count + count, counter.error + error);
+    } else if (counters.size() < capacity) {
+      counter = new Counter(key, count, error);
+    } else {
+      Counter evicted = byCount.pollFirst();
+      counters.remove(evicted.key);
+      counter = new Counter(key, evicted.count + count, evicted.count + error);
+    }
+    counters.put(key, counter);
+    byCount.add(counter);
+  }
+
+  /**
+   * Add the counts of another sketch, e.g. counted by another broker instance.
+   *
+   * @param other the other sketch
+   */
+  public void merge(SpaceSavingSketch other) {
+    total += other.total;
+    for (Counter counter : other.counters.values()) {
+      add(counter.key, counter.count, counter.error);
+    }
+  }
+
+  /**
+   * Get the most frequent keys.
+   *
+   * @param limit the maximum number of keys
+   * @return the counters of the keys, most frequent first
+   */
+  public List<Counter> getTop(int limit) {
+    List<Counter> top = new ArrayList<>();
+    Iterator<Counter> iterator = byCount.descendingIterator();
+    while (iterator.hasNext() && top.size() < limit) {
+      top.add(iterator.next());
+    }
+    return top;
+  }
+
+  /**
+   * Get the number of counted keys, including those no longer in the sketch.
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the counters of all keys in the sketch, to store it.
+   */
+  public List<Counter> getCounters() {
+    return new ArrayList<>(counters.values());
+  }
+
+  /**
+   * Restore a stored sketch.
+   *
+   * @param capacity the capacity of the sketch
+   * @param total    the number of counted keys
+   * @param counters the counters of the stored sketch
+   * @return the sketch
+   */
+  public static SpaceSavingSketch restore(int capacity, long total, List<Counter> counters) {
+    SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+    for (Counter counter : counters) {
+      sketch.add(counter.key, counter.count, counter.error);
+    }
+    sketch.total = total;
+    return sketch;
+  }
+
+  /**
+   * The estimated count of a key.
+   */
+  public static class Counter {
+
+    private final String key;
+    private final long count;
+    private final long error;
+
+    Counter(String key, long count, long error) {
+      this.key = key;
+      this.count = count;
+      this.error = error;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    /**
+     * Get the estimated count, which is at most {@link #getError()} too high.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    public long getError() {
+      return error;
+    }
+  }
+}
@@ -1,67 +1,128 @@
 package de.samply.share.broker.statistics;
 
+import static de.samply.share.broker.model.db.Tables.STATISTICS_FIELD;
+import static de.samply.share.broker.model.db.Tables.STATISTICS_QUERY;
+import static de.samply.share.broker.model.db.Tables.STATISTICS_VALUE;
+
 import de.samply.share.broker.jdbc.ResourceManager;
-import de.samply.share.broker.model.db.Tables;
 import de.samply.share.broker.model.db.enums.EssentialValueType;
 import de.samply.share.broker.model.db.enums.SimpleValueCondition;
-import de.samply.share.broker.model.db.tables.pojos.StatisticsField;
-import de.samply.share.broker.model.db.tables.pojos.StatisticsQuery;
-import de.samply.share.broker.model.db.tables.pojos.StatisticsValue;
+import de.samply.share.broker.model.db.tables.records.StatisticsFieldRecord;
+import de.samply.share.broker.model.db.tables.records.StatisticsQueryRecord;
+import de.samply.share.broker.model.db.tables.records.StatisticsValueRecord;
+import de.samply.share.broker.statistics.StatisticsRecorder.RecordedQuery;
+import de.samply.share.broker.utils.db.StatisticsRollupUtil;
 import de.samply.share.essentialquery.EssentialSimpleFieldDto;
-import de.samply.share.essentialquery.EssentialSimpleQueryDto;
 import de.samply.share.essentialquery.EssentialSimpleValueDto;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import org.jooq.DSLContext;
-
+import org.jooq.InsertValuesStep4;
+import org.jooq.InsertValuesStep5;
+import org.jooq.Sequence;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+
+/**
+ * Writes the statistics of the released queries.
+ *
+ * @see StatisticsRecorder
+ */
 public class StatisticsHandler {
 
   /**
-   * Todo.
-   * @param queryDto Todo.
-   * @param inquiryId Todo.
+   * Count the statistics of several queries in the criteria usage sketches, then write them in
+   * one transaction and add them to the daily aggregates. The ids of the rows are taken from the
+   * sequences up front, so each table is filled with a single insert.
+   *
+   * @param batch the statistics of the queries
    */
-  public void save(EssentialSimpleQueryDto queryDto, Integer inquiryId) {
-    int id = saveQuery(inquiryId);
+  void save(List<RecordedQuery> batch) {
+    for (RecordedQuery recordedQuery : batch) {
+      CriteriaUsageSketches.getInstance().record(recordedQuery.getQueryDto());
+    }
+    try (Connection connection = ResourceManager.getConnection()) {
+      ResourceManager.getDslContext(connection).transaction(configuration ->
+          save(DSL.using(configuration), batch));
+    } catch (SQLException e) {
+      throw new DataAccessException("Error while writing statistics", e);
+    }
+  }
 
-    for (EssentialSimpleFieldDto fieldDto : queryDto.getFieldDtos()) {
-      int fieldId = saveField(fieldDto, id);
+  private void save(DSLContext dslContext, List<RecordedQuery> batch) {
+    int fieldCount = 0;
+    int valueCount = 0;
+    for (RecordedQuery recordedQuery : batch) {
+      for (EssentialSimpleFieldDto fieldDto : recordedQuery.getQueryDto().getFieldDtos()) {
+        fieldCount++;
+        valueCount += fieldDto.getValueDtos().size();
+      }
+    }
 
-      for (EssentialSimpleValueDto valueDto : fieldDto.getValueDtos()) {
-        saveValue(valueDto, fieldId);
+    Iterator<Integer> queryIds = nextIds(dslContext, STATISTICS_QUERY, batch.size()).iterator();
+    Iterator<Integer> fieldIds = nextIds(dslContext, STATISTICS_FIELD, fieldCount).iterator();
+    Iterator<Integer> valueIds = nextIds(dslContext, STATISTICS_VALUE, valueCount).iterator();
+
+    InsertValuesStep4<StatisticsQueryRecord, Integer, Integer, Timestamp, Boolean> queries =
+        dslContext
+        .insertInto(STATISTICS_QUERY, STATISTICS_QUERY.ID, STATISTICS_QUERY.INQUIRYID,
+            STATISTICS_QUERY.CREATED, STATISTICS_QUERY.ROLLED_UP);
+    InsertValuesStep4<StatisticsFieldRecord, Integer, Integer, String, EssentialValueType>
+        fields = dslContext
+        .insertInto(STATISTICS_FIELD, STATISTICS_FIELD.ID, STATISTICS_FIELD.QUERYID,
+            STATISTICS_FIELD.URN, STATISTICS_FIELD.VALUETYPE);
+    InsertValuesStep5<StatisticsValueRecord, Integer, Integer, String, String,
+        SimpleValueCondition> values = dslContext
+        .insertInto(STATISTICS_VALUE, STATISTICS_VALUE.ID, STATISTICS_VALUE.FIELDID,
+            STATISTICS_VALUE.VALUE, STATISTICS_VALUE.MAXVALUE, STATISTICS_VALUE.CONDITION);
+
+    StatisticsRollup rollup = new StatisticsRollup();
+    for (RecordedQuery recordedQuery : batch) {
+      Integer queryId = queryIds.next();
+      Timestamp created = Timestamp.from(recordedQuery.getRecordedAt());
+      LocalDate day = created.toLocalDateTime().toLocalDate();
+      queries = queries.values(queryId, recordedQuery.getInquiryId(), created, true);
+      rollup.addQuery(day, recordedQuery.getQueryDto().getFieldDtos().size());
+
+      for (EssentialSimpleFieldDto fieldDto : recordedQuery.getQueryDto().getFieldDtos()) {
+        Integer fieldId = fieldIds.next();
+        fields = fields.values(fieldId, queryId, fieldDto.getUrn(),
+            translate(fieldDto.getValueType()));
+        rollup.addField(day, fieldDto.getUrn());
+
+        for (EssentialSimpleValueDto valueDto : fieldDto.getValueDtos()) {
+          values = values.values(valueIds.next(), fieldId, valueDto.getValue(),
+              valueDto.getMaxValue(), translate(valueDto.getCondition()));
+          rollup.addValue(day, fieldDto.getUrn(), valueDto.getValue());
+        }
       }
     }
+
+    queries.execute();
+    if (fieldCount > 0) {
+      fields.execute();
+    }
+    if (valueCount > 0) {
+      values.execute();
+    }
+    StatisticsRollupUtil.add(dslContext, rollup);
   }
 
-  private int saveValue(EssentialSimpleValueDto valueDto, int fieldId) {
-    try (Connection connection = ResourceManager.getConnection()) {
-      StatisticsValue statisticsValue = new StatisticsValue();
-      statisticsValue.setFieldid(fieldId);
-      statisticsValue.setValue(valueDto.getValue());
-      statisticsValue.setMaxvalue(valueDto.getMaxValue());
-      statisticsValue.setCondition(translate(valueDto.getCondition()));
-
-      DSLContext dslContext = ResourceManager.getDslContext(connection);
-
-      dslContext
-          .insertInto(Tables.STATISTICS_VALUE,
-              Tables.STATISTICS_VALUE.FIELDID,
-              Tables.STATISTICS_VALUE.VALUE,
-              Tables.STATISTICS_VALUE.MAXVALUE,
-              Tables.STATISTICS_VALUE.CONDITION)
-          .values(statisticsValue.getFieldid(),
-              statisticsValue.getValue(),
-              statisticsValue.getMaxvalue(),
-              statisticsValue.getCondition())
-          .execute();
-
-      return dslContext.lastID().intValue();
-    } catch (SQLException e) {
-      e.printStackTrace();
-      return -1;
+  private static List<Integer> nextIds(DSLContext dslContext, Table<?> table, int count) {
+    if (count == 0) {
+      return Collections.emptyList();
     }
+    Sequence<Integer> sequence = DSL.sequence(
+        DSL.name(table.getSchema().getName(), table.getName() + "_id_seq"), Integer.class);
+    return dslContext.select(sequence.nextval())
+        .from(DSL.generateSeries(1, count))
+        .fetch(0, Integer.class);
   }
 
   private SimpleValueCondition translate(
@@ -107,54 +168,4 @@ public class StatisticsHandler {
         return null;
     }
   }
-
-
-  private int saveField(EssentialSimpleFieldDto fieldDto, int id) {
-    try (Connection connection = ResourceManager.getConnection()) {
-      StatisticsField statisticsField = new StatisticsField();
-      statisticsField.setQueryid(id);
-      statisticsField.setUrn(fieldDto.getUrn());
-      statisticsField.setValuetype(translate(fieldDto.getValueType()));
-
-      DSLContext dslContext = ResourceManager.getDslContext(connection);
-
-      dslContext
-          .insertInto(Tables.STATISTICS_FIELD,
-              Tables.STATISTICS_FIELD.QUERYID,
-              Tables.STATISTICS_FIELD.URN,
-              Tables.STATISTICS_FIELD.VALUETYPE)
-          .values(statisticsField.getQueryid(),
-              statisticsField.getUrn(),
-              statisticsField.getValuetype())
-          .execute();
-
-      return dslContext.lastID().intValue();
-    } catch (SQLException e) {
-      e.printStackTrace();
-      return -1;
-    }
-  }
-
-  private int saveQuery(Integer inquiryId) {
-    try (Connection connection = ResourceManager.getConnection()) {
-      StatisticsQuery statisticsQuery = new StatisticsQuery();
-      statisticsQuery.setInquiryid(inquiryId);
-      statisticsQuery.setCreated(Timestamp.valueOf(LocalDateTime.now()));
-
-      DSLContext dslContext = ResourceManager.getDslContext(connection);
-
-      dslContext
-          .insertInto(Tables.STATISTICS_QUERY,
-              Tables.STATISTICS_QUERY.INQUIRYID,
-              Tables.STATISTICS_QUERY.CREATED)
-          .values(statisticsQuery.getInquiryid(),
-              statisticsQuery.getCreated())
-          .execute();
-
-      return dslContext.lastID().intValue();
-    } catch (SQLException e) {
-      e.printStackTrace();
-      return -1;
-    }
-  }
 }
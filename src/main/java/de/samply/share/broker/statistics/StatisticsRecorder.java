@@ -0,0 +1,218 @@
+package de.samply.share.broker.statistics;
+
+import de.samply.share.broker.utils.Config;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects the statistics of the released queries in a bounded queue and writes them in batches
+ * on a background thread, so releasing a query does not wait for the statistics tables.
+ *
+ * <p>Statistics are dropped rather than blocking the release if the queue is full or a batch
+ * cannot be written. The dropped statistics are counted, so the metrics tell whether the
+ * statistics are complete. Stopping the recorder writes everything still queued.
+ */
+public class StatisticsRecorder {
+
+  private static final Logger logger = LogManager.getLogger(StatisticsRecorder.class);
+
+  private static final String CFG_QUEUE_SIZE = "statistics.queue.size";
+  private static final int DEFAULT_QUEUE_SIZE = 10000;
+
+  static final int BATCH_SIZE = 200;
+  private static final long POLL_MILLIS = 1000;
+  private static final long STOP_TIMEOUT_MILLIS = 30000;
+
+  private static final StatisticsRecorder instance = new StatisticsRecorder(
+      new StatisticsHandler()::save,
+      Config.getIntProperty(CFG_QUEUE_SIZE, DEFAULT_QUEUE_SIZE), Clock.systemUTC());
+
+  private final Writer writer;
+  private final BlockingQueue<RecordedQuery> queue;
+  private final Clock clock;
+
+  private final LongAdder written = new LongAdder();
+  private final LongAdder droppedQueueFull = new LongAdder();
+  private final LongAdder droppedWriteFailed = new LongAdder();
+  private volatile long lagMillis;
+
+  private volatile boolean running;
+  private Thread writerThread;
+
+  StatisticsRecorder(Writer writer, int queueSize, Clock clock) {
+    this.writer = writer;
+    this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 1));
+    this.clock = clock;
+  }
+
+  public static StatisticsRecorder getInstance() {
+    return instance;
+  }
+
+  /**
+   * Start the writer thread.
+   */
+  public synchronized void start() {
+    if (writerThread != null) {
+      return;
+    }
+    running = true;
+    writerThread = new Thread(this::writeUntilStopped, "statistics-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Stop the writer thread after it has written all queued statistics.
+   */
+  public synchronized void stop() {
+    Thread stoppedThread = writerThread;
+    writerThread = null;
+    running = false;
+    if (stoppedThread == null) {
+      return;
+    }
+    try {
+      stoppedThread.join(STOP_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (stoppedThread.isAlive()) {
+      logger.warn("Statistics of " + queue.size() + " queries not written on shutdown");
+    } else {
+      // statistics queued while the writer was finishing
+      flush();
+    }
+  }
+
+  /**
+   * Queue the statistics of a query.
+   *
+   * @param queryDto  the query
+   * @param inquiryId the id of the inquiry the query is released as
+   * @return false if the statistics are dropped because the queue is full
+   */
+  public boolean record(EssentialSimpleQueryDto queryDto, Integer inquiryId) {
+    if (queue.offer(new RecordedQuery(queryDto, inquiryId, clock.instant()))) {
+      return true;
+    }
+    droppedQueueFull.increment();
+    logger.debug("Statistics of inquiry " + inquiryId + " dropped, the queue is full");
+    return false;
+  }
+
+  private void writeUntilStopped() {
+    while (running || !queue.isEmpty()) {
+      try {
+        RecordedQuery first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          List<RecordedQuery> batch = new ArrayList<>();
+          batch.add(first);
+          queue.drainTo(batch, BATCH_SIZE - 1);
+          write(batch);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+  }
+
+  /**
+   * Write a batch of statistics.
+   *
+   * @param batch the statistics, oldest first
+   */
+  void write(List<RecordedQuery> batch) {
+    try {
+      writer.write(batch);
+      written.add(batch.size());
+      lagMillis = clock.millis() - batch.get(0).getRecordedAt().toEpochMilli();
+    } catch (RuntimeException e) {
+      droppedWriteFailed.add(batch.size());
+      logger.error("Error while writing the statistics of " + batch.size() + " queries", e);
+    }
+  }
+
+  /**
+   * Write everything queued on the calling thread.
+   */
+  void flush() {
+    List<RecordedQuery> batch = new ArrayList<>();
+    while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+      write(batch);
+      batch = new ArrayList<>();
+    }
+  }
+
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  public long getWritten() {
+    return written.sum();
+  }
+
+  public long getDroppedQueueFull() {
+    return droppedQueueFull.sum();
+  }
+
+  public long getDroppedWriteFailed() {
+    return droppedWriteFailed.sum();
+  }
+
+  /**
+   * Get the time the oldest query of the last written batch waited in the queue.
+   *
+   * @return the lag in milliseconds
+   */
+  public long getLagMillis() {
+    return lagMillis;
+  }
+
+  /**
+   * Writes a batch of statistics.
+   */
+  @FunctionalInterface
+  interface Writer {
+
+    void write(List<RecordedQuery> batch);
+  }
+
+  /**
+   * The statistics of a query waiting to be written.
+   */
+  static class RecordedQuery {
+
+    private final EssentialSimpleQueryDto queryDto;
+    private final Integer inquiryId;
+    private final Instant recordedAt;
+
+    RecordedQuery(EssentialSimpleQueryDto queryDto, Integer inquiryId, Instant recordedAt) {
+      this.queryDto = queryDto;
+      this.inquiryId = inquiryId;
+      this.recordedAt = recordedAt;
+    }
+
+    EssentialSimpleQueryDto getQueryDto() {
+      return queryDto;
+    }
+
+    Integer getInquiryId() {
+      return inquiryId;
+    }
+
+    Instant getRecordedAt() {
+      return recordedAt;
+    }
+  }
+}
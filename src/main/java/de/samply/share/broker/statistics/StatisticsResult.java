@@ -7,6 +7,7 @@ public class StatisticsResult {
   private int queryCount;
   private HashMap<String, Integer> fieldCount;
   private HashMap<Integer, Integer> selectedFieldsPerQuery;
+  private HashMap<String, Integer> valueCount;
   private HashMap<String, String> mdrMap = new HashMap<>();
 
 
@@ -17,6 +18,7 @@ public class StatisticsResult {
     queryCount = 0;
     fieldCount = new HashMap<>();
     selectedFieldsPerQuery = new HashMap<>();
+    valueCount = new HashMap<>();
     initMap();
   }
 
@@ -53,11 +55,16 @@ public class StatisticsResult {
    * @param count Todo.
    */
   public void countSelectedFieldsPerQuery(int count) {
-    if (selectedFieldsPerQuery.containsKey(count)) {
-      selectedFieldsPerQuery.put(count, selectedFieldsPerQuery.get(count) + 1);
-    } else {
-      selectedFieldsPerQuery.put(count, 1);
-    }
+    countSelectedFieldsPerQuery(count, 1);
+  }
+
+  /**
+   * Count several queries with the same number of fields.
+   * @param count the number of fields
+   * @param queries the number of queries
+   */
+  public void countSelectedFieldsPerQuery(int count, int queries) {
+    selectedFieldsPerQuery.merge(count, queries, Integer::sum);
   }
 
   /**
@@ -65,12 +72,30 @@ public class StatisticsResult {
    * @param urn Todo.
    */
   public void countFields(String urn) {
-    String readableMdr = mdrMap.get(urn);
-    if (fieldCount.containsKey(readableMdr)) {
-      fieldCount.put(readableMdr, fieldCount.get(readableMdr) + 1);
-    } else {
-      fieldCount.put(readableMdr, 1);
-    }
+    countFields(urn, 1);
+  }
+
+  /**
+   * Count several uses of a field.
+   * @param urn the urn of the field
+   * @param count the number of uses
+   */
+  public void countFields(String urn, int count) {
+    fieldCount.merge(mdrMap.get(urn), count, Integer::sum);
+  }
+
+  /**
+   * Count several uses of a value of a field.
+   * @param urn the urn of the field
+   * @param value the value
+   * @param count the number of uses
+   */
+  public void countValues(String urn, String value, int count) {
+    valueCount.merge(mdrMap.getOrDefault(urn, urn) + " = " + value, count, Integer::sum);
+  }
+
+  public HashMap<String, Integer> getValueCount() {
+    return valueCount;
   }
 
   public HashMap<String, Integer> getFieldCount() {
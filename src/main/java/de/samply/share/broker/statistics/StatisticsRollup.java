@@ -0,0 +1,85 @@
+package de.samply.share.broker.statistics;
+
+import com.google.common.collect.Table;
+import com.google.common.collect.TreeBasedTable;
+import java.time.LocalDate;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Counts the statistics of several queries per day, to be added to the daily aggregates at once.
+ * The counts are sorted by day and key, so concurrent transactions adding them lock the rows of
+ * the aggregates in the same order and cannot deadlock.
+ */
+public class StatisticsRollup {
+
+  private static final Comparator<Map.Entry<String, String>> URN_AND_VALUE =
+      Map.Entry.<String, String>comparingByKey().thenComparing(Map.Entry.comparingByValue());
+
+  private final Table<LocalDate, Integer, Integer> queriesByFieldCount = TreeBasedTable.create();
+  private final Table<LocalDate, String, Integer> fields = TreeBasedTable.create();
+  private final Table<LocalDate, Map.Entry<String, String>, Integer> values =
+      TreeBasedTable.create(Comparator.naturalOrder(), URN_AND_VALUE);
+
+  /**
+   * Count a query.
+   *
+   * @param day        the day the query was sent
+   * @param fieldCount the number of fields of the query
+   */
+  public void addQuery(LocalDate day, int fieldCount) {
+    increment(queriesByFieldCount, day, fieldCount);
+  }
+
+  /**
+   * Count a field of a query.
+   *
+   * @param day the day the query was sent
+   * @param urn the urn of the field, fields without urn are not counted
+   */
+  public void addField(LocalDate day, String urn) {
+    if (urn != null) {
+      increment(fields, day, urn);
+    }
+  }
+
+  /**
+   * Count a value of a field.
+   *
+   * @param day   the day the query was sent
+   * @param urn   the urn of the field
+   * @param value the value, fields and values without value are not counted
+   */
+  public void addValue(LocalDate day, String urn, String value) {
+    if (urn != null && value != null) {
+      increment(values, day, new SimpleImmutableEntry<>(urn, value));
+    }
+  }
+
+  private static <C> void increment(Table<LocalDate, C, Integer> table, LocalDate day, C column) {
+    Integer count = table.get(day, column);
+    table.put(day, column, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Get the number of queries per day and number of fields.
+   */
+  public Table<LocalDate, Integer, Integer> getQueriesByFieldCount() {
+    return queriesByFieldCount;
+  }
+
+  /**
+   * Get the number of fields per day and urn.
+   */
+  public Table<LocalDate, String, Integer> getFields() {
+    return fields;
+  }
+
+  /**
+   * Get the number of values per day and urn and value.
+   */
+  public Table<LocalDate, Map.Entry<String, String>, Integer> getValues() {
+    return values;
+  }
+}
@@ -0,0 +1,36 @@
+package de.samply.share.broker.statistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes tables of statistics row by row, so the memory needed does not depend on the number of
+ * rows.
+ */
+public interface StatisticsSheetWriter extends Closeable {
+
+  /**
+   * Start a new table.
+   *
+   * @param name    the name of the table
+   * @param columns the names of the columns
+   * @throws IOException if the table cannot be written
+   */
+  void startSheet(String name, String... columns) throws IOException;
+
+  /**
+   * Write a row of the current table.
+   *
+   * @param values the values, numbers and {@link java.time.LocalDate}s are written as such
+   * @throws IOException if the row cannot be written
+   */
+  void writeRow(Object... values) throws IOException;
+
+  /**
+   * Finish the output. The underlying stream is not closed.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  @Override
+  void close() throws IOException;
+}
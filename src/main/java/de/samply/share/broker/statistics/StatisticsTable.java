@@ -0,0 +1,23 @@
+package de.samply.share.broker.statistics;
+
+/**
+ * The tables of the statistics export, each built from one of the daily aggregates.
+ */
+public enum StatisticsTable {
+
+  QUERIES("Queries", "day", "fields", "queries"),
+  FIELDS("MdrFields", "day", "urn", "uses"),
+  VALUES("MdrValues", "day", "urn", "value", "uses");
+
+  public final String sheetName;
+  private final String[] columns;
+
+  StatisticsTable(String sheetName, String... columns) {
+    this.sheetName = sheetName;
+    this.columns = columns;
+  }
+
+  public String[] getColumns() {
+    return columns.clone();
+  }
+}
@@ -0,0 +1,94 @@
+package de.samply.share.broker.statistics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Date;
+import java.time.LocalDate;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Writes the statistics as XLSX workbook with one sheet per table. Only the last rows are kept in
+ * memory, the others are written to a temporary file until the workbook is finished.
+ */
+public class XlsxStatisticsWriter implements StatisticsSheetWriter {
+
+  static final int ROWS_IN_MEMORY = 100;
+  private static final int COLUMN_WIDTH = 30 * 256;
+
+  private final OutputStream outputStream;
+  private final SXSSFWorkbook workbook;
+  private final CellStyle headerStyle;
+  private final CellStyle dateStyle;
+  private Sheet sheet;
+  private int rowCount;
+
+  /**
+   * Create a workbook to be written to a stream.
+   *
+   * @param outputStream the stream to write the workbook to when it is closed
+   */
+  public XlsxStatisticsWriter(OutputStream outputStream) {
+    this.outputStream = outputStream;
+    this.workbook = new SXSSFWorkbook(ROWS_IN_MEMORY);
+    workbook.setCompressTempFiles(true);
+
+    Font headerFont = workbook.createFont();
+    headerFont.setBold(true);
+    headerStyle = workbook.createCellStyle();
+    headerStyle.setFont(headerFont);
+
+    dateStyle = workbook.createCellStyle();
+    dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat()
+        .getFormat("yyyy-mm-dd"));
+  }
+
+  @Override
+  public void startSheet(String name, String... columns) {
+    sheet = workbook.createSheet(name);
+    rowCount = 0;
+    Row row = sheet.createRow(rowCount++);
+    for (int i = 0; i < columns.length; i++) {
+      // the columns cannot be sized to their content, as the rows are not kept
+      sheet.setColumnWidth(i, COLUMN_WIDTH);
+      Cell cell = row.createCell(i);
+      cell.setCellValue(columns[i]);
+      cell.setCellStyle(headerStyle);
+    }
+  }
+
+  @Override
+  public void writeRow(Object... values) {
+    Row row = sheet.createRow(rowCount++);
+    for (int i = 0; i < values.length; i++) {
+      Object value = values[i];
+      if (value == null) {
+        continue;
+      }
+      Cell cell = row.createCell(i);
+      if (value instanceof Number) {
+        cell.setCellValue(((Number) value).doubleValue());
+      } else if (value instanceof LocalDate) {
+        cell.setCellValue(Date.valueOf((LocalDate) value));
+        cell.setCellStyle(dateStyle);
+      } else {
+        cell.setCellValue(value.toString());
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      workbook.write(outputStream);
+      outputStream.flush();
+    } finally {
+      workbook.dispose();
+      workbook.close();
+    }
+  }
+}
@@ -1,12 +1,21 @@
 package de.samply.share.broker.utils;
 
+import com.google.common.base.Splitter;
 import de.samply.share.common.utils.AbstractConfig;
+import de.samply.share.common.utils.ProjectInfo;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * The configuration of this project.
  */
 public class Config extends AbstractConfig {
 
+  private static final Logger logger = LogManager.getLogger(Config.class);
+
   private static final String CONFIG_FILENAME = "samply.share.broker.conf";
 
   private static Config instance;
@@ -27,4 +36,62 @@ public class Config extends AbstractConfig {
     return instance;
   }
 
+  /**
+   * Read an integer property from the project configuration.
+   *
+   * @param key          the name of the property
+   * @param defaultValue the value to use if the property is missing or invalid
+   * @return the configured value or the default value
+   */
+  public static int getIntProperty(String key, int defaultValue) {
+    String value = getProperty(key);
+    if (StringUtils.isBlank(value)) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      logger.warn("Invalid value for " + key + ": " + value + ". Using " + defaultValue);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Read a boolean property from the project configuration.
+   *
+   * @param key          the name of the property
+   * @param defaultValue the value to use if the property is missing
+   * @return the configured value or the default value
+   */
+  public static boolean getBooleanProperty(String key, boolean defaultValue) {
+    String value = getProperty(key);
+    if (StringUtils.isBlank(value)) {
+      return defaultValue;
+    }
+    return Boolean.parseBoolean(value.trim());
+  }
+
+  /**
+   * Read a comma separated list from the project configuration.
+   *
+   * @param key the name of the property
+   * @return the values, or an empty list if the property is missing
+   */
+  public static List<String> getListProperty(String key) {
+    String value = getProperty(key);
+    if (StringUtils.isBlank(value)) {
+      return Collections.emptyList();
+    }
+    return Splitter.on(',').trimResults().omitEmptyStrings().splitToList(value);
+  }
+
+  private static String getProperty(String key) {
+    try {
+      return ProjectInfo.INSTANCE.getConfig().getProperty(key);
+    } catch (RuntimeException e) {
+      // no configuration loaded (e.g. outside of the servlet container)
+      return null;
+    }
+  }
+
 }
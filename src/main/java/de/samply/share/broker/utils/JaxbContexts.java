@@ -0,0 +1,38 @@
+package de.samply.share.broker.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+/**
+ * Caches the JAXB contexts, which are expensive to create but thread-safe. Marshallers and
+ * unmarshallers are not thread-safe and are still created per use.
+ */
+public final class JaxbContexts {
+
+  private static final ConcurrentMap<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<>();
+
+  // Prevent instantiation
+  private JaxbContexts() {
+  }
+
+  /**
+   * Get the JAXB context of a class, creating it on first use.
+   *
+   * @param type the class to be bound, e.g. an ObjectFactory
+   * @return the context
+   * @throws JAXBException if the context could not be created
+   */
+  public static JAXBContext get(Class<?> type) throws JAXBException {
+    JAXBContext context = contexts.get(type);
+    if (context == null) {
+      context = JAXBContext.newInstance(type);
+      JAXBContext existing = contexts.putIfAbsent(type, context);
+      if (existing != null) {
+        context = existing;
+      }
+    }
+    return context;
+  }
+}
@@ -0,0 +1,51 @@
+package de.samply.share.broker.utils;
+
+import com.google.common.io.BaseEncoding;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Reads claims of a JWT without verifying it, e.g. to decide how long something derived from a
+ * token may be cached.
+ */
+public final class JwtClaims {
+
+  // Prevent instantiation
+  private JwtClaims() {
+  }
+
+  /**
+   * Read the expiry ("exp" claim) of a JWT. The signature is not checked, so only use it for
+   * tokens that have been verified or are used against the service that issued them.
+   *
+   * @param token the encoded token
+   * @return the expiry or null if the token has none or is no JWT
+   */
+  public static Instant readExpiry(String token) {
+    JsonElement exp = readClaim(token, "exp");
+    try {
+      return exp == null ? null : Instant.ofEpochSecond(exp.getAsLong());
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static JsonElement readClaim(String token, String name) {
+    String[] parts = token.split("\\.");
+    if (parts.length < 2) {
+      return null;
+    }
+    try {
+      String payload = new String(BaseEncoding.base64Url().omitPadding().decode(
+          parts[1].replace("=", "")), StandardCharsets.UTF_8);
+      JsonObject claims = new JsonParser().parse(payload).getAsJsonObject();
+      JsonElement claim = claims.get(name);
+      return claim == null || claim.isJsonNull() ? null : claim;
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package de.samply.share.broker.utils;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.template.soy.SoyFileSet;
+import com.google.template.soy.tofu.SoyTofu;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The soy templates of the mails, compiled once. Every mail consists of the main template, the
+ * content template of the mail and the footer, which are selected by their delegate package.
+ *
+ * <p>Thread-safe.
+ */
+public class MailTemplates {
+
+  static final String MAIN_TEMPLATE = "samply.mailing.mail";
+  static final String FOOTER_PACKAGE = "Footer";
+
+  private final SoyTofu tofu;
+
+  /**
+   * Compile all templates of a folder.
+   *
+   * @param templateFolder the folder holding the .soy files
+   */
+  public MailTemplates(File templateFolder) {
+    File[] files = templateFolder.listFiles((dir, name) -> name.endsWith(".soy"));
+    if (files == null || files.length == 0) {
+      throw new IllegalArgumentException("No mail templates found in " + templateFolder);
+    }
+    SoyFileSet.Builder builder = SoyFileSet.builder();
+    for (File file : files) {
+      builder.add(file);
+    }
+    tofu = builder.build().compileToTofu();
+  }
+
+  /**
+   * Render the text of a mail.
+   *
+   * @param template   the delegate package of the content template, e.g. NewRegistrationContent
+   * @param locale     the locale of the mail
+   * @param parameters the parameters of the content template
+   * @return the text
+   */
+  public String render(String template, String locale, Map<String, String> parameters) {
+    Map<String, Object> data = new HashMap<>(parameters);
+    data.put("locale", locale);
+    return tofu.newRenderer(MAIN_TEMPLATE)
+        .setData(data)
+        .setActiveDelegatePackageNames(ImmutableSet.of(template, FOOTER_PACKAGE))
+        .render();
+  }
+}
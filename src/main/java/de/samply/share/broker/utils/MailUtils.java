@@ -1,11 +1,17 @@
 package de.samply.share.broker.utils;
 
-import de.samply.common.mailing.EmailBuilder;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
 import de.samply.common.mailing.MailSender;
 import de.samply.common.mailing.MailSending;
-import de.samply.common.mailing.OutgoingEmail;
 import de.samply.config.util.FileFinderUtil;
-import de.samply.share.broker.thread.MailSenderThread;
+import de.samply.share.broker.control.MailDispatcher;
+import de.samply.share.broker.model.db.tables.pojos.MailOutbox;
+import de.samply.share.broker.model.db.tables.pojos.Tokenrequest;
+import de.samply.share.broker.utils.db.MailOutboxUtil;
+import de.samply.share.broker.utils.db.TokenRequestUtil;
 import de.samply.share.common.utils.ProjectInfo;
 import java.io.File;
 import java.io.IOException;
@@ -14,6 +20,9 @@ import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,6 +30,9 @@ import org.apache.logging.log4j.Logger;
 /**
  * An utility class holding methods to send emails.
  * Templates stored in src/main/resources/mailTemplates.
+ *
+ * <p>The mails are stored in the outbox and sent by the {@link MailDispatcher}. The mail sending
+ * configuration is loaded and the templates are compiled once, when the first mail is sent.
  */
 public class MailUtils {
 
@@ -31,51 +43,37 @@ public class MailUtils {
   private static final String MAIL_SUBJECT_REGISTRATION_EN =
       "Your registration with Samply.Share.Broker";
 
+  private static final Supplier<MailSending> mailSending =
+      Suppliers.memoize(MailUtils::loadMailSending);
+  private static final Supplier<SmtpMailSender> smtpMailSender =
+      Suppliers.memoize(MailUtils::createSmtpMailSender);
+
+  private static final String TOKEN = "token";
+  private static final String TOKEN_REQUEST_ID = "tokenRequestId";
+
+  private static final Gson gson = new Gson();
 
   /**
-   * Send activation mail. Mail content can be changed in the soy templates.
+   * Send activation mail. Mail content can be changed in the soy templates. The outbox only keeps
+   * the id of the token request, the token is read when the mail is sent.
    *
    * @param receiverAddress the email address of the receiver
-   * @param token           the token used to verify the mail address
+   * @param tokenRequest    the token request with the token used to verify the mail address
    */
-  public static void sendActivationmail(String receiverAddress, String token) {
-    OutgoingEmail email = new OutgoingEmail();
-    String projectName = ProjectInfo.INSTANCE.getProjectName();
-    email.addAddressee(receiverAddress);
-    if (projectName.equalsIgnoreCase("dktk")) {
-      email.setLocale("de");
-      email.setSubject(MAIL_SUBJECT_REGISTRATION_DE);
+  public static void sendActivationmail(String receiverAddress, Tokenrequest tokenRequest) {
+    MailOutbox mail = new MailOutbox();
+    mail.setRecipients(receiverAddress);
+    if (ProjectInfo.INSTANCE.getProjectName().equalsIgnoreCase("dktk")) {
+      mail.setLocale("de");
+      mail.setSubject(MAIL_SUBJECT_REGISTRATION_DE);
     } else {
-      email.setLocale("en");
-      email.setSubject(MAIL_SUBJECT_REGISTRATION_EN);
+      mail.setLocale("en");
+      mail.setSubject(MAIL_SUBJECT_REGISTRATION_EN);
     }
-    email.putParameter("token", token);
-    MailSending mailSending = MailSender.loadMailSendingConfig(projectName,
-        System.getProperty("catalina.base") + File.separator + "conf",
-        ProjectInfo.INSTANCE.getServletContext().getRealPath("/WEB-INF"));
-
-    EmailBuilder builder = initializeBuilder(mailSending);
-    builder.addTemplateFile("NewRegistrationContent.soy",
-        "NewRegistrationContent");
-    email.setBuilder(builder);
-
-    Thread mailSenderThread = new Thread(new MailSenderThread(mailSending, email));
-    mailSenderThread.start();
-  }
-
-  /**
-   * Initializes an EmailBuilder with the two default Soy-Templates: main.soy and footer.soy.
-   *
-   * @param mailSending mail sending configuration
-   * @return an email builder instance
-   */
-  private static EmailBuilder initializeBuilder(MailSending mailSending) {
-    String templateFolder = Utils.getRealPath(mailSending.getTemplateFolder());
-
-    EmailBuilder builder = new EmailBuilder(templateFolder, false);
-    builder.addTemplateFile("MainMailTemplate.soy", null);
-    builder.addTemplateFile("Footer.soy", "Footer");
-    return builder;
+    mail.setTemplate("NewRegistrationContent");
+    mail.setParameters(gson.toJson(
+        ImmutableMap.of(TOKEN_REQUEST_ID, String.valueOf(tokenRequest.getId()))));
+    send(mail);
   }
 
   /**
@@ -83,24 +81,91 @@ public class MailUtils {
    * @throws IOException IOException
    */
   public static void sendStatistics() throws IOException {
-    OutgoingEmail email = new OutgoingEmail();
-    String projectName = ProjectInfo.INSTANCE.getProjectName();
-    email.setSubject("Sample Locator Statistic");
-    File addressFile = FileFinderUtil.findFile("statistic_notification.txt", projectName,
+    File addressFile = FileFinderUtil.findFile("statistic_notification.txt",
+        ProjectInfo.INSTANCE.getProjectName(),
         System.getProperty("catalina.base") + File.separator + "conf",
         ProjectInfo.INSTANCE.getServletContext().getRealPath("/WEB-INF"));
-    Stream<String> streams = Files.lines(addressFile.toPath(), StandardCharsets.UTF_8);
-    streams.forEach(email::addAddressee);
+    String recipients;
+    try (Stream<String> lines = Files.lines(addressFile.toPath(), StandardCharsets.UTF_8)) {
+      recipients = lines.map(String::trim).filter(line -> !line.isEmpty())
+          .collect(Collectors.joining(", "));
+    }
+    if (recipients.isEmpty()) {
+      logger.info("No recipients of the statistics configured");
+      return;
+    }
     DateFormat parseFormat = new SimpleDateFormat("yyyy-MM-dd");
     String statistics =
         System.getProperty("catalina.base") + File.separator + "logs" + File.separator
             + "statistics" + File.separator + "statistic_" + parseFormat
             .format(new Date(System.currentTimeMillis() - 1000 * 60 * 60 * 24)) + ".xlsx";
-    email.getAttachmentPaths().add(statistics);
-    MailSending mailSending = MailSender.loadMailSendingConfig(projectName,
+
+    MailOutbox mail = new MailOutbox();
+    mail.setRecipients(recipients);
+    mail.setSubject("Sample Locator Statistic");
+    mail.setAttachment(statistics);
+    send(mail);
+  }
+
+  /**
+   * Store a mail in the outbox and queue it to be sent.
+   *
+   * @param mail the mail
+   */
+  private static void send(MailOutbox mail) {
+    int mailId = MailOutboxUtil.createMail(mail);
+    if (mailId == 0) {
+      logger.error("Mail '" + mail.getSubject() + "' to " + mail.getRecipients()
+          + " could not be stored");
+      return;
+    }
+    MailDispatcher.getInstance().submit(mailId);
+  }
+
+  /**
+   * Get the sender of the mails, set up from the mail sending configuration.
+   *
+   * @return the sender
+   */
+  public static SmtpMailSender getSmtpMailSender() {
+    return smtpMailSender.get();
+  }
+
+  private static MailSending loadMailSending() {
+    return MailSender.loadMailSendingConfig(ProjectInfo.INSTANCE.getProjectName(),
         System.getProperty("catalina.base") + File.separator + "conf",
         ProjectInfo.INSTANCE.getServletContext().getRealPath("/WEB-INF"));
-    Thread mailSenderThread = new Thread(new MailSenderThread(mailSending, email));
-    mailSenderThread.start();
+  }
+
+  private static SmtpMailSender createSmtpMailSender() {
+    MailSending config = mailSending.get();
+    MailTemplates templates = new MailTemplates(
+        new File(Utils.getRealPath(config.getTemplateFolder())));
+    return new SmtpMailSender(config.getHost(), config.getPort(), config.getProtocol(),
+        config.getFromAddress(), config.getFromName(),
+        (template, locale, parameters) ->
+            templates.render(template, locale, withToken(parameters)));
+  }
+
+  /**
+   * Add the token of the token request referenced by the parameters of a mail.
+   *
+   * @param parameters the parameters of the mail
+   * @return the parameters with the token
+   * @throws IllegalStateException if the token request does not exist any more, so the mail is
+   *                               given up after the last attempt
+   */
+  private static Map<String, String> withToken(Map<String, String> parameters) {
+    String tokenRequestId = parameters.get(TOKEN_REQUEST_ID);
+    if (tokenRequestId == null) {
+      return parameters;
+    }
+    String token = TokenRequestUtil.fetchAuthcode(Integer.parseInt(tokenRequestId));
+    if (token == null) {
+      throw new IllegalStateException("Token request " + tokenRequestId + " not found");
+    }
+    Map<String, String> withToken = new HashMap<>(parameters);
+    withToken.put(TOKEN, token);
+    return withToken;
   }
 }
@@ -0,0 +1,64 @@
+package de.samply.share.broker.utils;
+
+import de.samply.common.config.OAuth2Client;
+import de.samply.share.common.utils.ProjectInfo;
+import de.samply.share.common.utils.oauth2.OAuthConfig;
+import java.io.File;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the OAuth2 client configuration (OAuth2Client.xml), so it is read from disk once instead of
+ * on every authenticated request. It is read again on demand, e.g. when the public key of the
+ * authentication service may have been rotated, but at most once a minute.
+ */
+public final class OAuthClientConfig {
+
+  private static final long RELOAD_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static volatile OAuth2Client client;
+  private static volatile long loadedAtNanos;
+
+  // Prevent instantiation
+  private OAuthClientConfig() {
+  }
+
+  /**
+   * Get the OAuth2 client configuration, reading it on first use.
+   *
+   * @return the configuration
+   */
+  public static OAuth2Client getClient() {
+    OAuth2Client current = client;
+    if (current == null) {
+      synchronized (OAuthClientConfig.class) {
+        if (client == null) {
+          load();
+        }
+        current = client;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Read the configuration again, unless it has been read within the last minute.
+   *
+   * @return true if the public key of the authentication service has changed
+   */
+  public static synchronized boolean reloadIfStale() {
+    if (client != null && System.nanoTime() - loadedAtNanos < RELOAD_INTERVAL_NANOS) {
+      return false;
+    }
+    String publicKey = client == null ? null : client.getHostPublicKey();
+    load();
+    return client != null && !Objects.equals(publicKey, client.getHostPublicKey());
+  }
+
+  private static void load() {
+    String[] fallbacks = {System.getProperty("catalina.base") + File.separator + "conf",
+        ProjectInfo.INSTANCE.getServletContext().getRealPath("/WEB-INF")};
+    client = OAuthConfig.getOAuth2Client(ProjectInfo.INSTANCE.getProjectName(), fallbacks);
+    loadedAtNanos = System.nanoTime();
+  }
+}
@@ -0,0 +1,117 @@
+package de.samply.share.broker.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import de.samply.share.broker.model.db.tables.pojos.MailOutbox;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+/**
+ * Sends the mails of the outbox to a mail server. The session and the sender address are set up
+ * once and shared by all mails.
+ *
+ * <p>Thread-safe.
+ */
+public class SmtpMailSender {
+
+  private static final String CHARSET = StandardCharsets.UTF_8.name();
+  private static final String TIMEOUT_MILLIS = "30000";
+  private static final Type PARAMETERS_TYPE = new TypeToken<Map<String, String>>() {
+  }.getType();
+
+  private final Session session;
+  private final InternetAddress from;
+  private final Renderer renderer;
+  private final Gson gson = new Gson();
+
+  /**
+   * Create a sender.
+   *
+   * @param host        the host of the mail server
+   * @param port        the port of the mail server
+   * @param protocol    the protocol, e.g. smtp
+   * @param fromAddress the address the mails are sent from
+   * @param fromName    the name the mails are sent from
+   * @param renderer    renders the text of the mails
+   */
+  public SmtpMailSender(String host, int port, String protocol, String fromAddress,
+      String fromName, Renderer renderer) {
+    Properties properties = new Properties();
+    properties.setProperty("mail.transport.protocol", protocol);
+    properties.setProperty("mail." + protocol + ".host", host);
+    properties.setProperty("mail." + protocol + ".port", String.valueOf(port));
+    properties.setProperty("mail." + protocol + ".connectiontimeout", TIMEOUT_MILLIS);
+    properties.setProperty("mail." + protocol + ".timeout", TIMEOUT_MILLIS);
+    this.session = Session.getInstance(properties);
+    try {
+      this.from = new InternetAddress(fromAddress, fromName, CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    this.renderer = renderer;
+  }
+
+  /**
+   * Send a mail.
+   *
+   * @param mail the mail
+   * @throws MessagingException if the mail server did not accept the mail
+   */
+  public void send(MailOutbox mail) throws MessagingException {
+    MimeMessage message = new MimeMessage(session);
+    message.setFrom(from);
+    message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(mail.getRecipients()));
+    message.setSubject(mail.getSubject(), CHARSET);
+    message.setSentDate(new Date());
+
+    String text = mail.getTemplate() == null ? ""
+        : renderer.render(mail.getTemplate(), mail.getLocale(), getParameters(mail));
+    if (mail.getAttachment() == null) {
+      message.setText(text, CHARSET);
+    } else {
+      MimeBodyPart textPart = new MimeBodyPart();
+      textPart.setText(text, CHARSET);
+      MimeBodyPart attachmentPart = new MimeBodyPart();
+      try {
+        attachmentPart.attachFile(mail.getAttachment());
+      } catch (IOException e) {
+        throw new MessagingException("Error while attaching " + mail.getAttachment(), e);
+      }
+      MimeMultipart multipart = new MimeMultipart();
+      multipart.addBodyPart(textPart);
+      multipart.addBodyPart(attachmentPart);
+      message.setContent(multipart);
+    }
+    Transport.send(message);
+  }
+
+  private Map<String, String> getParameters(MailOutbox mail) {
+    if (mail.getParameters() == null) {
+      return Collections.emptyMap();
+    }
+    return gson.fromJson(mail.getParameters(), PARAMETERS_TYPE);
+  }
+
+  /**
+   * Renders the text of a mail from a template.
+   */
+  @FunctionalInterface
+  public interface Renderer {
+
+    String render(String template, String locale, Map<String, String> parameters);
+  }
+}
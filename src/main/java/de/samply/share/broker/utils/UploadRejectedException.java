@@ -0,0 +1,28 @@
+package de.samply.share.broker.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown while reading an upload that violates the upload constraints.
+ */
+public class UploadRejectedException extends IOException {
+
+  /**
+   * The reason why an upload has been rejected.
+   */
+  public enum Reason {
+    TOO_LARGE,
+    NOT_PDF
+  }
+
+  private final Reason reason;
+
+  public UploadRejectedException(Reason reason) {
+    super("Upload rejected: " + reason);
+    this.reason = reason;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+}
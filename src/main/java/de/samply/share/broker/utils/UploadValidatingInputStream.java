@@ -0,0 +1,120 @@
+package de.samply.share.broker.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Wraps an uploaded document stream and validates it while it is being read.
+ * The content is hashed (SHA-256) and counted on the fly. Reading fails with an
+ * {@link UploadRejectedException} as soon as the size limit is exceeded or, if a pdf is required,
+ * as soon as the first bytes do not match the pdf header.
+ */
+public class UploadValidatingInputStream extends FilterInputStream {
+
+  static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+  private final long maxBytes;
+  private final boolean requirePdf;
+  private final MessageDigest digest;
+  private final byte[] header = new byte[PDF_MAGIC.length];
+
+  private long byteCount;
+  private boolean headerChecked;
+
+  /**
+   * Create a validating stream.
+   *
+   * @param in         the uploaded content
+   * @param maxBytes   the maximum number of bytes that may be read
+   * @param requirePdf true if the content has to start with the pdf header
+   */
+  public UploadValidatingInputStream(InputStream in, long maxBytes, boolean requirePdf) {
+    super(in);
+    this.maxBytes = maxBytes;
+    this.requirePdf = requirePdf;
+    this.headerChecked = !requirePdf;
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    int read = read(single, 0, 1);
+    return read == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read == -1) {
+      if (!headerChecked) {
+        throw new UploadRejectedException(UploadRejectedException.Reason.NOT_PDF);
+      }
+      return read;
+    }
+
+    if (!headerChecked) {
+      int headerBytes = (int) Math.min(read, header.length - byteCount);
+      System.arraycopy(b, off, header, (int) byteCount, headerBytes);
+      if (byteCount + headerBytes == header.length) {
+        if (!Arrays.equals(header, PDF_MAGIC)) {
+          throw new UploadRejectedException(UploadRejectedException.Reason.NOT_PDF);
+        }
+        headerChecked = true;
+      }
+    }
+
+    byteCount += read;
+    if (byteCount > maxBytes) {
+      throw new UploadRejectedException(UploadRejectedException.Reason.TOO_LARGE);
+    }
+    digest.update(b, off, read);
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    throw new IOException("skip is not supported while validating an upload");
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * Get the number of bytes read so far.
+   *
+   * @return the number of bytes read
+   */
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * Get the hex encoded SHA-256 hash of the content. Only meaningful once the stream is consumed.
+   *
+   * @return the lower case hex encoded hash
+   */
+  public String getSha256Hex() {
+    try {
+      MessageDigest copy = (MessageDigest) digest.clone();
+      StringBuilder hex = new StringBuilder();
+      for (byte b : copy.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
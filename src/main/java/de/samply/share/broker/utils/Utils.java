@@ -6,16 +6,15 @@ import static de.samply.share.common.model.dto.monitoring.StatusReportItem.PARAM
 import static de.samply.share.common.model.dto.monitoring.StatusReportItem.PARAMETER_LDM_VERSION;
 import static de.samply.share.common.model.dto.monitoring.StatusReportItem.PARAMETER_SHARE_STATUS;
 import static de.samply.share.common.model.dto.monitoring.StatusReportItem.PARAMETER_SHARE_VERSION;
-import static org.omnifaces.util.Faces.getServletContext;
 
 import com.google.gson.Gson;
-import de.samply.auth.client.jwt.JwtAccessToken;
-import de.samply.auth.rest.LocationDto;
-import de.samply.auth.rest.UserDto;
 import de.samply.share.broker.control.LocaleController;
+import de.samply.share.broker.jdbc.InvalidatingCache;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.jdbc.ResourceManager;
 import de.samply.share.broker.model.db.Tables;
 import de.samply.share.broker.model.db.tables.pojos.Site;
+import de.samply.share.broker.utils.connector.AuthUserInfoConnector;
 import de.samply.share.broker.utils.connector.IcingaConnector;
 import de.samply.share.broker.utils.connector.IcingaConnectorException;
 import de.samply.share.broker.utils.connector.SiteReportItem;
@@ -27,28 +26,19 @@ import de.samply.share.common.utils.AbstractConfig;
 import de.samply.share.common.utils.Constants;
 import de.samply.share.common.utils.ProjectInfo;
 import de.samply.share.common.utils.SamplyShareUtils;
-import de.samply.share.common.utils.oauth2.OAuthConfig;
-import de.samply.share.common.utils.oauth2.OAuthUtils;
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.faces.application.ProjectStage;
 import javax.faces.context.FacesContext;
 import javax.servlet.ServletContext;
 import javax.servlet.http.Part;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Invocation;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.jooq.DSLContext;
 import org.jooq.Record;
 
@@ -69,6 +59,10 @@ public class Utils {
   private static final String PROXY_HTTP_PORT = "proxy.http.port";
   private static final String PROXY_HTTP_HOST = "proxy.http.host";
   private static final String XML_NAMESPACE_BASEURL = "http://schema.samply.de/";
+  private static final int BANK_ID_CACHE_SIZE = 1000;
+
+  private static final InvalidatingCache<String, Integer> bankIdsByAuthKey =
+      new InvalidatingCache<>(BANK_ID_CACHE_SIZE, Topic.BANK);
 
   /**
    * Get the real path for a relative path.
@@ -83,23 +77,45 @@ public class Utils {
 
   /**
    * Gets the bank id from an authorization header.
+   * Bridgeheads call this with every poll, so the bank ids are cached until a bank changes.
    *
    * @param authKeyHeader the authorization header containing the api key
    * @return the bank id
    */
   public static int getBankId(String authKeyHeader) {
-    int bankId = -1;
-    String authKey;
+    String authKey = getAuthKey(authKeyHeader);
+    if (authKey == null) {
+      return -1;
+    }
+    Integer cachedBankId = bankIdsByAuthKey.get(authKey, Utils::fetchBankId);
+    return cachedBankId == null ? -1 : cachedBankId;
+  }
 
-    if (authKeyHeader == null || !authKeyHeader.startsWith("Samply ")) {
-      return bankId;
+  /**
+   * Gets the bank id from an authorization header if it is cached, without touching the
+   * database. Unknown api keys are never cached, so this is safe to call before a request has
+   * been let through, e.g. by the rate limit.
+   *
+   * @param authKeyHeader the authorization header containing the api key
+   * @return the bank id or -1 if it is not cached
+   */
+  public static int getCachedBankId(String authKeyHeader) {
+    String authKey = getAuthKey(authKeyHeader);
+    if (authKey == null) {
+      return -1;
     }
-    try {
-      authKey = authKeyHeader.substring(7);
-    } catch (Exception e) {
-      return bankId;
+    Integer cachedBankId = bankIdsByAuthKey.getIfPresent(authKey);
+    return cachedBankId == null ? -1 : cachedBankId;
+  }
+
+  private static String getAuthKey(String authKeyHeader) {
+    if (authKeyHeader == null || !authKeyHeader.startsWith("Samply ")) {
+      return null;
     }
+    return authKeyHeader.substring(7);
+  }
 
+  private static Integer fetchBankId(String authKey) {
     try (Connection connection = ResourceManager.getConnection()) {
       DSLContext create = ResourceManager.getDslContext(connection);
 
@@ -108,14 +124,41 @@ public class Utils {
           .where(Tables.AUTHTOKEN.VALUE.equal(authKey)).fetchAny();
 
       if (r == null) {
-        return bankId;
+        return null;
       }
 
-      bankId = r.getValue(Tables.BANK.ID);
+      return r.getValue(Tables.BANK.ID);
     } catch (SQLException e) {
       e.printStackTrace();
     }
-    return bankId;
+    return null;
+  }
+
+  /**
+   * Load the bank ids of all api keys into the cache with one query, so the first polls after a
+   * start need not look them up one by one.
+   *
+   * @return the number of cached bank ids
+   */
+  public static int preloadBankIds() {
+    return bankIdsByAuthKey.preload(Utils::fetchBankIds);
+  }
+
+  private static Map<String, Integer> fetchBankIds() {
+    Map<String, Integer> bankIds = new HashMap<>();
+    try (Connection connection = ResourceManager.getConnection()) {
+      DSLContext create = ResourceManager.getDslContext(connection);
+
+      for (Record r : create.select(Tables.AUTHTOKEN.VALUE, Tables.BANK.ID)
+          .from(Tables.BANK).join(Tables.AUTHTOKEN)
+          .on(Tables.BANK.AUTHTOKEN_ID.equal(Tables.AUTHTOKEN.ID))
+          .fetch()) {
+        bankIds.put(r.getValue(Tables.AUTHTOKEN.VALUE), r.getValue(Tables.BANK.ID));
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+    return bankIds;
   }
 
   /**
@@ -188,20 +231,6 @@ public class Utils {
     return null;
   }
 
-  /**
-   * Save a byte array to a temporary file.
-   *
-   * @param prefix the prefix of the temp file
-   * @param buf    the byte array to save
-   * @return the resulting temp file
-   */
-  public static File saveByteArrayToTmpFile(String prefix, byte[] buf,
-      FormDataContentDisposition contentDispositionHeader) throws IOException {
-    File file = Files.createTempFile(prefix, contentDispositionHeader.getFileName()).toFile();
-    FileUtils.writeByteArrayToFile(file, buf);
-    return file;
-  }
-
   /**
    * Get a list of site names from a list of sites.
    *
@@ -223,27 +252,7 @@ public class Utils {
    * @return the location id from the first location
    */
   public static String getLocationIdFromAccessToken(String accessTokenHeader) {
-    String projectName = ProjectInfo.INSTANCE.getProjectName();
-    String[] fallbacks = {System.getProperty("catalina.base") + File.separator + "conf",
-        getServletContext().getRealPath("/WEB-INF")};
-    String authUrl =
-        OAuthConfig.getOAuth2Client(projectName, fallbacks).getHost() + "/oauth2/userinfo";
-
-    JwtAccessToken accessToken = OAuthUtils.getJwtAccessToken(accessTokenHeader);
-
-    Client client = ClientBuilder.newClient();
-    Invocation.Builder invocationBuilder = client.target(authUrl)
-        .request("application/json")
-        .accept("application/json").header("Authorization", accessToken.getHeader());
-
-    UserDto userInfo = invocationBuilder.get(UserDto.class);
-
-    List<LocationDto> locations = userInfo.getLocations();
-    if (locations == null || locations.size() == 0) {
-      return null;
-    }
-
-    return locations.get(0).getId();
+    return AuthUserInfoConnector.getLocationId(accessTokenHeader);
   }
 
   /**
@@ -0,0 +1,84 @@
+package de.samply.share.broker.utils.connector;
+
+import de.samply.auth.rest.LocationDto;
+import de.samply.auth.rest.UserDto;
+import de.samply.common.http.HttpConnector;
+import de.samply.share.broker.listener.Proxy;
+import de.samply.share.broker.utils.OAuthClientConfig;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * Looks up the user info of an access token at the authentication service. All lookups share
+ * one connection-pooled client, and the result is cached until the access token expires.
+ */
+public class AuthUserInfoConnector {
+
+  private static final String USERINFO_PATH = "/oauth2/userinfo";
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+  private static final int READ_TIMEOUT_MILLIS = 10000;
+
+  /**
+   * How long the user info is cached if the access token carries no expiry.
+   */
+  private static final Duration DEFAULT_TOKEN_LIFETIME = Duration.ofHours(1);
+
+  private static final UserInfoCache cache =
+      new UserInfoCache(DEFAULT_TOKEN_LIFETIME, 10000, Clock.systemUTC());
+
+  private static volatile Client client;
+
+  // prevent instantiation
+  private AuthUserInfoConnector() {
+  }
+
+  /**
+   * Get the id of the first location of the user the access token belongs to.
+   *
+   * @param accessTokenHeader the authorization header containing the access token
+   * @return the location id or null if the user has no location
+   */
+  public static String getLocationId(String accessTokenHeader) {
+    String[] parts = accessTokenHeader.trim().split(" ");
+    return cache.getLocationId(parts[parts.length - 1], AuthUserInfoConnector::fetchLocationId);
+  }
+
+  private static String fetchLocationId(String accessToken) {
+    String authUrl = OAuthClientConfig.getClient().getHost() + USERINFO_PATH;
+
+    UserDto userInfo = getClient(authUrl).target(authUrl)
+        .request("application/json")
+        .accept("application/json")
+        .header("Authorization", "Bearer " + accessToken)
+        .get(UserDto.class);
+
+    List<LocationDto> locations = userInfo.getLocations();
+    if (locations == null || locations.isEmpty()) {
+      return null;
+    }
+    return locations.get(0).getId();
+  }
+
+  private static Client getClient(String authUrl) {
+    Client current = client;
+    if (current == null) {
+      synchronized (AuthUserInfoConnector.class) {
+        if (client == null) {
+          HttpConnector httpConnector = Proxy.getHttpConnector();
+          Client created = httpConnector != null ? httpConnector.getJerseyClient(authUrl)
+              : ClientBuilder.newClient();
+          created.property(ClientProperties.CONNECT_TIMEOUT, CONNECT_TIMEOUT_MILLIS);
+          created.property(ClientProperties.READ_TIMEOUT, READ_TIMEOUT_MILLIS);
+          client = created;
+        }
+        current = client;
+      }
+    }
+    return current;
+  }
+}
@@ -0,0 +1,76 @@
+package de.samply.share.broker.utils.connector;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import de.samply.share.broker.utils.JwtClaims;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Caches the location id looked up for an access token, keyed by the SHA-256 hash of the token.
+ * An entry is used until the token expires, so the authentication service is asked at most once
+ * per token. Concurrent lookups of the same token wait for the first one.
+ */
+class UserInfoCache {
+
+  private final Cache<String, Entry> cache;
+  private final Duration defaultLifetime;
+  private final Clock clock;
+
+  UserInfoCache(Duration defaultLifetime, long maximumSize, Clock clock) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    this.defaultLifetime = defaultLifetime;
+    this.clock = clock;
+  }
+
+  /**
+   * Get the location id for the access token, looking it up only if it is not cached.
+   *
+   * @param accessToken the encoded access token
+   * @param loader      looks up the location id, may return null
+   * @return the location id or null if the user has none
+   */
+  String getLocationId(String accessToken, Function<String, String> loader) {
+    String key = Hashing.sha256().hashString(accessToken, StandardCharsets.UTF_8).toString();
+
+    Entry cached = cache.getIfPresent(key);
+    if (cached != null && !clock.instant().isBefore(cached.validUntil)) {
+      cache.invalidate(key);
+    }
+    try {
+      return cache.get(key, () -> load(accessToken, loader)).locationId;
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private Entry load(String accessToken, Function<String, String> loader) {
+    String locationId = loader.apply(accessToken);
+    Instant expiry = JwtClaims.readExpiry(accessToken);
+    return new Entry(locationId, expiry != null ? expiry : clock.instant().plus(defaultLifetime));
+  }
+
+  private static class Entry {
+
+    private final String locationId;
+    private final Instant validUntil;
+
+    private Entry(String locationId, Instant validUntil) {
+      this.locationId = locationId;
+      this.validUntil = validUntil;
+    }
+  }
+}
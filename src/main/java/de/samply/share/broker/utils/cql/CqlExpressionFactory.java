@@ -36,6 +36,22 @@ class CqlExpressionFactory {
   private final Map<String, String> mapExtensions = new HashMap<>();
   private String libraryTemplate = "";
 
+  /**
+   * Get the factory holding the parsed samply_cql_config.xml. The config does not change at
+   * runtime and the factory is not changed after it has been created, so it is parsed once and
+   * shared by all translations.
+   *
+   * @return the shared factory
+   */
+  static CqlExpressionFactory getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  private static class Holder {
+
+    private static final CqlExpressionFactory INSTANCE = new CqlExpressionFactory();
+  }
+
   CqlExpressionFactory() {
     try (InputStream cqlConfigStream = CqlExpressionFactory.class
         .getResourceAsStream("samply_cql_config.xml")) {
@@ -11,7 +11,7 @@ public class EssentialSimpleQueryDto2CqlTransformer {
   private final CqlExpressionFactory cqlExpressionFactory;
 
   public EssentialSimpleQueryDto2CqlTransformer() {
-    this.cqlExpressionFactory = new CqlExpressionFactory();
+    this.cqlExpressionFactory = CqlExpressionFactory.getInstance();
   }
 
   /**
@@ -13,9 +13,7 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
-import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for Action Objects.
@@ -85,7 +83,7 @@ public final class ActionUtil {
     ActionDao actionDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       actionDao = new ActionDao(configuration);
       actionDao.insert(action);
     } catch (SQLException e) {
@@ -104,7 +102,7 @@ public final class ActionUtil {
     ActionDao actionDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       actionDao = new ActionDao(configuration);
       action = new Action();
       action.setProjectId(projectId);
@@ -1,5 +1,7 @@
 package de.samply.share.broker.utils.db;
 
+import de.samply.share.broker.jdbc.InvalidationBus;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.jdbc.ResourceManager;
 import de.samply.share.broker.model.db.tables.daos.BankDao;
 import de.samply.share.broker.model.db.tables.daos.BankSiteDao;
@@ -11,11 +13,12 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
+import org.jooq.exception.DataAccessException;
 
 /**
  * This class provides static methods for CRUD operations for BankSite Objects.
@@ -37,13 +40,15 @@ public final class BankSiteUtil {
    */
   public static void updateBankSite(BankSite bankSite) {
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       BankSiteDao bankSiteDao = new BankSiteDao(configuration);
       bankSiteDao.update(bankSite);
     } catch (SQLException e) {
       logger.error("SQL Exception caught", e);
+      return;
     }
+    InvalidationBus.getInstance().publish(Topic.SITE, bankSite.getBankId());
   }
 
   /**
@@ -54,29 +59,26 @@ public final class BankSiteUtil {
    * @param approved has the assignment been checked and assured that it is correct?
    */
   public static void setSiteForBank(Bank bank, Site site, boolean approved) {
-    BankSite newBankSite = null;
-    BankSite oldBankSite = null;
-    BankSiteDao bankSiteDao;
-
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      ResourceManager.getDslContext(conn).transaction(configuration -> {
+        BankSiteDao bankSiteDao = new BankSiteDao(configuration);
+        List<BankSite> bankSites = bankSiteDao.fetchByBankId(bank.getId());
 
-      bankSiteDao = new BankSiteDao(configuration);
-      List<BankSite> bankSites = bankSiteDao.fetchByBankId(bank.getId());
-
-      if (bankSites != null && !bankSites.isEmpty()) {
-        oldBankSite = bankSites.get(0);
-        bankSiteDao.delete(oldBankSite);
-      }
+        if (bankSites != null && !bankSites.isEmpty()) {
+          bankSiteDao.delete(bankSites.get(0));
+        }
 
-      newBankSite = new BankSite();
-      newBankSite.setApproved(approved);
-      newBankSite.setSiteId(site.getId());
-      newBankSite.setBankId(bank.getId());
-      bankSiteDao.insert(newBankSite);
-    } catch (SQLException e) {
+        BankSite newBankSite = new BankSite();
+        newBankSite.setApproved(approved);
+        newBankSite.setSiteId(site.getId());
+        newBankSite.setBankId(bank.getId());
+        bankSiteDao.insert(newBankSite);
+      });
+    } catch (SQLException | DataAccessException e) {
       logger.error("SQL Exception caught", e);
+      return;
     }
+    InvalidationBus.getInstance().publish(Topic.SITE, bank.getId());
   }
 
 
@@ -92,7 +94,7 @@ public final class BankSiteUtil {
     SiteDao siteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       siteDao = new SiteDao(configuration);
       site = siteDao.fetchOneById(siteId);
@@ -119,7 +121,7 @@ public final class BankSiteUtil {
     BankDao bankDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       bankDao = new BankDao(configuration);
       bank = bankDao.fetchOneById(bankId);
@@ -145,7 +147,7 @@ public final class BankSiteUtil {
     BankSiteDao bankSiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       bankSiteDao = new BankSiteDao(configuration);
 
       bankSites = bankSiteDao.fetchByBankId(bank.getId());
@@ -170,7 +172,7 @@ public final class BankSiteUtil {
     BankSiteDao bankSiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       bankSiteDao = new BankSiteDao(configuration);
 
       bankSites = bankSiteDao.fetchByBankId(bankId);
@@ -193,13 +195,15 @@ public final class BankSiteUtil {
     BankSiteDao bankSiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       bankSiteDao = new BankSiteDao(configuration);
 
       bankSiteDao.delete(bankSite);
     } catch (SQLException e) {
       logger.error("SQL Exception caught", e);
+      return;
     }
+    InvalidationBus.getInstance().publish(Topic.SITE, bankSite.getBankId());
   }
 
   /**
@@ -212,7 +216,7 @@ public final class BankSiteUtil {
     List<BankSite> bankSites;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       bankSiteDao = new BankSiteDao(configuration);
 
       bankSites = bankSiteDao.fetchBySiteId(siteId);
@@ -236,11 +240,18 @@ public final class BankSiteUtil {
     BankSiteDao bankSiteDao;
     List<BankSite> bankSiteList = new ArrayList<>();
 
+    if (siteIdList.isEmpty()) {
+      return bankSiteList;
+    }
+
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       bankSiteDao = new BankSiteDao(configuration);
+      Map<Integer, List<BankSite>> bankSitesBySiteId = bankSiteDao
+          .fetchBySiteId(siteIdList.toArray(new Integer[0])).stream()
+          .collect(Collectors.groupingBy(BankSite::getSiteId));
       for (int siteId : siteIdList) {
-        List<BankSite> bankSite = bankSiteDao.fetchBySiteId(siteId);
+        List<BankSite> bankSite = bankSitesBySiteId.get(siteId);
         if (bankSite != null && bankSite.size() == 1) {
           bankSiteList.add(bankSite.get(0));
         }
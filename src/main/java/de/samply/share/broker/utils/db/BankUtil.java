@@ -1,5 +1,7 @@
 package de.samply.share.broker.utils.db;
 
+import de.samply.share.broker.jdbc.InvalidatingCache;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.jdbc.ResourceManager;
 import de.samply.share.broker.model.db.Tables;
 import de.samply.share.broker.model.db.tables.daos.BankDao;
@@ -7,13 +9,17 @@ import de.samply.share.broker.model.db.tables.pojos.Bank;
 import de.samply.share.broker.model.db.tables.pojos.Site;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
 
 /**
  * This class provides static methods for CRUD operations for Bank Objects.
@@ -24,6 +30,11 @@ public final class BankUtil {
 
   private static final Logger logger = LogManager.getLogger(BankUtil.class);
 
+  private static final int SITE_CACHE_SIZE = 1000;
+
+  private static final InvalidatingCache<Integer, Site> sitesByBankId =
+      new InvalidatingCache<>(SITE_CACHE_SIZE, Topic.BANK, Topic.SITE);
+
   // Prevent instantiation
   private BankUtil() {
   }
@@ -58,6 +69,12 @@ public final class BankUtil {
    * @return the site the bank is assigned to
    */
   public static Site getSiteForBankId(int bankId) {
+    Site site = sitesByBankId.get(bankId, BankUtil::fetchSiteForBankId);
+    // a copy, so callers cannot change the cached site
+    return site == null ? null : new Site(site);
+  }
+
+  private static Site fetchSiteForBankId(int bankId) {
     Site site;
 
     try (Connection conn = ResourceManager.getConnection()) {
@@ -76,6 +93,51 @@ public final class BankUtil {
     return null;
   }
 
+  /**
+   * Load the sites of all banks into the cache with one query, so the first polls after a start
+   * need not load them one by one.
+   *
+   * @return the number of cached sites
+   */
+  public static int preloadSites() {
+    return sitesByBankId.preload(BankUtil::fetchSitesByBankId);
+  }
+
+  private static Map<Integer, Site> fetchSitesByBankId() {
+    return fetchSitesByBankId(DSL.noCondition());
+  }
+
+  /**
+   * Get the sites of several banks with one query.
+   *
+   * @param bankIds the ids of the banks
+   * @return the sites by bank id, without the banks that are not assigned to a site
+   */
+  public static Map<Integer, Site> fetchSitesForBankIds(Collection<Integer> bankIds) {
+    if (bankIds.isEmpty()) {
+      return new HashMap<>();
+    }
+    return fetchSitesByBankId(Tables.BANK.ID.in(bankIds));
+  }
+
+  private static Map<Integer, Site> fetchSitesByBankId(Condition condition) {
+    Map<Integer, Site> sites = new HashMap<>();
+
+    try (Connection conn = ResourceManager.getConnection()) {
+      DSLContext dslContext = ResourceManager.getDslContext(conn);
+
+      for (Record record : dslContext.select(Tables.BANK.ID).select(Tables.SITE.fields())
+          .from(Tables.BANK.join(Tables.BANK_SITE).onKey().join(Tables.SITE).onKey())
+          .where(condition)
+          .fetch()) {
+        sites.put(record.get(Tables.BANK.ID), record.into(Tables.SITE).into(Site.class));
+      }
+    } catch (SQLException e) {
+      logger.error("SQL Exception caught", e);
+    }
+    return sites;
+  }
+
   /**
    * Get the site id for a bank.
    *
@@ -101,7 +163,7 @@ public final class BankUtil {
     BankDao bankDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       bankDao = new BankDao(configuration);
       banks = bankDao.findAll();
     } catch (SQLException e) {
@@ -15,8 +15,6 @@ import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for Contact Objects.
@@ -42,7 +40,7 @@ public final class ContactUtil {
     Contact contact = null;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       contactDao = new ContactDao(configuration);
       contact = contactDao.fetchOneById(user.getContactId());
@@ -64,7 +62,7 @@ public final class ContactUtil {
     String ret = "success";
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       contactDao = new ContactDao(configuration);
       contactDao.update(contact);
@@ -88,7 +86,7 @@ public final class ContactUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       DSLContext create = ResourceManager.getDslContext(conn);
 
       Record record = create.insertInto(Tables.CONTACT, Tables.CONTACT.LASTNAME).values(" ")
@@ -7,8 +7,6 @@ import java.sql.SQLException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * Offers some helper methods for db access.
@@ -27,7 +25,7 @@ public class DbUtils {
     boolean success = true;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       UserDao userDao = new UserDao(configuration);
       userDao.findAll();
     } catch (SQLException e) {
@@ -19,9 +19,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
-import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for Document Objects.
@@ -47,7 +45,7 @@ public final class DocumentUtil {
     DocumentDao documentDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       documentDao = new DocumentDao(configuration);
       document = documentDao.fetchOneById(documentId);
     } catch (SQLException e) {
@@ -67,7 +65,7 @@ public final class DocumentUtil {
     DocumentDao documentDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       documentDao = new DocumentDao(configuration);
       documents = documentDao.fetchByProjectId(projectId);
     } catch (SQLException e) {
@@ -124,7 +122,7 @@ public final class DocumentUtil {
     DocumentDao documentDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       documentDao = new DocumentDao(configuration);
       documentDao.update(document);
     } catch (SQLException e) {
@@ -209,7 +207,7 @@ public final class DocumentUtil {
     ByteArrayOutputStream bos = null;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       documentDao = new DocumentDao(configuration);
       document = documentDao.fetchOneById(documentId);
       bos = new ByteArrayOutputStream();
@@ -243,7 +241,7 @@ public final class DocumentUtil {
     DocumentType documentType = DocumentType.DT_OTHER;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       documentDao = new DocumentDao(configuration);
       document = documentDao.fetchOneById(documentId);
       documentType = document.getDocumentType();
@@ -391,8 +389,7 @@ public final class DocumentUtil {
     try (Connection connection = ResourceManager.getConnection()) {
       if (newExposeFile != null) {
         Path path = newExposeFile.toPath();
-        Configuration configuration = new DefaultConfiguration().set(connection)
-            .set(SQLDialect.POSTGRES);
+        Configuration configuration = ResourceManager.getConfiguration(connection);
         exposeDao = new DocumentDao(configuration);
         expose = exposeDao.fetchOneById(exposeId);
         expose.setData(Files.readAllBytes(path));
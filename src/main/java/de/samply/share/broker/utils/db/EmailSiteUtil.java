@@ -11,8 +11,6 @@ import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for EmailSite Objects.
@@ -60,7 +58,7 @@ public final class EmailSiteUtil {
     EmailSiteDao emailSiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       emailSiteDao = new EmailSiteDao(configuration);
 
       emailSiteDao.delete(emailSite);
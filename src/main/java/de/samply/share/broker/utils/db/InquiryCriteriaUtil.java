@@ -11,8 +11,6 @@ import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import org.jooq.Configuration;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 public class InquiryCriteriaUtil {
 
@@ -26,7 +24,7 @@ public class InquiryCriteriaUtil {
     InquiryCriteriaDao inquiryCriteriaDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryCriteriaDao = new InquiryCriteriaDao(configuration);
 
       inquiryCriteria = inquiryCriteriaDao.fetchByInquiryId(inquiryId);
@@ -94,7 +92,7 @@ public class InquiryCriteriaUtil {
     InquiryCriteriaDao inquiryCriteriaDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryCriteriaDao = new InquiryCriteriaDao(configuration);
       inquiryCriteriaDao.update(inquiryCriteria);
     } catch (SQLException e) {
@@ -6,15 +6,20 @@ import de.samply.share.broker.model.db.tables.daos.InquirySiteDao;
 import de.samply.share.broker.model.db.tables.pojos.InquirySite;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DSL;
 
 /**
  * This class provides static methods for CRUD operations for InquirySite Objects.
@@ -39,7 +44,7 @@ public class InquirySiteUtil {
     InquirySiteDao inquirySiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquirySiteDao = new InquirySiteDao(configuration);
       inquirySiteDao.update(inquirySite);
     } catch (SQLException e) {
@@ -47,6 +52,69 @@ public class InquirySiteUtil {
     }
   }
 
+  /**
+   * Record that a site has retrieved some inquiries, in one transaction for all of them. The
+   * time of the first retrieval of an inquiry is kept, the time of the latest one is updated.
+   *
+   * @param siteId      the id of the site
+   * @param inquiryIds  the ids of the retrieved inquiries
+   * @param retrievedAt the time of the retrieval
+   * @return the creation time of the inquiries the site has retrieved for the first time, by
+   *     inquiry id
+   */
+  public static Map<Integer, Timestamp> markRetrieved(int siteId, Collection<Integer> inquiryIds,
+      Timestamp retrievedAt) {
+    if (inquiryIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    try (Connection conn = ResourceManager.getConnection()) {
+      return ResourceManager.getDslContext(conn).transactionResult(configuration -> {
+        DSLContext dslContext = DSL.using(configuration);
+        Map<Integer, Timestamp> firstRetrievals = dslContext
+            .select(Tables.INQUIRY.ID, Tables.INQUIRY.CREATED)
+            .from(Tables.INQUIRY_SITE.join(Tables.INQUIRY).onKey())
+            .where(Tables.INQUIRY_SITE.SITE_ID.equal(siteId))
+            .and(Tables.INQUIRY_SITE.INQUIRY_ID.in(inquiryIds))
+            .and(Tables.INQUIRY_SITE.FIRST_RETRIEVED_AT.isNull())
+            .fetchMap(Tables.INQUIRY.ID, Tables.INQUIRY.CREATED);
+        dslContext.update(Tables.INQUIRY_SITE)
+            .set(Tables.INQUIRY_SITE.RETRIEVED_AT, retrievedAt)
+            .set(Tables.INQUIRY_SITE.FIRST_RETRIEVED_AT,
+                DSL.coalesce(Tables.INQUIRY_SITE.FIRST_RETRIEVED_AT, DSL.val(retrievedAt)))
+            .where(Tables.INQUIRY_SITE.SITE_ID.equal(siteId))
+            .and(Tables.INQUIRY_SITE.INQUIRY_ID.in(inquiryIds))
+            .execute();
+        return firstRetrievals;
+      });
+    } catch (SQLException e) {
+      logger.error("Error while recording the retrieval of inquiries by site " + siteId, e);
+    }
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Check which of some inquiries have been sent to a site.
+   *
+   * @param siteId     the id of the site
+   * @param inquiryIds the ids of the inquiries to check
+   * @return the ids of the inquiries sent to the site
+   * @throws SQLException if the inquiries could not be checked
+   */
+  public static Set<Integer> fetchInquiryIdsSentToSite(int siteId,
+      Collection<Integer> inquiryIds) throws SQLException {
+    if (inquiryIds.isEmpty()) {
+      return Collections.emptySet();
+    }
+    try (Connection conn = ResourceManager.getConnection()) {
+      return new HashSet<>(ResourceManager.getDslContext(conn)
+          .select(Tables.INQUIRY_SITE.INQUIRY_ID)
+          .from(Tables.INQUIRY_SITE)
+          .where(Tables.INQUIRY_SITE.SITE_ID.equal(siteId))
+          .and(Tables.INQUIRY_SITE.INQUIRY_ID.in(inquiryIds))
+          .fetch(Tables.INQUIRY_SITE.INQUIRY_ID));
+    }
+  }
+
   /**
    * Get all site associations for a given inquiry.
    *
@@ -58,7 +126,7 @@ public class InquirySiteUtil {
     InquirySiteDao inquirySiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquirySiteDao = new InquirySiteDao(configuration);
 
       inquirySites = inquirySiteDao.fetchByInquiryId(inquiryId);
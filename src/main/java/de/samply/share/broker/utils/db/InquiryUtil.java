@@ -2,6 +2,8 @@ package de.samply.share.broker.utils.db;
 
 import static org.jooq.impl.DSL.select;
 
+import de.samply.share.broker.jdbc.InvalidationBus;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.jdbc.ResourceManager;
 import de.samply.share.broker.model.db.Tables;
 import de.samply.share.broker.model.db.enums.DocumentType;
@@ -15,17 +17,19 @@ import de.samply.share.broker.model.db.tables.pojos.Site;
 import de.samply.share.broker.model.db.tables.pojos.User;
 import de.samply.share.common.utils.SamplyShareUtils;
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
-import org.jooq.SQLDialect;
+import org.jooq.Record4;
+import org.jooq.Result;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for Inquiry Objects.
@@ -51,9 +55,10 @@ public final class InquiryUtil {
     InquiryDao inquiryDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryDao = new InquiryDao(configuration);
       inquiryDao.update(inquiry);
+      InvalidationBus.getInstance().publish(Topic.INQUIRY, inquiry.getId());
     } catch (SQLException e) {
       e.printStackTrace();
     }
@@ -68,13 +73,14 @@ public final class InquiryUtil {
     InquiryDao inquiryDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryDao = new InquiryDao(configuration);
       Inquiry inquiry = inquiryDao.fetchOneById(inquiryId);
       java.sql.Date expiryDate = new java.sql.Date(
           SamplyShareUtils.getCurrentDate().getTime() + INQUIRY_TTL);
       inquiry.setExpires(expiryDate);
       inquiryDao.update(inquiry);
+      InvalidationBus.getInstance().publish(Topic.INQUIRY, inquiryId);
     } catch (SQLException e) {
       e.printStackTrace();
     }
@@ -89,13 +95,14 @@ public final class InquiryUtil {
     InquiryDao inquiryDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryDao = new InquiryDao(configuration);
       Inquiry inquiry = inquiryDao.fetchOneById(inquiryId);
       java.sql.Date expiryDate = new java.sql.Date(
           SamplyShareUtils.getCurrentDate().getTime() - TimeUnit.DAYS.toMillis(1));
       inquiry.setExpires(expiryDate);
       inquiryDao.update(inquiry);
+      InvalidationBus.getInstance().publish(Topic.INQUIRY, inquiryId);
     } catch (SQLException e) {
       e.printStackTrace();
     }
@@ -157,7 +164,7 @@ public final class InquiryUtil {
     InquiryDao inquiryDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryDao = new InquiryDao(configuration);
       inquiryDao.delete(inquiry);
     } catch (SQLException e) {
@@ -335,7 +342,7 @@ public final class InquiryUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       userDao = new UserDao(configuration);
       user = userDao.fetchOneById(inquiry.getAuthorId());
     } catch (SQLException e) {
@@ -420,7 +427,7 @@ public final class InquiryUtil {
     InquiryDao inquiryDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryDao = new InquiryDao(configuration);
       inquiry = inquiryDao.fetchOneById(inquiryId);
     } catch (SQLException e) {
@@ -432,6 +439,7 @@ public final class InquiryUtil {
   /**
    * Get all inquiries for a site.
    * Only include released inquiries that are not expired.
+   * Bridgeheads poll this, so it may be read from the replica.
    *
    * @param siteId the id of the site for which the inquiries shall be loaded
    * @return a list of all active inquiries for this site
@@ -439,7 +447,7 @@ public final class InquiryUtil {
   public static List<Inquiry> fetchInquiriesForSite(int siteId) {
     List<Inquiry> inquiries = null;
 
-    try (Connection conn = ResourceManager.getConnection()) {
+    try (Connection conn = ResourceManager.getReadOnlyConnection()) {
       DSLContext create = ResourceManager.getDslContext(conn);
 
       inquiries = create.select(Tables.INQUIRY.fields())
@@ -460,6 +468,41 @@ public final class InquiryUtil {
     return inquiries;
   }
 
+  /**
+   * Get the sites of the released inquiries that are not expired, with the same conditions as
+   * {@link #fetchInquiriesForSite(int)}. Inquiries without a revision are left out, as they are
+   * not listed to the bridgeheads.
+   *
+   * @param inquiryId the id of the inquiry to fetch, or null to fetch all inquiries
+   * @return one record of inquiry id, revision, expiry date and site id per site of an inquiry
+   */
+  public static Result<Record4<Integer, Integer, Date, Integer>> fetchOpenInquirySites(
+      Integer inquiryId) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      DSLContext create = ResourceManager.getDslContext(conn);
+
+      Condition condition = Tables.INQUIRY.EXPIRES
+          .greaterOrEqual(SamplyShareUtils.getCurrentDate())
+          .and(Tables.INQUIRY.STATUS.equal(InquiryStatus.IS_RELEASED))
+          .and(Tables.INQUIRY.REVISION.greaterOrEqual(1))
+          .and(
+              Tables.PROJECT.ID.isNull()
+                  .or(Tables.PROJECT.STATUS.equal(ProjectStatus.PS_OPEN_DISTRIBUTION))
+          );
+      if (inquiryId != null) {
+        condition = condition.and(Tables.INQUIRY.ID.equal(inquiryId));
+      }
+      return create.select(Tables.INQUIRY.ID, Tables.INQUIRY.REVISION, Tables.INQUIRY.EXPIRES,
+          Tables.INQUIRY_SITE.SITE_ID)
+          .from(Tables.INQUIRY.join(Tables.INQUIRY_SITE).onKey()
+              .leftOuterJoin(Tables.PROJECT).onKey())
+          .where(condition)
+          .fetch();
+    } catch (SQLException e) {
+      throw new DataAccessException("Could not load the open inquiries", e);
+    }
+  }
+
   /**
    * Get all project partners for an inquiry (via the project this inquiry belongs to).
    *
@@ -547,6 +590,9 @@ public final class InquiryUtil {
               .greaterThan(DSL.timestampAdd(Tables.INQUIRY.CREATED, 1, org.jooq.DatePart.DAY)))
           .and(Tables.INQUIRY.AUTHOR_ID.eq(1))
           .execute();
+      if (affectedRows > 0) {
+        InvalidationBus.getInstance().publish(Topic.INQUIRY, null);
+      }
     } catch (SQLException e) {
       logger.error("Caught SQL Exception while trying to delete old inquiries. " + e);
     } catch (DataAccessException dae) {
@@ -564,8 +610,7 @@ public final class InquiryUtil {
    */
   public static List<Inquiry> fetchInquiryByProjectId(int projectId) throws SQLException {
     Connection connection = ResourceManager.getConnection();
-    Configuration configuration = new DefaultConfiguration().set(connection)
-        .set(SQLDialect.POSTGRES);
+    Configuration configuration = ResourceManager.getConfiguration(connection);
     InquiryDao inquiryDao = new InquiryDao(configuration);
     return inquiryDao.fetchByProjectId(projectId);
 
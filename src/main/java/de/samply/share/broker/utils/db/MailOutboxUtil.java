@@ -0,0 +1,121 @@
+package de.samply.share.broker.utils.db;
+
+import static de.samply.share.broker.model.db.Tables.MAIL_OUTBOX;
+
+import de.samply.share.broker.jdbc.ResourceManager;
+import de.samply.share.broker.model.MailStatus;
+import de.samply.share.broker.model.db.tables.pojos.MailOutbox;
+import de.samply.share.broker.model.db.tables.records.MailOutboxRecord;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class provides static methods for the mails waiting to be sent.
+ *
+ * @see MailOutbox
+ */
+public class MailOutboxUtil {
+
+  private static final Logger logger = LogManager.getLogger(MailOutboxUtil.class);
+
+  private static final OutboxTable<MailOutboxRecord, MailOutbox> outbox = new OutboxTable<>(
+      MAIL_OUTBOX, MAIL_OUTBOX.ID, MAIL_OUTBOX.STATUS, MAIL_OUTBOX.ATTEMPTS, MAIL_OUTBOX.ERROR,
+      MAIL_OUTBOX.UPDATED_AT, MAIL_OUTBOX.NEXT_ATTEMPT_AT, MailOutbox.class, "mail",
+      MailStatus.PENDING, MailStatus.SENDING);
+
+  // Prevent instantiation
+  private MailOutboxUtil() {
+  }
+
+  /**
+   * Store a mail to be sent.
+   *
+   * @param mail the mail, the recipients and the subject are required
+   * @return the id of the mail or 0 if it could not be stored
+   */
+  public static int createMail(MailOutbox mail) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      MailOutboxRecord record = ResourceManager.getDslContext(conn)
+          .insertInto(MAIL_OUTBOX, MAIL_OUTBOX.RECIPIENTS, MAIL_OUTBOX.SUBJECT,
+              MAIL_OUTBOX.LOCALE, MAIL_OUTBOX.TEMPLATE, MAIL_OUTBOX.PARAMETERS,
+              MAIL_OUTBOX.ATTACHMENT, MAIL_OUTBOX.STATUS)
+          .values(mail.getRecipients(), mail.getSubject(), mail.getLocale(), mail.getTemplate(),
+              mail.getParameters(), mail.getAttachment(), MailStatus.PENDING.name())
+          .returning(MAIL_OUTBOX.ID).fetchOne();
+      return record.getId();
+    } catch (SQLException e) {
+      logger.error("Error while storing a mail to be sent", e);
+    }
+    return 0;
+  }
+
+  /**
+   * Mark a pending mail as sending and count the attempt. Only one worker of all broker
+   * instances succeeds in claiming a mail.
+   *
+   * @param mailId the id of the mail
+   * @return the claimed mail or null if it is not pending
+   */
+  public static MailOutbox claimMail(int mailId) {
+    return outbox.claim(mailId);
+  }
+
+  /**
+   * Mark a mail as sent.
+   *
+   * @param mailId the id of the mail
+   */
+  public static void markSent(int mailId) {
+    outbox.update(mailId, MailStatus.SENT, null, null);
+  }
+
+  /**
+   * Put a mail back to be sent again later.
+   *
+   * @param mailId      the id of the mail
+   * @param error       why the attempt failed
+   * @param nextAttempt when to try again
+   */
+  public static void markForRetry(int mailId, String error, Instant nextAttempt) {
+    outbox.update(mailId, MailStatus.PENDING, error, nextAttempt);
+  }
+
+  /**
+   * Give up a mail.
+   *
+   * @param mailId the id of the mail
+   * @param error  why the last attempt failed
+   */
+  public static void markFailed(int mailId, String error) {
+    outbox.update(mailId, MailStatus.FAILED, error, null);
+  }
+
+  /**
+   * Get the mails due for an attempt. Mails sending longer than the given timeout are assumed to
+   * be abandoned, e.g. by a broker instance that has been stopped, and are pending again.
+   *
+   * @param sendingTimeout how long a mail may be sending
+   * @param limit          the maximum number of mails
+   * @return the ids of the mails, oldest first
+   */
+  public static List<Integer> fetchDueMailIds(Duration sendingTimeout, int limit) {
+    return outbox.fetchDueIds(sendingTimeout, limit);
+  }
+
+  /**
+   * Delete the mails sent before the given age.
+   *
+   * @param age how long sent mails are kept
+   */
+  public static void deleteSentMails(Duration age) {
+    int deleted = outbox.delete(MailStatus.SENT, age);
+    if (deleted > 0) {
+      logger.debug("Deleted " + deleted + " sent mails");
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package de.samply.share.broker.utils.db;
+
+import de.samply.share.broker.jdbc.ResourceManager;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
+
+/**
+ * The state columns shared by the tables of entries worked off by the broker in the background,
+ * e.g. the mails of the outbox: a status, the number of attempts, the error of the last attempt
+ * and when to try next.
+ *
+ * @param <R> the type of the records
+ * @param <P> the type of the pojos
+ */
+class OutboxTable<R extends Record, P> {
+
+  private static final Logger logger = LogManager.getLogger(OutboxTable.class);
+
+  private final Table<R> table;
+  private final TableField<R, Integer> id;
+  private final TableField<R, String> status;
+  private final TableField<R, Integer> attempts;
+  private final TableField<R, String> error;
+  private final TableField<R, Timestamp> updatedAt;
+  private final TableField<R, Timestamp> nextAttemptAt;
+  private final Class<P> pojoType;
+  private final String entryName;
+  private final String pending;
+  private final String claimed;
+
+  OutboxTable(Table<R> table, TableField<R, Integer> id, TableField<R, String> status,
+      TableField<R, Integer> attempts, TableField<R, String> error,
+      TableField<R, Timestamp> updatedAt, TableField<R, Timestamp> nextAttemptAt,
+      Class<P> pojoType, String entryName, Enum<?> pending, Enum<?> claimed) {
+    this.table = table;
+    this.id = id;
+    this.status = status;
+    this.attempts = attempts;
+    this.error = error;
+    this.updatedAt = updatedAt;
+    this.nextAttemptAt = nextAttemptAt;
+    this.pojoType = pojoType;
+    this.entryName = entryName;
+    this.pending = pending.name();
+    this.claimed = claimed.name();
+  }
+
+  /**
+   * Mark a pending entry as claimed and count the attempt. Only one worker of all broker
+   * instances succeeds in claiming an entry.
+   *
+   * @param entryId the id of the entry
+   * @return the claimed entry or null if it is not pending
+   */
+  P claim(int entryId) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      R record = ResourceManager.getDslContext(conn)
+          .update(table)
+          .set(status, claimed)
+          .set(attempts, attempts.plus(1))
+          .set(updatedAt, DSL.currentTimestamp())
+          .where(id.equal(entryId))
+          .and(status.equal(pending))
+          .returning()
+          .fetchOne();
+      return record == null ? null : record.into(pojoType);
+    } catch (SQLException e) {
+      logger.error("Error while claiming " + entryName + " " + entryId, e);
+    }
+    return null;
+  }
+
+  /**
+   * Set the status of an entry.
+   *
+   * @param entryId     the id of the entry
+   * @param newStatus   the status
+   * @param newError    why the last attempt failed or null
+   * @param nextAttempt when to try again or null for now
+   */
+  void update(int entryId, Enum<?> newStatus, String newError, Instant nextAttempt) {
+    update(entryId, newStatus, newError, nextAttempt, Collections.emptyMap());
+  }
+
+  /**
+   * Set the status of an entry and further values of it.
+   *
+   * @param entryId     the id of the entry
+   * @param newStatus   the status
+   * @param newError    why the last attempt failed or null
+   * @param nextAttempt when to try again or null for now
+   * @param values      the further values by field
+   */
+  void update(int entryId, Enum<?> newStatus, String newError, Instant nextAttempt,
+      Map<? extends Field<?>, ?> values) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      ResourceManager.getDslContext(conn)
+          .update(table)
+          .set(values)
+          .set(status, newStatus.name())
+          .set(error, newError)
+          .set(updatedAt, DSL.currentTimestamp())
+          .set(nextAttemptAt, nextAttempt == null
+              ? DSL.currentTimestamp() : DSL.val(Timestamp.from(nextAttempt)))
+          .where(id.equal(entryId))
+          .execute();
+    } catch (SQLException e) {
+      logger.error("Error while marking " + entryName + " " + entryId + " as " + newStatus, e);
+    }
+  }
+
+  /**
+   * Get the entries due for an attempt. Entries claimed longer than the given timeout are
+   * assumed to be abandoned, e.g. by a broker instance that has been stopped, and are pending
+   * again.
+   *
+   * @param claimTimeout how long an entry may be claimed
+   * @param limit        the maximum number of entries
+   * @return the ids of the entries, oldest first
+   */
+  List<Integer> fetchDueIds(Duration claimTimeout, int limit) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      DSLContext dslContext = ResourceManager.getDslContext(conn);
+      int abandoned = dslContext
+          .update(table)
+          .set(status, pending)
+          .where(status.equal(claimed))
+          .and(updatedAt.lessThan(Timestamp.from(Instant.now().minus(claimTimeout))))
+          .execute();
+      if (abandoned > 0) {
+        logger.warn(abandoned + " abandoned " + entryName + "s are pending again");
+      }
+      return dslContext
+          .select(id)
+          .from(table)
+          .where(status.equal(pending))
+          .and(nextAttemptAt.lessOrEqual(DSL.currentTimestamp()))
+          .orderBy(id)
+          .limit(limit)
+          .fetch(id);
+    } catch (SQLException e) {
+      logger.error("Error while reading the due " + entryName + "s", e);
+    }
+    return new ArrayList<>();
+  }
+
+  /**
+   * Delete the entries that have had a status for longer than the given age.
+   *
+   * @param oldStatus the status
+   * @param age       how long the entries are kept
+   * @return the number of deleted entries
+   */
+  int delete(Enum<?> oldStatus, Duration age) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      return ResourceManager.getDslContext(conn)
+          .deleteFrom(table)
+          .where(status.equal(oldStatus.name()))
+          .and(updatedAt.lessThan(Timestamp.from(Instant.now().minus(age))))
+          .execute();
+    } catch (SQLException e) {
+      logger.error("Error while deleting the " + entryName + "s marked as " + oldStatus, e);
+    }
+    return 0;
+  }
+}
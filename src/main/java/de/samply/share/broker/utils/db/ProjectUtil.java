@@ -1,5 +1,7 @@
 package de.samply.share.broker.utils.db;
 
+import de.samply.share.broker.jdbc.InvalidationBus;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.jdbc.ResourceManager;
 import de.samply.share.broker.model.EnumProjectType;
 import de.samply.share.broker.model.db.Tables;
@@ -22,8 +24,6 @@ import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for Project Objects.
@@ -139,7 +139,7 @@ public final class ProjectUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       userDao = new UserDao(configuration);
       user = userDao.fetchOneById(project.getProjectleaderId());
     } catch (SQLException e) {
@@ -176,7 +176,7 @@ public final class ProjectUtil {
     }
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       siteDao = new SiteDao(configuration);
       site = siteDao.fetchOneById(siteIdForUser);
     } catch (SQLException e) {
@@ -236,9 +236,13 @@ public final class ProjectUtil {
     ProjectDao projectDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       projectDao = new ProjectDao(configuration);
       projectDao.update(project);
+      // The status of the project decides whether its inquiries are listed for the sites
+      for (Inquiry inquiry : new InquiryDao(configuration).fetchByProjectId(project.getId())) {
+        InvalidationBus.getInstance().publish(Topic.INQUIRY, inquiry.getId());
+      }
     } catch (SQLException e) {
       e.printStackTrace();
     }
@@ -255,7 +259,7 @@ public final class ProjectUtil {
     InquiryDao inquiryDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryDao = new InquiryDao(configuration);
       inquiries = inquiryDao.fetchByProjectId(projectId);
     } catch (SQLException e) {
@@ -328,7 +332,7 @@ public final class ProjectUtil {
     ProjectDao projectDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       projectDao = new ProjectDao(configuration);
       project = projectDao.fetchOneById(projectId);
     } catch (SQLException e) {
@@ -365,7 +369,7 @@ public final class ProjectUtil {
     ProjectDao projectDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       inquiryDao = new InquiryDao(configuration);
       inquiry = inquiryDao.fetchOneById(inquiryId);
 
@@ -395,7 +399,7 @@ public final class ProjectUtil {
     String projectTitle = "";
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       projectDao = new ProjectDao(configuration);
       project = projectDao.fetchOneById(projectId);
       projectTitle = project.getName();
@@ -452,15 +456,17 @@ public final class ProjectUtil {
    * @return the ID of the new project
    */
   public static int addProject(Inquiry inquiry) throws SQLException {
-    Connection connection = ResourceManager.getConnection();
-    int projectId = createProject(inquiry, connection);
-    Configuration configuration = new DefaultConfiguration().set(connection)
-        .set(SQLDialect.POSTGRES);
-    inquiry.setProjectId(projectId);
-    InquiryDao inquiryDao = new InquiryDao(configuration);
-    inquiryDao.update(inquiry);
+    int projectId;
+    try (Connection connection = ResourceManager.getConnection()) {
+      projectId = createProject(inquiry, connection);
+      Configuration configuration = ResourceManager.getConfiguration(connection);
+      inquiry.setProjectId(projectId);
+      InquiryDao inquiryDao = new InquiryDao(configuration);
+      inquiryDao.update(inquiry);
+    }
     int inquiryId = inquiry.getId();
     DocumentUtil.setProjectIdForDocumentByInquiryId(inquiryId, projectId);
+    InvalidationBus.getInstance().publish(Topic.INQUIRY, inquiryId);
     return projectId;
   }
 
@@ -475,8 +481,7 @@ public final class ProjectUtil {
   public static List<Project> fetchProjectByProjectLeaderId(int projectLeaderId)
       throws SQLException {
     Connection connection = ResourceManager.getConnection();
-    Configuration configuration = new DefaultConfiguration().set(connection)
-        .set(SQLDialect.POSTGRES);
+    Configuration configuration = ResourceManager.getConfiguration(connection);
     ProjectDao projectDao = new ProjectDao(configuration);
     return projectDao.fetchByProjectleaderId(projectLeaderId);
   }
@@ -0,0 +1,159 @@
+package de.samply.share.broker.utils.db;
+
+import static de.samply.share.broker.model.db.Tables.QUERY_RELEASE;
+
+import de.samply.share.broker.jdbc.ResourceManager;
+import de.samply.share.broker.model.QueryReleaseStatus;
+import de.samply.share.broker.model.db.tables.pojos.QueryRelease;
+import de.samply.share.broker.model.db.tables.records.QueryReleaseRecord;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+
+/**
+ * This class provides static methods for the queries sent by the UI, which are stored before
+ * they are released to the sites.
+ *
+ * @see QueryRelease
+ */
+public class QueryReleaseUtil {
+
+  private static final Logger logger = LogManager.getLogger(QueryReleaseUtil.class);
+
+  private static final OutboxTable<QueryReleaseRecord, QueryRelease> outbox =
+      new OutboxTable<>(QUERY_RELEASE, QUERY_RELEASE.ID, QUERY_RELEASE.STATUS,
+          QUERY_RELEASE.ATTEMPTS, QUERY_RELEASE.ERROR, QUERY_RELEASE.UPDATED_AT,
+          QUERY_RELEASE.NEXT_ATTEMPT_AT, QueryRelease.class, "query release",
+          QueryReleaseStatus.PENDING, QueryReleaseStatus.RUNNING);
+
+  // Prevent instantiation
+  private QueryReleaseUtil() {
+  }
+
+  /**
+   * Store a query to be released, with a random handle to read its status by.
+   *
+   * @param ntoken the ntoken of the query, may be null
+   * @param query  the query as sent by the UI
+   * @param userId the id of the user sending the query
+   * @return the release or null if it could not be stored
+   */
+  public static QueryRelease createRelease(String ntoken, String query, int userId) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      DSLContext dslContext = ResourceManager.getDslContext(conn);
+      QueryReleaseRecord record = dslContext
+          .insertInto(QUERY_RELEASE, QUERY_RELEASE.HANDLE, QUERY_RELEASE.NTOKEN,
+              QUERY_RELEASE.QUERY, QUERY_RELEASE.USER_ID, QUERY_RELEASE.STATUS)
+          .values(UUID.randomUUID(), ntoken, query, userId, QueryReleaseStatus.PENDING.name())
+          .returning().fetchOne();
+      return record.into(QueryRelease.class);
+    } catch (SQLException e) {
+      logger.error("Error while storing a query to be released", e);
+    }
+    return null;
+  }
+
+  /**
+   * Get a release by its handle.
+   *
+   * @param handle the handle of the release
+   * @return the release or null if there is none with this handle
+   */
+  public static QueryRelease fetchRelease(UUID handle) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      return ResourceManager.getDslContext(conn)
+          .selectFrom(QUERY_RELEASE)
+          .where(QUERY_RELEASE.HANDLE.equal(handle))
+          .fetchOneInto(QueryRelease.class);
+    } catch (SQLException e) {
+      logger.error("Error while reading query release " + handle, e);
+    }
+    return null;
+  }
+
+  /**
+   * Mark a pending release as running and count the attempt. Only one worker of all broker
+   * instances succeeds in claiming a release.
+   *
+   * @param releaseId the id of the release
+   * @return the claimed release or null if it is not pending
+   */
+  public static QueryRelease claimRelease(int releaseId) {
+    return outbox.claim(releaseId);
+  }
+
+  /**
+   * Record the inquiry a running release has stored, so an attempt after a failure does not
+   * store another one. This also shows that the release is still running.
+   *
+   * @param releaseId the id of the release
+   * @param inquiryId the id of the inquiry
+   */
+  public static void recordInquiry(int releaseId, int inquiryId) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      ResourceManager.getDslContext(conn)
+          .update(QUERY_RELEASE)
+          .set(QUERY_RELEASE.INQUIRY_ID, inquiryId)
+          .set(QUERY_RELEASE.UPDATED_AT, DSL.currentTimestamp())
+          .where(QUERY_RELEASE.ID.equal(releaseId))
+          .execute();
+    } catch (SQLException e) {
+      logger.error("Error while recording inquiry " + inquiryId + " of query release "
+          + releaseId, e);
+    }
+  }
+
+  /**
+   * Mark a release as done.
+   *
+   * @param releaseId the id of the release
+   * @param inquiryId the id of the inquiry the query has been released as
+   */
+  public static void markReleased(int releaseId, int inquiryId) {
+    outbox.update(releaseId, QueryReleaseStatus.RELEASED, null, null,
+        Collections.singletonMap(QUERY_RELEASE.INQUIRY_ID, inquiryId));
+  }
+
+  /**
+   * Put a release back to be tried again later. It keeps the inquiry a failed attempt has
+   * already stored.
+   *
+   * @param releaseId   the id of the release
+   * @param error       why the attempt failed
+   * @param nextAttempt when to try again
+   */
+  public static void markForRetry(int releaseId, String error, Instant nextAttempt) {
+    outbox.update(releaseId, QueryReleaseStatus.PENDING, error, nextAttempt);
+  }
+
+  /**
+   * Give up a release.
+   *
+   * @param releaseId the id of the release
+   * @param error     why the last attempt failed
+   */
+  public static void markFailed(int releaseId, String error) {
+    outbox.update(releaseId, QueryReleaseStatus.FAILED, error, null);
+  }
+
+  /**
+   * Get the releases due for an attempt. Releases running longer than the given timeout are
+   * assumed to be abandoned, e.g. by a broker instance that has been stopped, and are pending
+   * again.
+   *
+   * @param runningTimeout how long a release may be running
+   * @param limit          the maximum number of releases
+   * @return the ids of the releases, oldest first
+   */
+  public static List<Integer> fetchDueReleaseIds(Duration runningTimeout, int limit) {
+    return outbox.fetchDueIds(runningTimeout, limit);
+  }
+}
@@ -1,19 +1,28 @@
 package de.samply.share.broker.utils.db;
 
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
 import de.samply.share.broker.jdbc.ResourceManager;
+import de.samply.share.broker.model.db.Tables;
 import de.samply.share.broker.model.db.tables.daos.InquiryDao;
 import de.samply.share.broker.model.db.tables.daos.ReplyDao;
 import de.samply.share.broker.model.db.tables.pojos.Inquiry;
 import de.samply.share.broker.model.db.tables.pojos.Reply;
+import de.samply.share.broker.model.db.tables.records.ReplyRecord;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import org.jooq.Configuration;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep4;
+import org.jooq.impl.DSL;
 
 public class ReplyUtil {
 
@@ -41,9 +50,54 @@ public class ReplyUtil {
     return reply;
   }
 
-  List<Reply> fetchReplies(int inquiryID) {
+  /**
+   * Store the replies of a bank, replacing its former replies to the same inquiries. All replies
+   * are written with one statement in one transaction, in the order of their inquiry ids.
+   *
+   * @param bankId     the id of the bank
+   * @param contents   the content of the replies by inquiry id
+   * @param receivedAt the time the replies have been received
+   * @return the ids of the inquiries the bank has replied to for the first time
+   * @throws SQLException if the replies could not be stored
+   */
+  public static Set<Integer> upsertReplies(int bankId, Map<Integer, String> contents,
+      Timestamp receivedAt) throws SQLException {
+    if (contents.isEmpty()) {
+      return Collections.emptySet();
+    }
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      return ResourceManager.getDslContext(conn).transactionResult(configuration -> {
+        DSLContext dslContext = DSL.using(configuration);
+        Set<Integer> firstReplies = new HashSet<>(contents.keySet());
+        firstReplies.removeAll(dslContext.select(Tables.REPLY.INQUIRY_ID)
+            .from(Tables.REPLY)
+            .where(Tables.REPLY.BANK_ID.equal(bankId))
+            .and(Tables.REPLY.INQUIRY_ID.in(contents.keySet()))
+            .fetch(Tables.REPLY.INQUIRY_ID));
+
+        InsertValuesStep4<ReplyRecord, Integer, Integer, String, Timestamp> insert = dslContext
+            .insertInto(Tables.REPLY, Tables.REPLY.INQUIRY_ID, Tables.REPLY.BANK_ID,
+                Tables.REPLY.CONTENT, Tables.REPLY.RETRIEVEDAT);
+        // sorted by inquiry, so concurrent uploads lock the replies in the same order
+        for (Map.Entry<Integer, String> content : new TreeMap<>(contents).entrySet()) {
+          insert = insert.values(content.getKey(), bankId, content.getValue(), receivedAt);
+        }
+        insert.onConflict(Tables.REPLY.INQUIRY_ID, Tables.REPLY.BANK_ID)
+            .doUpdate()
+            .set(Tables.REPLY.CONTENT, DSL.field("excluded.content", String.class))
+            .set(Tables.REPLY.RETRIEVEDAT, DSL.field("excluded.retrievedat", Timestamp.class))
+            .execute();
+        return firstReplies;
+      });
+    }
+  }
+
+  /**
+   * Fetch the replies to an inquiry, from the replica unless a reply has just been received.
+   */
+  List<Reply> fetchReplies(int inquiryID) {
+    try (Connection conn = ResourceManager.getReadOnlyConnection(Topic.REPLY, inquiryID)) {
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       ReplyDao replyDao = new ReplyDao(configuration);
       return replyDao.fetchByInquiryId(inquiryID);
     } catch (SQLException e) {
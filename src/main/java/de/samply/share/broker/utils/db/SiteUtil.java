@@ -17,8 +17,6 @@ import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for Site Objects.
@@ -58,7 +56,7 @@ public final class SiteUtil {
 
     SiteDao siteDao;
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       siteDao = new SiteDao(configuration);
       siteDao.insert(newSites);
     } catch (SQLException e) {
@@ -76,7 +74,7 @@ public final class SiteUtil {
     SiteDao siteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       siteDao = new SiteDao(configuration);
       sites = siteDao.findAll();
     } catch (SQLException e) {
@@ -117,7 +115,7 @@ public final class SiteUtil {
     SiteDao siteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       siteDao = new SiteDao(configuration);
       site = siteDao.fetchOneByName(name);
     } catch (SQLException e) {
@@ -137,7 +135,7 @@ public final class SiteUtil {
     SiteDao siteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       siteDao = new SiteDao(configuration);
       site = siteDao.fetchOneById(id);
     } catch (SQLException e) {
@@ -182,7 +180,7 @@ public final class SiteUtil {
     List<String> siteNames = new ArrayList<>();
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       siteDao = new SiteDao(configuration);
 
       sites = siteDao.fetchById(SamplyShareUtils.convertStringListToIntegerArray(siteIdList));
@@ -201,7 +199,7 @@ public final class SiteUtil {
    */
   public static void insertNewSite(Site site) {
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       SiteDao siteDao = new SiteDao(configuration);
       siteDao.insert(site);
     } catch (SQLException throwables) {
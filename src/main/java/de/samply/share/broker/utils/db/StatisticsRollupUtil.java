@@ -0,0 +1,297 @@
+package de.samply.share.broker.utils.db;
+
+import static de.samply.share.broker.model.db.Tables.STATISTICS_DAILY_FIELD;
+import static de.samply.share.broker.model.db.Tables.STATISTICS_DAILY_QUERY;
+import static de.samply.share.broker.model.db.Tables.STATISTICS_DAILY_VALUE;
+import static de.samply.share.broker.model.db.Tables.STATISTICS_FIELD;
+import static de.samply.share.broker.model.db.Tables.STATISTICS_QUERY;
+import static de.samply.share.broker.model.db.Tables.STATISTICS_VALUE;
+
+import com.google.common.collect.Table;
+import de.samply.share.broker.jdbc.ResourceManager;
+import de.samply.share.broker.statistics.StatisticsResult;
+import de.samply.share.broker.statistics.StatisticsRollup;
+import de.samply.share.broker.statistics.StatisticsSheetWriter;
+import de.samply.share.broker.statistics.StatisticsTable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Query;
+import org.jooq.Record;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.impl.DSL;
+
+/**
+ * This class provides static methods for the daily aggregates of the query statistics, from which
+ * the statistics reports are built.
+ *
+ * @see StatisticsRollup
+ */
+public final class StatisticsRollupUtil {
+
+  private static final Logger logger = LogManager.getLogger(StatisticsRollupUtil.class);
+
+  private static final int EXPORT_FETCH_SIZE = 1000;
+
+  private StatisticsRollupUtil() {
+  }
+
+  /**
+   * Add counted statistics to the daily aggregates. The rows are upserted sorted by day and key,
+   * as the rollup keeps them, so concurrent transactions do not deadlock on them.
+   *
+   * @param dslContext the context of the transaction writing the statistics
+   * @param rollup     the counted statistics
+   */
+  public static void add(DSLContext dslContext, StatisticsRollup rollup) {
+    List<Query> upserts = new ArrayList<>();
+    for (Table.Cell<LocalDate, Integer, Integer> cell
+        : rollup.getQueriesByFieldCount().cellSet()) {
+      upserts.add(dslContext
+          .insertInto(STATISTICS_DAILY_QUERY, STATISTICS_DAILY_QUERY.DAY,
+              STATISTICS_DAILY_QUERY.FIELD_COUNT, STATISTICS_DAILY_QUERY.QUERY_COUNT)
+          .values(Date.valueOf(cell.getRowKey()), cell.getColumnKey(), cell.getValue())
+          .onConflict(STATISTICS_DAILY_QUERY.DAY, STATISTICS_DAILY_QUERY.FIELD_COUNT)
+          .doUpdate()
+          .set(STATISTICS_DAILY_QUERY.QUERY_COUNT,
+              STATISTICS_DAILY_QUERY.QUERY_COUNT.plus(cell.getValue())));
+    }
+    for (Table.Cell<LocalDate, String, Integer> cell : rollup.getFields().cellSet()) {
+      upserts.add(dslContext
+          .insertInto(STATISTICS_DAILY_FIELD, STATISTICS_DAILY_FIELD.DAY,
+              STATISTICS_DAILY_FIELD.URN, STATISTICS_DAILY_FIELD.FIELD_COUNT)
+          .values(Date.valueOf(cell.getRowKey()), cell.getColumnKey(), cell.getValue())
+          .onConflict(STATISTICS_DAILY_FIELD.DAY, STATISTICS_DAILY_FIELD.URN)
+          .doUpdate()
+          .set(STATISTICS_DAILY_FIELD.FIELD_COUNT,
+              STATISTICS_DAILY_FIELD.FIELD_COUNT.plus(cell.getValue())));
+    }
+    for (Table.Cell<LocalDate, Map.Entry<String, String>, Integer> cell
+        : rollup.getValues().cellSet()) {
+      upserts.add(dslContext
+          .insertInto(STATISTICS_DAILY_VALUE, STATISTICS_DAILY_VALUE.DAY,
+              STATISTICS_DAILY_VALUE.URN, STATISTICS_DAILY_VALUE.VALUE,
+              STATISTICS_DAILY_VALUE.VALUE_COUNT)
+          .values(Date.valueOf(cell.getRowKey()), cell.getColumnKey().getKey(),
+              cell.getColumnKey().getValue(), cell.getValue())
+          .onConflict(STATISTICS_DAILY_VALUE.DAY, STATISTICS_DAILY_VALUE.URN,
+              STATISTICS_DAILY_VALUE.VALUE)
+          .doUpdate()
+          .set(STATISTICS_DAILY_VALUE.VALUE_COUNT,
+              STATISTICS_DAILY_VALUE.VALUE_COUNT.plus(cell.getValue())));
+    }
+    if (!upserts.isEmpty()) {
+      dslContext.batch(upserts).execute();
+    }
+  }
+
+  /**
+   * Add the statistics of queries not yet in the daily aggregates, e.g. those written before the
+   * aggregates existed. The queries are locked while they are added, so several broker instances
+   * may run this at the same time.
+   *
+   * @param limit the maximum number of queries to add
+   * @return the number of added queries
+   */
+  public static int rollUpPending(int limit) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      return ResourceManager.getDslContext(conn).transactionResult(configuration ->
+          rollUpPending(DSL.using(configuration), limit));
+    } catch (SQLException e) {
+      logger.error("Error while adding statistics to the daily aggregates", e);
+    }
+    return 0;
+  }
+
+  private static int rollUpPending(DSLContext dslContext, int limit) {
+    Result<Record2<Integer, Timestamp>> queries = dslContext
+        .select(STATISTICS_QUERY.ID, STATISTICS_QUERY.CREATED)
+        .from(STATISTICS_QUERY)
+        .where(STATISTICS_QUERY.ROLLED_UP.isFalse())
+        .orderBy(STATISTICS_QUERY.ID)
+        .limit(limit)
+        .forUpdate()
+        .skipLocked()
+        .fetch();
+    if (queries.isEmpty()) {
+      return 0;
+    }
+
+    Map<Integer, LocalDate> days = new HashMap<>();
+    Map<Integer, Integer> fieldCounts = new HashMap<>();
+    for (Record2<Integer, Timestamp> query : queries) {
+      // queries without creation date are counted on the day they are added
+      LocalDate day = query.value2() == null ? LocalDate.now()
+          : query.value2().toLocalDateTime().toLocalDate();
+      days.put(query.value1(), day);
+      fieldCounts.put(query.value1(), 0);
+    }
+
+    StatisticsRollup rollup = new StatisticsRollup();
+    Integer lastFieldId = null;
+    for (Record record : dslContext
+        .select(STATISTICS_FIELD.ID, STATISTICS_FIELD.QUERYID, STATISTICS_FIELD.URN,
+            STATISTICS_VALUE.VALUE)
+        .from(STATISTICS_FIELD)
+        .leftJoin(STATISTICS_VALUE).on(STATISTICS_VALUE.FIELDID.eq(STATISTICS_FIELD.ID))
+        .where(STATISTICS_FIELD.QUERYID.in(days.keySet()))
+        .orderBy(STATISTICS_FIELD.ID)
+        .fetch()) {
+      Integer fieldId = record.get(STATISTICS_FIELD.ID);
+      Integer queryId = record.get(STATISTICS_FIELD.QUERYID);
+      String urn = record.get(STATISTICS_FIELD.URN);
+      if (!fieldId.equals(lastFieldId)) {
+        rollup.addField(days.get(queryId), urn);
+        fieldCounts.merge(queryId, 1, Integer::sum);
+        lastFieldId = fieldId;
+      }
+      rollup.addValue(days.get(queryId), urn, record.get(STATISTICS_VALUE.VALUE));
+    }
+    fieldCounts.forEach((queryId, fieldCount) -> rollup.addQuery(days.get(queryId), fieldCount));
+
+    add(dslContext, rollup);
+    dslContext.update(STATISTICS_QUERY)
+        .set(STATISTICS_QUERY.ROLLED_UP, true)
+        .where(STATISTICS_QUERY.ID.in(days.keySet()))
+        .execute();
+    return queries.size();
+  }
+
+  /**
+   * Build the statistics of a period from the daily aggregates. They are read from the replica,
+   * if there is one.
+   *
+   * @param from the first day of the period
+   * @param to   the last day of the period
+   * @return the statistics
+   */
+  public static StatisticsResult fetchResult(LocalDate from, LocalDate to) {
+    StatisticsResult result = new StatisticsResult();
+    Date fromDate = Date.valueOf(from);
+    Date toDate = Date.valueOf(to);
+    try (Connection conn = ResourceManager.getReadOnlyConnection()) {
+      DSLContext dslContext = ResourceManager.getDslContext(conn);
+
+      int queryCount = 0;
+      for (Record2<Integer, Integer> record : dslContext
+          .select(STATISTICS_DAILY_QUERY.FIELD_COUNT,
+              DSL.sum(STATISTICS_DAILY_QUERY.QUERY_COUNT).cast(Integer.class))
+          .from(STATISTICS_DAILY_QUERY)
+          .where(STATISTICS_DAILY_QUERY.DAY.between(fromDate, toDate))
+          .groupBy(STATISTICS_DAILY_QUERY.FIELD_COUNT)
+          .fetch()) {
+        result.countSelectedFieldsPerQuery(record.value1(), record.value2());
+        queryCount += record.value2();
+      }
+      result.setQueryCount(queryCount);
+
+      for (Record2<String, Integer> record : dslContext
+          .select(STATISTICS_DAILY_FIELD.URN,
+              DSL.sum(STATISTICS_DAILY_FIELD.FIELD_COUNT).cast(Integer.class))
+          .from(STATISTICS_DAILY_FIELD)
+          .where(STATISTICS_DAILY_FIELD.DAY.between(fromDate, toDate))
+          .groupBy(STATISTICS_DAILY_FIELD.URN)
+          .fetch()) {
+        result.countFields(record.value1(), record.value2());
+      }
+
+      for (Record record : dslContext
+          .select(STATISTICS_DAILY_VALUE.URN, STATISTICS_DAILY_VALUE.VALUE,
+              DSL.sum(STATISTICS_DAILY_VALUE.VALUE_COUNT).cast(Integer.class).as("total"))
+          .from(STATISTICS_DAILY_VALUE)
+          .where(STATISTICS_DAILY_VALUE.DAY.between(fromDate, toDate))
+          .groupBy(STATISTICS_DAILY_VALUE.URN, STATISTICS_DAILY_VALUE.VALUE)
+          .fetch()) {
+        result.countValues(record.get(STATISTICS_DAILY_VALUE.URN),
+            record.get(STATISTICS_DAILY_VALUE.VALUE), record.get("total", Integer.class));
+      }
+    } catch (SQLException e) {
+      logger.error("Error while reading the daily statistics", e);
+    }
+    return result;
+  }
+
+  /**
+   * Write the daily aggregates of a period, day by day. The rows are fetched in chunks, so the
+   * memory needed does not depend on the length of the period. They are read from the replica,
+   * if there is one.
+   *
+   * @param tables the aggregates to write, each as one table
+   * @param from   the first day of the period
+   * @param to     the last day of the period
+   * @param writer the writer to write the tables to
+   * @throws IOException if the aggregates cannot be read or written
+   */
+  public static void export(List<StatisticsTable> tables, LocalDate from, LocalDate to,
+      StatisticsSheetWriter writer) throws IOException {
+    Date fromDate = Date.valueOf(from);
+    Date toDate = Date.valueOf(to);
+    try (Connection conn = ResourceManager.getReadOnlyConnection()) {
+      // PostgreSQL only fetches the rows in chunks within a transaction
+      conn.setAutoCommit(false);
+      try {
+        DSLContext dslContext = ResourceManager.getDslContext(conn);
+        for (StatisticsTable table : tables) {
+          writer.startSheet(table.sheetName, table.getColumns());
+          try (Cursor<? extends Record> cursor = selectDaily(dslContext, table, fromDate, toDate)
+              .fetchSize(EXPORT_FETCH_SIZE)
+              .fetchLazy()) {
+            for (Record record : cursor) {
+              Object[] values = record.intoArray();
+              values[0] = ((Date) values[0]).toLocalDate();
+              writer.writeRow(values);
+            }
+          }
+        }
+      } finally {
+        conn.rollback();
+        conn.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new IOException("Error while reading the daily statistics", e);
+    }
+  }
+
+  private static ResultQuery<? extends Record> selectDaily(DSLContext dslContext,
+      StatisticsTable table, Date from, Date to) {
+    switch (table) {
+      case QUERIES:
+        return dslContext
+            .select(STATISTICS_DAILY_QUERY.DAY, STATISTICS_DAILY_QUERY.FIELD_COUNT,
+                STATISTICS_DAILY_QUERY.QUERY_COUNT)
+            .from(STATISTICS_DAILY_QUERY)
+            .where(STATISTICS_DAILY_QUERY.DAY.between(from, to))
+            .orderBy(STATISTICS_DAILY_QUERY.DAY, STATISTICS_DAILY_QUERY.FIELD_COUNT);
+      case FIELDS:
+        return dslContext
+            .select(STATISTICS_DAILY_FIELD.DAY, STATISTICS_DAILY_FIELD.URN,
+                STATISTICS_DAILY_FIELD.FIELD_COUNT)
+            .from(STATISTICS_DAILY_FIELD)
+            .where(STATISTICS_DAILY_FIELD.DAY.between(from, to))
+            .orderBy(STATISTICS_DAILY_FIELD.DAY, STATISTICS_DAILY_FIELD.URN);
+      case VALUES:
+        return dslContext
+            .select(STATISTICS_DAILY_VALUE.DAY, STATISTICS_DAILY_VALUE.URN,
+                STATISTICS_DAILY_VALUE.VALUE, STATISTICS_DAILY_VALUE.VALUE_COUNT)
+            .from(STATISTICS_DAILY_VALUE)
+            .where(STATISTICS_DAILY_VALUE.DAY.between(from, to))
+            .orderBy(STATISTICS_DAILY_VALUE.DAY, STATISTICS_DAILY_VALUE.URN,
+                STATISTICS_DAILY_VALUE.VALUE);
+      default:
+        throw new IllegalArgumentException("Unknown statistics table " + table);
+    }
+  }
+}
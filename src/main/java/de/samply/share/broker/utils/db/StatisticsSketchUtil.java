@@ -0,0 +1,81 @@
+package de.samply.share.broker.utils.db;
+
+import static de.samply.share.broker.model.db.Tables.STATISTICS_SKETCH;
+
+import de.samply.share.broker.jdbc.ResourceManager;
+import de.samply.share.broker.model.db.tables.records.StatisticsSketchRecord;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+
+/**
+ * This class provides static methods for the checkpoints of the criteria usage sketches.
+ *
+ * @see de.samply.share.broker.statistics.CriteriaUsageSketches
+ */
+public final class StatisticsSketchUtil {
+
+  private static final Logger logger = LogManager.getLogger(StatisticsSketchUtil.class);
+
+  private StatisticsSketchUtil() {
+  }
+
+  /**
+   * Get the stored sketches.
+   *
+   * @return the serialized sketches by name, empty if they cannot be read
+   */
+  public static Map<String, String> fetchSketches() {
+    try (Connection conn = ResourceManager.getConnection()) {
+      return ResourceManager.getDslContext(conn)
+          .selectFrom(STATISTICS_SKETCH)
+          .fetchMap(STATISTICS_SKETCH.NAME, STATISTICS_SKETCH.STATE);
+    } catch (SQLException e) {
+      logger.error("Error while reading the criteria usage sketches", e);
+    }
+    return new HashMap<>();
+  }
+
+  /**
+   * Replace the stored sketches. They are locked until they are replaced, so concurrent updates
+   * of several broker instances are applied one after the other.
+   *
+   * @param update computes the new sketches from the stored ones
+   */
+  public static void updateSketches(UnaryOperator<Map<String, String>> update) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      ResourceManager.getDslContext(conn).transaction(configuration ->
+          updateSketches(DSL.using(configuration), update));
+    } catch (SQLException e) {
+      throw new DataAccessException("Error while storing the criteria usage sketches", e);
+    }
+  }
+
+  private static void updateSketches(DSLContext dslContext,
+      UnaryOperator<Map<String, String>> update) {
+    Map<String, String> stored = new HashMap<>();
+    for (StatisticsSketchRecord record : dslContext
+        .selectFrom(STATISTICS_SKETCH)
+        .forUpdate()
+        .fetch()) {
+      stored.put(record.getName(), record.getState());
+    }
+
+    for (Map.Entry<String, String> sketch : update.apply(stored).entrySet()) {
+      dslContext.insertInto(STATISTICS_SKETCH, STATISTICS_SKETCH.NAME, STATISTICS_SKETCH.STATE)
+          .values(sketch.getKey(), sketch.getValue())
+          .onConflict(STATISTICS_SKETCH.NAME)
+          .doUpdate()
+          .set(STATISTICS_SKETCH.STATE, sketch.getValue())
+          .set(STATISTICS_SKETCH.UPDATED_AT, DSL.currentTimestamp())
+          .execute();
+    }
+  }
+}
@@ -79,4 +79,23 @@ public final class TokenRequestUtil {
     }
     return tr;
   }
+
+  /**
+   * Get the code a token request is confirmed with.
+   *
+   * @param tokenRequestId the id of the token request
+   * @return the code or null if the token request does not exist (any more)
+   */
+  public static String fetchAuthcode(int tokenRequestId) {
+    try (Connection conn = ResourceManager.getConnection()) {
+      return ResourceManager.getDslContext(conn)
+          .select(Tables.TOKENREQUEST.AUTHCODE)
+          .from(Tables.TOKENREQUEST)
+          .where(Tables.TOKENREQUEST.ID.equal(tokenRequestId))
+          .fetchOne(Tables.TOKENREQUEST.AUTHCODE);
+    } catch (SQLException e) {
+      logger.error("Error while reading token request " + tokenRequestId, e);
+    }
+    return null;
+  }
 }
@@ -15,8 +15,6 @@ import java.util.Objects;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for UserSite Objects.
@@ -42,7 +40,7 @@ public final class UserSiteUtil {
     UserSiteDao userSiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       userSiteDao = new UserSiteDao(configuration);
 
       userSites = userSiteDao.fetchByUserId(user.getId());
@@ -75,7 +73,7 @@ public final class UserSiteUtil {
     }
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       userSiteDao = new UserSiteDao(configuration);
       List<UserSite> userSites = userSiteDao.fetchByUserId(user.getId());
@@ -108,7 +106,7 @@ public final class UserSiteUtil {
    */
   public static void updateUserSite(UserSite userSite) {
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       UserSiteDao userSiteDao = new UserSiteDao(configuration);
       userSiteDao.update(userSite);
@@ -153,7 +151,7 @@ public final class UserSiteUtil {
     UserSiteDao userSiteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       userSiteDao = new UserSiteDao(configuration);
 
       userSiteDao.delete(userSite);
@@ -195,8 +193,7 @@ public final class UserSiteUtil {
       SiteDao siteDao = null;
       Site site = null;
       try (Connection connection = ResourceManager.getConnection()) {
-        Configuration configuration = new DefaultConfiguration().set(connection)
-            .set(SQLDialect.POSTGRES);
+        Configuration configuration = ResourceManager.getConfiguration(connection);
         siteDao = new SiteDao(configuration);
         site = siteDao.fetchOneByName(userLocation.getId());
         Integer siteIdForUser = UserUtil.getSiteIdForUser(user);
@@ -16,8 +16,6 @@ import org.apache.logging.log4j.Logger;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Record;
-import org.jooq.SQLDialect;
-import org.jooq.impl.DefaultConfiguration;
 
 /**
  * This class provides static methods for CRUD operations for User Objects.
@@ -41,7 +39,7 @@ public final class UserUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       userDao = new UserDao(configuration);
       userDao.update(user);
@@ -63,7 +61,7 @@ public final class UserUtil {
     logger.info("User changed auth id: " + email + " - is now: " + jwtIdToken.getSubject()
         + " . Was before: " + user.getAuthid());
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       user.setAuthid(jwtIdToken.getSubject());
       user.setEmail(email);
       user.setName((getClaim(jwtIdToken, JwtVocabulary.NAME)));
@@ -93,7 +91,7 @@ public final class UserUtil {
       user.setEmail(getClaim(jwtIdToken, JwtVocabulary.EMAIL));
       user.setName(getClaim(jwtIdToken, JwtVocabulary.NAME));
       user.setUsername(getClaim(jwtIdToken, JwtVocabulary.EMAIL));
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       UserDao userDao = new UserDao(configuration);
       userDao.insert(user);
       user = userDao.fetchOneByAuthid(user.getAuthid());
@@ -194,7 +192,7 @@ public final class UserUtil {
     SiteDao siteDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       siteDao = new SiteDao(configuration);
       site = siteDao.fetchOneById(siteId);
@@ -221,7 +219,7 @@ public final class UserUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
 
       userDao = new UserDao(configuration);
       user = userDao.fetchOneById(userId);
@@ -246,7 +244,7 @@ public final class UserUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       userDao = new UserDao(configuration);
       users = userDao.findAll();
     } catch (SQLException e) {
@@ -290,7 +288,7 @@ public final class UserUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       userDao = new UserDao(configuration);
       user = userDao.fetchOneByAuthid(authId);
     } catch (SQLException e) {
@@ -310,7 +308,7 @@ public final class UserUtil {
     UserDao userDao;
 
     try (Connection conn = ResourceManager.getConnection()) {
-      Configuration configuration = new DefaultConfiguration().set(conn).set(SQLDialect.POSTGRES);
+      Configuration configuration = ResourceManager.getConfiguration(conn);
       userDao = new UserDao(configuration);
       user = userDao.fetchOneById(userId);
       if (user != null) {
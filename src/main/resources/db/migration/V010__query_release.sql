@@ -0,0 +1,21 @@
+SET search_path TO samply;
+
+-- Queries sent by the UI, stored before they are translated and released to the sites.
+-- The handle links the sender to the status of its query without a login.
+CREATE TABLE "query_release" (
+  id              SERIAL PRIMARY KEY,
+  handle          UUID NOT NULL UNIQUE,
+  ntoken          TEXT,
+  query           TEXT NOT NULL,
+  user_id         INTEGER NOT NULL REFERENCES "user" (id) ON DELETE CASCADE,
+  status          TEXT NOT NULL DEFAULT 'PENDING',
+  attempts        INTEGER NOT NULL DEFAULT 0,
+  inquiry_id      INTEGER REFERENCES inquiry (id) ON DELETE SET NULL,
+  error           TEXT,
+  created_at      TIMESTAMP NOT NULL DEFAULT now(),
+  updated_at      TIMESTAMP NOT NULL DEFAULT now(),
+  next_attempt_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX query_release_unfinished_idx ON "query_release" (next_attempt_at)
+  WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,31 @@
+SET search_path TO samply;
+
+-- Daily aggregates of the query statistics, maintained when the statistics are written. Queries
+-- written before the aggregates existed are added by a background job.
+CREATE TABLE "statistics_daily_query" (
+  day           DATE NOT NULL,
+  field_count   INTEGER NOT NULL,
+  query_count   INTEGER NOT NULL,
+  PRIMARY KEY (day, field_count)
+);
+
+CREATE TABLE "statistics_daily_field" (
+  day           DATE NOT NULL,
+  urn           TEXT NOT NULL,
+  field_count   INTEGER NOT NULL,
+  PRIMARY KEY (day, urn)
+);
+
+CREATE TABLE "statistics_daily_value" (
+  day           DATE NOT NULL,
+  urn           TEXT NOT NULL,
+  value         TEXT NOT NULL,
+  value_count   INTEGER NOT NULL,
+  PRIMARY KEY (day, urn, value)
+);
+
+ALTER TABLE statistics_query
+  ADD COLUMN rolled_up BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE INDEX statistics_query_not_rolled_up_idx ON statistics_query (id)
+  WHERE NOT rolled_up;
@@ -0,0 +1,14 @@
+SET search_path TO samply;
+
+-- Checkpoints of the counts of the most searched fields, values and pairs of fields
+CREATE TABLE "statistics_sketch" (
+  name          TEXT PRIMARY KEY,
+  state         TEXT NOT NULL,
+  updated_at    TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- The rows exist up front, so concurrent checkpoints can lock them
+INSERT INTO "statistics_sketch" (name, state) VALUES
+  ('fields', '{}'),
+  ('values', '{}'),
+  ('pairs', '{}');
@@ -0,0 +1,26 @@
+SET search_path TO samply;
+
+-- Mails waiting to be sent, kept until the mail server accepted them or they are given up.
+-- Sent mails are purged after a week. The parameters of a template are stored as JSON and never
+-- hold secrets: an activation mail only refers to its token request, whose token is read when the
+-- mail is rendered.
+CREATE TABLE "mail_outbox" (
+  id              SERIAL PRIMARY KEY,
+  recipients      TEXT NOT NULL,
+  subject         TEXT NOT NULL,
+  locale          TEXT,
+  template        TEXT,
+  parameters      TEXT,
+  attachment      TEXT,
+  status          TEXT NOT NULL DEFAULT 'PENDING',
+  attempts        INTEGER NOT NULL DEFAULT 0,
+  error           TEXT,
+  created_at      TIMESTAMP NOT NULL DEFAULT now(),
+  updated_at      TIMESTAMP NOT NULL DEFAULT now(),
+  next_attempt_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX mail_outbox_unsent_idx ON "mail_outbox" (next_attempt_at)
+  WHERE status IN ('PENDING', 'SENDING');
+
+CREATE INDEX mail_outbox_sent_idx ON "mail_outbox" (updated_at) WHERE status = 'SENT';
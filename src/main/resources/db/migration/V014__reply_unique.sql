@@ -0,0 +1,11 @@
+SET search_path TO samply;
+
+-- A bank has one reply per inquiry. Concurrent submissions may have stored several, keep the latest
+DELETE FROM "reply" older
+  USING "reply" newer
+  WHERE newer.inquiry_id = older.inquiry_id
+    AND newer.bank_id = older.bank_id
+    AND newer.id > older.id;
+
+-- Lets replies be upserted, and finds the reply of a bank to an inquiry
+CREATE UNIQUE INDEX reply_inquiry_bank_idx ON "reply" (inquiry_id, bank_id);
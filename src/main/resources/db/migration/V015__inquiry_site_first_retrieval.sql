@@ -0,0 +1,7 @@
+SET search_path TO samply;
+
+-- When a site retrieved an inquiry for the first time; retrieved_at keeps the latest retrieval.
+-- The first retrieval of the inquiries retrieved so far is not known, the latest one has to do.
+ALTER TABLE inquiry_site ADD COLUMN first_retrieved_at TIMESTAMP WITHOUT TIME ZONE;
+
+UPDATE inquiry_site SET first_retrieved_at = retrieved_at WHERE retrieved_at IS NOT NULL;
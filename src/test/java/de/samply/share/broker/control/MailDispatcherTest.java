@@ -0,0 +1,196 @@
+package de.samply.share.broker.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.model.MailStatus;
+import de.samply.share.broker.model.db.tables.pojos.MailOutbox;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.mail.MessagingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MailDispatcherTest {
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+
+  private InMemoryStore store;
+  private AtomicInteger sent;
+
+  @BeforeEach
+  void setUp() {
+    store = new InMemoryStore();
+    store.add(1);
+    sent = new AtomicInteger();
+  }
+
+  @Test
+  void sentMailIsMarkedAsSent() {
+    dispatcher(this::count).run(1);
+
+    assertEquals(MailStatus.SENT.name(), store.get(1).getStatus());
+    assertEquals(1, sent.get());
+  }
+
+  @Test
+  void mailClaimedByOtherWorkerIsSkipped() {
+    store.get(1).setStatus(MailStatus.SENDING.name());
+
+    dispatcher(this::count).run(1);
+
+    assertEquals(0, sent.get());
+  }
+
+  @Test
+  void sentMailIsNotSentAgain() {
+    MailDispatcher dispatcher = dispatcher(this::count);
+
+    dispatcher.run(1);
+    dispatcher.run(1);
+
+    assertEquals(1, sent.get());
+  }
+
+  @Test
+  void failedMailIsSentAgainLater() {
+    dispatcher(mail -> {
+      throw new MessagingException("Connection refused");
+    }).run(1);
+
+    MailOutbox mail = store.get(1);
+    assertEquals(MailStatus.PENDING.name(), mail.getStatus());
+    assertEquals(Timestamp.from(NOW.plusSeconds(30)), mail.getNextAttemptAt());
+    assertEquals("javax.mail.MessagingException: Connection refused", mail.getError());
+  }
+
+  @Test
+  void mailIsGivenUpAfterMaximumAttempts() {
+    MailDispatcher dispatcher = dispatcher(mail -> {
+      throw new IllegalStateException("template missing");
+    });
+
+    for (int i = 0; i < MAX_ATTEMPTS; i++) {
+      dispatcher.run(1);
+    }
+
+    assertEquals(MailStatus.FAILED.name(), store.get(1).getStatus());
+    assertEquals(Integer.valueOf(MAX_ATTEMPTS), store.get(1).getAttempts());
+  }
+
+  @Test
+  void retryDelayDoublesUpToMaximum() {
+    assertEquals(Duration.ofSeconds(30), MailDispatcher.retryDelay(1));
+    assertEquals(Duration.ofSeconds(60), MailDispatcher.retryDelay(2));
+    assertEquals(Duration.ofSeconds(120), MailDispatcher.retryDelay(3));
+    assertEquals(Duration.ofHours(1), MailDispatcher.retryDelay(100));
+  }
+
+  @Test
+  void sentMailsArePurgedBySweep() {
+    dispatcher(this::count).submitDue();
+
+    assertEquals(Duration.ofDays(7), store.purgedAge);
+  }
+
+  @Test
+  void burstOfMailsIsSentByPoolOfWorkers() throws InterruptedException {
+    for (int i = 2; i <= 100; i++) {
+      store.add(i);
+    }
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    CountDownLatch allSent = new CountDownLatch(100);
+    MailDispatcher dispatcher = new MailDispatcher(store, mail -> {
+      threads.add(Thread.currentThread().getName());
+      allSent.countDown();
+    }, 2, MAX_ATTEMPTS, Clock.fixed(NOW, ZoneOffset.UTC));
+    dispatcher.start();
+
+    for (int i = 1; i <= 100; i++) {
+      assertTrue(dispatcher.submit(i));
+    }
+
+    assertTrue(allSent.await(10, TimeUnit.SECONDS));
+    dispatcher.stop();
+    assertTrue(threads.size() <= 2);
+  }
+
+  private void count(MailOutbox mail) {
+    sent.incrementAndGet();
+  }
+
+  private MailDispatcher dispatcher(MailDispatcher.Sender sender) {
+    return new MailDispatcher(store, sender, 1, MAX_ATTEMPTS, Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  private static class InMemoryStore implements MailDispatcher.Store {
+
+    private final Map<Integer, MailOutbox> mails = new ConcurrentHashMap<>();
+    private Duration purgedAge;
+
+    void add(int mailId) {
+      MailOutbox mail = new MailOutbox();
+      mail.setId(mailId);
+      mail.setRecipients("user@example.org");
+      mail.setSubject("Test");
+      mail.setStatus(MailStatus.PENDING.name());
+      mail.setAttempts(0);
+      mails.put(mailId, mail);
+    }
+
+    MailOutbox get(int mailId) {
+      return mails.get(mailId);
+    }
+
+    @Override
+    public synchronized MailOutbox claim(int mailId) {
+      MailOutbox mail = mails.get(mailId);
+      if (mail == null || !MailStatus.PENDING.name().equals(mail.getStatus())) {
+        return null;
+      }
+      mail.setStatus(MailStatus.SENDING.name());
+      mail.setAttempts(mail.getAttempts() + 1);
+      return new MailOutbox(mail);
+    }
+
+    @Override
+    public void sent(int mailId) {
+      mails.get(mailId).setStatus(MailStatus.SENT.name());
+    }
+
+    @Override
+    public void retryLater(int mailId, String error, Instant nextAttempt) {
+      mails.get(mailId).setStatus(MailStatus.PENDING.name());
+      mails.get(mailId).setError(error);
+      mails.get(mailId).setNextAttemptAt(Timestamp.from(nextAttempt));
+    }
+
+    @Override
+    public void failed(int mailId, String error) {
+      mails.get(mailId).setStatus(MailStatus.FAILED.name());
+      mails.get(mailId).setError(error);
+    }
+
+    @Override
+    public List<Integer> due(Duration sendingTimeout, int limit) {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public void purgeSent(Duration age) {
+      purgedAge = age;
+    }
+  }
+}
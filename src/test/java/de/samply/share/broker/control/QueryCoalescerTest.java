@@ -0,0 +1,169 @@
+package de.samply.share.broker.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.testing.TestClock;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class QueryCoalescerTest {
+
+  private static final Duration WINDOW = Duration.ofSeconds(10);
+
+  private AtomicInteger nextInquiryId;
+  private List<Integer> joinedInquiryIds;
+
+  @BeforeEach
+  void setUp() {
+    nextInquiryId = new AtomicInteger(1);
+    joinedInquiryIds = new CopyOnWriteArrayList<>();
+  }
+
+  @Test
+  void identicalQueryWithinWindowIsCoalesced() {
+    Clock clock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+    QueryCoalescer coalescer = new QueryCoalescer(WINDOW, clock);
+
+    int first = coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement,
+        joinedInquiryIds::add);
+    int second = coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement,
+        joinedInquiryIds::add);
+
+    assertEquals(1, first);
+    assertEquals(1, second);
+    assertEquals(1, joinedInquiryIds.size());
+    assertEquals(1, coalescer.getCoalescedCount());
+  }
+
+  @Test
+  void differentQueriesAreNotCoalesced() {
+    QueryCoalescer coalescer = new QueryCoalescer(WINDOW, Clock.systemUTC());
+
+    int first = coalescer.releaseOrJoin("key1", nextInquiryId::getAndIncrement,
+        joinedInquiryIds::add);
+    int second = coalescer.releaseOrJoin("key2", nextInquiryId::getAndIncrement,
+        joinedInquiryIds::add);
+
+    assertEquals(1, first);
+    assertEquals(2, second);
+    assertEquals(0, joinedInquiryIds.size());
+  }
+
+  @Test
+  void identicalQueryAfterWindowIsReleasedAgain() {
+    TestClock clock = new TestClock(Instant.EPOCH);
+    QueryCoalescer coalescer = new QueryCoalescer(WINDOW, clock);
+
+    coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement, joinedInquiryIds::add);
+    clock.set(Instant.EPOCH.plus(WINDOW).plusSeconds(1));
+    int second = coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement,
+        joinedInquiryIds::add);
+
+    assertEquals(2, second);
+    assertEquals(2, coalescer.getReleasedCount());
+  }
+
+  @Test
+  void failedReleaseIsNotCoalesced() {
+    QueryCoalescer coalescer = new QueryCoalescer(WINDOW, Clock.systemUTC());
+
+    coalescer.releaseOrJoin("key", () -> -1, joinedInquiryIds::add);
+    int second = coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement,
+        joinedInquiryIds::add);
+
+    assertEquals(1, second);
+    assertEquals(0, joinedInquiryIds.size());
+  }
+
+  @Test
+  void zeroWindowDisablesCoalescing() {
+    QueryCoalescer coalescer = new QueryCoalescer(Duration.ZERO, Clock.systemUTC());
+
+    coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement, joinedInquiryIds::add);
+    int second = coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement,
+        joinedInquiryIds::add);
+
+    assertEquals(2, second);
+  }
+
+  @Test
+  void identicalQueryWaitsForTheRunningRelease() throws Exception {
+    QueryCoalescer coalescer = new QueryCoalescer(WINDOW, Clock.systemUTC());
+    CountDownLatch releasing = new CountDownLatch(1);
+    CountDownLatch stored = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Integer> first = executor.submit(() -> coalescer.releaseOrJoin("key", () -> {
+        releasing.countDown();
+        await(stored);
+        return nextInquiryId.getAndIncrement();
+      }, joinedInquiryIds::add));
+      assertTrue(releasing.await(5, TimeUnit.SECONDS));
+      AtomicReference<Thread> joining = new AtomicReference<>();
+      Future<Integer> second = executor.submit(() -> {
+        joining.set(Thread.currentThread());
+        return coalescer.releaseOrJoin("key", nextInquiryId::getAndIncrement,
+            joinedInquiryIds::add);
+      });
+      while (joining.get() == null || joining.get().getState() != Thread.State.TIMED_WAITING) {
+        Thread.sleep(1);
+      }
+
+      stored.countDown();
+
+      assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS));
+      assertEquals(Integer.valueOf(1), second.get(5, TimeUnit.SECONDS));
+      assertEquals(1, coalescer.getCoalescedCount());
+      assertEquals(1, joinedInquiryIds.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void identicalQueryIsReleasedOnItsOwnAfterJoinTimeout() throws Exception {
+    QueryCoalescer coalescer = new QueryCoalescer(WINDOW, Duration.ofMillis(50),
+        Clock.systemUTC());
+    CountDownLatch releasing = new CountDownLatch(1);
+    CountDownLatch stuck = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> coalescer.releaseOrJoin("key", () -> {
+        releasing.countDown();
+        await(stuck);
+        return -1;
+      }, joinedInquiryIds::add));
+      assertTrue(releasing.await(5, TimeUnit.SECONDS));
+
+      int second = coalescer.releaseOrJoin("key", () -> 2, joinedInquiryIds::add);
+
+      assertEquals(2, second);
+      assertEquals(0, coalescer.getCoalescedCount());
+    } finally {
+      stuck.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package de.samply.share.broker.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import de.samply.share.broker.model.QueryReleaseStatus;
+import de.samply.share.broker.model.db.tables.pojos.QueryRelease;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class QueryReleaseExecutorTest {
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+
+  private InMemoryStore store;
+  private AtomicInteger releases;
+
+  @BeforeEach
+  void setUp() {
+    store = new InMemoryStore();
+    store.add(1);
+    releases = new AtomicInteger();
+  }
+
+  @Test
+  void releasedQueryIsMarkedWithInquiry() {
+    executor((release, created) -> 42).run(1);
+
+    assertEquals(QueryReleaseStatus.RELEASED.name(), store.get(1).getStatus());
+    assertEquals(Integer.valueOf(42), store.get(1).getInquiryId());
+  }
+
+  @Test
+  void releaseClaimedByOtherWorkerIsSkipped() {
+    store.get(1).setStatus(QueryReleaseStatus.RUNNING.name());
+
+    executor(this::count).run(1);
+
+    assertEquals(0, releases.get());
+  }
+
+  @Test
+  void releasedQueryIsNotReleasedAgain() {
+    QueryReleaseExecutor executor = executor(this::count);
+
+    executor.run(1);
+    executor.run(1);
+
+    assertEquals(1, releases.get());
+  }
+
+  @Test
+  void failedReleaseIsTriedAgainLater() {
+    executor((release, created) -> 0).run(1);
+
+    QueryRelease release = store.get(1);
+    assertEquals(QueryReleaseStatus.PENDING.name(), release.getStatus());
+    assertEquals(Timestamp.from(NOW.plusSeconds(5)), release.getNextAttemptAt());
+    assertEquals("The inquiry could not be stored", release.getError());
+  }
+
+  @Test
+  void exceptionIsTriedAgainLater() {
+    executor((release, created) -> {
+      throw new IllegalStateException("translation failed");
+    }).run(1);
+
+    assertEquals(QueryReleaseStatus.PENDING.name(), store.get(1).getStatus());
+    assertEquals("java.lang.IllegalStateException: translation failed", store.get(1).getError());
+  }
+
+  @Test
+  void releaseIsGivenUpAfterMaximumAttempts() {
+    QueryReleaseExecutor executor = executor((release, created) -> 0);
+
+    for (int i = 0; i < MAX_ATTEMPTS; i++) {
+      executor.run(1);
+    }
+
+    assertEquals(QueryReleaseStatus.FAILED.name(), store.get(1).getStatus());
+    assertEquals(Integer.valueOf(MAX_ATTEMPTS), store.get(1).getAttempts());
+    assertNull(store.get(1).getInquiryId());
+  }
+
+  @Test
+  void storedInquiryIsReusedWhenReleaseIsTriedAgain() {
+    List<Integer> inquiryIds = new ArrayList<>();
+    QueryReleaseExecutor executor = executor((release, created) -> {
+      inquiryIds.add(release.getInquiryId());
+      if (release.getInquiryId() == null) {
+        created.accept(42);
+        throw new IllegalStateException("sites not set");
+      }
+      return release.getInquiryId();
+    });
+
+    executor.run(1);
+    assertEquals(QueryReleaseStatus.PENDING.name(), store.get(1).getStatus());
+    assertEquals(Integer.valueOf(42), store.get(1).getInquiryId());
+
+    executor.run(1);
+    assertEquals(Arrays.asList(null, 42), inquiryIds);
+    assertEquals(QueryReleaseStatus.RELEASED.name(), store.get(1).getStatus());
+  }
+
+  @Test
+  void retryDelayDoublesUpToMaximum() {
+    assertEquals(Duration.ofSeconds(5), QueryReleaseExecutor.retryDelay(1));
+    assertEquals(Duration.ofSeconds(10), QueryReleaseExecutor.retryDelay(2));
+    assertEquals(Duration.ofSeconds(20), QueryReleaseExecutor.retryDelay(3));
+    assertEquals(Duration.ofMinutes(5), QueryReleaseExecutor.retryDelay(100));
+  }
+
+  private int count(QueryRelease release, IntConsumer created) {
+    return releases.incrementAndGet();
+  }
+
+  private QueryReleaseExecutor executor(QueryReleaseExecutor.Releaser releaser) {
+    return new QueryReleaseExecutor(store, releaser, 1, MAX_ATTEMPTS,
+        Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  private static class InMemoryStore implements QueryReleaseExecutor.Store {
+
+    private final Map<Integer, QueryRelease> releases = new HashMap<>();
+
+    void add(int releaseId) {
+      QueryRelease release = new QueryRelease();
+      release.setId(releaseId);
+      release.setQuery("{}");
+      release.setUserId(1);
+      release.setStatus(QueryReleaseStatus.PENDING.name());
+      release.setAttempts(0);
+      releases.put(releaseId, release);
+    }
+
+    QueryRelease get(int releaseId) {
+      return releases.get(releaseId);
+    }
+
+    @Override
+    public QueryRelease claim(int releaseId) {
+      QueryRelease release = releases.get(releaseId);
+      if (release == null || !QueryReleaseStatus.PENDING.name().equals(release.getStatus())) {
+        return null;
+      }
+      release.setStatus(QueryReleaseStatus.RUNNING.name());
+      release.setAttempts(release.getAttempts() + 1);
+      return new QueryRelease(release);
+    }
+
+    @Override
+    public void created(int releaseId, int inquiryId) {
+      releases.get(releaseId).setInquiryId(inquiryId);
+    }
+
+    @Override
+    public void released(int releaseId, int inquiryId) {
+      releases.get(releaseId).setStatus(QueryReleaseStatus.RELEASED.name());
+      releases.get(releaseId).setInquiryId(inquiryId);
+    }
+
+    @Override
+    public void retryLater(int releaseId, String error, Instant nextAttempt) {
+      releases.get(releaseId).setStatus(QueryReleaseStatus.PENDING.name());
+      releases.get(releaseId).setError(error);
+      releases.get(releaseId).setNextAttemptAt(Timestamp.from(nextAttempt));
+    }
+
+    @Override
+    public void failed(int releaseId, String error) {
+      releases.get(releaseId).setStatus(QueryReleaseStatus.FAILED.name());
+      releases.get(releaseId).setError(error);
+    }
+
+    @Override
+    public List<Integer> due(Duration runningTimeout, int limit) {
+      return new ArrayList<>();
+    }
+  }
+}
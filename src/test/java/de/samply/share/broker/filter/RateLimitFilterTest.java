@@ -0,0 +1,110 @@
+package de.samply.share.broker.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.samply.share.broker.testing.TestClock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Response;
+import org.apache.http.HttpHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitFilterTest {
+
+  private static final Set<String> PROXIES = new HashSet<>(Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+  @Mock
+  private ContainerRequestContext context;
+
+  @Mock
+  private ResourceInfo resourceInfo;
+
+  @Test
+  void unknownApiKeyIsThrottledWithoutLookingItUp() throws Exception {
+    doReturn(RateLimitFilterTest.class.getDeclaredMethod("resource")).when(resourceInfo)
+        .getResourceMethod();
+    doReturn(RateLimitFilterTest.class).when(resourceInfo).getResourceClass();
+    when(context.getMethod()).thenReturn("GET");
+    when(context.getHeaderString(HttpHeaders.AUTHORIZATION)).thenReturn("Samply unknown");
+    when(context.getHeaderString("X-Forwarded-For")).thenReturn(null);
+    // the bank id cache does not know the key, and a miss must not load it from the database
+    List<String> lookups = new ArrayList<>();
+    RateLimiter rateLimiter = new RateLimiter(Collections.singletonMap(RateLimitClass.STANDARD, 1),
+        new TestClock(Instant.EPOCH).ticker());
+    RateLimitFilter filter = new RateLimitFilter(resourceInfo, rateLimiter,
+        authorization -> {
+          lookups.add(authorization);
+          return -1;
+        });
+
+    filter.filter(context);
+    verify(context, never()).abortWith(any());
+    filter.filter(context);
+
+    ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+    verify(context).abortWith(response.capture());
+    assertEquals(429, response.getValue().getStatus());
+    assertEquals(Arrays.asList("Samply unknown", "Samply unknown"), lookups);
+  }
+
+  @Test
+  void verifiedClientIsTaken() {
+    assertEquals("user:alice", RateLimitFilter.clientOf("user:alice", 7, "10.0.0.1"));
+    assertEquals("realm:ICINGA", RateLimitFilter.clientOf("realm:ICINGA", -1, "10.0.0.1"));
+  }
+
+  @Test
+  void bankIsIdentifiedById() {
+    assertEquals("bank:7", RateLimitFilter.clientOf(null, 7, "10.0.0.1"));
+  }
+
+  @Test
+  void unverifiedClientIsIdentifiedByAddress() {
+    assertEquals("address:10.0.0.1", RateLimitFilter.clientOf(null, -1, "10.0.0.1"));
+  }
+
+  @Test
+  void forwardedForIsIgnoredUnlessSentByTrustedProxy() {
+    assertEquals("192.168.0.9",
+        RateLimitFilter.addressOf("192.168.0.9", "1.2.3.4", PROXIES));
+    assertEquals("10.0.0.1",
+        RateLimitFilter.addressOf("10.0.0.1", "1.2.3.4", Collections.emptySet()));
+    assertEquals("10.0.0.1", RateLimitFilter.addressOf("10.0.0.1", null, PROXIES));
+  }
+
+  @Test
+  void lastAddressNotOfTrustedProxyIsTaken() {
+    assertEquals("1.2.3.4", RateLimitFilter.addressOf("10.0.0.1", "1.2.3.4", PROXIES));
+    assertEquals("1.2.3.4",
+        RateLimitFilter.addressOf("10.0.0.1", "6.6.6.6, 1.2.3.4, 10.0.0.2", PROXIES));
+    assertEquals("10.0.0.2", RateLimitFilter.addressOf("10.0.0.1", "10.0.0.2", PROXIES));
+  }
+
+  @Test
+  void retryAfterIsRoundedUpToSeconds() {
+    assertEquals(1, RateLimitFilter.retryAfterSeconds(1));
+    assertEquals(1, RateLimitFilter.retryAfterSeconds(TimeUnit.SECONDS.toNanos(1)));
+    assertEquals(2, RateLimitFilter.retryAfterSeconds(TimeUnit.MILLISECONDS.toNanos(1001)));
+  }
+
+  private void resource() {
+  }
+}
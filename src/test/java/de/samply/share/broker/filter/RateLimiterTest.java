@@ -0,0 +1,106 @@
+package de.samply.share.broker.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.testing.TestClock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+  private static final int BUDGET = 60;
+
+  private TestClock clock;
+  private RateLimiter rateLimiter;
+
+  @BeforeEach
+  void setUp() {
+    Map<RateLimitClass, Integer> limits = new EnumMap<>(RateLimitClass.class);
+    limits.put(RateLimitClass.POLLING, BUDGET);
+    limits.put(RateLimitClass.MONITORING, BUDGET);
+    limits.put(RateLimitClass.STANDARD, 0);
+    clock = new TestClock(Instant.EPOCH);
+    rateLimiter = new RateLimiter(limits, clock.ticker());
+  }
+
+  @Test
+  void burstUpToBudgetIsAdmitted() {
+    exhaust(RateLimitClass.POLLING, "bank:1");
+
+    assertTrue(rateLimiter.acquire(RateLimitClass.POLLING, "bank:1") > 0);
+  }
+
+  @Test
+  void waitIsTimeUntilNextToken() {
+    exhaust(RateLimitClass.POLLING, "bank:1");
+    clock.advance(Duration.ofMillis(400));
+
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(600),
+        rateLimiter.acquire(RateLimitClass.POLLING, "bank:1"));
+  }
+
+  @Test
+  void bucketIsRefilledOverTime() {
+    exhaust(RateLimitClass.POLLING, "bank:1");
+    clock.advance(Duration.ofSeconds(1));
+
+    assertEquals(0, rateLimiter.acquire(RateLimitClass.POLLING, "bank:1"));
+    assertTrue(rateLimiter.acquire(RateLimitClass.POLLING, "bank:1") > 0);
+  }
+
+  @Test
+  void clientsHaveSeparateBudgets() {
+    exhaust(RateLimitClass.POLLING, "bank:1");
+
+    assertEquals(0, rateLimiter.acquire(RateLimitClass.POLLING, "bank:2"));
+  }
+
+  @Test
+  void monitoringHasSeparateBudget() {
+    exhaust(RateLimitClass.POLLING, "realm:ICINGA");
+
+    assertEquals(0, rateLimiter.acquire(RateLimitClass.MONITORING, "realm:ICINGA"));
+  }
+
+  @Test
+  void zeroBudgetDisablesLimit() {
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(0, rateLimiter.acquire(RateLimitClass.STANDARD, "bank:1"));
+    }
+  }
+
+  @Test
+  void throttledRequestsAreCountedPerClient() {
+    exhaust(RateLimitClass.POLLING, "bank:1");
+    rateLimiter.acquire(RateLimitClass.POLLING, "bank:1");
+    rateLimiter.acquire(RateLimitClass.POLLING, "bank:1");
+
+    assertEquals(Long.valueOf(2),
+        rateLimiter.getThrottledCounts(RateLimitClass.POLLING).get("bank:1"));
+    assertTrue(rateLimiter.getThrottledCounts(RateLimitClass.MONITORING).isEmpty());
+  }
+
+  @Test
+  void throttledClientsBeyondLimitAreCountedAsOther() {
+    for (int i = 0; i <= RateLimiter.MAX_COUNTED_CLIENTS; i++) {
+      exhaust(RateLimitClass.POLLING, "bank:" + i);
+      rateLimiter.acquire(RateLimitClass.POLLING, "bank:" + i);
+    }
+
+    Map<String, Long> counts = rateLimiter.getThrottledCounts(RateLimitClass.POLLING);
+    assertEquals(RateLimiter.MAX_COUNTED_CLIENTS + 1, counts.size());
+    assertEquals(Long.valueOf(1), counts.get(RateLimiter.OTHER_CLIENTS));
+  }
+
+  private void exhaust(RateLimitClass rateLimitClass, String client) {
+    for (int i = 0; i < BUDGET; i++) {
+      assertEquals(0, rateLimiter.acquire(rateLimitClass, client));
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package de.samply.share.broker.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.common.io.BaseEncoding;
+import de.samply.share.broker.filter.VerifiedTokenCache.VerifiedToken;
+import de.samply.share.broker.testing.TestClock;
+import de.samply.share.broker.utils.JwtClaims;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VerifiedTokenCacheTest {
+
+  private static final Duration MAXIMUM_AGE = Duration.ofMinutes(5);
+
+  private TestClock clock;
+  private VerifiedTokenCache cache;
+  private AtomicInteger verifications;
+
+  @BeforeEach
+  void setUp() {
+    clock = new TestClock(Instant.EPOCH);
+    cache = new VerifiedTokenCache(MAXIMUM_AGE, 10, clock);
+    verifications = new AtomicInteger();
+  }
+
+  @Test
+  void validTokenIsVerifiedOnce() {
+    String token = createToken(Instant.EPOCH.plus(Duration.ofHours(1)));
+
+    cache.get(token, this::verify);
+    cache.get(token, this::verify);
+
+    assertEquals(1, verifications.get());
+  }
+
+  @Test
+  void invalidTokenIsVerifiedEveryTime() {
+    String token = createToken(Instant.EPOCH.plus(Duration.ofHours(1)));
+
+    assertNull(cache.get(token, this::reject));
+    assertNull(cache.get(token, this::reject));
+
+    assertEquals(2, verifications.get());
+  }
+
+  @Test
+  void tokenIsVerifiedAgainAfterItExpires() {
+    String token = createToken(Instant.EPOCH.plusSeconds(60));
+
+    cache.get(token, this::verify);
+    clock.set(Instant.EPOCH.plusSeconds(60));
+    cache.get(token, this::verify);
+
+    assertEquals(2, verifications.get());
+  }
+
+  @Test
+  void tokenIsVerifiedAgainAfterMaximumAge() {
+    String token = createToken(Instant.EPOCH.plus(Duration.ofHours(1)));
+
+    cache.get(token, this::verify);
+    clock.set(Instant.EPOCH.plus(MAXIMUM_AGE));
+    cache.get(token, this::verify);
+
+    assertEquals(2, verifications.get());
+  }
+
+  @Test
+  void invalidationForcesVerification() {
+    String token = createToken(Instant.EPOCH.plus(Duration.ofHours(1)));
+
+    cache.get(token, this::verify);
+    cache.invalidateAll();
+    cache.get(token, this::verify);
+
+    assertEquals(2, verifications.get());
+  }
+
+  @Test
+  void expiryIsReadFromPayload() {
+    Instant expiry = Instant.ofEpochSecond(1600000000);
+
+    assertEquals(expiry, JwtClaims.readExpiry(createToken(expiry)));
+    assertNull(JwtClaims.readExpiry("no-jwt"));
+  }
+
+  private VerifiedToken verify(String token) {
+    verifications.incrementAndGet();
+    return new VerifiedToken("subject", null);
+  }
+
+  private VerifiedToken reject(String token) {
+    verifications.incrementAndGet();
+    return null;
+  }
+
+  private static String createToken(Instant expiry) {
+    BaseEncoding encoding = BaseEncoding.base64Url().omitPadding();
+    String header = encoding.encode("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8));
+    String payload = encoding.encode(("{\"sub\":\"subject\",\"exp\":" + expiry.getEpochSecond()
+        + "}").getBytes(StandardCharsets.UTF_8));
+    return header + "." + payload + ".signature";
+  }
+}
@@ -0,0 +1,130 @@
+package de.samply.share.broker.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.common.collect.ImmutableMap;
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
+import de.samply.share.broker.testing.TestClock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class InvalidatingCacheTest {
+
+  private static final Duration TIME_TO_LIVE = Duration.ofSeconds(60);
+
+  private InvalidationBus bus;
+  private TestClock clock;
+  private InvalidatingCache<Integer, Integer> cache;
+  private AtomicInteger loads;
+
+  @BeforeEach
+  void setUp() {
+    bus = new InvalidationBus("this-instance");
+    clock = new TestClock(Instant.EPOCH);
+    cache = new InvalidatingCache<>(bus, TIME_TO_LIVE, 10, clock.ticker(), Topic.BANK);
+    loads = new AtomicInteger();
+  }
+
+  @Test
+  void valueIsLoadedOnce() {
+    cache.get(1, this::load);
+    cache.get(1, this::load);
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void changeOfOtherInstanceInvalidates() {
+    cache.get(1, this::load);
+    bus.receive("other-instance|BANK|1");
+    cache.get(1, this::load);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void localChangeInvalidates() {
+    cache.get(1, this::load);
+    bus.publish(Topic.BANK, 1);
+    cache.get(1, this::load);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void ownNotificationIsSkipped() {
+    cache.get(1, this::load);
+    bus.receive("this-instance|BANK|1");
+    cache.get(1, this::load);
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void otherTopicsAndUnknownNotificationsAreIgnored() {
+    cache.get(1, this::load);
+    bus.receive("other-instance|REPLY|1");
+    bus.receive("other-instance|UNKNOWN|1");
+    bus.receive("garbage");
+    cache.get(1, this::load);
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void valueExpiresIfNotificationIsMissed() {
+    cache.get(1, this::load);
+    clock.advance(TIME_TO_LIVE.plusSeconds(1));
+    cache.get(1, this::load);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void nullIsNotCached() {
+    cache.get(1, key -> {
+      loads.incrementAndGet();
+      return null;
+    });
+    cache.get(1, this::load);
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void getIfPresentDoesNotLoad() {
+    assertNull(cache.getIfPresent(1));
+    cache.get(1, this::load);
+
+    assertEquals(Integer.valueOf(10), cache.getIfPresent(1));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void preloadedValuesAreNotLoadedAgain() {
+    assertEquals(2, cache.preload(() -> ImmutableMap.of(1, 10, 2, 20)));
+
+    assertEquals(Integer.valueOf(20), cache.get(2, this::load));
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  void valuesPreloadedDuringInvalidationAreNotCached() {
+    assertEquals(0, cache.preload(() -> {
+      bus.receive("other-instance|BANK|1");
+      return ImmutableMap.of(1, 10);
+    }));
+
+    cache.get(1, this::load);
+    assertEquals(1, loads.get());
+  }
+
+  private Integer load(Integer key) {
+    loads.incrementAndGet();
+    return key * 10;
+  }
+}
@@ -0,0 +1,174 @@
+package de.samply.share.broker.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.jdbc.OpenInquiryIndex.OpenInquiry;
+import de.samply.share.broker.testing.TestClock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OpenInquiryIndexTest {
+
+  private static final Instant NOW = Instant.parse("2021-01-01T12:00:00Z");
+  private static final Instant END_OF_DAY = Instant.parse("2021-01-02T00:00:00Z");
+
+  private InMemoryStore store;
+  private TestClock clock;
+  private OpenInquiryIndex index;
+
+  @BeforeEach
+  void setUp() {
+    store = new InMemoryStore();
+    clock = new TestClock(NOW);
+    index = new OpenInquiryIndex(store, clock);
+  }
+
+  @Test
+  void inquiriesAreListedPerSite() {
+    store.put(new OpenInquiry(3, 1, END_OF_DAY, new int[] {10, 20}));
+    store.put(new OpenInquiry(1, 2, END_OF_DAY, new int[] {10}));
+
+    index.reloadAll();
+
+    assertEquals(Arrays.asList(1, 3), ids(index.getOpenInquiries(10)));
+    assertEquals(Arrays.asList(3), ids(index.getOpenInquiries(20)));
+    assertTrue(index.getOpenInquiries(30).isEmpty());
+    assertEquals(2, index.getOpenInquiries(10).get(0).getRevision());
+  }
+
+  @Test
+  void nothingIsListedBeforeLoading() {
+    store.put(new OpenInquiry(1, 1, END_OF_DAY, new int[] {10}));
+
+    index.reload(1);
+
+    assertFalse(index.isLoaded());
+    assertNull(index.getOpenInquiries(10));
+  }
+
+  @Test
+  void releasedInquiryIsAdded() {
+    index.reloadAll();
+    store.put(new OpenInquiry(1, 1, END_OF_DAY, new int[] {10}));
+
+    index.reload(1);
+
+    assertEquals(Arrays.asList(1), ids(index.getOpenInquiries(10)));
+  }
+
+  @Test
+  void expiredInquiryIsRemoved() {
+    store.put(new OpenInquiry(1, 1, END_OF_DAY, new int[] {10}));
+    index.reloadAll();
+    store.remove(1);
+
+    index.reload(1);
+
+    assertTrue(index.getOpenInquiries(10).isEmpty());
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  void inquiryIsDroppedByTimerOnceExpired() {
+    store.put(new OpenInquiry(1, 1, END_OF_DAY, new int[] {10}));
+    store.put(new OpenInquiry(2, 1, END_OF_DAY.plus(Duration.ofDays(1)), new int[] {10}));
+    index.reloadAll();
+
+    clock.set(END_OF_DAY.minusSeconds(1));
+    index.expireDue();
+    assertEquals(2, index.size());
+
+    clock.set(END_OF_DAY);
+    assertEquals(Arrays.asList(2), ids(index.getOpenInquiries(10)));
+    index.expireDue();
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  void extendedInquiryIsKeptPastItsFormerExpiry() {
+    store.put(new OpenInquiry(1, 1, END_OF_DAY, new int[] {10}));
+    index.reloadAll();
+    store.put(new OpenInquiry(1, 1, END_OF_DAY.plus(Duration.ofDays(1)), new int[] {10}));
+    index.reload(1);
+
+    clock.set(END_OF_DAY.plusSeconds(60));
+    index.expireDue();
+
+    assertEquals(Arrays.asList(1), ids(index.getOpenInquiries(10)));
+  }
+
+  @Test
+  void changeDuringReloadIsNotLost() {
+    store.put(new OpenInquiry(1, 1, END_OF_DAY, new int[] {10}));
+    // the inquiry is released while the other inquiries are read
+    store.duringFetchAll = () -> {
+      store.put(new OpenInquiry(2, 1, END_OF_DAY, new int[] {10}));
+      index.reload(2);
+    };
+
+    index.reloadAll();
+
+    assertEquals(Arrays.asList(1, 2), ids(index.getOpenInquiries(10)));
+  }
+
+  @Test
+  void listenersAreToldAboutReleasedInquiries() {
+    List<Integer> released = new ArrayList<>();
+    index.addListener(inquiry -> released.add(inquiry.getId()));
+    store.put(new OpenInquiry(1, 1, END_OF_DAY, new int[] {10}));
+    index.reloadAll();
+    assertTrue(released.isEmpty());
+
+    store.put(new OpenInquiry(2, 1, END_OF_DAY, new int[] {10}));
+    index.reload(2);
+    index.reload(2);
+    store.put(new OpenInquiry(1, 2, END_OF_DAY, new int[] {10}));
+    store.put(new OpenInquiry(3, 1, END_OF_DAY, new int[] {20}));
+    index.reloadAll();
+
+    assertEquals(Arrays.asList(2, 1, 3), released);
+  }
+
+  private static List<Integer> ids(List<OpenInquiry> inquiries) {
+    return inquiries.stream().map(OpenInquiry::getId).collect(Collectors.toList());
+  }
+
+  private static class InMemoryStore implements OpenInquiryIndex.Store {
+
+    private final Map<Integer, OpenInquiry> inquiries = new ConcurrentHashMap<>();
+    private Runnable duringFetchAll;
+
+    void put(OpenInquiry inquiry) {
+      inquiries.put(inquiry.getId(), inquiry);
+    }
+
+    void remove(int inquiryId) {
+      inquiries.remove(inquiryId);
+    }
+
+    @Override
+    public List<OpenInquiry> fetchAll() {
+      List<OpenInquiry> snapshot = new ArrayList<>(inquiries.values());
+      if (duringFetchAll != null) {
+        duringFetchAll.run();
+      }
+      return snapshot;
+    }
+
+    @Override
+    public OpenInquiry fetch(int inquiryId) {
+      return inquiries.get(inquiryId);
+    }
+  }
+}
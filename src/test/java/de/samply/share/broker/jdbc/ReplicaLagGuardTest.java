@@ -0,0 +1,102 @@
+package de.samply.share.broker.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.jdbc.InvalidationBus.Topic;
+import de.samply.share.broker.testing.TestClock;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReplicaLagGuardTest {
+
+  private static final Duration MAX_LAG = Duration.ofSeconds(10);
+
+  private TestClock clock;
+  private InvalidationBus bus;
+  private Duration replicaLag;
+  private AtomicInteger measurements;
+  private ReplicaLagGuard guard;
+
+  @BeforeEach
+  void setUp() {
+    clock = new TestClock(Instant.EPOCH);
+    bus = new InvalidationBus("this-instance");
+    replicaLag = Duration.ZERO;
+    measurements = new AtomicInteger();
+    guard = new ReplicaLagGuard(() -> {
+      measurements.incrementAndGet();
+      return replicaLag;
+    }, MAX_LAG, clock, bus);
+  }
+
+  @Test
+  void replicaWithinMaximumLagIsUsable() {
+    replicaLag = Duration.ofSeconds(3);
+
+    assertTrue(guard.isReplicaUsable());
+  }
+
+  @Test
+  void laggingReplicaIsNotUsable() {
+    replicaLag = Duration.ofSeconds(30);
+
+    assertFalse(guard.isReplicaUsable());
+  }
+
+  @Test
+  void failedMeasurementMakesReplicaUnusable() {
+    guard = new ReplicaLagGuard(() -> {
+      throw new SQLException("replica down");
+    }, MAX_LAG, clock, bus);
+
+    assertFalse(guard.isReplicaUsable());
+  }
+
+  @Test
+  void lagIsMeasuredOnlyOnceWithinCheckInterval() {
+    guard.isReplicaUsable();
+    clock.set(Instant.EPOCH.plusSeconds(1));
+    guard.isReplicaUsable();
+
+    assertEquals(1, measurements.get());
+  }
+
+  @Test
+  void lagIsMeasuredAgainAfterCheckInterval() {
+    guard.isReplicaUsable();
+    replicaLag = Duration.ofSeconds(30);
+    clock.set(Instant.EPOCH.plusSeconds(6));
+
+    assertFalse(guard.isReplicaUsable());
+    assertEquals(2, measurements.get());
+  }
+
+  @Test
+  void recentReplyIsReadFromPrimary() {
+    bus.publish(Topic.REPLY, 42);
+
+    assertTrue(guard.isRecentlyWritten(Topic.REPLY, 42));
+    assertFalse(guard.isRecentlyWritten(Topic.REPLY, 43));
+  }
+
+  @Test
+  void replyOfOtherInstanceIsReadFromPrimary() {
+    bus.receive("other-instance|REPLY|42");
+
+    assertTrue(guard.isRecentlyWritten(Topic.REPLY, 42));
+  }
+
+  @Test
+  void writeIsNoLongerRecentAfterMaximumLag() {
+    bus.publish(Topic.REPLY, 42);
+    clock.set(Instant.EPOCH.plus(MAX_LAG));
+
+    assertFalse(guard.isRecentlyWritten(Topic.REPLY, 42));
+  }
+}
@@ -0,0 +1,81 @@
+package de.samply.share.broker.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SqlTimingsTest {
+
+  private SqlTimings timings;
+
+  @BeforeEach
+  void setUp() {
+    timings = new SqlTimings();
+  }
+
+  @Test
+  void parameterListsAreCollapsed() {
+    assertEquals("select * from site where id in (?, ...)",
+        SqlTimings.shapeOf("select * from site where id in (?, ?, ?)"));
+    assertEquals("select * from site where id = ?",
+        SqlTimings.shapeOf("select * from site where id = ?"));
+  }
+
+  @Test
+  void statementsAreAggregatedPerCallerAndShape() {
+    timings.record("SiteUtil.fetchSiteById", "select * from site where id = ?",
+        TimeUnit.MILLISECONDS.toNanos(2));
+    timings.record("SiteUtil.fetchSiteById", "select * from site where id = ?",
+        TimeUnit.MILLISECONDS.toNanos(4));
+    timings.record("BankUtil.fetchSites", "select * from bank",
+        TimeUnit.MILLISECONDS.toNanos(10));
+
+    List<SqlTimings.Timing> top = timings.getTopTimings(10);
+
+    assertEquals(2, top.size());
+    assertEquals("BankUtil.fetchSites", top.get(0).getCaller());
+    assertEquals(2, top.get(1).getCount());
+    assertEquals(3.0, top.get(1).getMeanMillis(), 1e-9);
+    assertEquals(4.0, top.get(1).getMaxMillis(), 1e-9);
+  }
+
+  @Test
+  void timingsAreSummedPerCaller() {
+    timings.record("SiteUtil.fetchSites", "select * from site", 1);
+    timings.record("SiteUtil.fetchSites", "select * from site where active", 2);
+
+    List<SqlTimings.Timing> perCaller = timings.getTimingsPerCaller();
+
+    assertEquals(1, perCaller.size());
+    assertEquals(2, perCaller.get(0).getCount());
+  }
+
+  @Test
+  void entriesAreBounded() {
+    for (int i = 0; i < SqlTimings.MAX_ENTRIES + 10; i++) {
+      timings.record("Generated.query", "select " + i, 1);
+    }
+
+    assertEquals(SqlTimings.MAX_ENTRIES + 1, timings.getTopTimings(Integer.MAX_VALUE).size());
+  }
+
+  @Test
+  void callerSkipsJdbcAndGeneratedClasses() {
+    StackTraceElement[] stackTrace = {
+        new StackTraceElement("java.lang.Thread", "getStackTrace", null, 0),
+        new StackTraceElement("de.samply.share.broker.jdbc.SqlTimingListener", "executeEnd",
+            null, 0),
+        new StackTraceElement("org.jooq.impl.AbstractQuery", "execute", null, 0),
+        new StackTraceElement("de.samply.share.broker.model.db.tables.daos.SiteDao",
+            "fetchOneById", null, 0),
+        new StackTraceElement("de.samply.share.broker.utils.db.SiteUtil", "fetchSiteById",
+            null, 0),
+        new StackTraceElement("de.samply.share.broker.rest.Searchbroker", "getInquiry", null, 0)
+    };
+
+    assertEquals("SiteUtil.fetchSiteById", SqlTimingListener.findCaller(stackTrace));
+  }
+}
@@ -0,0 +1,54 @@
+package de.samply.share.broker.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+
+  private static final Instant START = Instant.parse("2021-01-01T00:00:00Z");
+
+  private final TimerWheel wheel = new TimerWheel(Duration.ofMinutes(1), 8, START);
+
+  @Test
+  void deadlineIsReturnedOnceItHasPassed() {
+    wheel.schedule(1, START.plusSeconds(90));
+
+    assertTrue(wheel.advance(START.plusSeconds(60)).isEmpty());
+    assertTrue(wheel.advance(START.plusSeconds(119)).isEmpty());
+    assertEquals(Collections.singletonList(1), wheel.advance(START.plusSeconds(120)));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void deadlineSeveralRoundsAheadWaitsForItsRound() {
+    wheel.schedule(1, START.plus(Duration.ofMinutes(20)));
+
+    assertTrue(wheel.advance(START.plus(Duration.ofMinutes(12))).isEmpty());
+    assertTrue(wheel.advance(START.plus(Duration.ofMinutes(19))).isEmpty());
+    assertEquals(Collections.singletonList(1),
+        wheel.advance(START.plus(Duration.ofMinutes(20))));
+  }
+
+  @Test
+  void longPauseReturnsAllPassedDeadlines() {
+    wheel.schedule(1, START.plus(Duration.ofMinutes(3)));
+    wheel.schedule(2, START.plus(Duration.ofMinutes(30)));
+    wheel.schedule(3, START.plus(Duration.ofHours(2)));
+
+    assertEquals(Arrays.asList(1, 2), wheel.advance(START.plus(Duration.ofHours(1))));
+    assertEquals(1, wheel.size());
+  }
+
+  @Test
+  void pastDeadlineIsReturnedByNextTick() {
+    wheel.schedule(1, START.minusSeconds(3600));
+
+    assertEquals(Collections.singletonList(1), wheel.advance(START.plusSeconds(60)));
+  }
+}
@@ -0,0 +1,74 @@
+package de.samply.share.broker.listener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class WarmUpTest {
+
+  @Test
+  void readyAfterAllStepsHaveRun() {
+    List<String> run = new ArrayList<>();
+    Map<String, WarmUp.Step> steps = new LinkedHashMap<>();
+    steps.put("first", () -> run.add("first"));
+    steps.put("second", () -> run.add("second"));
+    WarmUp warmUp = new WarmUp(steps);
+
+    assertFalse(warmUp.isReady());
+    warmUp.run();
+
+    assertTrue(warmUp.isReady());
+    assertEquals(2, run.size());
+    assertEquals("first", run.get(0));
+    WarmUp.Report report = warmUp.getReport();
+    assertTrue(report.isReady());
+    assertEquals("second", report.getSteps().get(1).getName());
+    assertNull(report.getSteps().get(1).getError());
+  }
+
+  @Test
+  void failingStepDoesNotStopWarmUp() {
+    List<String> run = new ArrayList<>();
+    Map<String, WarmUp.Step> steps = new LinkedHashMap<>();
+    steps.put("failing", () -> {
+      throw new IllegalStateException("database unavailable");
+    });
+    steps.put("next", () -> run.add("next"));
+    WarmUp warmUp = new WarmUp(steps);
+
+    warmUp.run();
+
+    assertTrue(warmUp.isReady());
+    assertEquals(1, run.size());
+    assertEquals("java.lang.IllegalStateException: database unavailable",
+        warmUp.getReport().getSteps().get(0).getError());
+  }
+
+  @Test
+  void notReadyWhileWarmingUpInBackground() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    Map<String, WarmUp.Step> steps = new LinkedHashMap<>();
+    steps.put("slow", () -> release.await(10, TimeUnit.SECONDS));
+    WarmUp warmUp = new WarmUp(steps);
+
+    warmUp.start();
+    assertFalse(warmUp.isReady());
+    assertEquals(0, warmUp.getDurationMillis());
+
+    release.countDown();
+    for (int i = 0; i < 100 && !warmUp.isReady(); i++) {
+      Thread.sleep(50);
+    }
+    assertTrue(warmUp.isReady());
+    assertEquals(1, warmUp.getReport().getSteps().size());
+  }
+}
@@ -0,0 +1,158 @@
+package de.samply.share.broker.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import de.samply.share.essentialquery.EssentialSimpleFieldDto;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import de.samply.share.essentialquery.EssentialSimpleValueDto;
+import de.samply.share.query.enums.SimpleValueCondition;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CriteriaTranslationCacheTest {
+
+  private static final String URN_GENDER = "urn:mdr16:dataelement:23:1";
+  private static final String URN_DIAGNOSIS = "urn:mdr16:dataelement:27:1";
+
+  private CriteriaTranslationCache cache;
+  private AtomicInteger translations;
+
+  @BeforeEach
+  void setUp() {
+    cache = new CriteriaTranslationCache(10);
+    translations = new AtomicInteger();
+  }
+
+  @Test
+  void fieldAndValueOrderDoNotChangeTheKey() {
+    EssentialSimpleQueryDto query1 = createQuery(
+        createField(URN_GENDER, "female"),
+        createField(URN_DIAGNOSIS, "C50", "C34"));
+    EssentialSimpleQueryDto query2 = createQuery(
+        createField(URN_DIAGNOSIS, "C34", "C50"),
+        createField(URN_GENDER, "female"));
+
+    assertEquals(CriteriaTranslationCache.canonicalize(query1),
+        CriteriaTranslationCache.canonicalize(query2));
+  }
+
+  @Test
+  void differentValuesChangeTheKey() {
+    EssentialSimpleQueryDto query1 = createQuery(createField(URN_GENDER, "female"));
+    EssentialSimpleQueryDto query2 = createQuery(createField(URN_GENDER, "male"));
+
+    assertNotEquals(CriteriaTranslationCache.canonicalize(query1),
+        CriteriaTranslationCache.canonicalize(query2));
+  }
+
+  @Test
+  void separatorsWithinValuesDoNotMakeQueriesEqual() {
+    EssentialSimpleQueryDto query1 = createQuery(createField(URN_DIAGNOSIS, "C50", "C34"));
+    EssentialSimpleQueryDto query2 = createQuery(
+        createField(URN_DIAGNOSIS, "C50:null|EQUALS:C34"));
+
+    assertNotEquals(CriteriaTranslationCache.canonicalize(query1),
+        CriteriaTranslationCache.canonicalize(query2));
+  }
+
+  @Test
+  void missingValueDiffersFromTheWordNull() {
+    EssentialSimpleQueryDto query1 = createQuery(createField(URN_GENDER, "null"));
+    EssentialSimpleQueryDto query2 = createQuery(createField(URN_GENDER, (String) null));
+
+    assertNotEquals(CriteriaTranslationCache.canonicalize(query1),
+        CriteriaTranslationCache.canonicalize(query2));
+  }
+
+  @Test
+  void equivalentQueriesAreTranslatedOnce() {
+    CriteriaTranslationCache.Translation first = cache.get(
+        createQuery(createField(URN_GENDER, "female"), createField(URN_DIAGNOSIS, "C50")),
+        this::translate);
+    CriteriaTranslationCache.Translation second = cache.get(
+        createQuery(createField(URN_DIAGNOSIS, "C50"), createField(URN_GENDER, "female")),
+        this::translate);
+
+    assertSame(first, second);
+    assertEquals(1, translations.get());
+    assertEquals(1, cache.getStatistics().getHitCount());
+    assertEquals(1, cache.getStatistics().getMissCount());
+  }
+
+  @Test
+  void theQueryOfTheCallerIsNotReordered() {
+    EssentialSimpleQueryDto query = createQuery(
+        createField(URN_GENDER, "female"),
+        createField(URN_DIAGNOSIS, "C50", "C34"));
+
+    cache.get(query, this::translate);
+    CriteriaTranslationCache.canonicalize(query);
+
+    assertEquals(URN_GENDER, query.getFieldDtos().get(0).getUrn());
+    assertEquals(URN_DIAGNOSIS, query.getFieldDtos().get(1).getUrn());
+    assertEquals("C50", query.getFieldDtos().get(1).getValueDtos().get(0).getValue());
+    assertEquals("C34", query.getFieldDtos().get(1).getValueDtos().get(1).getValue());
+  }
+
+  @Test
+  void concurrentRequestsWaitForTheFirstTranslation() throws Exception {
+    CountDownLatch translating = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    Function<EssentialSimpleQueryDto, CriteriaTranslationCache.Translation> slowTranslator =
+        queryDto -> {
+          translating.countDown();
+          try {
+            finish.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return translate(queryDto);
+        };
+
+    Thread first = new Thread(() -> cache.get(
+        createQuery(createField(URN_GENDER, "female")), slowTranslator));
+    first.start();
+    translating.await();
+    Thread second = new Thread(() -> cache.get(
+        createQuery(createField(URN_GENDER, "female")), slowTranslator));
+    second.start();
+    while (second.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+    finish.countDown();
+    first.join();
+    second.join();
+
+    assertEquals(1, translations.get());
+  }
+
+  private CriteriaTranslationCache.Translation translate(EssentialSimpleQueryDto queryDto) {
+    translations.incrementAndGet();
+    return new CriteriaTranslationCache.Translation("patient", "specimen", null);
+  }
+
+  private static EssentialSimpleQueryDto createQuery(EssentialSimpleFieldDto... fieldDtos) {
+    EssentialSimpleQueryDto queryDto = new EssentialSimpleQueryDto();
+    for (EssentialSimpleFieldDto fieldDto : fieldDtos) {
+      queryDto.getFieldDtos().add(fieldDto);
+    }
+    return queryDto;
+  }
+
+  private static EssentialSimpleFieldDto createField(String urn, String... values) {
+    EssentialSimpleFieldDto fieldDto = new EssentialSimpleFieldDto();
+    fieldDto.setUrn(urn);
+    for (String value : values) {
+      EssentialSimpleValueDto valueDto = new EssentialSimpleValueDto();
+      valueDto.setCondition(SimpleValueCondition.EQUALS);
+      valueDto.setValue(value);
+      fieldDto.getValueDtos().add(valueDto);
+    }
+    return fieldDto;
+  }
+}
@@ -0,0 +1,49 @@
+package de.samply.share.broker.monitoring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EndpointMetricsTest {
+
+  private EndpointMetrics metrics;
+
+  @BeforeEach
+  void setUp() {
+    metrics = new EndpointMetrics("Searchbroker", "getInquiries");
+  }
+
+  @Test
+  void errorsAreCountedByStatusClass() {
+    metrics.record(1, 200);
+    metrics.record(1, 401);
+    metrics.record(1, 500);
+    metrics.record(1, 503);
+
+    assertEquals(4, metrics.getRequestCount());
+    assertEquals(1, metrics.getClientErrorCount());
+    assertEquals(2, metrics.getErrorCount());
+  }
+
+  @Test
+  void timesAreSummedAndMaximumIsKept() {
+    metrics.record(TimeUnit.MILLISECONDS.toNanos(200), 200);
+    metrics.record(TimeUnit.MILLISECONDS.toNanos(50), 200);
+
+    assertEquals(0.25, metrics.getTotalTimeSeconds(), 1e-9);
+    assertEquals(0.2, metrics.getMaxTimeSeconds(), 1e-9);
+  }
+
+  @Test
+  void bucketsAreCumulative() {
+    metrics.record(TimeUnit.MILLISECONDS.toNanos(3), 200);
+    metrics.record(TimeUnit.MILLISECONDS.toNanos(30), 200);
+    metrics.record(TimeUnit.SECONDS.toNanos(20), 200);
+
+    assertArrayEquals(new long[] {1, 1, 1, 2, 2, 2, 2, 2, 2, 2, 2},
+        metrics.getCumulativeBucketCounts());
+  }
+}
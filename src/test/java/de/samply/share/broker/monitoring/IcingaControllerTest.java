@@ -47,4 +47,27 @@ class IcingaControllerTest {
 
     assertTrue(updated);
   }
+
+  @Test
+  void reportOfOtherInstanceWithinMinuteDoesntUpdate() {
+    Clock initialClock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+    controller.recordOtherInstance("0:" + Instant.EPOCH.toEpochMilli());
+    Clock offsetClock = Clock.offset(initialClock, Duration.ofSeconds(59));
+
+    boolean updated = controller.updateBankLastSendInstantIfExpired(offsetClock, 0);
+
+    assertFalse(updated);
+  }
+
+  @Test
+  void olderReportOfOtherInstanceIsIgnored() {
+    Clock initialClock = Clock.fixed(Instant.EPOCH.plusSeconds(120), ZoneOffset.UTC);
+    controller.updateBankLastSendInstantIfExpired(initialClock, 0);
+    controller.recordOtherInstance("0:" + Instant.EPOCH.toEpochMilli());
+    Clock offsetClock = Clock.offset(initialClock, Duration.ofSeconds(59));
+
+    boolean updated = controller.updateBankLastSendInstantIfExpired(offsetClock, 0);
+
+    assertFalse(updated);
+  }
 }
@@ -0,0 +1,65 @@
+package de.samply.share.broker.monitoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.testing.TestClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RollingHistogramTest {
+
+  private static final Duration WINDOW = Duration.ofMinutes(60);
+
+  private TestClock clock;
+  private RollingHistogram histogram;
+
+  @BeforeEach
+  void setUp() {
+    clock = new TestClock(Instant.EPOCH);
+    histogram = new RollingHistogram(WINDOW, 12, clock);
+  }
+
+  @Test
+  void emptyHistogramHasNoPercentile() {
+    assertEquals(0, histogram.getCount());
+    assertNull(histogram.getPercentile(0.5));
+  }
+
+  @Test
+  void percentilesAreAccurateToTenPercent() {
+    for (int seconds = 1; seconds <= 100; seconds++) {
+      histogram.record(Duration.ofSeconds(seconds));
+    }
+
+    assertEquals(100, histogram.getCount());
+    assertWithinTenPercent(50_000, histogram.getPercentile(0.5).toMillis());
+    assertWithinTenPercent(95_000, histogram.getPercentile(0.95).toMillis());
+  }
+
+  @Test
+  void durationsLeaveTheWindow() {
+    histogram.record(Duration.ofSeconds(10));
+    clock.set(Instant.EPOCH.plus(Duration.ofMinutes(30)));
+    histogram.record(Duration.ofSeconds(20));
+
+    assertEquals(2, histogram.getCount());
+
+    clock.set(Instant.EPOCH.plus(WINDOW).plusSeconds(1));
+
+    assertEquals(1, histogram.getCount());
+    assertWithinTenPercent(20_000, histogram.getPercentile(0.5).toMillis());
+
+    clock.set(Instant.EPOCH.plus(WINDOW.multipliedBy(2)));
+
+    assertEquals(0, histogram.getCount());
+  }
+
+  private static void assertWithinTenPercent(long expected, long actual) {
+    assertTrue(actual >= expected && actual <= expected * 1.1,
+        "expected about " + expected + " but was " + actual);
+  }
+}
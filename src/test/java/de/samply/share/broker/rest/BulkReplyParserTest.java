@@ -0,0 +1,82 @@
+package de.samply.share.broker.rest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonParseException;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BulkReplyParserTest {
+
+  private static final String REPLY = "{\"site\": \"other\"}";
+
+  private final BulkReplyParser parser = new BulkReplyParser(3);
+
+  @Test
+  void validRepliesAreRewrittenForTheSite() {
+    List<BulkReplyParser.Item> items = parse("[{\"inquiryId\": 1, \"reply\": " + REPLY + "},"
+        + "{\"inquiryId\": 2, \"reply\": \"" + REPLY.replace("\"", "\\\"") + "\"}]");
+
+    assertEquals(2, items.size());
+    for (BulkReplyParser.Item item : items) {
+      assertTrue(item.isValid());
+      assertTrue(item.getContent().contains("\"site\":\"Site A\""), item.getContent());
+    }
+    assertEquals(1, (int) items.get(0).getInquiryId());
+    assertEquals(1, items.get(1).getIndex());
+  }
+
+  @Test
+  void invalidRepliesAreRejectedOneByOne() {
+    List<BulkReplyParser.Item> items = parse("[42, {\"reply\": " + REPLY + "},"
+        + "{\"inquiryId\": 3, \"reply\": \"\"}, {\"inquiryId\": 4, \"reply\": " + REPLY + "}]",
+        new BulkReplyParser(10));
+
+    assertEquals(4, items.size());
+    assertEquals(400, (int) items.get(0).getStatus());
+    assertEquals(400, (int) items.get(1).getStatus());
+    assertNull(items.get(1).getInquiryId());
+    assertEquals("Empty reply", items.get(2).getError());
+    assertTrue(items.get(3).isValid());
+  }
+
+  @Test
+  void replyThatIsNoReplyIsRejected() {
+    List<BulkReplyParser.Item> items = parse("[{\"inquiryId\": 1, \"reply\": [1, 2]}]");
+
+    assertEquals(400, (int) items.get(0).getStatus());
+    assertTrue(items.get(0).getError().startsWith("Invalid reply"));
+  }
+
+  @Test
+  void laterReplyToTheSameInquiryWins() {
+    List<BulkReplyParser.Item> items = parse("[{\"inquiryId\": 1, \"reply\": " + REPLY + "},"
+        + "{\"inquiryId\": 1, \"reply\": " + REPLY + "}]");
+
+    assertEquals(409, (int) items.get(0).getStatus());
+    assertTrue(items.get(1).isValid());
+  }
+
+  @Test
+  void tooManyRepliesAreRefused() {
+    assertThrows(TooManyRepliesException.class, () -> parse("[{}, {}, {}, {}]"));
+  }
+
+  @Test
+  void bodyThatIsNoArrayIsRefused() {
+    assertThrows(JsonParseException.class, () -> parse("{\"inquiryId\": 1}"));
+    assertThrows(JsonParseException.class, () -> parse("[{\"inquiryId\": 1}"));
+  }
+
+  private List<BulkReplyParser.Item> parse(String body) {
+    return parse(body, parser);
+  }
+
+  private static List<BulkReplyParser.Item> parse(String body, BulkReplyParser parser) {
+    return parser.parse(new StringReader(body), "Site A");
+  }
+}
@@ -0,0 +1,282 @@
+package de.samply.share.broker.rest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.ws.rs.core.Response.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class InquiryChannelTest {
+
+  private static final int BANK_ID = 1;
+  private static final int SITE_ID = 10;
+  private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+
+  private InMemoryBackend backend;
+  private InquiryChannel channel;
+
+  @BeforeEach
+  void setUp() {
+    backend = new InMemoryBackend();
+    channel = new InquiryChannel(backend, Runnable::run, Clock.fixed(START, ZoneOffset.UTC));
+  }
+
+  @Test
+  void resumePushesTheInquiriesTheSiteDoesNotHave() {
+    backend.openInquiries.put(1, 1);
+    backend.openInquiries.put(2, 2);
+    backend.openInquiries.put(3, 1);
+    RecordingPeer peer = connect(SITE_ID);
+
+    receive(peer, "{\"type\": \"resume\", \"known\": {\"1\": 1, \"2\": 1}}");
+
+    assertEquals("resumed", peer.messages.get(0).get("type").getAsString());
+    assertEquals(2, peer.messages.get(0).get("queued").getAsInt());
+    assertEquals(Arrays.asList("2/2", "3/1"), peer.pushed());
+    assertEquals("<BulkInquiry>3</BulkInquiry>",
+        peer.messages.get(2).get("inquiry").getAsString());
+  }
+
+  @Test
+  void releasedInquiryIsPushedToTheResumedSitesItHasBeenSentTo() {
+    RecordingPeer peer = connect(SITE_ID);
+    RecordingPeer otherSite = connect(20);
+    RecordingPeer notResumed = connect(SITE_ID);
+    receive(peer, "{\"type\": \"resume\"}");
+    receive(otherSite, "{\"type\": \"resume\"}");
+
+    channel.released(5, 1, new int[] {SITE_ID});
+    channel.released(5, 1, new int[] {SITE_ID});
+
+    assertEquals(Arrays.asList("5/1"), peer.pushed());
+    assertTrue(otherSite.pushed().isEmpty());
+    assertTrue(notResumed.messages.isEmpty());
+  }
+
+  @Test
+  void pushesWaitForAcks() {
+    for (int inquiryId = 1; inquiryId <= InquiryChannel.MAX_IN_FLIGHT + 2; inquiryId++) {
+      backend.openInquiries.put(inquiryId, 1);
+    }
+    RecordingPeer peer = connect(SITE_ID);
+    receive(peer, "{\"type\": \"resume\"}");
+    assertEquals(InquiryChannel.MAX_IN_FLIGHT, peer.pushed().size());
+
+    receive(peer, "{\"type\": \"ack\", \"inquiryId\": 1, \"revision\": 1}");
+    receive(peer, "{\"type\": \"ack\", \"inquiryId\": 1, \"revision\": 1}");
+
+    assertEquals(InquiryChannel.MAX_IN_FLIGHT + 1, peer.pushed().size());
+    assertEquals(Arrays.asList(1), backend.retrieved);
+  }
+
+  @Test
+  void inquiryNotAckedIsPushedAgainAfterReconnecting() {
+    backend.openInquiries.put(1, 1);
+    backend.openInquiries.put(2, 1);
+    RecordingPeer peer = connect(SITE_ID);
+    receive(peer, "{\"type\": \"resume\"}");
+    receive(peer, "{\"type\": \"ack\", \"inquiryId\": 1, \"revision\": 1}");
+    channel.close(peer.connection);
+
+    RecordingPeer reconnected = connect(SITE_ID);
+    receive(reconnected, "{\"type\": \"resume\", \"known\": {\"1\": 1}}");
+
+    assertEquals(Arrays.asList("2/1"), reconnected.pushed());
+    assertEquals(1, channel.getConnectionCount());
+  }
+
+  @Test
+  void replyIsAnsweredWithItsStatus() {
+    RecordingPeer peer = connect(SITE_ID);
+
+    receive(peer, "{\"type\": \"reply\", \"inquiryId\": 7, \"reply\": {}}");
+    receive(peer, "{\"type\": \"reply\", \"inquiryId\": 8, \"reply\": {}}");
+
+    JsonObject stored = peer.messages.get(0);
+    assertEquals("replied", stored.get("type").getAsString());
+    assertEquals(7, stored.get("inquiryId").getAsInt());
+    assertEquals(200, stored.get("status").getAsInt());
+    JsonObject rejected = peer.messages.get(1);
+    assertEquals(404, rejected.get("status").getAsInt());
+    assertEquals("Not sent", rejected.get("error").getAsString());
+  }
+
+  @Test
+  void invalidMessagesAreAnsweredWithAnError() {
+    RecordingPeer peer = connect(SITE_ID);
+
+    receive(peer, "not json");
+    receive(peer, "{\"type\": \"subscribe\"}");
+    receive(peer, "{\"type\": \"ack\"}");
+
+    assertEquals(3, peer.messages.size());
+    for (JsonObject message : peer.messages) {
+      assertEquals("error", message.get("type").getAsString());
+    }
+  }
+
+  @Test
+  void connectionIsClosedIfSendingFails() {
+    backend.openInquiries.put(1, 1);
+    RecordingPeer peer = connect(SITE_ID);
+    peer.failing = true;
+
+    receive(peer, "{\"type\": \"resume\"}");
+
+    assertTrue(peer.closed);
+    assertEquals(0, channel.getConnectionCount());
+  }
+
+  @Test
+  void slowSiteOnlyHoldsUpItsOwnMessages() {
+    backend.openInquiries.put(1, 1);
+    backend.openInquiries.put(2, 1);
+    RecordingPeer slow = connect(SITE_ID);
+    RecordingPeer other = connect(SITE_ID);
+    slow.holding = true;
+
+    receive(slow, "{\"type\": \"resume\"}");
+    receive(other, "{\"type\": \"resume\"}");
+
+    assertEquals(1, slow.messages.size());
+    assertEquals(Arrays.asList("1/1", "2/1"), other.pushed());
+
+    slow.holding = false;
+    slow.complete();
+    assertEquals(Arrays.asList("1/1", "2/1"), slow.pushed());
+  }
+
+  @Test
+  void inquiryNotAckedInTimeIsPushedAgain() {
+    backend.openInquiries.put(1, 1);
+    backend.openInquiries.put(2, 1);
+    RecordingPeer peer = connect(SITE_ID);
+    receive(peer, "{\"type\": \"resume\"}");
+    receive(peer, "{\"type\": \"ack\", \"inquiryId\": 1, \"revision\": 1}");
+
+    channel.expireInFlight(START.plus(InquiryChannel.ACK_TIMEOUT).minusSeconds(1));
+    assertEquals(Arrays.asList("1/1", "2/1"), peer.pushed());
+
+    channel.expireInFlight(START.plus(InquiryChannel.ACK_TIMEOUT));
+    assertEquals(Arrays.asList("1/1", "2/1", "2/1"), peer.pushed());
+  }
+
+  @Test
+  void siteNotAckingIsDisconnected() {
+    backend.openInquiries.put(1, 1);
+    RecordingPeer peer = connect(SITE_ID);
+    receive(peer, "{\"type\": \"resume\"}");
+
+    Instant now = START;
+    for (int push = 1; push <= InquiryChannel.MAX_PUSHES; push++) {
+      now = now.plus(InquiryChannel.ACK_TIMEOUT);
+      channel.expireInFlight(now);
+    }
+
+    assertEquals(InquiryChannel.MAX_PUSHES, peer.pushed().size());
+    assertTrue(peer.closed);
+    assertEquals(0, channel.getConnectionCount());
+  }
+
+  private RecordingPeer connect(int siteId) {
+    RecordingPeer peer = new RecordingPeer();
+    peer.connection = new InquiryChannel.Connection(BANK_ID, siteId, peer, null, "", "QUERY",
+        null);
+    channel.open(peer.connection);
+    return peer;
+  }
+
+  private void receive(RecordingPeer peer, String message) {
+    channel.receive(peer.connection, message);
+  }
+
+  private static class RecordingPeer implements InquiryChannel.Peer {
+
+    private final List<JsonObject> messages = new ArrayList<>();
+    private InquiryChannel.Connection connection;
+    private boolean failing;
+    private boolean holding;
+    private Consumer<Throwable> pending;
+    private boolean closed;
+
+    @Override
+    public void send(String text, Consumer<Throwable> completion) {
+      if (failing) {
+        completion.accept(new IOException("Broken pipe"));
+        return;
+      }
+      messages.add(JsonParser.parseString(text).getAsJsonObject());
+      if (holding) {
+        pending = completion;
+      } else {
+        completion.accept(null);
+      }
+    }
+
+    void complete() {
+      Consumer<Throwable> completion = pending;
+      pending = null;
+      completion.accept(null);
+    }
+
+    @Override
+    public void close(String reason) {
+      closed = true;
+    }
+
+    List<String> pushed() {
+      return messages.stream()
+          .filter(message -> message.get("type").getAsString().equals("inquiry"))
+          .map(message -> message.get("inquiryId").getAsInt() + "/"
+              + message.get("revision").getAsInt())
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static class InMemoryBackend implements InquiryChannel.Backend {
+
+    private final SortedMap<Integer, Integer> openInquiries = new TreeMap<>();
+    private final List<Integer> retrieved = new ArrayList<>();
+
+    @Override
+    public SortedMap<Integer, Integer> fetchOpenInquiryRevisions(int siteId) {
+      return siteId == SITE_ID ? new TreeMap<>(openInquiries) : new TreeMap<>();
+    }
+
+    @Override
+    public String fetchInquiry(InquiryChannel.Connection connection, int inquiryId) {
+      return "<BulkInquiry>" + inquiryId + "</BulkInquiry>";
+    }
+
+    @Override
+    public void recordRetrieval(int siteId, int inquiryId) {
+      retrieved.add(inquiryId);
+    }
+
+    @Override
+    public BulkReplyParser.Item saveReply(int bankId, JsonObject message) {
+      int inquiryId = message.get("inquiryId").getAsInt();
+      BulkReplyParser.Item item = new BulkReplyParser.Item(0, inquiryId);
+      if (inquiryId == 7) {
+        item.stored();
+      } else {
+        item.reject(Status.NOT_FOUND, "Not sent");
+      }
+      return item;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package de.samply.share.broker.rest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class InquiryHandlerTest {
+
+  private static final int SITE_ID = 10;
+  private static final URI BASE_URI = URI.create("http://broker/rest/");
+  private static final String EMPTY_DOCUMENT =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+          + "<BulkInquiries></BulkInquiries>";
+
+  private InMemoryInquiryHandler handler;
+
+  @BeforeEach
+  void setUp() {
+    handler = new InMemoryInquiryHandler();
+  }
+
+  @Test
+  void siteWithoutOpenInquiriesGetsEmptyDocument() throws IOException {
+    assertEquals(EMPTY_DOCUMENT, write(SITE_ID));
+    assertTrue(handler.firstRetrievals.isEmpty());
+  }
+
+  @Test
+  void unapprovedSiteGetsEmptyDocument() throws IOException {
+    handler.openInquiries.put(1, 1);
+
+    assertEquals(EMPTY_DOCUMENT, write(null));
+    assertEquals(0, handler.markRetrievedCalls);
+    assertTrue(handler.firstRetrievals.isEmpty());
+  }
+
+  @Test
+  void inquiryThatCannotBeSerializedIsLeftOut() throws IOException {
+    handler.openInquiries.put(1, 1);
+    handler.openInquiries.put(2, 1);
+    handler.openInquiries.put(3, 2);
+    handler.unserializable.add(2);
+
+    String document = write(SITE_ID);
+
+    assertEquals(EMPTY_DOCUMENT.replace("</BulkInquiries>",
+        "<BulkInquiry>1</BulkInquiry><BulkInquiry>3</BulkInquiry></BulkInquiries>"), document);
+    assertEquals(Arrays.asList(1, 3), handler.marked);
+    assertEquals(Arrays.asList(1, 3), handler.firstRetrievals);
+  }
+
+  @Test
+  void onlyFirstRetrievalsAreRecorded() throws IOException {
+    handler.openInquiries.put(1, 1);
+    write(SITE_ID);
+    handler.openInquiries.put(2, 1);
+
+    write(SITE_ID);
+
+    assertEquals(Arrays.asList(1, 1, 2), handler.marked);
+    assertEquals(Arrays.asList(1, 2), handler.firstRetrievals);
+  }
+
+  private String write(Integer siteId) throws IOException {
+    StringWriter writer = new StringWriter();
+    handler.writeBulkInquiries(siteId, BASE_URI, "", "QUERY", null, writer);
+    return writer.toString();
+  }
+
+  /**
+   * Keeps the inquiries of one site in memory, and marks the retrievals the way the database
+   * does: only the inquiries retrieved for the first time are returned by
+   * {@link #markRetrieved}. The creation time of inquiry n is n milliseconds after the epoch.
+   */
+  private static class InMemoryInquiryHandler extends InquiryHandler {
+
+    private final SortedMap<Integer, Integer> openInquiries = new TreeMap<>();
+    private final Set<Integer> unserializable = new HashSet<>();
+    private final Set<Integer> retrieved = new HashSet<>();
+    private final List<Integer> marked = new ArrayList<>();
+    private final List<Integer> firstRetrievals = new ArrayList<>();
+    private int markRetrievedCalls;
+
+    @Override
+    SortedMap<Integer, Integer> fetchOpenInquiryRevisions(int siteId) {
+      return siteId == SITE_ID ? new TreeMap<>(openInquiries) : new TreeMap<>();
+    }
+
+    @Override
+    String getBulkInquiry(int inquiryId, URI baseUri, String userAgentHeader,
+        String queryLanguage, String xmlNamespace) {
+      return unserializable.contains(inquiryId) ? null
+          : "<BulkInquiry>" + inquiryId + "</BulkInquiry>";
+    }
+
+    @Override
+    Map<Integer, Timestamp> markRetrieved(int siteId, List<Integer> inquiryIds,
+        Timestamp retrievedAt) {
+      markRetrievedCalls++;
+      marked.addAll(inquiryIds);
+      Map<Integer, Timestamp> created = new LinkedHashMap<>();
+      for (int inquiryId : inquiryIds) {
+        if (retrieved.add(inquiryId)) {
+          created.put(inquiryId, new Timestamp(inquiryId));
+        }
+      }
+      return created;
+    }
+
+    @Override
+    void recordFirstRetrieval(int siteId, Timestamp created, Timestamp retrievedAt) {
+      firstRetrievals.add((int) created.getTime());
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package de.samply.share.broker.statistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.samply.share.essentialquery.EssentialSimpleFieldDto;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import de.samply.share.essentialquery.EssentialSimpleValueDto;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CriteriaUsageSketchesTest {
+
+  private static final String GENDER = "urn:mdr16:dataelement:23:1";
+  private static final String AGE = "urn:mdr16:dataelement:14:1";
+  private static final String DIAGNOSIS = "urn:mdr16:dataelement:27:1";
+
+  private InMemoryStore store;
+  private CriteriaUsageSketches sketches;
+
+  @BeforeEach
+  void setUp() {
+    store = new InMemoryStore();
+    sketches = new CriteriaUsageSketches(store);
+  }
+
+  @Test
+  void fieldsValuesAndPairsAreCounted() {
+    sketches.record(query(field(GENDER, "female"), field(AGE, "50")));
+    sketches.record(query(field(GENDER, "female"), field(DIAGNOSIS, "C50")));
+
+    assertEquals(GENDER, sketches.getTop(CriteriaUsageSketches.FIELDS, 1).get(0).getKey());
+    assertEquals(2, sketches.getTop(CriteriaUsageSketches.FIELDS, 1).get(0).getCount());
+    assertEquals(GENDER + " = female",
+        sketches.getTop(CriteriaUsageSketches.VALUES, 1).get(0).getKey());
+    assertEquals(2, sketches.getTotal(CriteriaUsageSketches.PAIRS));
+    assertEquals(4, sketches.getTotal(CriteriaUsageSketches.FIELDS));
+  }
+
+  @Test
+  void pairsAreCountedOncePerQueryInFixedOrder() {
+    sketches.record(query(field(GENDER, "female"), field(AGE, "50"), field(GENDER, "male")));
+
+    assertEquals(1, sketches.getTotal(CriteriaUsageSketches.PAIRS));
+    assertEquals(AGE + " & " + GENDER,
+        sketches.getTop(CriteriaUsageSketches.PAIRS, 1).get(0).getKey());
+  }
+
+  @Test
+  void pairsAreCountedForLimitedNumberOfFields() {
+    List<EssentialSimpleFieldDto> fields = new ArrayList<>();
+    for (int i = 0; i < CriteriaUsageSketches.MAX_PAIRED_FIELDS + 10; i++) {
+      fields.add(field("urn:" + i, "x"));
+    }
+
+    sketches.record(query(fields.toArray(new EssentialSimpleFieldDto[0])));
+
+    int paired = CriteriaUsageSketches.MAX_PAIRED_FIELDS;
+    assertEquals(paired * (paired - 1) / 2, sketches.getTotal(CriteriaUsageSketches.PAIRS));
+  }
+
+  @Test
+  void checkpointAddsCountsToStoredCounts() {
+    CriteriaUsageSketches otherInstance = new CriteriaUsageSketches(store);
+    otherInstance.record(query(field(GENDER, "female")));
+    otherInstance.checkpoint();
+
+    sketches.record(query(field(GENDER, "male")));
+    sketches.checkpoint();
+
+    CriteriaUsageSketches restarted = new CriteriaUsageSketches(store);
+    restarted.load();
+    assertEquals(2, restarted.getTop(CriteriaUsageSketches.FIELDS, 1).get(0).getCount());
+    assertEquals(2, restarted.getTotal(CriteriaUsageSketches.VALUES));
+  }
+
+  @Test
+  void countsAreKeptIfCheckpointFails() {
+    sketches.record(query(field(GENDER, "female")));
+    store.failing = true;
+    sketches.checkpoint();
+    sketches.record(query(field(GENDER, "male")));
+    store.failing = false;
+    sketches.checkpoint();
+
+    CriteriaUsageSketches restarted = new CriteriaUsageSketches(store);
+    restarted.load();
+    assertEquals(2, restarted.getTotal(CriteriaUsageSketches.FIELDS));
+  }
+
+  private static EssentialSimpleQueryDto query(EssentialSimpleFieldDto... fields) {
+    EssentialSimpleQueryDto queryDto = new EssentialSimpleQueryDto();
+    for (EssentialSimpleFieldDto field : fields) {
+      queryDto.getFieldDtos().add(field);
+    }
+    return queryDto;
+  }
+
+  private static EssentialSimpleFieldDto field(String urn, String value) {
+    EssentialSimpleValueDto valueDto = new EssentialSimpleValueDto();
+    valueDto.setValue(value);
+    EssentialSimpleFieldDto fieldDto = new EssentialSimpleFieldDto();
+    fieldDto.setUrn(urn);
+    fieldDto.setValueDtos(new ArrayList<>(Collections.singletonList(valueDto)));
+    return fieldDto;
+  }
+
+  private static class InMemoryStore implements CriteriaUsageSketches.Store {
+
+    private Map<String, String> states = new HashMap<>();
+    private boolean failing;
+
+    @Override
+    public Map<String, String> load() {
+      return new HashMap<>(states);
+    }
+
+    @Override
+    public void update(UnaryOperator<Map<String, String>> update) {
+      if (failing) {
+        throw new IllegalStateException("database unavailable");
+      }
+      states = new HashMap<>(update.apply(new HashMap<>(states)));
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package de.samply.share.broker.statistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class CsvStatisticsWriterTest {
+
+  @Test
+  void tablesAreWrittenWithHeaders() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try (CsvStatisticsWriter writer = new CsvStatisticsWriter(output)) {
+      writer.startSheet("Queries", "day", "fields", "queries");
+      writer.writeRow(LocalDate.of(2021, 1, 1), 2, 5);
+      writer.startSheet("MdrFields", "day", "urn", "uses");
+      writer.writeRow(LocalDate.of(2021, 1, 1), "urn:mdr16:dataelement:23:1", 3);
+    }
+
+    assertEquals("day,fields,queries\r\n"
+            + "2021-01-01,2,5\r\n"
+            + "\r\n"
+            + "day,urn,uses\r\n"
+            + "2021-01-01,urn:mdr16:dataelement:23:1,3\r\n",
+        new String(output.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void valuesWithSeparatorsAreQuoted() {
+    assertEquals("plain", CsvStatisticsWriter.escape("plain"));
+    assertEquals("\"a,b\"", CsvStatisticsWriter.escape("a,b"));
+    assertEquals("\"say \"\"hi\"\"\"", CsvStatisticsWriter.escape("say \"hi\""));
+    assertEquals("\"two\nlines\"", CsvStatisticsWriter.escape("two\nlines"));
+  }
+
+  @Test
+  void formulasAreNotEvaluated() {
+    assertEquals("'=HYPERLINK(\"x\")", CsvStatisticsWriter.neutralize("=HYPERLINK(\"x\")"));
+    assertEquals("'@SUM(A1)", CsvStatisticsWriter.neutralize("@SUM(A1)"));
+    assertEquals("-5", CsvStatisticsWriter.neutralize("-5"));
+    assertEquals("female", CsvStatisticsWriter.neutralize("female"));
+    assertEquals("", CsvStatisticsWriter.neutralize(""));
+  }
+
+  @Test
+  void missingValuesAreEmpty() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try (CsvStatisticsWriter writer = new CsvStatisticsWriter(output)) {
+      writer.writeRow("a", null, "c");
+    }
+
+    assertEquals("a,,c\r\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,94 @@
+package de.samply.share.broker.statistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.statistics.SpaceSavingSketch.Counter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SpaceSavingSketchTest {
+
+  @Test
+  void keysAreCountedExactlyWithinCapacity() {
+    SpaceSavingSketch sketch = new SpaceSavingSketch(3);
+
+    add(sketch, "a", 5);
+    add(sketch, "b", 3);
+    add(sketch, "c", 1);
+
+    List<Counter> top = sketch.getTop(2);
+    assertEquals(2, top.size());
+    assertEquals("a", top.get(0).getKey());
+    assertEquals(5, top.get(0).getCount());
+    assertEquals(0, top.get(0).getError());
+    assertEquals("b", top.get(1).getKey());
+    assertEquals(9, sketch.getTotal());
+  }
+
+  @Test
+  void newKeyReplacesLeastFrequentKey() {
+    SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+    add(sketch, "a", 5);
+    add(sketch, "b", 2);
+
+    sketch.add("c");
+
+    List<Counter> top = sketch.getTop(10);
+    assertEquals(2, top.size());
+    assertEquals("a", top.get(0).getKey());
+    assertEquals("c", top.get(1).getKey());
+    assertEquals(3, top.get(1).getCount());
+    assertEquals(2, top.get(1).getError());
+  }
+
+  @Test
+  void heavyHittersAreFoundInLongTail() {
+    SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+    for (int i = 0; i < 1000; i++) {
+      sketch.add("rare" + i);
+      if (i % 4 == 0) {
+        sketch.add("frequent");
+      }
+    }
+
+    Counter top = sketch.getTop(1).get(0);
+    assertEquals("frequent", top.getKey());
+    assertTrue(top.getCount() - top.getError() <= 250);
+    assertTrue(top.getCount() >= 250);
+  }
+
+  @Test
+  void mergedSketchAddsCounts() {
+    SpaceSavingSketch first = new SpaceSavingSketch(10);
+    add(first, "a", 2);
+    SpaceSavingSketch second = new SpaceSavingSketch(10);
+    add(second, "a", 3);
+    add(second, "b", 1);
+
+    first.merge(second);
+
+    assertEquals(5, first.getTop(1).get(0).getCount());
+    assertEquals(6, first.getTotal());
+  }
+
+  @Test
+  void restoredSketchEqualsOriginal() {
+    SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+    add(sketch, "a", 2);
+    add(sketch, "b", 1);
+
+    SpaceSavingSketch restored = SpaceSavingSketch.restore(10, sketch.getTotal(),
+        sketch.getCounters());
+
+    assertEquals(3, restored.getTotal());
+    assertEquals("a", restored.getTop(1).get(0).getKey());
+    assertEquals(2, restored.getTop(1).get(0).getCount());
+  }
+
+  private static void add(SpaceSavingSketch sketch, String key, int times) {
+    for (int i = 0; i < times; i++) {
+      sketch.add(key);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package de.samply.share.broker.statistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.statistics.StatisticsRecorder.RecordedQuery;
+import de.samply.share.broker.testing.TestClock;
+import de.samply.share.essentialquery.EssentialSimpleQueryDto;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StatisticsRecorderTest {
+
+  private static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+
+  private TestClock clock;
+  private List<List<RecordedQuery>> batches;
+
+  @BeforeEach
+  void setUp() {
+    clock = new TestClock(NOW);
+    batches = new ArrayList<>();
+  }
+
+  @Test
+  void queuedStatisticsAreWrittenInBatches() {
+    StatisticsRecorder recorder = new StatisticsRecorder(batches::add, 1000, clock);
+    for (int i = 0; i < StatisticsRecorder.BATCH_SIZE + 1; i++) {
+      recorder.record(new EssentialSimpleQueryDto(), i);
+    }
+
+    recorder.flush();
+
+    assertEquals(2, batches.size());
+    assertEquals(StatisticsRecorder.BATCH_SIZE, batches.get(0).size());
+    assertEquals(Integer.valueOf(0), batches.get(0).get(0).getInquiryId());
+    assertEquals(StatisticsRecorder.BATCH_SIZE + 1, recorder.getWritten());
+  }
+
+  @Test
+  void statisticsAreDroppedIfQueueIsFull() {
+    StatisticsRecorder recorder = new StatisticsRecorder(batches::add, 2, clock);
+
+    assertTrue(recorder.record(new EssentialSimpleQueryDto(), 1));
+    assertTrue(recorder.record(new EssentialSimpleQueryDto(), 2));
+    assertFalse(recorder.record(new EssentialSimpleQueryDto(), 3));
+
+    assertEquals(1, recorder.getDroppedQueueFull());
+    assertEquals(2, recorder.getQueueSize());
+  }
+
+  @Test
+  void failedBatchIsCountedAsDropped() {
+    StatisticsRecorder recorder = new StatisticsRecorder(batch -> {
+      throw new IllegalStateException("database unavailable");
+    }, 10, clock);
+    recorder.record(new EssentialSimpleQueryDto(), 1);
+    recorder.record(new EssentialSimpleQueryDto(), 2);
+
+    recorder.flush();
+
+    assertEquals(2, recorder.getDroppedWriteFailed());
+    assertEquals(0, recorder.getWritten());
+  }
+
+  @Test
+  void lagIsTimeOldestStatisticsWaited() {
+    StatisticsRecorder recorder = new StatisticsRecorder(batches::add, 10, clock);
+    recorder.record(new EssentialSimpleQueryDto(), 1);
+    clock.set(NOW.plusMillis(1500));
+    recorder.record(new EssentialSimpleQueryDto(), 2);
+    clock.set(NOW.plusMillis(2000));
+
+    recorder.flush();
+
+    assertEquals(2000, recorder.getLagMillis());
+    assertEquals(Instant.parse("2021-01-01T00:00:00Z"), batches.get(0).get(0).getRecordedAt());
+  }
+
+  @Test
+  void stopWritesQueuedStatistics() {
+    List<Integer> inquiryIds = new ArrayList<>();
+    StatisticsRecorder recorder = new StatisticsRecorder(batch -> inquiryIds.addAll(
+        batch.stream().map(RecordedQuery::getInquiryId).collect(Collectors.toList())),
+        1000, clock);
+    recorder.start();
+    for (int i = 0; i < 500; i++) {
+      recorder.record(new EssentialSimpleQueryDto(), i);
+    }
+
+    recorder.stop();
+
+    assertEquals(500, inquiryIds.size());
+    assertEquals(Integer.valueOf(499), inquiryIds.get(499));
+    assertEquals(0, recorder.getQueueSize());
+  }
+}
@@ -0,0 +1,102 @@
+package de.samply.share.broker.statistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class StatisticsRollupTest {
+
+  private static final LocalDate DAY = LocalDate.of(2021, 1, 1);
+  private static final String GENDER = "urn:mdr16:dataelement:23:1";
+  private static final String AGE = "urn:mdr16:dataelement:14:1";
+
+  @Test
+  void queriesAreCountedPerDayAndFieldCount() {
+    StatisticsRollup rollup = new StatisticsRollup();
+
+    rollup.addQuery(DAY, 2);
+    rollup.addQuery(DAY, 2);
+    rollup.addQuery(DAY, 1);
+    rollup.addQuery(DAY.plusDays(1), 2);
+
+    assertEquals(Integer.valueOf(2), rollup.getQueriesByFieldCount().get(DAY, 2));
+    assertEquals(Integer.valueOf(1), rollup.getQueriesByFieldCount().get(DAY, 1));
+    assertEquals(Integer.valueOf(1), rollup.getQueriesByFieldCount().get(DAY.plusDays(1), 2));
+  }
+
+  @Test
+  void fieldsAndValuesAreCountedPerUrn() {
+    StatisticsRollup rollup = new StatisticsRollup();
+
+    rollup.addField(DAY, GENDER);
+    rollup.addValue(DAY, GENDER, "male");
+    rollup.addField(DAY, GENDER);
+    rollup.addValue(DAY, GENDER, "male");
+    rollup.addValue(DAY, GENDER, "female");
+    rollup.addField(DAY, AGE);
+    rollup.addValue(DAY, AGE, "male");
+
+    assertEquals(Integer.valueOf(2), rollup.getFields().get(DAY, GENDER));
+    assertEquals(Integer.valueOf(1), rollup.getFields().get(DAY, AGE));
+    assertEquals(Integer.valueOf(2),
+        rollup.getValues().get(DAY, new SimpleImmutableEntry<>(GENDER, "male")));
+    assertEquals(Integer.valueOf(1),
+        rollup.getValues().get(DAY, new SimpleImmutableEntry<>(AGE, "male")));
+  }
+
+  @Test
+  void countsAreOrderedByDayAndKey() {
+    StatisticsRollup rollup = new StatisticsRollup();
+
+    rollup.addValue(DAY.plusDays(1), AGE, "male");
+    rollup.addValue(DAY, GENDER, "male");
+    rollup.addValue(DAY, GENDER, "female");
+    rollup.addValue(DAY, AGE, "male");
+    rollup.addField(DAY.plusDays(1), AGE);
+    rollup.addField(DAY, GENDER);
+    rollup.addField(DAY, AGE);
+
+    assertEquals(Arrays.asList(DAY + " " + AGE + "=male", DAY + " " + GENDER + "=female",
+        DAY + " " + GENDER + "=male", DAY.plusDays(1) + " " + AGE + "=male"),
+        rollup.getValues().cellSet().stream()
+            .map(cell -> cell.getRowKey() + " " + cell.getColumnKey())
+            .collect(Collectors.toList()));
+    assertEquals(Arrays.asList(DAY + " " + AGE, DAY + " " + GENDER, DAY.plusDays(1) + " " + AGE),
+        rollup.getFields().cellSet().stream()
+            .map(cell -> cell.getRowKey() + " " + cell.getColumnKey())
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  void missingUrnsAndValuesAreNotCounted() {
+    StatisticsRollup rollup = new StatisticsRollup();
+
+    rollup.addField(DAY, null);
+    rollup.addValue(DAY, GENDER, null);
+
+    assertTrue(rollup.getFields().isEmpty());
+    assertTrue(rollup.getValues().isEmpty());
+  }
+
+  @Test
+  void resultSumsCounts() {
+    StatisticsResult result = new StatisticsResult();
+
+    result.countSelectedFieldsPerQuery(2, 3);
+    result.countSelectedFieldsPerQuery(2);
+    result.countFields(GENDER, 4);
+    result.countFields(GENDER);
+    result.countValues(GENDER, "male", 2);
+    result.countValues("urn:unknown", "x", 1);
+
+    assertEquals(Integer.valueOf(4), result.getSelectedFieldsPerQuery().get(2));
+    assertEquals(Integer.valueOf(5), result.getFieldCount().get("Geschlecht"));
+    assertEquals(Integer.valueOf(2), result.getValueCount().get("Geschlecht = male"));
+    assertEquals(Integer.valueOf(1), result.getValueCount().get("urn:unknown = x"));
+  }
+}
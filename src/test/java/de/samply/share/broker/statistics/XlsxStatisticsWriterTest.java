@@ -0,0 +1,36 @@
+package de.samply.share.broker.statistics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+class XlsxStatisticsWriterTest {
+
+  @Test
+  void rowsBeyondMemoryWindowAreWritten() throws IOException {
+    int rows = XlsxStatisticsWriter.ROWS_IN_MEMORY * 3;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try (XlsxStatisticsWriter writer = new XlsxStatisticsWriter(output)) {
+      writer.startSheet("MdrValues", "day", "urn", "value", "uses");
+      for (int i = 0; i < rows; i++) {
+        writer.writeRow(LocalDate.of(2021, 1, 1), "urn:mdr16:dataelement:23:1", "value" + i, i);
+      }
+    }
+
+    try (XSSFWorkbook workbook = new XSSFWorkbook(
+        new ByteArrayInputStream(output.toByteArray()))) {
+      Sheet sheet = workbook.getSheet("MdrValues");
+      assertEquals(rows, sheet.getLastRowNum());
+      assertEquals("uses", sheet.getRow(0).getCell(3).getStringCellValue());
+      assertEquals("value0", sheet.getRow(1).getCell(2).getStringCellValue());
+      assertEquals(rows - 1, (int) sheet.getRow(rows).getCell(3).getNumericCellValue());
+    }
+  }
+}
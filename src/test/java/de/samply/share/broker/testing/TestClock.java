@@ -0,0 +1,60 @@
+package de.samply.share.broker.testing;
+
+import com.google.common.base.Ticker;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock for tests which only moves when it is told to. It also serves as a {@link Ticker},
+ * reading the nanoseconds since the epoch.
+ */
+public class TestClock extends Clock {
+
+  private volatile Instant instant;
+
+  public TestClock(Instant instant) {
+    this.instant = instant;
+  }
+
+  public void set(Instant instant) {
+    this.instant = instant;
+  }
+
+  public void advance(Duration duration) {
+    instant = instant.plus(duration);
+  }
+
+  /**
+   * Get a ticker following this clock.
+   *
+   * @return the ticker
+   */
+  public Ticker ticker() {
+    return new Ticker() {
+      @Override
+      public long read() {
+        Instant now = instant;
+        return TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+      }
+    };
+  }
+
+  @Override
+  public ZoneOffset getZone() {
+    return ZoneOffset.UTC;
+  }
+
+  @Override
+  public Clock withZone(ZoneId zone) {
+    return this;
+  }
+
+  @Override
+  public Instant instant() {
+    return instant;
+  }
+}
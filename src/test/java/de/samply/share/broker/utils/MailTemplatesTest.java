@@ -0,0 +1,45 @@
+package de.samply.share.broker.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import org.junit.jupiter.api.Test;
+
+class MailTemplatesTest {
+
+  private static final File TEMPLATE_FOLDER = new File("src/main/resources/mailTemplates");
+
+  @Test
+  void registrationMailContainsToken() {
+    MailTemplates templates = new MailTemplates(TEMPLATE_FOLDER);
+
+    String text = templates.render("NewRegistrationContent", "en",
+        ImmutableMap.of("token", "abc123"));
+
+    assertTrue(text.contains("Thank you for registering"));
+    assertTrue(text.contains("abc123"));
+    assertTrue(text.contains("Yours sincerely"));
+  }
+
+  @Test
+  void compiledTemplatesAreReusedForEveryLocale() {
+    MailTemplates templates = new MailTemplates(TEMPLATE_FOLDER);
+
+    String german = templates.render("NewRegistrationContent", "de",
+        ImmutableMap.of("token", "abc123"));
+    String english = templates.render("NewRegistrationContent", "en",
+        ImmutableMap.of("token", "abc123"));
+
+    assertTrue(german.contains("Vielen Dank"));
+    assertFalse(english.contains("Vielen Dank"));
+  }
+
+  @Test
+  void missingTemplatesAreRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new MailTemplates(new File("src/main/resources/noMailTemplates")));
+  }
+}
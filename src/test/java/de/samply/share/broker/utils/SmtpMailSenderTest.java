@@ -0,0 +1,141 @@
+package de.samply.share.broker.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.samply.share.broker.model.db.tables.pojos.MailOutbox;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.mail.MessagingException;
+import org.junit.jupiter.api.Test;
+
+class SmtpMailSenderTest {
+
+  @Test
+  void renderedMailIsSentToAllRecipients() throws Exception {
+    try (SmtpStub smtp = new SmtpStub(false)) {
+      SmtpMailSender sender = sender(smtp);
+
+      sender.send(mail("{\"token\":\"abc123\"}"));
+
+      smtp.awaitClose();
+      assertEquals("<broker@example.org>", smtp.sender);
+      assertEquals(2, smtp.recipients.size());
+      assertEquals("<a@example.org>", smtp.recipients.get(0));
+      assertTrue(smtp.data.contains("Subject: Registration"));
+      assertTrue(smtp.data.contains("NewRegistrationContent/en: abc123"));
+    }
+  }
+
+  @Test
+  void rejectedMailFails() throws Exception {
+    try (SmtpStub smtp = new SmtpStub(true)) {
+      SmtpMailSender sender = sender(smtp);
+
+      assertThrows(MessagingException.class, () -> sender.send(mail(null)));
+    }
+  }
+
+  private static SmtpMailSender sender(SmtpStub smtp) {
+    return new SmtpMailSender("localhost", smtp.getPort(), "smtp", "broker@example.org",
+        "Broker", (template, locale, parameters) -> template + "/" + locale + ": "
+        + parameters.get("token"));
+  }
+
+  private static MailOutbox mail(String parameters) {
+    MailOutbox mail = new MailOutbox();
+    mail.setRecipients("a@example.org, b@example.org");
+    mail.setSubject("Registration");
+    mail.setLocale("en");
+    mail.setTemplate("NewRegistrationContent");
+    mail.setParameters(parameters);
+    return mail;
+  }
+
+  /**
+   * An SMTP server accepting one connection, which records the mail it receives.
+   */
+  private static class SmtpStub implements AutoCloseable {
+
+    private final ServerSocket serverSocket = new ServerSocket(0);
+    private final Thread thread;
+    private final boolean rejectRecipients;
+
+    private volatile String sender;
+    private final List<String> recipients = new ArrayList<>();
+    private volatile String data = "";
+
+    SmtpStub(boolean rejectRecipients) throws IOException {
+      this.rejectRecipients = rejectRecipients;
+      thread = new Thread(this::serve, "smtp-stub");
+      thread.start();
+    }
+
+    int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    private void serve() {
+      try (Socket socket = serverSocket.accept();
+          BufferedReader in = new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+        OutputStream out = socket.getOutputStream();
+        reply(out, "220 localhost SMTP stub");
+        String line;
+        while ((line = in.readLine()) != null) {
+          String command = line.toUpperCase();
+          if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+            reply(out, "250 localhost");
+          } else if (command.startsWith("MAIL FROM:")) {
+            sender = line.substring("MAIL FROM:".length()).trim();
+            reply(out, "250 OK");
+          } else if (command.startsWith("RCPT TO:")) {
+            if (rejectRecipients) {
+              reply(out, "550 Mailbox unavailable");
+            } else {
+              recipients.add(line.substring("RCPT TO:".length()).trim());
+              reply(out, "250 OK");
+            }
+          } else if (command.startsWith("DATA")) {
+            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+            StringBuilder builder = new StringBuilder();
+            while ((line = in.readLine()) != null && !line.equals(".")) {
+              builder.append(line).append('\n');
+            }
+            data = builder.toString();
+            reply(out, "250 OK");
+          } else if (command.startsWith("QUIT")) {
+            reply(out, "221 Bye");
+            return;
+          } else {
+            reply(out, "250 OK");
+          }
+        }
+      } catch (IOException e) {
+        // closed by the test
+      }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+      out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+    }
+
+    void awaitClose() throws InterruptedException {
+      thread.join(10000);
+    }
+
+    @Override
+    public void close() throws IOException {
+      serverSocket.close();
+    }
+  }
+}
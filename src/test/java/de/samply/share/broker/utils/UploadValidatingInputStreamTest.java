@@ -0,0 +1,77 @@
+package de.samply.share.broker.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+class UploadValidatingInputStreamTest {
+
+  private static final byte[] PDF = "%PDF-1.4 content".getBytes(StandardCharsets.US_ASCII);
+
+  @Test
+  void validPdfIsPassedThroughAndHashed() throws IOException {
+    UploadValidatingInputStream in = new UploadValidatingInputStream(
+        new ByteArrayInputStream(PDF), 1024, true);
+
+    byte[] result = IOUtils.toByteArray(in);
+
+    assertArrayEquals(PDF, result);
+    assertEquals(PDF.length, in.getByteCount());
+    assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+        new UploadValidatingInputStream(new ByteArrayInputStream(new byte[0]), 1, false)
+            .getSha256Hex());
+    assertEquals(64, in.getSha256Hex().length());
+  }
+
+  @Test
+  void nonPdfIsRejected() {
+    UploadValidatingInputStream in = new UploadValidatingInputStream(
+        new ByteArrayInputStream("PK\u0003\u0004 zip".getBytes(StandardCharsets.US_ASCII)), 1024,
+        true);
+
+    UploadRejectedException exception = assertThrows(UploadRejectedException.class,
+        () -> IOUtils.toByteArray(in));
+    assertEquals(UploadRejectedException.Reason.NOT_PDF, exception.getReason());
+  }
+
+  @Test
+  void headerSplitAcrossReadsIsChecked() throws IOException {
+    InputStream trickle = new ByteArrayInputStream(PDF) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 2));
+      }
+    };
+    UploadValidatingInputStream in = new UploadValidatingInputStream(trickle, 1024, true);
+
+    assertArrayEquals(PDF, IOUtils.toByteArray(in));
+  }
+
+  @Test
+  void tooShortPdfIsRejected() {
+    UploadValidatingInputStream in = new UploadValidatingInputStream(
+        new ByteArrayInputStream("%PD".getBytes(StandardCharsets.US_ASCII)), 1024, true);
+
+    UploadRejectedException exception = assertThrows(UploadRejectedException.class,
+        () -> IOUtils.toByteArray(in));
+    assertEquals(UploadRejectedException.Reason.NOT_PDF, exception.getReason());
+  }
+
+  @Test
+  void oversizedUploadIsRejected() {
+    UploadValidatingInputStream in = new UploadValidatingInputStream(
+        new ByteArrayInputStream(new byte[4096]), 1024, false);
+
+    UploadRejectedException exception = assertThrows(UploadRejectedException.class,
+        () -> IOUtils.copy(in, new ByteArrayOutputStream()));
+    assertEquals(UploadRejectedException.Reason.TOO_LARGE, exception.getReason());
+  }
+}
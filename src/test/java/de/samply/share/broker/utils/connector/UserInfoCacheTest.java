@@ -0,0 +1,100 @@
+package de.samply.share.broker.utils.connector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.io.BaseEncoding;
+import de.samply.share.broker.testing.TestClock;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UserInfoCacheTest {
+
+  private static final Duration DEFAULT_LIFETIME = Duration.ofHours(1);
+
+  private TestClock clock;
+  private UserInfoCache cache;
+  private AtomicInteger lookups;
+
+  @BeforeEach
+  void setUp() {
+    clock = new TestClock(Instant.EPOCH);
+    cache = new UserInfoCache(DEFAULT_LIFETIME, 10, clock);
+    lookups = new AtomicInteger();
+  }
+
+  @Test
+  void locationIsLookedUpOncePerToken() {
+    String token = createToken(Instant.EPOCH.plusSeconds(300));
+
+    assertEquals("location", cache.getLocationId(token, this::lookUp));
+    assertEquals("location", cache.getLocationId(token, this::lookUp));
+
+    assertEquals(1, lookups.get());
+  }
+
+  @Test
+  void missingLocationIsCached() {
+    String token = createToken(Instant.EPOCH.plusSeconds(300));
+
+    assertNull(cache.getLocationId(token, this::lookUpNothing));
+    assertNull(cache.getLocationId(token, this::lookUpNothing));
+
+    assertEquals(1, lookups.get());
+  }
+
+  @Test
+  void locationIsLookedUpAgainAfterTokenExpires() {
+    String token = createToken(Instant.EPOCH.plusSeconds(300));
+
+    cache.getLocationId(token, this::lookUp);
+    clock.set(Instant.EPOCH.plusSeconds(300));
+    cache.getLocationId(token, this::lookUp);
+
+    assertEquals(2, lookups.get());
+  }
+
+  @Test
+  void tokenWithoutExpiryIsCachedForDefaultLifetime() {
+    cache.getLocationId("opaque-token", this::lookUp);
+    clock.set(Instant.EPOCH.plus(DEFAULT_LIFETIME).minusSeconds(1));
+    cache.getLocationId("opaque-token", this::lookUp);
+    clock.set(Instant.EPOCH.plus(DEFAULT_LIFETIME));
+    cache.getLocationId("opaque-token", this::lookUp);
+
+    assertEquals(2, lookups.get());
+  }
+
+  @Test
+  void failedLookupIsNotCached() {
+    String token = createToken(Instant.EPOCH.plusSeconds(300));
+
+    assertThrows(IllegalStateException.class, () -> cache.getLocationId(token, t -> {
+      throw new IllegalStateException("userinfo unavailable");
+    }));
+    assertEquals("location", cache.getLocationId(token, this::lookUp));
+  }
+
+  private String lookUp(String token) {
+    lookups.incrementAndGet();
+    return "location";
+  }
+
+  private String lookUpNothing(String token) {
+    lookups.incrementAndGet();
+    return null;
+  }
+
+  private static String createToken(Instant expiry) {
+    BaseEncoding encoding = BaseEncoding.base64Url().omitPadding();
+    String header = encoding.encode("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8));
+    String payload = encoding.encode(("{\"sub\":\"subject\",\"exp\":" + expiry.getEpochSecond()
+        + "}").getBytes(StandardCharsets.UTF_8));
+    return header + "." + payload + ".signature";
+  }
+}